@@ -202,7 +202,7 @@ public class BrowserVersion implements Serializable {
      * @param nickname the short name of the browser (like "FF2", "FF3", "IE6", ...)
      * @param features the browser features
      */
-    private BrowserVersion(final String applicationName, final String applicationVersion,
+    BrowserVersion(final String applicationName, final String applicationVersion,
         final String userAgent, final String javaScriptVersion, final float browserVersionNumeric,
         final String nickname, final BrowserVersionFeatures[] features) {
 
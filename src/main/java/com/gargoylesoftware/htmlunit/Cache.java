@@ -26,6 +26,8 @@ import org.apache.commons.lang.math.NumberUtils;
 import org.apache.commons.lang.time.DateUtils;
 import org.w3c.dom.css.CSSStyleSheet;
 
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+
 /**
  * <p>Simple cache implementation which caches compiled JavaScript files and parsed CSS snippets. Caching
  * compiled JavaScript files avoids unnecessary web requests and additional compilation overhead, while
@@ -110,13 +112,32 @@ public class Cache implements Serializable {
      *
      * @param css the CSS snippet from which <tt>styleSheet</tt> is derived
      * @param styleSheet the parsed version of <tt>css</tt>
+     * @deprecated As of 2.6, the parsed stylesheets are shared by all the clients, see
+     *             {@link com.gargoylesoftware.htmlunit.javascript.host.StyleSheetCache}
      */
+    @Deprecated
     public void cache(final String css, final CSSStyleSheet styleSheet) {
         final Entry entry = new Entry(css, styleSheet);
         entries_.put(entry.key_, entry);
         deleteOverflow();
     }
 
+    /**
+     * Caches the specified page as the template of the pages parsed from the same content. Like stylesheets,
+     * templates are keyed on the content (here a digest of the bytes of the response, and of the settings
+     * influencing the parsing) rather than on the request, so that a page can be reused whatever its URL and
+     * its caching headers. The template itself must never be modified: the pages are built from it with
+     * {@link HtmlPage#copyDocumentTo(HtmlPage)}.
+     *
+     * @param key the key identifying the content from which <tt>template</tt> has been parsed
+     * @param template the page parsed from this content
+     */
+    public void cacheTemplate(final String key, final HtmlPage template) {
+        final Entry entry = new Entry(key, template);
+        entries_.put(entry.key_, entry);
+        deleteOverflow();
+    }
+
     /**
      * Truncates the cache to the maximal number of entries.
      */
@@ -234,7 +255,10 @@ public class Cache implements Serializable {
      *
      * @param css the CSS snippet whose cached stylesheet is sought
      * @return the cached stylesheet corresponding to the specified CSS snippet
+     * @deprecated As of 2.6, the parsed stylesheets are shared by all the clients, see
+     *             {@link com.gargoylesoftware.htmlunit.javascript.host.StyleSheetCache}
      */
+    @Deprecated
     public CSSStyleSheet getCachedStyleSheet(final String css) {
         final Entry cachedEntry = entries_.get(css);
         if (cachedEntry == null) {
@@ -246,6 +270,24 @@ public class Cache implements Serializable {
         return (CSSStyleSheet) cachedEntry.value_;
     }
 
+    /**
+     * Returns the template cached for the specified content. If there is no corresponding
+     * cached template, this method returns <tt>null</tt>.
+     *
+     * @param key the key identifying the content whose cached template is sought
+     * @return the cached template corresponding to the specified content
+     */
+    public HtmlPage getCachedTemplate(final String key) {
+        final Entry cachedEntry = entries_.get(key);
+        if (cachedEntry == null) {
+            return null;
+        }
+        synchronized (entries_) {
+            cachedEntry.touch();
+        }
+        return (HtmlPage) cachedEntry.value_;
+    }
+
     /**
      * Returns the cache's maximum size. This is the maximum number of files that will
      * be cached. The default is <tt>25</tt>.
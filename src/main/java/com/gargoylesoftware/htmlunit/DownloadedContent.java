@@ -20,6 +20,8 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 
 import org.apache.commons.lang.ArrayUtils;
@@ -76,6 +78,109 @@ public interface DownloadedContent extends Serializable {
         }
     }
 
+    /**
+     * Implementation keeping in memory a content which is still being downloaded: the bytes are appended
+     * as they arrive, and the streams returned by {@link #getInputStream()} block until the bytes they
+     * need have been received, or until the download is complete.
+     */
+    static class Streaming implements DownloadedContent {
+        private byte[] bytes_ = new byte[8192];
+        private int count_;
+        private boolean complete_;
+        private IOException failure_;
+
+        /**
+         * Appends bytes received from the server.
+         * @param bytes the buffer containing the bytes
+         * @param offset the offset of the first byte in the buffer
+         * @param length the number of bytes
+         */
+        synchronized void append(final byte[] bytes, final int offset, final int length) {
+            if (count_ + length > bytes_.length) {
+                final byte[] newBytes = new byte[Math.max(bytes_.length * 2, count_ + length)];
+                System.arraycopy(bytes_, 0, newBytes, 0, count_);
+                bytes_ = newBytes;
+            }
+            System.arraycopy(bytes, offset, bytes_, count_, length);
+            count_ += length;
+            notifyAll();
+        }
+
+        /**
+         * Marks the download as complete.
+         * @param failure the exception which interrupted the download, or <tt>null</tt> if it succeeded
+         */
+        synchronized void finish(final IOException failure) {
+            if (!complete_) {
+                complete_ = true;
+                failure_ = failure;
+                notifyAll();
+            }
+        }
+
+        public InputStream getInputStream() {
+            return new InputStream() {
+                private int position_;
+
+                @Override
+                public int read() throws IOException {
+                    final byte[] b = new byte[1];
+                    if (read(b, 0, 1) == -1) {
+                        return -1;
+                    }
+                    return b[0] & 0xFF;
+                }
+
+                @Override
+                public int read(final byte[] b, final int offset, final int length) throws IOException {
+                    if (length == 0) {
+                        return 0;
+                    }
+                    synchronized (Streaming.this) {
+                        while (position_ == count_ && !complete_) {
+                            try {
+                                Streaming.this.wait();
+                            }
+                            catch (final InterruptedException e) {
+                                throw new InterruptedIOException("Interrupted while waiting for the content");
+                            }
+                        }
+                        if (position_ == count_) {
+                            if (failure_ != null) {
+                                throw (IOException) new IOException("Download failed").initCause(failure_);
+                            }
+                            return -1;
+                        }
+                        final int read = Math.min(length, count_ - position_);
+                        System.arraycopy(bytes_, position_, b, offset, read);
+                        position_ += read;
+                        return read;
+                    }
+                }
+
+                @Override
+                public int available() {
+                    synchronized (Streaming.this) {
+                        return count_ - position_;
+                    }
+                }
+            };
+        }
+
+        private synchronized void writeObject(final ObjectOutputStream out) throws IOException {
+            // only the complete content is serialized
+            while (!complete_) {
+                try {
+                    wait();
+                }
+                catch (final InterruptedException e) {
+                    throw new InterruptedIOException("Interrupted while waiting for the content");
+                }
+            }
+            out.defaultWriteObject();
+        }
+    }
+
     /**
      * Returns a new {@link InputStream} allowing to read the downloaded content.
      * @return the InputStream
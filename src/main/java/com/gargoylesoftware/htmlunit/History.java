@@ -85,6 +85,25 @@ public class History implements Serializable {
         return index_;
     }
 
+    /**
+     * Returns the URLs of the navigation history.
+     * @return the URLs of the navigation history
+     */
+    List<String> getUrls() {
+        return new ArrayList<String>(urls_);
+    }
+
+    /**
+     * Replaces the URLs of the navigation history.
+     * @param urls the new URLs
+     * @param index the new current index
+     */
+    void setUrls(final List<String> urls, final int index) {
+        urls_.clear();
+        urls_.addAll(urls);
+        index_ = index;
+    }
+
     /**
      * Returns the URL at the specified index in the navigation history, or <tt>null</tt> if the index is not valid.
      * @param index the index of the URL to be returned
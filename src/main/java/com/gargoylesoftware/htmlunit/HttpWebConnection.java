@@ -23,8 +23,12 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HostConfiguration;
@@ -73,10 +77,16 @@ import org.apache.commons.logging.impl.SimpleLog;
  */
 public class HttpWebConnection implements WebConnection {
 
+    /** A counter used to generate the IDs assigned to the streaming download threads. */
+    private static final AtomicInteger NEXT_THREAD_ID = new AtomicInteger(1);
+
     private final WebClient webClient_;
     private HttpClient httpClient_;
     private String virtualHost_;
 
+    /** The methods whose response body is still being read by a streaming download thread. */
+    private final Set<HttpMethodBase> downloads_ = Collections.synchronizedSet(new HashSet<HttpMethodBase>());
+
     /**
      * Creates a new HTTP web connection instance.
      * @param webClient the WebClient that is using this connection
@@ -95,12 +105,24 @@ public class HttpWebConnection implements WebConnection {
         webClient_.getCookieManager().updateState(httpClient.getState());
 
         final HttpMethodBase httpMethod = makeHttpMethod(settings);
+        boolean streaming = false;
         try {
             final HostConfiguration hostConfiguration = getHostConfiguration(settings);
             final long startTime = System.currentTimeMillis();
             final int responseCode = httpClient.executeMethod(hostConfiguration, httpMethod);
             final long endTime = System.currentTimeMillis();
             webClient_.getCookieManager().updateFromState(httpClient.getState());
+            if (webClient_.isStreamingParseEnabled() && isHtml(httpMethod)) {
+                final InputStream body = httpMethod.getResponseBodyAsStream();
+                if (body != null) {
+                    final DownloadedContent.Streaming content = new DownloadedContent.Streaming();
+                    final WebResponse response = makeWebResponse(responseCode, httpMethod, settings,
+                        endTime - startTime, content);
+                    startDownload(httpMethod, body, content);
+                    streaming = true;
+                    return response;
+                }
+            }
             return makeWebResponse(responseCode, httpMethod, settings, endTime - startTime);
         }
         catch (final HttpException e) {
@@ -130,7 +152,74 @@ public class HttpWebConnection implements WebConnection {
             throw (IOException)new IOException(httpMethod.getName()+' '+url.toExternalForm()+" failed").initCause(e);
         }
         finally {
-            onResponseGenerated(httpMethod);
+            if (!streaming) {
+                onResponseGenerated(httpMethod);
+            }
+        }
+    }
+
+    /**
+     * Returns <tt>true</tt> if the response of the specified method is declared as HTML or XHTML.
+     */
+    private static boolean isHtml(final HttpMethodBase method) {
+        final Header header = method.getResponseHeader("Content-Type");
+        if (header == null || header.getValue() == null) {
+            return false;
+        }
+        final String contentType = header.getValue().toLowerCase();
+        return contentType.startsWith("text/html") || contentType.startsWith("application/xhtml+xml");
+    }
+
+    /**
+     * Starts a background thread which reads the body of the response into the specified content,
+     * and then calls {@link #onResponseGenerated(HttpMethodBase)}.
+     */
+    private void startDownload(final HttpMethodBase httpMethod, final InputStream body,
+            final DownloadedContent.Streaming content) {
+        final Runnable download = new Runnable() {
+            public void run() {
+                IOException failure = null;
+                try {
+                    final byte[] buffer = new byte[8192];
+                    int nbRead;
+                    while ((nbRead = body.read(buffer)) != -1) {
+                        content.append(buffer, 0, nbRead);
+                    }
+                }
+                catch (final IOException e) {
+                    // reported to the readers of the content
+                    failure = e;
+                }
+                finally {
+                    if (failure == null && httpMethod.isAborted()) {
+                        failure = new IOException("The download has been aborted");
+                    }
+                    content.finish(failure);
+                    IOUtils.closeQuietly(body);
+                    downloads_.remove(httpMethod);
+                    onResponseGenerated(httpMethod);
+                }
+            }
+        };
+        downloads_.add(httpMethod);
+        // Daemon thread, so that it doesn't keep the JVM running unnecessarily.
+        final Thread thread = new Thread(download, "Streaming Download Thread " + NEXT_THREAD_ID.getAndIncrement());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Aborts the downloads of the HTML responses which are still being streamed (see
+     * {@link WebClient#setStreamingParseEnabled(boolean)}): the readers of their content get an
+     * {@link IOException}. Called by {@link WebClient#closeAllWindows()}.
+     */
+    public void abortDownloads() {
+        final List<HttpMethodBase> methods;
+        synchronized (downloads_) {
+            methods = new ArrayList<HttpMethodBase>(downloads_);
+        }
+        for (final HttpMethodBase method : methods) {
+            method.abort();
         }
     }
 
@@ -412,6 +501,16 @@ public class HttpWebConnection implements WebConnection {
      */
     private WebResponse makeWebResponse(final int statusCode, final HttpMethodBase method,
             final WebRequestSettings requestSettings, final long loadTime) throws IOException {
+        return makeWebResponse(statusCode, method, requestSettings, loadTime, null);
+    }
+
+    /**
+     * Converts an HttpMethod into a WebResponse, whose body is the specified content if not <tt>null</tt>,
+     * or is read from the HttpMethod.
+     */
+    private WebResponse makeWebResponse(final int statusCode, final HttpMethodBase method,
+            final WebRequestSettings requestSettings, final long loadTime, final DownloadedContent content)
+        throws IOException {
 
         String statusMessage = method.getStatusText();
         if (statusMessage == null || statusMessage.length() == 0) {
@@ -424,7 +523,13 @@ public class HttpWebConnection implements WebConnection {
         for (final Header header : method.getResponseHeaders()) {
             headers.add(new NameValuePair(header.getName(), header.getValue()));
         }
-        final WebResponseData responseData = newWebResponseDataInstance(statusMessage, headers, statusCode, method);
+        final WebResponseData responseData;
+        if (content == null) {
+            responseData = newWebResponseDataInstance(statusMessage, headers, statusCode, method);
+        }
+        else {
+            responseData = newWebResponseDataInstance(statusMessage, headers, statusCode, content);
+        }
         return newWebResponseInstance(responseData, loadTime, requestSettings);
     }
 
@@ -470,6 +575,9 @@ public class HttpWebConnection implements WebConnection {
     /**
      * Constructs an appropriate WebResponseData.
      * May be overridden by subclasses to return a specialized WebResponseData.
+     * The HTML responses parsed while they are downloaded are built by
+     * {@link #newWebResponseDataInstance(String, List, int, DownloadedContent)} instead, as their
+     * body is read by a background thread.
      * @param statusMessage StatusMessage from the response
      * @param headers response headers
      * @param statusCode response status code
@@ -486,6 +594,24 @@ public class HttpWebConnection implements WebConnection {
         return new WebResponseData(method.getResponseBodyAsStream(), statusCode, statusMessage, headers);
     }
 
+    /**
+     * Constructs an appropriate WebResponseData for an HTML response whose body is still being downloaded,
+     * see {@link WebClient#setStreamingParseEnabled(boolean)}.
+     * May be overridden by subclasses to return a specialized WebResponseData.
+     * @param statusMessage StatusMessage from the response
+     * @param headers response headers
+     * @param statusCode response status code
+     * @param content the body of the response, filled as it is downloaded
+     * @return the WebResponseData to use for this response
+     */
+    protected WebResponseData newWebResponseDataInstance(
+            final String statusMessage,
+            final List<NameValuePair> headers,
+            final int statusCode,
+            final DownloadedContent content) {
+        return new WebResponseData(content, statusCode, statusMessage, headers);
+    }
+
     /**
      * Constructs an appropriate WebResponse.
      * May be overridden by subclasses to return a specialized WebResponse.
@@ -0,0 +1,694 @@
+/*
+ * Copyright (c) 2002-2009 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.httpclient.Cookie;
+import org.apache.commons.httpclient.NameValuePair;
+
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import com.gargoylesoftware.htmlunit.html.HtmlPageCheckpoint;
+import com.gargoylesoftware.htmlunit.util.UrlUtils;
+
+/**
+ * Writes the state of a {@link WebClient} to a compact binary checkpoint, and restores new clients from it.
+ * This is much faster, and much smaller, than the Java serialization of the client, which makes it possible
+ * to keep a pool of sessions which have already logged in, and to hand out copies of them.
+ *
+ * <p>A checkpoint contains the options of the client, its cookies and its top level windows, with their
+ * navigation history and their current page. The DOM of the HTML pages is written node by node, including the
+ * content of their frames; other pages are created again from their response when restored. The browser
+ * version is written as a reference to one of the predefined versions whenever possible, and field by field
+ * otherwise. The JavaScript
+ * scopes are not written at all: the restored windows get fresh scopes for the restored documents, without
+ * executing any script or event handler. The global variables and functions defined by the scripts of the
+ * pages are therefore not part of a checkpoint. The handlers, the listeners and the web connection of the
+ * client are not part of it either, and have to be set again on the restored client.</p>
+ *
+ * <p>The encoding is a sequence of tagged entries. The integers are variable length, and each name (of an
+ * element, an attribute, a header, ...) is written only once, then referenced by its number. Reading doesn't
+ * instantiate any class named by the checkpoint, and the lengths, counts and references read are checked,
+ * so that a corrupted checkpoint results in an {@link IOException} rather than in huge allocations.</p>
+ *
+ * @version $Revision$
+ * @author Ahmed Ashour
+ */
+public final class SessionCheckpoint {
+
+    private static final int MAGIC = 0x48554350; // "HUCP"
+    private static final int VERSION = 3;
+
+    private static final int BROWSER_PREDEFINED = 0;
+    private static final int BROWSER_CUSTOM = 1;
+
+    private static final int PAGE_NONE = 0;
+    private static final int PAGE_HTML = 1;
+    private static final int PAGE_RESPONSE = 2;
+
+    private static final BrowserVersion[] PREDEFINED_BROWSERS = {BrowserVersion.FIREFOX_2,
+        BrowserVersion.FIREFOX_3, BrowserVersion.INTERNET_EXPLORER_6, BrowserVersion.INTERNET_EXPLORER_7};
+
+    private SessionCheckpoint() {
+        // Empty.
+    }
+
+    /**
+     * Writes a checkpoint of the specified client to the specified stream. The client must not be used by
+     * other threads in the meantime.
+     *
+     * @param webClient the client
+     * @param stream the stream to write to, which is not closed
+     * @throws IOException if an IO error occurs
+     */
+    public static void write(final WebClient webClient, final OutputStream stream) throws IOException {
+        final Output out = new Output(stream);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writeBrowserVersion(out, webClient.getBrowserVersion());
+        writeOptions(out, webClient);
+        writeCookies(out, webClient.getCookieManager());
+
+        final List<TopLevelWindow> windows = webClient.getTopLevelWindows();
+        out.writeInt(windows.size());
+        int current = -1;
+        for (int i = 0; i < windows.size(); i++) {
+            final TopLevelWindow window = windows.get(i);
+            if (window == webClient.getCurrentWindow()) {
+                current = i;
+            }
+            out.writeText(window.getName());
+            writePage(out, window.getEnclosedPage());
+            final List<String> urls = window.getHistory().getUrls();
+            out.writeInt(urls.size());
+            for (final String url : urls) {
+                out.writeText(url);
+            }
+            out.writeInt(window.getHistory().getIndex());
+        }
+        out.writeInt(current);
+        out.flush();
+    }
+
+    /**
+     * Restores a new client from the checkpoint read from the specified stream.
+     *
+     * @param stream the stream to read from, which is not closed
+     * @return the restored client
+     * @throws IOException if an IO error occurs, or if the stream doesn't contain a checkpoint
+     */
+    public static WebClient read(final InputStream stream) throws IOException {
+        final Input in = new Input(stream);
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Not a session checkpoint");
+        }
+        final WebClient webClient = new WebClient(readBrowserVersion(in));
+        readOptions(in, webClient);
+        readCookies(in, webClient.getCookieManager());
+
+        final int windowCount = in.readCount();
+        final List<TopLevelWindow> windows = new ArrayList<TopLevelWindow>();
+        for (int i = 0; i < windowCount; i++) {
+            final String name = in.readText();
+            final TopLevelWindow window;
+            if (i == 0) {
+                // the new client already has an empty window
+                window = (TopLevelWindow) webClient.getCurrentWindow();
+                window.setName(name);
+            }
+            else {
+                window = new TopLevelWindow(name, webClient);
+                webClient.fireWindowOpened(new WebWindowEvent(window, WebWindowEvent.OPEN, null, null));
+            }
+            readPage(in, window);
+            final int urlCount = in.readCount();
+            final List<String> urls = new ArrayList<String>();
+            for (int j = 0; j < urlCount; j++) {
+                urls.add(in.readText());
+            }
+            final int index = in.readInt();
+            if (index < -1 || index >= urls.size()) {
+                throw new IOException("Invalid history index in a checkpoint: " + index);
+            }
+            window.getHistory().setUrls(urls, index);
+            windows.add(window);
+        }
+        final int current = in.readInt();
+        if (current != -1) {
+            webClient.setCurrentWindow(windows.get(in.checkIndex(current, windows.size())));
+        }
+        return webClient;
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br/>
+     *
+     * Writes the specified page, which may be <tt>null</tt>.
+     *
+     * @param out the checkpoint being written
+     * @param page the page
+     * @throws IOException if an IO error occurs
+     */
+    public static void writePage(final Output out, final Page page) throws IOException {
+        if (page == null) {
+            out.writeInt(PAGE_NONE);
+            return;
+        }
+        final boolean html = page.getClass() == HtmlPage.class;
+        out.writeInt(html ? PAGE_HTML : PAGE_RESPONSE);
+        writeResponse(out, page.getWebResponse());
+        if (html) {
+            HtmlPageCheckpoint.writeDocument(out, (HtmlPage) page);
+        }
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br/>
+     *
+     * Reads a page written by {@link #writePage(Output, Page)}, and sets it as the page of the specified window.
+     *
+     * @param in the checkpoint being read
+     * @param window the window of the page
+     * @return the page, or <tt>null</tt> if the window had no page
+     * @throws IOException if an IO error occurs
+     */
+    public static Page readPage(final Input in, final WebWindow window) throws IOException {
+        final int type = in.readInt();
+        if (type == PAGE_NONE) {
+            return null;
+        }
+        final WebResponse response = readResponse(in);
+        if (type == PAGE_HTML) {
+            return HtmlPageCheckpoint.readDocument(in, response, window);
+        }
+        return window.getWebClient().loadWebResponseInto(response, window);
+    }
+
+    @SuppressWarnings("deprecation")
+    private static void writeBrowserVersion(final Output out, final BrowserVersion browserVersion)
+        throws IOException {
+        for (int i = 0; i < PREDEFINED_BROWSERS.length; i++) {
+            if (browserVersion == PREDEFINED_BROWSERS[i]) {
+                out.writeInt(BROWSER_PREDEFINED);
+                out.writeInt(i);
+                return;
+            }
+        }
+        out.writeInt(BROWSER_CUSTOM);
+        out.writeText(browserVersion.getApplicationName());
+        out.writeText(browserVersion.getApplicationVersion());
+        out.writeText(browserVersion.getUserAgent());
+        out.writeText(browserVersion.getJavaScriptVersion());
+        out.writeLong(Float.floatToIntBits(browserVersion.getBrowserVersionNumeric()));
+        out.writeText(browserVersion.getNickname());
+        out.writeText(browserVersion.getApplicationCodeName());
+        out.writeText(browserVersion.getApplicationMinorVersion());
+        out.writeText(browserVersion.getBrowserLanguage());
+        out.writeText(browserVersion.getCpuClass());
+        out.writeBoolean(browserVersion.isOnLine());
+        out.writeText(browserVersion.getPlatform());
+        out.writeText(browserVersion.getSystemLanguage());
+        out.writeText(browserVersion.getUserLanguage());
+
+        final List<BrowserVersionFeatures> features = new ArrayList<BrowserVersionFeatures>();
+        for (final BrowserVersionFeatures feature : BrowserVersionFeatures.values()) {
+            if (browserVersion.hasFeature(feature)) {
+                features.add(feature);
+            }
+        }
+        out.writeInt(features.size());
+        for (final BrowserVersionFeatures feature : features) {
+            out.writeName(feature.name());
+        }
+
+        final Set<PluginConfiguration> plugins = browserVersion.getPlugins();
+        out.writeInt(plugins.size());
+        for (final PluginConfiguration plugin : plugins) {
+            out.writeText(plugin.getName());
+            out.writeText(plugin.getDescription());
+            out.writeText(plugin.getFilename());
+            out.writeInt(plugin.getMimeTypes().size());
+            for (final PluginConfiguration.MimeType mimeType : plugin.getMimeTypes()) {
+                out.writeName(mimeType.getType());
+                out.writeText(mimeType.getDescription());
+                out.writeText(mimeType.getSuffixes());
+            }
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private static BrowserVersion readBrowserVersion(final Input in) throws IOException {
+        if (in.readInt() == BROWSER_PREDEFINED) {
+            return PREDEFINED_BROWSERS[in.checkIndex(in.readInt(), PREDEFINED_BROWSERS.length)];
+        }
+        final String applicationName = in.readText();
+        final String applicationVersion = in.readText();
+        final String userAgent = in.readText();
+        final String javaScriptVersion = in.readText();
+        final float browserVersionNumeric = Float.intBitsToFloat((int) in.readLong());
+        final String nickname = in.readText();
+        final String applicationCodeName = in.readText();
+        final String applicationMinorVersion = in.readText();
+        final String browserLanguage = in.readText();
+        final String cpuClass = in.readText();
+        final boolean onLine = in.readBoolean();
+        final String platform = in.readText();
+        final String systemLanguage = in.readText();
+        final String userLanguage = in.readText();
+
+        final int featureCount = in.readCount();
+        final List<BrowserVersionFeatures> features = new ArrayList<BrowserVersionFeatures>();
+        for (int i = 0; i < featureCount; i++) {
+            final String name = in.readName();
+            try {
+                features.add(BrowserVersionFeatures.valueOf(name));
+            }
+            catch (final RuntimeException e) {
+                throw new IOException("Invalid browser feature in a checkpoint: " + name);
+            }
+        }
+
+        final BrowserVersion browserVersion;
+        try {
+            browserVersion = new BrowserVersion(applicationName, applicationVersion, userAgent, javaScriptVersion,
+                browserVersionNumeric, nickname, features.toArray(new BrowserVersionFeatures[features.size()]));
+        }
+        catch (final NumberFormatException e) {
+            throw new IOException("Invalid JavaScript version in a checkpoint: " + javaScriptVersion);
+        }
+        browserVersion.setApplicationCodeName(applicationCodeName);
+        browserVersion.setApplicationMinorVersion(applicationMinorVersion);
+        browserVersion.setBrowserLanguage(browserLanguage);
+        browserVersion.setCpuClass(cpuClass);
+        browserVersion.setOnLine(onLine);
+        browserVersion.setPlatform(platform);
+        browserVersion.setSystemLanguage(systemLanguage);
+        browserVersion.setUserLanguage(userLanguage);
+
+        final int pluginCount = in.readCount();
+        for (int i = 0; i < pluginCount; i++) {
+            final PluginConfiguration plugin = new PluginConfiguration(in.readText(), in.readText(), in.readText());
+            final int mimeTypeCount = in.readCount();
+            for (int j = 0; j < mimeTypeCount; j++) {
+                plugin.getMimeTypes().add(
+                    new PluginConfiguration.MimeType(in.readName(), in.readText(), in.readText()));
+            }
+            browserVersion.getPlugins().add(plugin);
+        }
+        return browserVersion;
+    }
+
+    private static void writeOptions(final Output out, final WebClient webClient) throws IOException {
+        out.writeBoolean(webClient.isJavaScriptEnabled());
+        out.writeBoolean(webClient.isCssEnabled());
+        out.writeBoolean(webClient.isAppletEnabled());
+        out.writeBoolean(webClient.isPopupBlockerEnabled());
+        out.writeBoolean(webClient.isRedirectEnabled());
+        out.writeBoolean(webClient.isThrowExceptionOnFailingStatusCode());
+        out.writeBoolean(webClient.isThrowExceptionOnScriptError());
+        out.writeBoolean(webClient.getPrintContentOnFailingStatusCode());
+        out.writeBoolean(webClient.isSourcePositionTrackingEnabled());
+        out.writeBoolean(webClient.isPageTemplatesEnabled());
+        out.writeBoolean(webClient.isLazyStylesheetsEnabled());
+        out.writeBoolean(webClient.isStreamingParseEnabled());
+        out.writeBoolean(webClient.isStaticDomEnabled());
+        out.writeBoolean(webClient.isComputedVisibilityEnabled());
+        out.writeBoolean(webClient.isThrowExceptionOnFailingAjax());
+        out.writeBoolean(webClient.isActiveXNative());
+        out.writeBoolean(webClient.getCookieManager().isCookiesEnabled());
+        out.writeInt(webClient.getTimeout());
+        out.writeLong(webClient.getJavaScriptTimeout());
+        out.writeInt(webClient.getBackgroundIoThreads());
+        out.writeText(webClient.getHomePage());
+        final Map<String, String> headers = webClient.getRequestHeaders();
+        out.writeInt(headers.size());
+        for (final Map.Entry<String, String> header : headers.entrySet()) {
+            out.writeName(header.getKey());
+            out.writeText(header.getValue());
+        }
+    }
+
+    private static void readOptions(final Input in, final WebClient webClient) throws IOException {
+        webClient.setJavaScriptEnabled(in.readBoolean());
+        webClient.setCssEnabled(in.readBoolean());
+        webClient.setAppletEnabled(in.readBoolean());
+        webClient.setPopupBlockerEnabled(in.readBoolean());
+        webClient.setRedirectEnabled(in.readBoolean());
+        webClient.setThrowExceptionOnFailingStatusCode(in.readBoolean());
+        webClient.setThrowExceptionOnScriptError(in.readBoolean());
+        webClient.setPrintContentOnFailingStatusCode(in.readBoolean());
+        webClient.setSourcePositionTrackingEnabled(in.readBoolean());
+        webClient.setPageTemplatesEnabled(in.readBoolean());
+        webClient.setLazyStylesheetsEnabled(in.readBoolean());
+        webClient.setStreamingParseEnabled(in.readBoolean());
+        webClient.setStaticDomEnabled(in.readBoolean());
+        webClient.setComputedVisibilityEnabled(in.readBoolean());
+        webClient.setThrowExceptionOnFailingAjax(in.readBoolean());
+        webClient.setActiveXNative(in.readBoolean());
+        webClient.getCookieManager().setCookiesEnabled(in.readBoolean());
+        webClient.setTimeout(in.readInt());
+        webClient.setJavaScriptTimeout(in.readLong());
+        webClient.setBackgroundIoThreads(in.readCount());
+        webClient.setHomePage(in.readText());
+        final int headerCount = in.readCount();
+        for (int i = 0; i < headerCount; i++) {
+            webClient.addRequestHeader(in.readName(), in.readText());
+        }
+    }
+
+    private static void writeCookies(final Output out, final CookieManager cookieManager) throws IOException {
+        final List<Cookie> cookies = new ArrayList<Cookie>(cookieManager.getCookies());
+        out.writeInt(cookies.size());
+        for (final Cookie cookie : cookies) {
+            out.writeName(cookie.getDomain());
+            out.writeText(cookie.getName());
+            out.writeText(cookie.getValue());
+            out.writeName(cookie.getPath());
+            final Date expiryDate = cookie.getExpiryDate();
+            out.writeLong(expiryDate == null ? -1 : expiryDate.getTime());
+            out.writeBoolean(cookie.getSecure());
+        }
+    }
+
+    private static void readCookies(final Input in, final CookieManager cookieManager) throws IOException {
+        final int cookieCount = in.readCount();
+        for (int i = 0; i < cookieCount; i++) {
+            final String domain = in.readName();
+            final String name = in.readText();
+            final String value = in.readText();
+            final String path = in.readName();
+            final long expiry = in.readLong();
+            final boolean secure = in.readBoolean();
+            cookieManager.addCookie(new Cookie(domain, name, value, path, expiry == -1 ? null : new Date(expiry),
+                secure));
+        }
+    }
+
+    private static void writeResponse(final Output out, final WebResponse response) throws IOException {
+        final WebRequestSettings settings = response.getRequestSettings();
+        out.writeText(settings.getUrl().toExternalForm());
+        out.writeName(settings.getHttpMethod().name());
+        out.writeName(settings.getCharset());
+        out.writeInt(response.getStatusCode());
+        out.writeText(response.getStatusMessage());
+        final List<NameValuePair> headers = response.getResponseHeaders();
+        out.writeInt(headers.size());
+        for (final NameValuePair header : headers) {
+            out.writeName(header.getName());
+            out.writeText(header.getValue());
+        }
+        out.writeBytes(response.getContentAsBytes());
+        out.writeLong(response.getLoadTime());
+    }
+
+    private static WebResponse readResponse(final Input in) throws IOException {
+        final String urlString = in.readText();
+        final String method = in.readName();
+        final URL url;
+        final HttpMethod httpMethod;
+        try {
+            url = UrlUtils.toUrlSafe(urlString);
+            httpMethod = HttpMethod.valueOf(method);
+        }
+        catch (final RuntimeException e) {
+            throw new IOException("Invalid request in a checkpoint: " + method + " " + urlString);
+        }
+        final WebRequestSettings settings = new WebRequestSettings(url, httpMethod);
+        settings.setCharset(in.readName());
+        final int statusCode = in.readInt();
+        final String statusMessage = in.readText();
+        final int headerCount = in.readCount();
+        final List<NameValuePair> headers = new ArrayList<NameValuePair>();
+        for (int i = 0; i < headerCount; i++) {
+            headers.add(new NameValuePair(in.readName(), in.readText()));
+        }
+        final byte[] content = in.readBytes();
+        final WebResponseData data = new WebResponseData(content, statusCode, statusMessage, headers);
+        return new WebResponseImpl(data, settings, in.readLong());
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br/>
+     *
+     * The encoder of a checkpoint.
+     */
+    public static final class Output {
+        private final DataOutputStream out_;
+        private final Map<String, Integer> names_ = new HashMap<String, Integer>();
+
+        private Output(final OutputStream stream) {
+            out_ = new DataOutputStream(new BufferedOutputStream(stream));
+        }
+
+        /**
+         * Writes a non negative integer, in 1 to 5 bytes.
+         * @param value the value
+         * @throws IOException if an IO error occurs
+         */
+        public void writeInt(final int value) throws IOException {
+            int remaining = value;
+            while ((remaining & ~0x7F) != 0) {
+                out_.write((remaining & 0x7F) | 0x80);
+                remaining >>>= 7;
+            }
+            out_.write(remaining);
+        }
+
+        /**
+         * Writes a long.
+         * @param value the value
+         * @throws IOException if an IO error occurs
+         */
+        public void writeLong(final long value) throws IOException {
+            out_.writeLong(value);
+        }
+
+        /**
+         * Writes a boolean.
+         * @param value the value
+         * @throws IOException if an IO error occurs
+         */
+        public void writeBoolean(final boolean value) throws IOException {
+            out_.write(value ? 1 : 0);
+        }
+
+        /**
+         * Writes a string which is likely to be written again, like a tag or an attribute name: only its
+         * number is written if it has already been written once.
+         * @param name the string, which may be <tt>null</tt>
+         * @throws IOException if an IO error occurs
+         */
+        public void writeName(final String name) throws IOException {
+            if (name == null) {
+                writeInt(0);
+                return;
+            }
+            final Integer index = names_.get(name);
+            if (index != null) {
+                writeInt(index + 2);
+            }
+            else {
+                names_.put(name, names_.size());
+                writeInt(1);
+                writeText(name);
+            }
+        }
+
+        /**
+         * Writes a string.
+         * @param text the string, which may be <tt>null</tt>
+         * @throws IOException if an IO error occurs
+         */
+        public void writeText(final String text) throws IOException {
+            if (text == null) {
+                writeInt(0);
+                return;
+            }
+            writeBytes(text.getBytes("UTF-8"));
+        }
+
+        /**
+         * Writes an array of bytes.
+         * @param bytes the bytes, which may be <tt>null</tt>
+         * @throws IOException if an IO error occurs
+         */
+        public void writeBytes(final byte[] bytes) throws IOException {
+            if (bytes == null) {
+                writeInt(0);
+                return;
+            }
+            writeInt(bytes.length + 1);
+            out_.write(bytes);
+        }
+
+        private void flush() throws IOException {
+            out_.flush();
+        }
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br/>
+     *
+     * The decoder of a checkpoint.
+     */
+    public static final class Input {
+        /** The largest array allocated before the bytes it is meant to hold have been read. */
+        private static final int MAX_PREALLOCATED_LENGTH = 64 * 1024;
+
+        private final DataInputStream in_;
+        private final List<String> names_ = new ArrayList<String>();
+
+        private Input(final InputStream stream) {
+            in_ = new DataInputStream(new BufferedInputStream(stream));
+        }
+
+        /**
+         * Reads an integer written by {@link Output#writeInt(int)}.
+         * @return the value
+         * @throws IOException if an IO error occurs
+         */
+        public int readInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                final int b = in_.readUnsignedByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Invalid integer in a checkpoint");
+        }
+
+        /**
+         * Reads a number of entries written by {@link Output#writeInt(int)}.
+         * @return the number, which is not negative
+         * @throws IOException if an IO error occurs, or if the number is negative
+         */
+        public int readCount() throws IOException {
+            final int count = readInt();
+            if (count < 0) {
+                throw new IOException("Invalid count in a checkpoint: " + count);
+            }
+            return count;
+        }
+
+        /**
+         * Checks an index read from the checkpoint.
+         * @param index the index
+         * @param size the number of entries the index refers to
+         * @return the index
+         * @throws IOException if the index is out of bounds
+         */
+        public int checkIndex(final int index, final int size) throws IOException {
+            if (index < 0 || index >= size) {
+                throw new IOException("Invalid reference in a checkpoint: " + index);
+            }
+            return index;
+        }
+
+        /**
+         * Reads a long.
+         * @return the value
+         * @throws IOException if an IO error occurs
+         */
+        public long readLong() throws IOException {
+            return in_.readLong();
+        }
+
+        /**
+         * Reads a boolean.
+         * @return the value
+         * @throws IOException if an IO error occurs
+         */
+        public boolean readBoolean() throws IOException {
+            return in_.readUnsignedByte() != 0;
+        }
+
+        /**
+         * Reads a string written by {@link Output#writeName(String)}.
+         * @return the string, which may be <tt>null</tt>
+         * @throws IOException if an IO error occurs
+         */
+        public String readName() throws IOException {
+            final int index = readInt();
+            if (index == 0) {
+                return null;
+            }
+            if (index == 1) {
+                final String name = readText().intern();
+                names_.add(name);
+                return name;
+            }
+            return names_.get(checkIndex(index - 2, names_.size()));
+        }
+
+        /**
+         * Reads a string written by {@link Output#writeText(String)}.
+         * @return the string, which may be <tt>null</tt>
+         * @throws IOException if an IO error occurs
+         */
+        public String readText() throws IOException {
+            final byte[] bytes = readBytes();
+            if (bytes == null) {
+                return null;
+            }
+            return new String(bytes, "UTF-8");
+        }
+
+        /**
+         * Reads an array of bytes written by {@link Output#writeBytes(byte[])}.
+         * @return the bytes, which may be <tt>null</tt>
+         * @throws IOException if an IO error occurs
+         */
+        public byte[] readBytes() throws IOException {
+            final int length = readInt() - 1;
+            if (length == -1) {
+                return null;
+            }
+            if (length < 0) {
+                throw new IOException("Invalid length in a checkpoint: " + length);
+            }
+            if (length <= MAX_PREALLOCATED_LENGTH) {
+                final byte[] bytes = new byte[length];
+                in_.readFully(bytes);
+                return bytes;
+            }
+            // a corrupted length must not allocate more than the bytes actually present in the stream
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(MAX_PREALLOCATED_LENGTH);
+            final byte[] buffer = new byte[MAX_PREALLOCATED_LENGTH];
+            for (int remaining = length; remaining > 0;) {
+                final int chunk = Math.min(remaining, buffer.length);
+                in_.readFully(buffer, 0, chunk);
+                bytes.write(buffer, 0, chunk);
+                remaining -= chunk;
+            }
+            return bytes.toByteArray();
+        }
+    }
+}
@@ -15,6 +15,9 @@
 package com.gargoylesoftware.htmlunit;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.DocumentType;
@@ -211,6 +214,23 @@ public abstract class SgmlPage extends DomNode implements Page, Document {
         return getDocumentElement().asXml();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeXml(final Writer writer, final boolean indent) throws IOException {
+        getDocumentElement().writeXml(writer, indent);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeXml(final OutputStream outputStream, final Charset charset, final boolean indent)
+        throws IOException {
+        getDocumentElement().writeXml(outputStream, charset, indent);
+    }
+
     /**
      * Returns <tt>true</tt> if this page has case-sensitive tag names, <tt>false</tt> otherwise. In general,
      * XML has case-sensitive tag names, and HTML doesn't. This is especially important during XPath matching.
@@ -14,16 +14,24 @@
  */
 package com.gargoylesoftware.htmlunit;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
 import java.io.IOException;
+import java.io.Serializable;
 import java.net.URL;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ScheduledFuture;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 /**
- * This refresh handler spawns a new thread that waits the specified
- * number of seconds before refreshing the specified page, using the
- * specified URL.
+ * This refresh handler waits the specified number of seconds (or a user defined maximum)
+ * before refreshing the specified page, using the specified URL. The refresh is scheduled
+ * on the web client's {@link WebClient#getRefreshScheduler() refresh scheduler}, so that the
+ * current thread isn't blocked; a pending refresh is cancelled if its window is closed or
+ * navigates to another page in the meantime.
  *
  * If you want a refresh handler that ignores the wait time, see
  * {@link ImmediateRefreshHandler}.
@@ -32,24 +40,69 @@ import org.apache.commons.logging.LogFactory;
  * @author <a href="mailto:mbowler@GargoyleSoftware.com">Mike Bowler</a>
  * @author Daniel Gredler
  */
-public class ThreadedRefreshHandler implements RefreshHandler {
+public class ThreadedRefreshHandler implements RefreshHandler, Serializable {
+
+    private static final long serialVersionUID = -2737516271853536537L;
 
     /** Logging support. */
     private static final Log LOG = LogFactory.getLog(ThreadedRefreshHandler.class);
 
+    private final int maxwait_;
+
+    /** The pending refresh of each window. */
+    private transient Map<WebWindow, ScheduledFuture< ? >> pendingRefreshes_;
+
+    private final WebWindowListener windowListener_ = new PendingRefreshCanceller();
+
+    /**
+     * Creates a new refresh handler that will wait whatever time the server or content asks, unless
+     * it it longer than <tt>maxwait</tt>. A value of <tt>maxwait</tt> that is less than <tt>1</tt>
+     * will cause the refresh handler to always wait for whatever time the server or content requests.
+     *
+     * @param maxwait the maximum wait time before the refresh (in seconds)
+     */
+    public ThreadedRefreshHandler(final int maxwait) {
+        maxwait_ = maxwait;
+    }
+
+    /**
+     * Creates a new refresh handler that will always wait whatever time the server or content asks.
+     */
+    public ThreadedRefreshHandler() {
+        this(0);
+    }
+
     /**
      * Refreshes the specified page using the specified URL after the specified number
      * of seconds.
      * @param page the page that is going to be refreshed
      * @param url the URL where the new page will be loaded
-     * @param seconds the number of seconds to wait before reloading the page
+     * @param requestedWait the number of seconds to wait before reloading the page; if this is
+     *        greater than <tt>maxwait</tt> then <tt>maxwait</tt> will be used instead
      */
-    public void handleRefresh(final Page page, final URL url, final int seconds) {
-        final Thread thread = new Thread("ThreadedRefreshHandler Thread") {
-            @Override
+    public void handleRefresh(final Page page, final URL url, final int requestedWait) {
+        int seconds = requestedWait;
+        if (seconds > maxwait_ && maxwait_ > 0) {
+            seconds = maxwait_;
+        }
+        final WebWindow window = page.getEnclosingWindow();
+        if (window == null) {
+            return;
+        }
+        final WebClient client = window.getWebClient();
+        client.addWebWindowListener(windowListener_);
+
+        final Runnable refresh = new Runnable() {
             public void run() {
+                synchronized (ThreadedRefreshHandler.this) {
+                    getPendingRefreshes().remove(window);
+                }
+                if (window.getEnclosedPage() != page || !client.getWebWindows().contains(window)) {
+                    LOG.debug("Window has been closed or has navigated, ignoring refresh to " + url);
+                    return;
+                }
                 try {
-                    new WaitingRefreshHandler().handleRefresh(page, url, seconds);
+                    client.getPage(window, new WebRequestSettings(url));
                 }
                 catch (final IOException e) {
                     LOG.error("Unable to refresh page!", e);
@@ -57,8 +110,52 @@ public class ThreadedRefreshHandler implements RefreshHandler {
                 }
             }
         };
-        thread.setDaemon(true);
-        thread.start();
+        synchronized (this) {
+            cancel(window);
+            getPendingRefreshes().put(window, client.getRefreshScheduler().schedule(refresh,
+                    seconds * 1000L, MILLISECONDS));
+        }
+    }
+
+    /**
+     * Returns the number of refreshes which are scheduled and haven't started yet.
+     * @return the number of pending refreshes
+     */
+    public synchronized int getPendingRefreshCount() {
+        return getPendingRefreshes().size();
+    }
+
+    private synchronized void cancel(final WebWindow window) {
+        final ScheduledFuture< ? > future = getPendingRefreshes().remove(window);
+        if (future != null) {
+            LOG.debug("Cancelling pending refresh of " + window);
+            future.cancel(false);
+        }
     }
 
+    private Map<WebWindow, ScheduledFuture< ? >> getPendingRefreshes() {
+        if (pendingRefreshes_ == null) {
+            pendingRefreshes_ = new WeakHashMap<WebWindow, ScheduledFuture< ? >>();
+        }
+        return pendingRefreshes_;
+    }
+
+    /**
+     * Cancels the pending refresh of a window when it is closed or when its content changes.
+     */
+    private class PendingRefreshCanceller implements WebWindowListener, Serializable {
+        private static final long serialVersionUID = 2606367652284396627L;
+
+        public void webWindowOpened(final WebWindowEvent event) {
+            // Nothing to do.
+        }
+
+        public void webWindowContentChanged(final WebWindowEvent event) {
+            cancel(event.getWebWindow());
+        }
+
+        public void webWindowClosed(final WebWindowEvent event) {
+            cancel(event.getWebWindow());
+        }
+    }
 }
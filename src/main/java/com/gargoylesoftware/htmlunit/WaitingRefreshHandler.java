@@ -83,8 +83,8 @@ public class WaitingRefreshHandler implements RefreshHandler {
             LOG.debug("Waiting thread was interrupted. Ignoring interruption to continue navigation.");
         }
         final WebWindow window = page.getEnclosingWindow();
-        if (window == null) {
-            return;
+        if (window == null || window.getEnclosedPage() != page) {
+            return; // the window has navigated to another page in the meantime
         }
         final WebClient client = window.getWebClient();
         client.getPage(window, new WebRequestSettings(url));
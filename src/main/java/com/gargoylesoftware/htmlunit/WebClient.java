@@ -32,7 +32,6 @@ import java.util.BitSet;
 import java.util.Collections;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -40,6 +39,11 @@ import java.util.Set;
 import java.util.Stack;
 
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import net.sourceforge.htmlunit.corejs.javascript.Context;
 import net.sourceforge.htmlunit.corejs.javascript.ContextFactory;
 import net.sourceforge.htmlunit.corejs.javascript.Scriptable;
@@ -68,6 +72,7 @@ import com.gargoylesoftware.htmlunit.html.HtmlElement;
 import com.gargoylesoftware.htmlunit.html.HtmlPage;
 import com.gargoylesoftware.htmlunit.javascript.JavaScriptEngine;
 import com.gargoylesoftware.htmlunit.javascript.ProxyAutoConfig;
+import com.gargoylesoftware.htmlunit.javascript.background.BackgroundIoPool;
 import com.gargoylesoftware.htmlunit.javascript.host.Event;
 import com.gargoylesoftware.htmlunit.javascript.host.Window;
 import com.gargoylesoftware.htmlunit.javascript.host.html.HTMLElement;
@@ -131,6 +136,12 @@ public class WebClient implements Serializable {
     private JavaScriptEngine scriptEngine_;
     private boolean javaScriptEnabled_ = true;
     private boolean cssEnabled_ = true;
+    private boolean sourcePositionTrackingEnabled_ = true;
+    private boolean pageTemplatesEnabled_;
+    private boolean lazyStylesheetsEnabled_;
+    private boolean streamingParseEnabled_;
+    private boolean staticDomEnabled_;
+    private boolean computedVisibilityEnabled_;
     private boolean appletEnabled_ = false;
     private boolean popupBlockerEnabled_;
     private String homePage_;
@@ -148,7 +159,7 @@ public class WebClient implements Serializable {
     private boolean isRedirectEnabled_ = true;
     private PageCreator pageCreator_ = new DefaultPageCreator();
 
-    private final Set<WebWindowListener> webWindowListeners_ = new HashSet<WebWindowListener>(5);
+    private final Set<WebWindowListener> webWindowListeners_ = new CopyOnWriteArraySet<WebWindowListener>();
     private final Stack<TopLevelWindow> topLevelWindows_ = new Stack<TopLevelWindow>(); // top-level windows
     private final List<WebWindow> windows_ = Collections.synchronizedList(new ArrayList<WebWindow>()); // all windows
     private WebWindow currentWindow_;
@@ -171,6 +182,12 @@ public class WebClient implements Serializable {
     private boolean activeXNative_;
     private RefreshHandler refreshHandler_ = new ImmediateRefreshHandler();
     private boolean throwExceptionOnScriptError_ = true;
+    private int backgroundIoThreads_;
+    private transient volatile BackgroundIoPool backgroundIoPool_;
+    private transient ScheduledThreadPoolExecutor refreshScheduler_;
+
+    /** The number of threads used to perform the scheduled refreshes. */
+    private static final int REFRESH_THREADS = 2;
 
     /**
      * Creates a web client instance using the browser version returned by
@@ -569,6 +586,16 @@ public class WebClient implements Serializable {
         requestHeaders_.remove(name);
     }
 
+    /**
+     * Returns a copy of the headers which are sent with every request from this client.
+     * @return a copy of the headers which are sent with every request from this client
+     */
+    Map<String, String> getRequestHeaders() {
+        synchronized (requestHeaders_) {
+            return new HashMap<String, String>(requestHeaders_);
+        }
+    }
+
     /**
      * Sets the credentials provider that will provide authentication information when
      * trying to access protected information on a web server. This information is
@@ -646,6 +673,143 @@ public class WebClient implements Serializable {
         return cssEnabled_;
     }
 
+    /**
+     * Enables/disables the recording, by the HTML parser, of the position of each element in the source
+     * of the page (see {@link com.gargoylesoftware.htmlunit.html.DomNode#getStartLineNumber()}).
+     * By default, this property is enabled. Disabling it saves memory on large pages, as no location object
+     * is allocated for the elements; the positions of the &lt;script&gt; elements are still recorded, as they
+     * are used to report the JavaScript errors.
+     *
+     * @param enabled <tt>true</tt> to record the source positions of the elements
+     */
+    public void setSourcePositionTrackingEnabled(final boolean enabled) {
+        sourcePositionTrackingEnabled_ = enabled;
+    }
+
+    /**
+     * Returns <tt>true</tt> if the HTML parser records the source positions of the elements.
+     *
+     * @return <tt>true</tt> if the HTML parser records the source positions of the elements
+     */
+    public boolean isSourcePositionTrackingEnabled() {
+        return sourcePositionTrackingEnabled_;
+    }
+
+    /**
+     * Enables/disables the reuse of parsed HTML pages as templates. When enabled and JavaScript is disabled,
+     * the first HTML page parsed from some content is kept in the {@link Cache}, and the pages later loaded
+     * from exactly the same bytes are built by copying its document instead of parsing the content again
+     * (see {@link HtmlPage#copyDocumentTo(HtmlPage)}). This speeds up the repeated loading of large static
+     * pages. By default, this property is disabled.
+     *
+     * @param enabled <tt>true</tt> to reuse parsed pages as templates
+     */
+    public void setPageTemplatesEnabled(final boolean enabled) {
+        pageTemplatesEnabled_ = enabled;
+    }
+
+    /**
+     * Returns <tt>true</tt> if parsed HTML pages are reused as templates.
+     *
+     * @return <tt>true</tt> if parsed HTML pages are reused as templates
+     */
+    public boolean isPageTemplatesEnabled() {
+        return pageTemplatesEnabled_;
+    }
+
+    /**
+     * Enables/disables the lazy loading of stylesheets. When enabled, the stylesheets (and the imported
+     * stylesheets) whose media don't apply to the screen are ignored when computing the style of an element,
+     * so that they are never downloaded nor parsed unless a script asks for them. Once a page is loaded, the
+     * other linked stylesheets which aren't loaded yet are downloaded by a background job, and only parsed
+     * when their rules are needed. By default, this property is disabled.
+     *
+     * @param enabled <tt>true</tt> to load the stylesheets lazily
+     * @see com.gargoylesoftware.htmlunit.javascript.host.StyleSheetList#getUnloadedCount()
+     */
+    public void setLazyStylesheetsEnabled(final boolean enabled) {
+        lazyStylesheetsEnabled_ = enabled;
+    }
+
+    /**
+     * Returns <tt>true</tt> if the stylesheets are loaded lazily.
+     *
+     * @return <tt>true</tt> if the stylesheets are loaded lazily
+     */
+    public boolean isLazyStylesheetsEnabled() {
+        return lazyStylesheetsEnabled_;
+    }
+
+    /**
+     * Enables/disables the streaming of the HTML responses to the parser. When enabled, the body of the
+     * HTML responses received by {@link HttpWebConnection} is downloaded by a background thread, and the
+     * parser reads the bytes as they arrive instead of waiting for the whole body: the document is built,
+     * and its scripts are loaded and executed, while the rest of the page is still being transferred.
+     * The received bytes are kept in memory, so that the content of the response remains available once
+     * the page is parsed. By default, this property is disabled.
+     *
+     * @param enabled <tt>true</tt> to parse the HTML responses while they are downloaded
+     */
+    public void setStreamingParseEnabled(final boolean enabled) {
+        streamingParseEnabled_ = enabled;
+    }
+
+    /**
+     * Returns <tt>true</tt> if the HTML responses are parsed while they are downloaded.
+     *
+     * @return <tt>true</tt> if the HTML responses are parsed while they are downloaded
+     */
+    public boolean isStreamingParseEnabled() {
+        return streamingParseEnabled_;
+    }
+
+    /**
+     * Enables/disables the static DOM of the HTML pages loaded while JavaScript is disabled, for the clients
+     * which only read the pages (for instance to scrape them). A static DOM is built without the bookkeeping
+     * needed by a document which changes: the source positions are not recorded, no DOM change event is fired,
+     * the ID and name maps are only built when first used, and the short attribute values and texts are
+     * shared by the nodes. Once loaded, such a page is read-only: changing its document (including filling
+     * in its forms) throws a {@link org.w3c.dom.DOMException} <tt>NO_MODIFICATION_ALLOWED_ERR</tt>.
+     * By default, this property is disabled.
+     *
+     * @param enabled <tt>true</tt> to build static DOMs when JavaScript is disabled
+     * @see HtmlPage#isReadOnly()
+     */
+    public void setStaticDomEnabled(final boolean enabled) {
+        staticDomEnabled_ = enabled;
+    }
+
+    /**
+     * Returns <tt>true</tt> if the HTML pages loaded while JavaScript is disabled get a static DOM.
+     *
+     * @return <tt>true</tt> if the HTML pages loaded while JavaScript is disabled get a static DOM
+     */
+    public boolean isStaticDomEnabled() {
+        return staticDomEnabled_;
+    }
+
+    /**
+     * Enables/disables the use of the computed styles by
+     * {@link com.gargoylesoftware.htmlunit.html.DomNode#isDisplayed()}. When enabled (and CSS is enabled), the
+     * elements hidden by the rules of the stylesheets aren't displayed either, but the stylesheets have to be
+     * loaded and the style of each element computed, which is much slower than reading only the inline styles.
+     * By default, this property is disabled.
+     *
+     * @param enabled <tt>true</tt> to use the computed styles to tell whether the nodes are displayed
+     */
+    public void setComputedVisibilityEnabled(final boolean enabled) {
+        computedVisibilityEnabled_ = enabled;
+    }
+
+    /**
+     * Returns <tt>true</tt> if the computed styles are used to tell whether the nodes are displayed.
+     *
+     * @return <tt>true</tt> if the computed styles are used to tell whether the nodes are displayed
+     */
+    public boolean isComputedVisibilityEnabled() {
+        return computedVisibilityEnabled_;
+    }
+
     /**
      * Enables/disables Applet support. By default, this property is disabled.<br/>
      * <p>
@@ -885,19 +1049,19 @@ public class WebClient implements Serializable {
     }
 
     private void fireWindowContentChanged(final WebWindowEvent event) {
-        for (final WebWindowListener listener : new ArrayList<WebWindowListener>(webWindowListeners_)) {
+        for (final WebWindowListener listener : webWindowListeners_) {
             listener.webWindowContentChanged(event);
         }
     }
 
-    private void fireWindowOpened(final WebWindowEvent event) {
-        for (final WebWindowListener listener : new ArrayList<WebWindowListener>(webWindowListeners_)) {
+    void fireWindowOpened(final WebWindowEvent event) {
+        for (final WebWindowListener listener : webWindowListeners_) {
             listener.webWindowOpened(event);
         }
     }
 
     private void fireWindowClosed(final WebWindowEvent event) {
-        for (final WebWindowListener listener : new ArrayList<WebWindowListener>(webWindowListeners_)) {
+        for (final WebWindowListener listener : webWindowListeners_) {
             listener.webWindowClosed(event);
         }
     }
@@ -1666,6 +1830,85 @@ public class WebClient implements Serializable {
         return refreshHandler_;
     }
 
+    /**
+     * Sets the number of threads used to perform the network I/O of asynchronous <tt>XMLHttpRequest</tt>s
+     * in the background. When greater than <tt>0</tt>, the requests are sent in parallel (limited per host
+     * as in the simulated browser) and only the <tt>onreadystatechange</tt> handlers are executed by the
+     * window's {@link com.gargoylesoftware.htmlunit.javascript.background.JavaScriptJobManager}; use
+     * {@link #waitForBackgroundJavaScript(long)} to wait for them. The default is <tt>0</tt>: asynchronous
+     * requests are sent as soon as the script which sent them has finished.
+     * @param threads the number of threads, or <tt>0</tt> to disable background I/O
+     */
+    public synchronized void setBackgroundIoThreads(final int threads) {
+        if (threads < 0) {
+            throw new IllegalArgumentException("The number of threads can not be negative: " + threads);
+        }
+        backgroundIoThreads_ = threads;
+        if (backgroundIoPool_ != null) {
+            backgroundIoPool_.shutdown();
+            backgroundIoPool_ = null;
+        }
+    }
+
+    /**
+     * Returns the number of threads used to perform the network I/O of asynchronous <tt>XMLHttpRequest</tt>s.
+     * @return the number of threads, <tt>0</tt> if background I/O is disabled
+     * @see #setBackgroundIoThreads(int)
+     */
+    public synchronized int getBackgroundIoThreads() {
+        return backgroundIoThreads_;
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br/>
+     *
+     * Returns the pool performing the background network I/O, creating it if needed.
+     * @return the pool, or <tt>null</tt> if background I/O is disabled
+     * @see #setBackgroundIoThreads(int)
+     */
+    public synchronized BackgroundIoPool getBackgroundIoPool() {
+        if (backgroundIoPool_ == null && backgroundIoThreads_ > 0) {
+            backgroundIoPool_ = new BackgroundIoPool(backgroundIoThreads_, getMaxConnectionsPerHost());
+        }
+        return backgroundIoPool_;
+    }
+
+    /**
+     * Returns the maximum number of parallel connections to the same host of the simulated browser.
+     * @return the maximum number of parallel connections to the same host
+     */
+    private int getMaxConnectionsPerHost() {
+        // IE6, IE7 and Firefox 2 open 2 connections per host, IE8 and Firefox 3 open 6
+        final float version = browserVersion_.getBrowserVersionNumeric();
+        if (browserVersion_.isIE() ? version < 8 : version < 3) {
+            return 2;
+        }
+        return 6;
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br/>
+     *
+     * Returns the scheduler used by refresh handlers to perform delayed refreshes, creating it if needed.
+     * The scheduler is shut down by {@link #closeAllWindows()}.
+     * @return the refresh scheduler
+     * @see ThreadedRefreshHandler
+     */
+    public synchronized ScheduledExecutorService getRefreshScheduler() {
+        if (refreshScheduler_ == null) {
+            final AtomicInteger nextThreadId = new AtomicInteger(1);
+            refreshScheduler_ = new ScheduledThreadPoolExecutor(REFRESH_THREADS, new ThreadFactory() {
+                public Thread newThread(final Runnable r) {
+                    // Daemon threads, so that they don't keep the JVM running unnecessarily.
+                    final Thread t = new Thread(r, "Refresh Thread " + nextThreadId.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return refreshScheduler_;
+    }
+
     /**
      * Sets the script pre processor for this webclient.
      * @param scriptPreProcessor the new preprocessor or null if none is specified
@@ -2034,6 +2277,19 @@ public class WebClient implements Serializable {
                 topWindow.close();
             }
         }
+        if (webConnection_ instanceof HttpWebConnection) {
+            ((HttpWebConnection) webConnection_).abortDownloads();
+        }
+        synchronized (this) {
+            if (backgroundIoPool_ != null) {
+                backgroundIoPool_.shutdown();
+                backgroundIoPool_ = null;
+            }
+            if (refreshScheduler_ != null) {
+                refreshScheduler_.shutdownNow();
+                refreshScheduler_ = null;
+            }
+        }
     }
 
     /**
@@ -2059,6 +2315,10 @@ public class WebClient implements Serializable {
     public int waitForBackgroundJavaScript(final long timeoutMillis) {
         int count = 0;
         final long endTime = System.currentTimeMillis() + timeoutMillis;
+        final BackgroundIoPool backgroundIoPool = backgroundIoPool_;
+        if (backgroundIoPool != null) {
+            count += backgroundIoPool.waitForTasks(timeoutMillis);
+        }
         for (Iterator<WebWindow> i = windows_.iterator(); i.hasNext();) {
             final WebWindow window;
             try {
@@ -2106,6 +2366,11 @@ public class WebClient implements Serializable {
     public int waitForBackgroundJavaScriptStartingBefore(final long delayMillis) {
         int count = 0;
         final long endTime = System.currentTimeMillis() + delayMillis;
+        final BackgroundIoPool backgroundIoPool = backgroundIoPool_;
+        if (backgroundIoPool != null) {
+            // background I/O tasks start immediately
+            count += backgroundIoPool.waitForTasks(delayMillis);
+        }
         for (Iterator<WebWindow> i = windows_.iterator(); i.hasNext();) {
             final WebWindow window;
             try {
@@ -2132,6 +2397,10 @@ public class WebClient implements Serializable {
      */
     private int getAggregateJobCount() {
         int count = 0;
+        final BackgroundIoPool backgroundIoPool = backgroundIoPool_;
+        if (backgroundIoPool != null) {
+            count += backgroundIoPool.getTaskCount();
+        }
         for (Iterator<WebWindow> i = windows_.iterator(); i.hasNext();) {
             final WebWindow window;
             try {
@@ -0,0 +1,701 @@
+/*
+ * Copyright (c) 2002-2009 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.html;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.w3c.css.sac.AttributeCondition;
+import org.w3c.css.sac.CSSException;
+import org.w3c.css.sac.CSSParseException;
+import org.w3c.css.sac.CombinatorCondition;
+import org.w3c.css.sac.Condition;
+import org.w3c.css.sac.ConditionalSelector;
+import org.w3c.css.sac.DescendantSelector;
+import org.w3c.css.sac.ElementSelector;
+import org.w3c.css.sac.ErrorHandler;
+import org.w3c.css.sac.InputSource;
+import org.w3c.css.sac.LangCondition;
+import org.w3c.css.sac.NegativeCondition;
+import org.w3c.css.sac.NegativeSelector;
+import org.w3c.css.sac.Selector;
+import org.w3c.css.sac.SelectorList;
+import org.w3c.css.sac.SiblingSelector;
+
+import com.steadystate.css.parser.CSSOMParser;
+import com.steadystate.css.parser.SACParserCSS21;
+
+/**
+ * A group of CSS selectors, compiled into matchers which test an element from right to left: the rightmost
+ * compound selector is tested on the element itself, then the combinators walk to its parent, ancestors
+ * or previous sibling only if it matched.
+ *
+ * <p>The elements selected under a root are looked up through the indexes of the {@link HtmlPage} when the
+ * rightmost compound selector contains an id, a class or a tag name, and by walking the subtree otherwise.
+ * The compiled selectors are cached by their text, see {@link #compile(String)}.</p>
+ *
+ * <p>The selectors are parsed with the CSS 2.1 grammar; the supported pseudo-classes are
+ * <tt>:first-child</tt>, <tt>:last-child</tt>, <tt>:only-child</tt>, <tt>:empty</tt>, <tt>:root</tt>,
+ * <tt>:link</tt>, <tt>:checked</tt>, <tt>:enabled</tt> and <tt>:disabled</tt>; the dynamic pseudo-classes
+ * (<tt>:hover</tt>, <tt>:visited</tt>...) never match.</p>
+ *
+ * @version $Revision$
+ * @author Ahmed Ashour
+ * @see DomNode#querySelectorAll(String)
+ * @see DomNode#querySelector(String)
+ */
+public final class CompiledSelector {
+
+    /** The maximum number of compiled selectors kept in the cache. */
+    private static final int CACHE_SIZE = 500;
+
+    /** Added to {@link Condition#SAC_ATTRIBUTE_CONDITION} for the presence of an attribute, whatever its value. */
+    private static final int PRESENCE = 1000;
+
+    private static final Map<String, CompiledSelector> CACHE
+        = new LinkedHashMap<String, CompiledSelector>(16, 0.75f, true) {
+            private static final long serialVersionUID = -3236283384916651003L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, CompiledSelector> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        };
+
+    private static final ErrorHandler THROWING_ERROR_HANDLER = new ErrorHandler() {
+        public void warning(final CSSParseException exception) {
+            // Empty.
+        }
+
+        public void error(final CSSParseException exception) {
+            throw exception;
+        }
+
+        public void fatalError(final CSSParseException exception) {
+            throw exception;
+        }
+    };
+
+    private final String text_;
+    private final Matcher[] matchers_;
+    private final Lookup[] lookups_;
+
+    private CompiledSelector(final String text, final SelectorList selectors) {
+        text_ = text;
+        matchers_ = new Matcher[selectors.getLength()];
+        lookups_ = new Lookup[selectors.getLength()];
+        for (int i = 0; i < matchers_.length; i++) {
+            matchers_[i] = compile(selectors.item(i));
+            lookups_[i] = new Lookup(selectors.item(i));
+        }
+    }
+
+    /**
+     * Returns the compiled version of the specified group of selectors, compiling it if it isn't cached yet.
+     * @param selectors the comma separated list of selectors
+     * @return the compiled selectors
+     * @throws CSSException if the selectors are invalid or not supported
+     */
+    public static CompiledSelector compile(final String selectors) throws CSSException {
+        synchronized (CACHE) {
+            final CompiledSelector cached = CACHE.get(selectors);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        final CompiledSelector compiled = new CompiledSelector(selectors, parse(selectors));
+        synchronized (CACHE) {
+            CACHE.put(selectors, compiled);
+        }
+        return compiled;
+    }
+
+    private static SelectorList parse(final String selectors) {
+        checkUnsupportedCombinators(selectors);
+        final CSSOMParser parser = new CSSOMParser(new SACParserCSS21());
+        parser.setErrorHandler(THROWING_ERROR_HANDLER);
+        final SelectorList list;
+        try {
+            list = parser.parseSelectors(new InputSource(new StringReader(selectors)));
+        }
+        catch (final CSSException e) {
+            throw e;
+        }
+        catch (final Exception e) {
+            throw new CSSException(CSSException.SAC_SYNTAX_ERR, "Invalid selectors '" + selectors + "'", e);
+        }
+        catch (final Error e) {
+            // SACParser sometimes throws Error: "Missing return statement in function"
+            throw new CSSException(CSSException.SAC_SYNTAX_ERR, "Invalid selectors '" + selectors + "'", null);
+        }
+        if (list == null || list.getLength() == 0) {
+            throw new CSSException(CSSException.SAC_SYNTAX_ERR, "Invalid selectors '" + selectors + "'", null);
+        }
+        return list;
+    }
+
+    /**
+     * The CSS 2.1 parser silently stops at the general sibling combinator of CSS 3 (<tt>~</tt>), which would
+     * select more elements than asked for: it is rejected here.
+     */
+    private static void checkUnsupportedCombinators(final String selectors) {
+        char quote = 0;
+        for (int i = 0; i < selectors.length(); i++) {
+            final char c = selectors.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            }
+            else if (c == '"' || c == '\'') {
+                quote = c;
+            }
+            else if (c == '~' && (i + 1 == selectors.length() || selectors.charAt(i + 1) != '=')) {
+                throw new CSSException(CSSException.SAC_NOT_SUPPORTED_ERR,
+                    "Unsupported combinator '~' in '" + selectors + "'", null);
+            }
+        }
+    }
+
+    /**
+     * Returns <tt>true</tt> if one of the selectors matches the specified element.
+     * @param element the element
+     * @return <tt>true</tt> if one of the selectors matches the specified element
+     */
+    public boolean matches(final DomElement element) {
+        for (final Matcher matcher : matchers_) {
+            if (matcher.matches(element)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the descendants of the specified node matched by one of the selectors, in document order.
+     * @param root the node to search in
+     * @return the matching elements
+     */
+    public List<DomElement> selectAll(final DomNode root) {
+        final List<DomElement> result = new ArrayList<DomElement>();
+        if (matchers_.length == 1) {
+            final List< ? extends DomElement> candidates = lookups_[0].getCandidates(root);
+            if (candidates != null) {
+                for (final DomElement candidate : candidates) {
+                    if (matchers_[0].matches(candidate)) {
+                        result.add(candidate);
+                    }
+                }
+                return result;
+            }
+        }
+        select(root, result, false);
+        return result;
+    }
+
+    /**
+     * Returns the first descendant of the specified node, in document order, matched by one of the selectors.
+     * @param root the node to search in
+     * @return the first matching element, or <tt>null</tt> if none matches
+     */
+    public DomElement selectFirst(final DomNode root) {
+        if (matchers_.length == 1) {
+            final List< ? extends DomElement> candidates = lookups_[0].getCandidates(root);
+            if (candidates != null) {
+                for (final DomElement candidate : candidates) {
+                    if (matchers_[0].matches(candidate)) {
+                        return candidate;
+                    }
+                }
+                return null;
+            }
+        }
+        final List<DomElement> result = new ArrayList<DomElement>(1);
+        select(root, result, true);
+        if (result.isEmpty()) {
+            return null;
+        }
+        return result.get(0);
+    }
+
+    /**
+     * Walks the descendants of the specified node, adding the matching elements to the specified list.
+     * @return <tt>false</tt> if the walk has to stop
+     */
+    private boolean select(final DomNode parent, final List<DomElement> result, final boolean firstOnly) {
+        for (DomNode child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof DomElement) {
+                if (matches((DomElement) child)) {
+                    result.add((DomElement) child);
+                    if (firstOnly) {
+                        return false;
+                    }
+                }
+                if (!select(child, result, firstOnly)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the text of the selectors.
+     * @return the text of the selectors
+     */
+    @Override
+    public String toString() {
+        return text_;
+    }
+
+    private static Matcher compile(final Selector selector) {
+        switch (selector.getSelectorType()) {
+            case Selector.SAC_ANY_NODE_SELECTOR:
+                return Matcher.ANY;
+            case Selector.SAC_ELEMENT_NODE_SELECTOR:
+                final String name = ((ElementSelector) selector).getLocalName();
+                if (name == null) {
+                    return Matcher.ANY;
+                }
+                return new TagMatcher(name);
+            case Selector.SAC_ROOT_NODE_SELECTOR:
+                return new PseudoClassMatcher("root");
+            case Selector.SAC_CONDITIONAL_SELECTOR:
+                final ConditionalSelector conditional = (ConditionalSelector) selector;
+                final Matcher simple = compile(conditional.getSimpleSelector());
+                final Matcher condition = compile(conditional.getCondition());
+                if (simple == Matcher.ANY) {
+                    return condition;
+                }
+                return new AndMatcher(simple, condition);
+            case Selector.SAC_CHILD_SELECTOR:
+                final DescendantSelector child = (DescendantSelector) selector;
+                return new CombinatorMatcher(Selector.SAC_CHILD_SELECTOR,
+                    compile(child.getSimpleSelector()), compile(child.getAncestorSelector()));
+            case Selector.SAC_DESCENDANT_SELECTOR:
+                final DescendantSelector descendant = (DescendantSelector) selector;
+                return new CombinatorMatcher(Selector.SAC_DESCENDANT_SELECTOR,
+                    compile(descendant.getSimpleSelector()), compile(descendant.getAncestorSelector()));
+            case Selector.SAC_DIRECT_ADJACENT_SELECTOR:
+                final SiblingSelector sibling = (SiblingSelector) selector;
+                return new CombinatorMatcher(Selector.SAC_DIRECT_ADJACENT_SELECTOR,
+                    compile(sibling.getSiblingSelector()), compile(sibling.getSelector()));
+            case Selector.SAC_NEGATIVE_SELECTOR:
+                return new NotMatcher(compile(((NegativeSelector) selector).getSimpleSelector()));
+            default:
+                throw new CSSException(CSSException.SAC_NOT_SUPPORTED_ERR,
+                    "Unsupported selector '" + selector + "'", null);
+        }
+    }
+
+    private static Matcher compile(final Condition condition) {
+        switch (condition.getConditionType()) {
+            case Condition.SAC_AND_CONDITION:
+                final CombinatorCondition and = (CombinatorCondition) condition;
+                return new AndMatcher(compile(and.getFirstCondition()), compile(and.getSecondCondition()));
+            case Condition.SAC_NEGATIVE_CONDITION:
+                return new NotMatcher(compile(((NegativeCondition) condition).getCondition()));
+            case Condition.SAC_ID_CONDITION:
+                return new AttributeMatcher(Condition.SAC_ID_CONDITION, "id",
+                    ((AttributeCondition) condition).getValue());
+            case Condition.SAC_CLASS_CONDITION:
+                return new AttributeMatcher(Condition.SAC_CLASS_CONDITION, "class",
+                    ((AttributeCondition) condition).getValue());
+            case Condition.SAC_ATTRIBUTE_CONDITION:
+            case Condition.SAC_ONE_OF_ATTRIBUTE_CONDITION:
+            case Condition.SAC_BEGIN_HYPHEN_ATTRIBUTE_CONDITION:
+                final AttributeCondition attribute = (AttributeCondition) condition;
+                final int type;
+                if (condition.getConditionType() == Condition.SAC_ATTRIBUTE_CONDITION && attribute.getValue() == null) {
+                    type = Condition.SAC_ATTRIBUTE_CONDITION + PRESENCE;
+                }
+                else {
+                    type = condition.getConditionType();
+                }
+                return new AttributeMatcher(type, attribute.getLocalName(), attribute.getValue());
+            case Condition.SAC_LANG_CONDITION:
+                return new LangMatcher(((LangCondition) condition).getLang());
+            case Condition.SAC_ONLY_CHILD_CONDITION:
+                return new PseudoClassMatcher("only-child");
+            case Condition.SAC_PSEUDO_CLASS_CONDITION:
+                return new PseudoClassMatcher(((AttributeCondition) condition).getValue().toLowerCase());
+            default:
+                throw new CSSException(CSSException.SAC_NOT_SUPPORTED_ERR,
+                    "Unsupported condition '" + condition + "'", null);
+        }
+    }
+
+    /**
+     * Tests an element against a compiled part of a selector.
+     */
+    private abstract static class Matcher {
+        /** Matches any element. */
+        static final Matcher ANY = new Matcher() {
+            @Override
+            boolean matches(final DomElement element) {
+                return true;
+            }
+        };
+
+        /**
+         * Returns <tt>true</tt> if the specified element is matched.
+         * @param element the element
+         * @return <tt>true</tt> if the specified element is matched
+         */
+        abstract boolean matches(final DomElement element);
+    }
+
+    /**
+     * Matches the elements having a local name, ignoring its case for the HTML elements.
+     */
+    private static final class TagMatcher extends Matcher {
+        private final String name_;
+
+        TagMatcher(final String name) {
+            name_ = name;
+        }
+
+        @Override
+        boolean matches(final DomElement element) {
+            if (element instanceof HtmlElement) {
+                return name_.equalsIgnoreCase(element.getLocalName());
+            }
+            return name_.equals(element.getLocalName());
+        }
+    }
+
+    /**
+     * Matches the elements having an attribute (or a class, or an id) with some value.
+     */
+    private static final class AttributeMatcher extends Matcher {
+        private final int type_;
+        private final String name_;
+        private final String lowerCaseName_;
+        private final String value_;
+
+        AttributeMatcher(final int type, final String name, final String value) {
+            type_ = type;
+            name_ = name;
+            lowerCaseName_ = name.toLowerCase();
+            value_ = value;
+        }
+
+        @Override
+        boolean matches(final DomElement element) {
+            final String attribute = element.getAttribute(element instanceof HtmlElement ? lowerCaseName_ : name_);
+            switch (type_) {
+                case Condition.SAC_ATTRIBUTE_CONDITION + PRESENCE:
+                    return attribute != DomElement.ATTRIBUTE_NOT_DEFINED;
+                case Condition.SAC_ID_CONDITION:
+                case Condition.SAC_ATTRIBUTE_CONDITION:
+                    return attribute != DomElement.ATTRIBUTE_NOT_DEFINED && attribute.equals(value_);
+                case Condition.SAC_CLASS_CONDITION:
+                case Condition.SAC_ONE_OF_ATTRIBUTE_CONDITION:
+                    return containsWord(attribute, value_);
+                case Condition.SAC_BEGIN_HYPHEN_ATTRIBUTE_CONDITION:
+                    return attribute.equals(value_)
+                        || (attribute.startsWith(value_) && attribute.charAt(value_.length()) == '-');
+                default:
+                    return false;
+            }
+        }
+    }
+
+    /**
+     * Returns <tt>true</tt> if the specified white space separated list contains the specified word.
+     */
+    private static boolean containsWord(final String list, final String word) {
+        final int length = word.length();
+        if (length == 0) {
+            return false;
+        }
+        for (int index = list.indexOf(word); index != -1; index = list.indexOf(word, index + 1)) {
+            if ((index == 0 || Character.isWhitespace(list.charAt(index - 1)))
+                && (index + length == list.length() || Character.isWhitespace(list.charAt(index + length)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Matches the elements whose language, inherited from their ancestors, is a language or one of its
+     * sub-languages.
+     */
+    private static final class LangMatcher extends Matcher {
+        private final String lang_;
+
+        LangMatcher(final String lang) {
+            lang_ = lang.toLowerCase();
+        }
+
+        @Override
+        boolean matches(final DomElement element) {
+            for (DomNode node = element; node instanceof DomElement; node = node.getParentNode()) {
+                final String lang = ((DomElement) node).getAttribute("lang");
+                if (lang != DomElement.ATTRIBUTE_NOT_DEFINED) {
+                    final String lowerCaseLang = lang.toLowerCase();
+                    return lowerCaseLang.equals(lang_)
+                        || (lowerCaseLang.startsWith(lang_) && lowerCaseLang.charAt(lang_.length()) == '-');
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Matches the elements according to a pseudo-class.
+     */
+    private static final class PseudoClassMatcher extends Matcher {
+        private final String name_;
+
+        PseudoClassMatcher(final String name) {
+            if (!"first-child".equals(name) && !"last-child".equals(name) && !"only-child".equals(name)
+                && !"empty".equals(name) && !"root".equals(name) && !"link".equals(name)
+                && !"checked".equals(name) && !"enabled".equals(name) && !"disabled".equals(name)
+                && !"visited".equals(name) && !"hover".equals(name) && !"active".equals(name)
+                && !"focus".equals(name)) {
+                throw new CSSException(CSSException.SAC_NOT_SUPPORTED_ERR,
+                    "Unsupported pseudo-class ':" + name + "'", null);
+            }
+            name_ = name;
+        }
+
+        @Override
+        boolean matches(final DomElement element) {
+            if ("first-child".equals(name_)) {
+                return getPreviousElementSibling(element) == null;
+            }
+            if ("last-child".equals(name_)) {
+                return getNextElementSibling(element) == null;
+            }
+            if ("only-child".equals(name_)) {
+                return getPreviousElementSibling(element) == null && getNextElementSibling(element) == null;
+            }
+            if ("empty".equals(name_)) {
+                for (DomNode child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+                    if (child instanceof DomElement || child instanceof DomText) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            if ("root".equals(name_)) {
+                return element.getParentNode() == element.getPage();
+            }
+            if ("link".equals(name_)) {
+                return (element instanceof HtmlAnchor || element instanceof HtmlArea)
+                    && element.getAttribute("href") != DomElement.ATTRIBUTE_NOT_DEFINED;
+            }
+            if ("checked".equals(name_)) {
+                return ((element instanceof HtmlCheckBoxInput || element instanceof HtmlRadioButtonInput)
+                        && ((HtmlInput) element).isChecked())
+                    || (element instanceof HtmlOption && ((HtmlOption) element).isSelected());
+            }
+            if ("enabled".equals(name_)) {
+                return element instanceof DisabledElement && !((DisabledElement) element).isDisabled();
+            }
+            if ("disabled".equals(name_)) {
+                return element instanceof DisabledElement && ((DisabledElement) element).isDisabled();
+            }
+            // the dynamic pseudo-classes
+            return false;
+        }
+    }
+
+    private static DomElement getPreviousElementSibling(final DomElement element) {
+        for (DomNode node = element.getPreviousSibling(); node != null; node = node.getPreviousSibling()) {
+            if (node instanceof DomElement) {
+                return (DomElement) node;
+            }
+        }
+        return null;
+    }
+
+    private static DomElement getNextElementSibling(final DomElement element) {
+        for (DomNode node = element.getNextSibling(); node != null; node = node.getNextSibling()) {
+            if (node instanceof DomElement) {
+                return (DomElement) node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Matches the elements matched by two matchers, the first one being tested first.
+     */
+    private static final class AndMatcher extends Matcher {
+        private final Matcher first_;
+        private final Matcher second_;
+
+        AndMatcher(final Matcher first, final Matcher second) {
+            first_ = first;
+            second_ = second;
+        }
+
+        @Override
+        boolean matches(final DomElement element) {
+            return first_.matches(element) && second_.matches(element);
+        }
+    }
+
+    /**
+     * Matches the elements not matched by a matcher.
+     */
+    private static final class NotMatcher extends Matcher {
+        private final Matcher matcher_;
+
+        NotMatcher(final Matcher matcher) {
+            matcher_ = matcher;
+        }
+
+        @Override
+        boolean matches(final DomElement element) {
+            return !matcher_.matches(element);
+        }
+    }
+
+    /**
+     * Matches the elements matched by the right part of a combinator, and whose parent, one of their
+     * ancestors or their previous sibling is matched by the left part.
+     */
+    private static final class CombinatorMatcher extends Matcher {
+        private final int type_;
+        private final Matcher right_;
+        private final Matcher left_;
+
+        CombinatorMatcher(final int type, final Matcher right, final Matcher left) {
+            type_ = type;
+            right_ = right;
+            left_ = left;
+        }
+
+        @Override
+        boolean matches(final DomElement element) {
+            if (!right_.matches(element)) {
+                return false;
+            }
+            switch (type_) {
+                case Selector.SAC_CHILD_SELECTOR:
+                    final DomNode parent = element.getParentNode();
+                    return parent instanceof DomElement && left_.matches((DomElement) parent);
+                case Selector.SAC_DESCENDANT_SELECTOR:
+                    for (DomNode ancestor = element.getParentNode(); ancestor instanceof DomElement;
+                            ancestor = ancestor.getParentNode()) {
+                        if (left_.matches((DomElement) ancestor)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                default:
+                    final DomElement previous = getPreviousElementSibling(element);
+                    return previous != null && left_.matches(previous);
+            }
+        }
+    }
+
+    /**
+     * The way to look up the candidates of a selector: by the id, the classes or the tag name required by
+     * its rightmost compound selector.
+     */
+    private static final class Lookup {
+        private String id_;
+        private final List<String> classNames_ = new ArrayList<String>();
+        private String tagName_;
+
+        Lookup(final Selector selector) {
+            Selector rightmost = selector;
+            while (true) {
+                if (rightmost instanceof DescendantSelector) {
+                    rightmost = ((DescendantSelector) rightmost).getSimpleSelector();
+                }
+                else if (rightmost instanceof SiblingSelector) {
+                    rightmost = ((SiblingSelector) rightmost).getSiblingSelector();
+                }
+                else {
+                    break;
+                }
+            }
+            if (rightmost instanceof ConditionalSelector) {
+                addCondition(((ConditionalSelector) rightmost).getCondition());
+                rightmost = ((ConditionalSelector) rightmost).getSimpleSelector();
+            }
+            if (rightmost.getSelectorType() == Selector.SAC_ELEMENT_NODE_SELECTOR) {
+                final String name = ((ElementSelector) rightmost).getLocalName();
+                if (name != null) {
+                    tagName_ = name.toLowerCase();
+                }
+            }
+        }
+
+        private void addCondition(final Condition condition) {
+            switch (condition.getConditionType()) {
+                case Condition.SAC_AND_CONDITION:
+                    addCondition(((CombinatorCondition) condition).getFirstCondition());
+                    addCondition(((CombinatorCondition) condition).getSecondCondition());
+                    break;
+                case Condition.SAC_ID_CONDITION:
+                    id_ = ((AttributeCondition) condition).getValue();
+                    break;
+                case Condition.SAC_CLASS_CONDITION:
+                    final String className = ((AttributeCondition) condition).getValue();
+                    if (className.length() != 0) {
+                        classNames_.add(className);
+                    }
+                    break;
+                default:
+                    // not indexed
+            }
+        }
+
+        /**
+         * Returns the descendants of the specified root which may be matched, in document order, or
+         * <tt>null</tt> if no index can be used and the subtree has to be walked.
+         */
+        List< ? extends DomElement> getCandidates(final DomNode root) {
+            if (!(root.getPage() instanceof HtmlPage)) {
+                return null;
+            }
+            final HtmlPage page = (HtmlPage) root.getPage();
+            if (root != page && !page.isAncestorOf(root)) {
+                // the indexes of the page hold only the attached elements
+                return null;
+            }
+            if (id_ != null) {
+                final List<HtmlElement> elements = page.getElementsById(id_);
+                if (elements.size() <= 1) {
+                    if (elements.isEmpty()
+                        || (root != page && (root == elements.get(0) || !root.isAncestorOf(elements.get(0))))) {
+                        return Collections.emptyList();
+                    }
+                    return elements;
+                }
+                // several elements with the same id: their order is the order of their creation
+            }
+            if (!classNames_.isEmpty()) {
+                return page.getIndexedElementsByClassNames(root,
+                    classNames_.toArray(new String[classNames_.size()]), false);
+            }
+            if (tagName_ != null) {
+                return page.getIndexedElementsByTagName(root, tagName_, false);
+            }
+            return null;
+        }
+    }
+}
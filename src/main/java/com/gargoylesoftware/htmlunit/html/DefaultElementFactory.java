@@ -432,7 +432,7 @@ class DefaultElementFactory implements IElementFactory {
     static Map<String, DomAttr> setAttributes(final SgmlPage page, final Attributes attributes) {
         Map<String, DomAttr> attributeMap = null;
         if (attributes != null) {
-            attributeMap = HtmlElement.createAttributeMap(attributes.getLength());
+            attributeMap = HtmlElement.createAttributeMap(page, attributes.getLength());
             for (int i = 0; i < attributes.getLength(); i++) {
                 final String qName = attributes.getQName(i);
                 // browsers consider only first attribute (ex: <div id='foo' id='something'>...</div>)
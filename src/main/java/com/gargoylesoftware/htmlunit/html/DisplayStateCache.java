@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2002-2009 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.html;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sourceforge.htmlunit.corejs.javascript.ScriptableObject;
+
+import com.gargoylesoftware.htmlunit.javascript.host.css.CSSStyleDeclaration;
+import com.gargoylesoftware.htmlunit.javascript.host.html.HTMLElement;
+
+/**
+ * The effective display state of the nodes of an {@link HtmlPage}, as used by {@link DomNode#isDisplayed()}.
+ *
+ * <p>The state of a node is derived from the state of its parent and from its own <tt>display</tt> and
+ * <tt>visibility</tt>: a node is not displayed if its parent isn't, or if its display is <tt>none</tt>;
+ * otherwise an explicit visibility overrides the visibility of the parent. The states are therefore
+ * computed top-down, and memoised so that the descendants of a node reuse its state instead of walking
+ * their ancestors again.</p>
+ *
+ * <p>The styles are the inline styles of the elements, or their computed styles (including the stylesheets)
+ * when CSS and {@link com.gargoylesoftware.htmlunit.WebClient#setComputedVisibilityEnabled(boolean)} are
+ * enabled. {@link HtmlPage} throws the cache away as soon as the structure of the document, a stylesheet, the
+ * <tt>style</tt> or <tt>class</tt> attribute, or an attribute examined by a selector changes.</p>
+ *
+ * @version $Revision$
+ * @author Ahmed Ashour
+ */
+final class DisplayStateCache {
+
+    /** The node or one of its ancestors has <tt>display: none</tt>. */
+    private static final Byte NOT_DISPLAYED = Byte.valueOf((byte) 0);
+
+    /** The node is displayed, but hidden by its visibility. */
+    private static final Byte HIDDEN = Byte.valueOf((byte) 1);
+
+    /** The node is displayed and visible. */
+    private static final Byte VISIBLE = Byte.valueOf((byte) 2);
+
+    private final Map<DomNode, Byte> states_ = new HashMap<DomNode, Byte>();
+    private final boolean computedStyles_;
+    private final boolean collapseHides_;
+
+    /**
+     * Creates an empty cache.
+     * @param computedStyles whether to use the computed styles, or only the inline styles
+     * @param collapseHides whether the visibility <tt>collapse</tt> hides the nodes, like <tt>hidden</tt>
+     */
+    DisplayStateCache(final boolean computedStyles, final boolean collapseHides) {
+        computedStyles_ = computedStyles;
+        collapseHides_ = collapseHides;
+    }
+
+    /**
+     * Returns whether this cache uses the computed styles.
+     * @return whether this cache uses the computed styles
+     */
+    boolean isComputedStyles() {
+        return computedStyles_;
+    }
+
+    /**
+     * Returns <tt>true</tt> if the specified node is displayed and visible.
+     * @param node the node
+     * @return <tt>true</tt> if the specified node is displayed and visible
+     */
+    boolean isDisplayed(final DomNode node) {
+        final List<DomNode> uncached = new ArrayList<DomNode>();
+        Byte state = VISIBLE;
+        for (DomNode current = node; current != null; current = current.getParentNode()) {
+            final Byte cached = states_.get(current);
+            if (cached != null) {
+                state = cached;
+                break;
+            }
+            uncached.add(current);
+        }
+        for (int i = uncached.size() - 1; i >= 0; i--) {
+            final DomNode current = uncached.get(i);
+            state = getState(current, state);
+            states_.put(current, state);
+        }
+        return state == VISIBLE;
+    }
+
+    private Byte getState(final DomNode node, final Byte parentState) {
+        if (parentState == NOT_DISPLAYED) {
+            // if a parent is display:none, there's nothing that a child can do to override it
+            return NOT_DISPLAYED;
+        }
+        final ScriptableObject scriptableObject = node.getScriptObject();
+        if (!(scriptableObject instanceof HTMLElement)) {
+            return parentState;
+        }
+        final HTMLElement element = (HTMLElement) scriptableObject;
+        final CSSStyleDeclaration style;
+        if (computedStyles_) {
+            style = element.jsxGet_currentStyle();
+        }
+        else {
+            style = element.jsxGet_style();
+        }
+        if ("none".equals(style.jsxGet_display())) {
+            return NOT_DISPLAYED;
+        }
+        // children can override the visibility used by parent nodes
+        final String visibility = style.jsxGet_visibility();
+        if ("visible".equals(visibility)) {
+            return VISIBLE;
+        }
+        if ("hidden".equals(visibility) || (collapseHides_ && "collapse".equals(visibility))) {
+            return HIDDEN;
+        }
+        return parentState;
+    }
+}
@@ -93,7 +93,19 @@ public class DomAttr extends DomNamespaceNode implements Attr {
      * @param value the attribute's new value
      */
     public void setValue(final String value) {
+        checkModifiable();
         value_ = value;
+        if ("class".equalsIgnoreCase(getName())) {
+            if (getParentNode() instanceof DomElement) {
+                ((DomElement) getParentNode()).classChanged();
+            }
+        }
+        else if ("name".equalsIgnoreCase(getName()) && getParentNode() instanceof HtmlElement) {
+            final HtmlForm form = ((HtmlElement) getParentNode()).getEnclosingForm();
+            if (form != null) {
+                form.controlNameChanged();
+            }
+        }
     }
 
     /**
@@ -56,6 +56,7 @@ public abstract class DomCharacterData extends DomNode implements CharacterData
      * @param data the new data character string
      */
     public void setData(final String data) {
+        checkModifiable();
         data_ = data;
     }
 
@@ -65,6 +66,7 @@ public abstract class DomCharacterData extends DomNode implements CharacterData
      */
     @Override
     public void setNodeValue(final String newValue) {
+        checkModifiable();
         data_ = newValue;
     }
 
@@ -81,6 +83,7 @@ public abstract class DomCharacterData extends DomNode implements CharacterData
      * @param newData the string to be appended to the character data
      */
     public void appendData(final String newData) {
+        checkModifiable();
         data_ += newData;
     }
 
@@ -93,6 +96,7 @@ public abstract class DomCharacterData extends DomNode implements CharacterData
         if (offset < 0 || count < 0) {
             throw new IllegalArgumentException("offset: " + offset + " count: " + count);
         }
+        checkModifiable();
 
         final int tailLength = Math.max(data_.length() - count - offset, 0);
         if (tailLength > 0) {
@@ -109,6 +113,7 @@ public abstract class DomCharacterData extends DomNode implements CharacterData
      * @param arg the string to insert
      */
     public void insertData(final int offset, final String arg) {
+        checkModifiable();
         data_ = new StringBuilder(data_).insert(offset, arg).toString();
     }
 
@@ -14,6 +14,11 @@
  */
 package com.gargoylesoftware.htmlunit.html;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
 import org.w3c.dom.DocumentFragment;
 
 import com.gargoylesoftware.htmlunit.SgmlPage;
@@ -64,4 +69,21 @@ public class DomDocumentFragment extends DomNode implements DocumentFragment {
     public String asXml() {
         return getFirstChild().asXml();
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeXml(final Writer writer, final boolean indent) throws IOException {
+        getFirstChild().writeXml(writer, indent);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeXml(final OutputStream outputStream, final Charset charset, final boolean indent)
+        throws IOException {
+        getFirstChild().writeXml(outputStream, charset, indent);
+    }
 }
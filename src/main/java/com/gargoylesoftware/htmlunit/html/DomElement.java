@@ -16,11 +16,14 @@ package com.gargoylesoftware.htmlunit.html;
 
 import java.io.PrintWriter;
 import java.io.Serializable;
-import java.util.ArrayList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 import org.apache.commons.lang.StringEscapeUtils;
 import org.w3c.dom.Attr;
@@ -31,7 +34,6 @@ import org.w3c.dom.Node;
 import org.w3c.dom.TypeInfo;
 
 import com.gargoylesoftware.htmlunit.SgmlPage;
-import com.gargoylesoftware.htmlunit.util.MapWrapper;
 
 /**
  * @version $Revision: 4545 $
@@ -52,8 +54,8 @@ public class DomElement extends DomNamespaceNode implements Element {
     /** The map holding the attributes, keyed by name. */
     private NamedAttrNodeMapImpl attributes_ = NamedAttrNodeMapImpl.EMPTY_MAP;
 
-    /** The map holding the namespaces, keyed by URI. */
-    private Map<String, String> namespaces_ = new HashMap<String, String>();
+    /** The map holding the namespaces, keyed by URI; shared empty map until a namespace is added. */
+    private Map<String, String> namespaces_ = Collections.emptyMap();
 
     /**
      * Creates an instance of a DOM element that can have a namespace.
@@ -68,12 +70,17 @@ public class DomElement extends DomNamespaceNode implements Element {
             final Map<String, DomAttr> attributes) {
         super(namespaceURI, qualifiedName, page);
         if (attributes != null && !attributes.isEmpty()) {
-            attributes_ = new NamedAttrNodeMapImpl(this, isAttributeCaseSensitive(), attributes);
-            for (final DomAttr entry : attributes_.values()) {
-                entry.setParentNode(this);
-                final String attrNamespaceURI = entry.getNamespaceURI();
-                if (attrNamespaceURI != null) {
-                    namespaces_.put(attrNamespaceURI, entry.getPrefix());
+            if (attributes instanceof NamedAttrNodeMapImpl
+                    && ((NamedAttrNodeMapImpl) attributes).attach(this, isAttributeCaseSensitive())) {
+                attributes_ = (NamedAttrNodeMapImpl) attributes;
+            }
+            else {
+                attributes_ = new NamedAttrNodeMapImpl(this, isAttributeCaseSensitive(), attributes);
+            }
+            for (int i = 0; i < attributes_.size(); i++) {
+                final DomAttr attribute = attributes_.getCreatedAttr(i);
+                if (attribute != null && attribute.getNamespaceURI() != null) {
+                    addNamespace(attribute.getNamespaceURI(), attribute.getPrefix());
                 }
             }
         }
@@ -107,6 +114,13 @@ public class DomElement extends DomNamespaceNode implements Element {
         return namespaces_;
     }
 
+    private void addNamespace(final String namespaceURI, final String prefix) {
+        if (namespaces_ == Collections.<String, String>emptyMap()) {
+            namespaces_ = new HashMap<String, String>();
+        }
+        namespaces_.put(namespaceURI, prefix);
+    }
+
     /**
      * Returns the tag name of this element.
      * @return the tag name of this element
@@ -145,7 +159,7 @@ public class DomElement extends DomNamespaceNode implements Element {
             printWriter.print(" ");
             printWriter.print(name);
             printWriter.print("=\"");
-            printWriter.print(StringEscapeUtils.escapeXml(attributes_.get(name).getNodeValue()));
+            printWriter.print(StringEscapeUtils.escapeXml(attributes_.getValue(name)));
             printWriter.print("\"");
         }
     }
@@ -216,12 +230,7 @@ public class DomElement extends DomNamespaceNode implements Element {
      * @return the value of the attribute or {@link #ATTRIBUTE_NOT_DEFINED} or {@link #ATTRIBUTE_VALUE_EMPTY}
      */
     public String getAttribute(final String attributeName) {
-        final DomAttr attr = attributes_.get(attributeName);
-
-        if (attr != null) {
-            return attr.getNodeValue();
-        }
-        return ATTRIBUTE_NOT_DEFINED;
+        return attributes_.getValue(attributeName);
     }
 
     /**
@@ -229,7 +238,22 @@ public class DomElement extends DomNamespaceNode implements Element {
      * @param attributeName the attribute attributeName
      */
     public void removeAttribute(final String attributeName) {
-        attributes_.remove(attributeName.toLowerCase());
+        checkModifiable();
+        attributes_.removeValue(attributeName.toLowerCase());
+        if ("class".equalsIgnoreCase(attributeName)) {
+            classChanged();
+        }
+    }
+
+    /**
+     * Updates the element index of the HTML page containing this element (if any), because the
+     * <tt>class</tt> attribute of this element has changed.
+     */
+    final void classChanged() {
+        final SgmlPage page = getPage();
+        if (page instanceof HtmlPage) {
+            ((HtmlPage) page).elementClassChanged(this);
+        }
     }
 
     /**
@@ -263,7 +287,7 @@ public class DomElement extends DomNamespaceNode implements Element {
     public final boolean hasAttributeNS(final String namespaceURI, final String localName) {
         final String qualifiedName = getQualifiedName(namespaceURI, localName);
         if (qualifiedName != null) {
-            return attributes_.get(qualifiedName) != null;
+            return attributes_.containsKey(qualifiedName);
         }
         return false;
     }
@@ -303,17 +327,26 @@ public class DomElement extends DomNamespaceNode implements Element {
      */
     public void setAttributeNS(final String namespaceURI, final String qualifiedName,
             final String attributeValue) {
-        final String value = attributeValue;
-
+        checkModifiable();
         if (attributes_ == NamedAttrNodeMapImpl.EMPTY_MAP) {
             attributes_ = new NamedAttrNodeMapImpl(this, isAttributeCaseSensitive());
         }
-        final DomAttr newAttr = new DomAttr(getPage(), namespaceURI, qualifiedName, value);
-        newAttr.setParentNode(this);
-        attributes_.put(qualifiedName, newAttr);
+        if (resolveNamespaceURI(getPage(), namespaceURI, qualifiedName) == null) {
+            // no need for a DomAttr node until one is requested
+            attributes_.setValue(qualifiedName, attributeValue);
+        }
+        else {
+            final DomAttr newAttr = new DomAttr(getPage(), namespaceURI, qualifiedName, attributeValue);
+            newAttr.setParentNode(this);
+            attributes_.put(qualifiedName, newAttr);
+        }
+        if ("class".equalsIgnoreCase(qualifiedName)) {
+            classChanged();
+        }
 
         if (namespaceURI != null) {
-            namespaces().put(namespaceURI, newAttr.getPrefix());
+            final int colonPosition = qualifiedName.indexOf(':');
+            addNamespace(namespaceURI, colonPosition == -1 ? null : qualifiedName.substring(0, colonPosition));
         }
     }
 
@@ -426,68 +459,365 @@ public class DomElement extends DomNamespaceNode implements Element {
      * {@inheritDoc}
      */
     @Override
-    public DomNode cloneNode(final boolean deep) {
-        final DomElement clone = (DomElement) super.cloneNode(deep);
-        clone.attributes_ = new NamedAttrNodeMapImpl(clone, isAttributeCaseSensitive());
-        clone.attributes_.putAll(attributes_);
+    DomNode copy(final SgmlPage page) {
+        final DomElement clone = (DomElement) super.copy(page);
+        if (attributes_ != NamedAttrNodeMapImpl.EMPTY_MAP) {
+            clone.attributes_ = attributes_.copyFor(clone);
+        }
         return clone;
     }
 }
 
+
 /**
  * The {@link NamedNodeMap} to store the node attributes.
+ *
+ * <p>The attributes are stored in insertion order in parallel arrays of names and values. The
+ * {@link DomAttr} node of an attribute is only created when the attribute is requested as a node
+ * (through the W3C API or the map view), and then holds the value of the attribute.</p>
  */
-class NamedAttrNodeMapImpl extends MapWrapper<String, DomAttr> implements NamedNodeMap, Serializable {
+class NamedAttrNodeMapImpl extends AbstractMap<String, DomAttr> implements NamedNodeMap, Serializable {
     private static final long serialVersionUID = -450637965125944616L;
-    private final List<String> attrPositions_ = new ArrayList<String>();
-    private final DomElement domNode_;
     public static final NamedAttrNodeMapImpl EMPTY_MAP = new NamedAttrNodeMapImpl();
-    private final boolean caseSensitive_;
+
+    /** Above this number of attributes, the positions are looked up in a hash map instead of scanning the names. */
+    private static final int INDEX_THRESHOLD = 12;
+
+    private final SgmlPage page_;
+    private DomElement domNode_;
+    private boolean caseSensitive_;
+
+    private int size_;
+
+    /** The names of the attributes, as used for the lookups: interned, and lower case if not case sensitive. */
+    private String[] names_;
+
+    /** The values of the attributes: the <tt>String</tt> value, or the {@link DomAttr} once created. */
+    private Object[] values_;
+
+    /** The qualified names which are not the same as the lookup names, <tt>null</tt> if there is none. */
+    private String[] qualifiedNames_;
+
+    /** The positions of the attributes, for elements with many attributes. */
+    private transient Map<String, Integer> positions_;
 
     private NamedAttrNodeMapImpl() {
-        super(Collections.<String, DomAttr>emptyMap());
+        page_ = null;
         domNode_ = null;
         caseSensitive_ = true;
+        names_ = new String[0];
+        values_ = new Object[0];
+    }
+
+    /**
+     * Creates a map which isn't attached to an element yet; it will be by the element constructor.
+     * @param page the page which will contain the element
+     * @param capacity the expected number of attributes
+     */
+    NamedAttrNodeMapImpl(final SgmlPage page, final int capacity) {
+        page_ = page;
+        caseSensitive_ = true;
+        names_ = new String[Math.max(capacity, 1)];
+        values_ = new Object[names_.length];
     }
 
     NamedAttrNodeMapImpl(final DomElement domNode, final boolean caseSensitive,
             final Map<String, DomAttr> attributes) {
-        super(attributes);
-        if (domNode == null) {
+        this(domNode, caseSensitive, attributes.size());
+        for (final Map.Entry<String, DomAttr> entry : attributes.entrySet()) {
+            final DomAttr attribute = entry.getValue();
+            attribute.setParentNode(domNode);
+            add(fixName(entry.getKey()), attribute, null);
+        }
+    }
+
+    NamedAttrNodeMapImpl(final DomElement domElement, final boolean caseSensitive) {
+        this(domElement, caseSensitive, 1);
+    }
+
+    private NamedAttrNodeMapImpl(final DomElement domElement, final boolean caseSensitive, final int capacity) {
+        if (domElement == null) {
             throw new IllegalArgumentException();
         }
+        page_ = null;
+        domNode_ = domElement;
+        caseSensitive_ = caseSensitive;
+        names_ = new String[Math.max(capacity, 1)];
+        values_ = new Object[names_.length];
+    }
+
+    /**
+     * Attaches this map to the specified element, if it is not attached yet.
+     * @param domNode the element
+     * @param caseSensitive whether the attribute names are case sensitive
+     * @return whether this map has been attached
+     */
+    boolean attach(final DomElement domNode, final boolean caseSensitive) {
+        if (domNode_ != null || this == EMPTY_MAP) {
+            return false;
+        }
         domNode_ = domNode;
         caseSensitive_ = caseSensitive;
+        for (int i = 0; i < size_; i++) {
+            if (values_[i] instanceof DomAttr) {
+                ((DomAttr) values_[i]).setParentNode(domNode);
+            }
+            final String name = fixName(names_[i]);
+            if (name != names_[i]) {
+                setQualifiedName(i, names_[i]);
+                names_[i] = name.intern();
+            }
+        }
+        positions_ = null;
+        return true;
+    }
+
+    /**
+     * Returns a copy of this map for the specified clone of the element: the clone gets its own
+     * attribute nodes.
+     * @param clone the clone of the element
+     * @return the copy
+     */
+    NamedAttrNodeMapImpl copyFor(final DomElement clone) {
+        final NamedAttrNodeMapImpl copy = new NamedAttrNodeMapImpl(clone, caseSensitive_, size_);
+        // the names are already interned: only the attribute nodes can't be shared
+        System.arraycopy(names_, 0, copy.names_, 0, size_);
+        if (qualifiedNames_ != null) {
+            copy.qualifiedNames_ = new String[copy.names_.length];
+            System.arraycopy(qualifiedNames_, 0, copy.qualifiedNames_, 0, size_);
+        }
+        for (int i = 0; i < size_; i++) {
+            final Object value = values_[i];
+            if (value instanceof DomAttr && ((DomAttr) value).getNamespaceURI() != null) {
+                final DomAttr attribute = (DomAttr) value;
+                final DomAttr attributeClone = new DomAttr(clone.getPage(), attribute.getNamespaceURI(),
+                        attribute.getName(), attribute.getValue());
+                attributeClone.setParentNode(clone);
+                copy.values_[i] = attributeClone;
+            }
+            else {
+                copy.values_[i] = getValue(i);
+            }
+        }
+        copy.size_ = size_;
+        return copy;
+    }
 
-        // register positions of attributes
-        for (final String name : keySet()) {
-            attrPositions_.add(name);
+    private String fixName(final String name) {
+        if (caseSensitive_) {
+            return name;
         }
+        return name.toLowerCase();
     }
 
-    NamedAttrNodeMapImpl(final DomElement domElement, final boolean caseSensitive) {
-        this(domElement, caseSensitive, new HashMap<String, DomAttr>());
+    private int indexOf(final String name) {
+        if (size_ > INDEX_THRESHOLD) {
+            if (positions_ == null) {
+                positions_ = new HashMap<String, Integer>(size_ * 2);
+                for (int i = 0; i < size_; i++) {
+                    positions_.put(names_[i], i);
+                }
+            }
+            final Integer position = positions_.get(name);
+            if (position == null) {
+                return -1;
+            }
+            return position;
+        }
+        for (int i = 0; i < size_; i++) {
+            // the names are interned, so that equals() usually succeeds at the identity check
+            if (names_[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void add(final String name, final Object value, final String qualifiedName) {
+        if (this == EMPTY_MAP) {
+            throw new UnsupportedOperationException();
+        }
+        if (size_ == names_.length) {
+            final int capacity = size_ * 2;
+            final String[] names = new String[capacity];
+            System.arraycopy(names_, 0, names, 0, size_);
+            names_ = names;
+            final Object[] values = new Object[capacity];
+            System.arraycopy(values_, 0, values, 0, size_);
+            values_ = values;
+            if (qualifiedNames_ != null) {
+                final String[] qualifiedNames = new String[capacity];
+                System.arraycopy(qualifiedNames_, 0, qualifiedNames, 0, size_);
+                qualifiedNames_ = qualifiedNames;
+            }
+        }
+        names_[size_] = name.intern();
+        values_[size_] = value;
+        if (positions_ != null) {
+            positions_.put(names_[size_], size_);
+        }
+        size_++;
+        if (qualifiedName != null && !qualifiedName.equals(name)) {
+            setQualifiedName(size_ - 1, qualifiedName);
+        }
+    }
+
+    private void setQualifiedName(final int index, final String qualifiedName) {
+        if (qualifiedNames_ == null) {
+            qualifiedNames_ = new String[names_.length];
+        }
+        qualifiedNames_[index] = qualifiedName;
+    }
+
+    /**
+     * Returns the name of the attribute at the specified position, as specified when it was added.
+     * @param index the position
+     * @return the name
+     */
+    String getQualifiedName(final int index) {
+        if (qualifiedNames_ != null && qualifiedNames_[index] != null) {
+            return qualifiedNames_[index];
+        }
+        return names_[index];
+    }
+
+    private void removeAt(final int index) {
+        final int moved = size_ - index - 1;
+        System.arraycopy(names_, index + 1, names_, index, moved);
+        System.arraycopy(values_, index + 1, values_, index, moved);
+        if (qualifiedNames_ != null) {
+            System.arraycopy(qualifiedNames_, index + 1, qualifiedNames_, index, moved);
+            qualifiedNames_[size_ - 1] = null;
+        }
+        size_--;
+        names_[size_] = null;
+        values_[size_] = null;
+        positions_ = null;
+    }
+
+    /**
+     * Returns the value of the attribute at the specified position, without creating its node.
+     * @param index the position
+     * @return the value
+     */
+    String getValue(final int index) {
+        final Object value = values_[index];
+        if (value instanceof DomAttr) {
+            return ((DomAttr) value).getValue();
+        }
+        return (String) value;
+    }
+
+    /**
+     * Returns the attribute node at the specified position, creating it if needed.
+     */
+    private DomAttr getAttr(final int index) {
+        final Object value = values_[index];
+        if (value instanceof DomAttr) {
+            return (DomAttr) value;
+        }
+        final SgmlPage page = domNode_ != null ? domNode_.getPage() : page_;
+        final DomAttr attribute = new DomAttr(page, null, getQualifiedName(index), (String) value);
+        if (domNode_ != null) {
+            attribute.setParentNode(domNode_);
+        }
+        values_[index] = attribute;
+        return attribute;
+    }
+
+    /**
+     * Returns the namespace URI of the attribute at the specified position.
+     * @param index the position
+     * @return the namespace URI, or <tt>null</tt> if the attribute has no namespace
+     */
+    String getNamespaceURI(final int index) {
+        final Object value = values_[index];
+        if (value instanceof DomAttr) {
+            return ((DomAttr) value).getNamespaceURI();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the attribute node at the specified position if it has already been created.
+     * @param index the position
+     * @return the attribute node, or <tt>null</tt> if it hasn't been created
+     */
+    DomAttr getCreatedAttr(final int index) {
+        final Object value = values_[index];
+        if (value instanceof DomAttr) {
+            return (DomAttr) value;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the value of the specified attribute, without creating its node.
+     * @param name the name of the attribute
+     * @return the value, or {@link DomElement#ATTRIBUTE_NOT_DEFINED} if the attribute is not defined
+     */
+    String getValue(final String name) {
+        final int index = indexOf(fixName(name));
+        if (index == -1) {
+            return DomElement.ATTRIBUTE_NOT_DEFINED;
+        }
+        return getValue(index);
+    }
+
+    /**
+     * Sets the value of the specified attribute (which has no namespace), without creating its node.
+     * Like {@link #put(String, DomAttr)}, this replaces the node of the attribute if it already exists.
+     * @param qualifiedName the name of the attribute
+     * @param value the value
+     */
+    void setValue(final String qualifiedName, final String value) {
+        final String name = fixName(qualifiedName);
+        final int index = indexOf(name);
+        if (index == -1) {
+            add(name, value, qualifiedName);
+        }
+        else {
+            values_[index] = value;
+            if (qualifiedNames_ != null) {
+                qualifiedNames_[index] = null;
+            }
+            if (!qualifiedName.equals(name)) {
+                setQualifiedName(index, qualifiedName);
+            }
+        }
+    }
+
+    /**
+     * Removes the specified attribute, without creating its node.
+     * @param name the name of the attribute
+     */
+    void removeValue(final String name) {
+        final int index = indexOf(fixName(name));
+        if (index != -1) {
+            removeAt(index);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public int getLength() {
-        return size();
+    @Override
+    public int size() {
+        return size_;
     }
 
     /**
      * {@inheritDoc}
      */
-    public DomAttr getNamedItem(final String name) {
-        return get(fixName(name));
+    public int getLength() {
+        return size_;
     }
 
-    private String fixName(final String name) {
-        if (caseSensitive_) {
-            return name;
-        }
-        return name.toLowerCase();
+    /**
+     * {@inheritDoc}
+     */
+    public DomAttr getNamedItem(final String name) {
+        return get(name);
     }
 
     /**
@@ -504,17 +834,17 @@ class NamedAttrNodeMapImpl extends MapWrapper<String, DomAttr> implements NamedN
      * {@inheritDoc}
      */
     public Node item(final int index) {
-        if (index < 0 || index >= attrPositions_.size()) {
+        if (index < 0 || index >= size_) {
             return null;
         }
-        return get(attrPositions_.get(index));
+        return getAttr(index);
     }
 
     /**
      * {@inheritDoc}
      */
     public Node removeNamedItem(final String name) throws DOMException {
-        return remove(fixName(name));
+        return remove(name);
     }
 
     /**
@@ -531,26 +861,33 @@ class NamedAttrNodeMapImpl extends MapWrapper<String, DomAttr> implements NamedN
      * {@inheritDoc}
      */
     public DomAttr setNamedItem(final Node node) {
-        return put(fixName(node.getLocalName()), (DomAttr) node);
+        return put(node.getLocalName(), (DomAttr) node);
     }
 
     /**
      * {@inheritDoc}
      */
     public Node setNamedItemNS(final Node node) throws DOMException {
-        return put(fixName(node.getNodeName()), (DomAttr) node);
+        return put(node.getNodeName(), (DomAttr) node);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public DomAttr put(String key, final DomAttr value) {
-        key = fixName(key);
-        if (!containsKey(key)) {
-            attrPositions_.add(key);
+    public DomAttr put(final String key, final DomAttr value) {
+        final String name = fixName(key);
+        final int index = indexOf(name);
+        if (index == -1) {
+            add(name, value, null);
+            return null;
         }
-        return super.put(key, value);
+        final DomAttr previous = getAttr(index);
+        values_[index] = value;
+        if (qualifiedNames_ != null) {
+            qualifiedNames_[index] = null;
+        }
+        return previous;
     }
 
     /**
@@ -561,9 +898,13 @@ class NamedAttrNodeMapImpl extends MapWrapper<String, DomAttr> implements NamedN
         if (!(key instanceof String)) {
             return null;
         }
-        final String name = fixName((String) key);
-        attrPositions_.remove(name);
-        return super.remove(name);
+        final int index = indexOf(fixName((String) key));
+        if (index == -1) {
+            return null;
+        }
+        final DomAttr previous = getAttr(index);
+        removeAt(index);
+        return previous;
     }
 
     /**
@@ -571,42 +912,106 @@ class NamedAttrNodeMapImpl extends MapWrapper<String, DomAttr> implements NamedN
      */
     @Override
     public void clear() {
-        attrPositions_.clear();
-        super.clear();
+        while (size_ > 0) {
+            removeAt(size_ - 1);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public void putAll(final Map< ? extends String, ? extends DomAttr> t) {
-        // add one after the other to save the positions
-        for (final Map.Entry< ? extends String, ? extends DomAttr> entry : t.entrySet()) {
-            put(entry.getKey(), entry.getValue());
+    public boolean containsKey(final Object key) {
+        if (!(key instanceof String)) {
+            return false;
         }
+        return indexOf(fixName((String) key)) != -1;
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public boolean containsKey(final Object key) {
+    public DomAttr get(final Object key) {
         if (!(key instanceof String)) {
-            return false;
+            return null;
         }
-        final String name = fixName((String) key);
-        return super.containsKey(name);
+        final int index = indexOf(fixName((String) key));
+        if (index == -1) {
+            return null;
+        }
+        return getAttr(index);
     }
 
     /**
      * {@inheritDoc}
+     * The attribute nodes are created when the values of the entries are accessed.
      */
     @Override
-    public DomAttr get(final Object key) {
-        if (!(key instanceof String)) {
-            return null;
+    public Set<Map.Entry<String, DomAttr>> entrySet() {
+        return new AbstractSet<Map.Entry<String, DomAttr>>() {
+            @Override
+            public int size() {
+                return size_;
+            }
+
+            @Override
+            public Iterator<Map.Entry<String, DomAttr>> iterator() {
+                return new Iterator<Map.Entry<String, DomAttr>>() {
+                    private int next_;
+
+                    public boolean hasNext() {
+                        return next_ < size_;
+                    }
+
+                    public Map.Entry<String, DomAttr> next() {
+                        if (next_ >= size_) {
+                            throw new NoSuchElementException();
+                        }
+                        return new Entry(next_++);
+                    }
+
+                    public void remove() {
+                        if (next_ == 0) {
+                            throw new IllegalStateException();
+                        }
+                        removeAt(--next_);
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Ensures that the shared empty map stays unique.
+     * @return the object to use instead of the deserialized one
+     */
+    private Object readResolve() {
+        if (domNode_ == null && page_ == null) {
+            return EMPTY_MAP;
+        }
+        return this;
+    }
+
+    private class Entry implements Map.Entry<String, DomAttr> {
+        private final String name_;
+        private final int index_;
+
+        Entry(final int index) {
+            name_ = names_[index];
+            index_ = index;
+        }
+
+        public String getKey() {
+            return name_;
+        }
+
+        public DomAttr getValue() {
+            return getAttr(index_);
+        }
+
+        public DomAttr setValue(final DomAttr value) {
+            return put(name_, value);
         }
-        final String name = fixName((String) key);
-        return super.get(name);
     }
 }
@@ -53,17 +53,27 @@ public abstract class DomNamespaceNode extends DomNode {
             prefix_ = qualifiedName_.substring(0, colonPosition);
         }
         else {
-            if (page instanceof XmlPage || page instanceof XHtmlPage) {
-                namespaceURI_ = namespaceURI;
-            }
-            else {
-                namespaceURI_ = null;
-            }
+            namespaceURI_ = resolveNamespaceURI(page, namespaceURI, qualifiedName);
             localName_ = qualifiedName_;
             prefix_ = null;
         }
     }
 
+    /**
+     * Returns the namespace URI that a node created with the specified names gets: in HTML pages,
+     * only the names with a prefix keep their namespace.
+     * @param page the page that contains the node
+     * @param namespaceURI the URI that identifies an XML namespace
+     * @param qualifiedName the qualified name of the node
+     * @return the namespace URI of the node
+     */
+    static String resolveNamespaceURI(final SgmlPage page, final String namespaceURI, final String qualifiedName) {
+        if (qualifiedName.indexOf(':') != -1 || page instanceof XmlPage || page instanceof XHtmlPage) {
+            return namespaceURI;
+        }
+        return null;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -14,12 +14,22 @@
  */
 package com.gargoylesoftware.htmlunit.html;
 
+import java.io.BufferedWriter;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.Serializable;
 import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.ref.SoftReference;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
 import net.sourceforge.htmlunit.corejs.javascript.ScriptableObject;
@@ -37,8 +47,6 @@ import com.gargoylesoftware.htmlunit.WebAssert;
 import com.gargoylesoftware.htmlunit.WebClient;
 import com.gargoylesoftware.htmlunit.html.xpath.XPathUtils;
 import com.gargoylesoftware.htmlunit.javascript.SimpleScriptable;
-import com.gargoylesoftware.htmlunit.javascript.host.css.CSSStyleDeclaration;
-import com.gargoylesoftware.htmlunit.javascript.host.html.HTMLElement;
 
 /**
  * Base class for nodes in the HTML DOM tree. This class is modeled after the
@@ -109,37 +117,31 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
     /** Start of the child list. */
     private DomNode firstChild_;
 
-    /**
-     * This is the JavaScript object corresponding to this DOM node. It may
-     * be null if there isn't a corresponding JavaScript object.
-     */
-    private ScriptableObject scriptObject_;
-
-    /** The ready state is is an IE-only value that is available to a large number of elements. */
-    private String readyState_;
+    /** The number of structural modifications of the child list. */
+    private int childModificationCount_;
 
     /**
-     * The line number in the source page where the DOM node starts.
+     * The children of this node, built when accessed by index and discarded when the child list changes.
+     * The array can be rebuilt at any time, so it is released under memory pressure.
      */
-    private int startLineNumber_ = -1;
+    private transient SoftReference<DomNode[]> childArray_;
 
     /**
-     * The column number in the source page where the DOM node starts.
+     * This is the JavaScript object corresponding to this DOM node. It may
+     * be null if there isn't a corresponding JavaScript object.
      */
-    private int startColumnNumber_ = -1;
+    private ScriptableObject scriptObject_;
 
-    /**
-     * The line number in the source page where the DOM node ends.
-     */
-    private int endLineNumber_ = -1;
+    /** Whether this node has been created by the parser, rather than added dynamically. */
+    private boolean parsed_;
+
+    /** The location of this node in the source page, only allocated when it is recorded. */
+    private SourceLocation sourceLocation_;
 
     /**
-     * The column number in the source page where the DOM node ends.
+     * The state which most nodes don't need (ready state, DOM change listeners), allocated on first use.
      */
-    private int endColumnNumber_ = -1;
-
-    private List<DomChangeListener> domListeners_;
-    private final Integer domListeners_lock_ = 0;
+    private RareData rareData_;
 
     /**
      * Never call this, used for Serialization.
@@ -154,10 +156,25 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      * @param page the page which contains this node
      */
     protected DomNode(final SgmlPage page) {
-        readyState_ = READY_STATE_LOADING;
         page_ = page;
     }
 
+    private RareData getRareData() {
+        if (rareData_ == null) {
+            rareData_ = new RareData();
+        }
+        return rareData_;
+    }
+
+    /**
+     * Marks this node as created by the parser, without recording its location in the source page.
+     * This is what the parser does when {@link WebClient#isSourcePositionTrackingEnabled()
+     * source position tracking} is disabled.
+     */
+    void setParsed() {
+        parsed_ = true;
+    }
+
     /**
      * Sets the line and column numbers in the source page where the DOM node starts.
      *
@@ -165,8 +182,10 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      * @param startColumnNumber the column number where the DOM node starts
      */
     void setStartLocation(final int startLineNumber, final int startColumnNumber) {
-        startLineNumber_ = startLineNumber;
-        startColumnNumber_ = startColumnNumber;
+        parsed_ = true;
+        final SourceLocation location = getSourceLocation();
+        location.startLineNumber_ = startLineNumber;
+        location.startColumnNumber_ = startColumnNumber;
     }
 
     /**
@@ -176,24 +195,38 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      * @param endColumnNumber the column number where the DOM node ends
      */
     void setEndLocation(final int endLineNumber, final int endColumnNumber) {
-        endLineNumber_ = endLineNumber;
-        endColumnNumber_ = endColumnNumber;
+        final SourceLocation location = getSourceLocation();
+        location.endLineNumber_ = endLineNumber;
+        location.endColumnNumber_ = endColumnNumber;
+    }
+
+    private SourceLocation getSourceLocation() {
+        if (sourceLocation_ == null) {
+            sourceLocation_ = new SourceLocation();
+        }
+        return sourceLocation_;
     }
 
     /**
      * Returns the line number in the source page where the DOM node starts.
-     * @return the line number in the source page where the DOM node starts
+     * @return the line number in the source page where the DOM node starts, or -1 if it isn't known
      */
     public int getStartLineNumber() {
-        return startLineNumber_;
+        if (sourceLocation_ == null) {
+            return -1;
+        }
+        return sourceLocation_.startLineNumber_;
     }
 
     /**
      * Returns the column number in the source page where the DOM node starts.
-     * @return the column number in the source page where the DOM node starts
+     * @return the column number in the source page where the DOM node starts, or -1 if it isn't known
      */
     public int getStartColumnNumber() {
-        return startColumnNumber_;
+        if (sourceLocation_ == null) {
+            return -1;
+        }
+        return sourceLocation_.startColumnNumber_;
     }
 
     /**
@@ -202,7 +235,10 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      * -1 if the end tag has not yet been parsed (during page loading)
      */
     public int getEndLineNumber() {
-        return endLineNumber_;
+        if (sourceLocation_ == null) {
+            return -1;
+        }
+        return sourceLocation_.endLineNumber_;
     }
 
     /**
@@ -211,7 +247,10 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      * -1 if the end tag has not yet been parsed (during page loading)
      */
     public int getEndColumnNumber() {
-        return endColumnNumber_;
+        if (sourceLocation_ == null) {
+            return -1;
+        }
+        return sourceLocation_.endColumnNumber_;
     }
 
     /**
@@ -374,7 +413,7 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      * {@inheritDoc}
      */
     public DomNodeList<DomNode> getChildNodes() {
-        return new SiblingDomNodeList(firstChild_);
+        return new SiblingDomNodeList(this);
     }
 
     /**
@@ -618,6 +657,8 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
     /**
      * Returns <tt>true</tt> if this node is displayed and can be visible to the user
      * (ignoring screen size, scrolling limitations, color, font-size, or overlapping nodes).
+     * The <tt>display</tt> and <tt>visibility</tt> of the inline styles are used, or the computed styles
+     * (including the stylesheets) if CSS and {@link WebClient#setComputedVisibilityEnabled(boolean)} are enabled.
      * @see <a href="http://www.w3.org/TR/CSS2/visufx.html#visibility">CSS2 Visibility</a>
      * @see <a href="http://www.w3.org/TR/CSS2/visuren.html#propdef-display">CSS2 Display</a>
      * @see <a href="http://msdn.microsoft.com/en-us/library/ms531180.aspx">MSDN Documentation</a>
@@ -626,38 +667,7 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
     public boolean isDisplayed() {
         final Page page = getPage();
         if (page instanceof HtmlPage) {
-            // display: iterate top to bottom, because if a parent is display:none,
-            // there's nothing that a child can do to override it
-            for (final Node node : getAncestors(true)) {
-                final ScriptableObject scriptableObject = ((DomNode) node).getScriptObject();
-                if (scriptableObject instanceof HTMLElement) {
-                    final CSSStyleDeclaration style = ((HTMLElement) scriptableObject).jsxGet_style();
-                    final String display = style.jsxGet_display();
-                    if ("none".equals(display)) {
-                        return false;
-                    }
-                }
-            }
-            // visibility: iterate bottom to top, because children can override
-            // the visibility used by parent nodes
-            final boolean isNotIE = !((HtmlPage) page).getWebClient().getBrowserVersion().isIE();
-            DomNode node = this;
-            do {
-                final ScriptableObject scriptableObject = node.getScriptObject();
-                if (scriptableObject instanceof HTMLElement) {
-                    final CSSStyleDeclaration style = ((HTMLElement) scriptableObject).jsxGet_style();
-                    final String visibility = style.jsxGet_visibility();
-                    if (visibility.length() > 0) {
-                        if (visibility.equals("visible")) {
-                            return true;
-                        }
-                        else if (visibility.equals("hidden") || (isNotIE && visibility.equals("collapse"))) {
-                            return false;
-                        }
-                    }
-                }
-                node = node.getParentNode();
-            } while (node != null);
+            return ((HtmlPage) page).isDisplayed(this);
         }
         return true;
     }
@@ -676,6 +686,19 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
         return ser.asText(this);
     }
 
+    /**
+     * Writes the textual representation of this element, as returned by {@link #asText()}, to the
+     * specified output. The text is written while the node is traversed: this allows to process the text
+     * of large pages without building it in memory.
+     *
+     * @param out where to write the text
+     * @throws IOException if an error occurs while writing
+     */
+    public void asText(final Appendable out) throws IOException {
+        final HtmlSerializer ser = new HtmlSerializer();
+        ser.asText(this, out);
+    }
+
     /**
      * Indicates if the text representation of this element is made as a block, ie if new lines need
      * to be inserted before and after it.
@@ -692,18 +715,89 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      * @return the XML string
      */
     public String asXml() {
+        final StringWriter stringWriter = new StringWriter();
+        try {
+            writeXml(stringWriter);
+        }
+        catch (final IOException e) {
+            // Should never happen.
+            throw new RuntimeException(e);
+        }
+        return stringWriter.toString();
+    }
+
+    /**
+     * Writes the XML representation of this node and all its children, as returned by {@link #asXml()},
+     * to the specified writer. The XML is written while the tree is traversed, without building it in memory.
+     *
+     * @param writer the writer to write the XML to; it is flushed but not closed
+     * @throws IOException if an error occurs while writing
+     */
+    public void writeXml(final Writer writer) throws IOException {
+        writeXml(writer, true);
+    }
+
+    /**
+     * Writes the XML representation of this node and all its children to the specified writer.
+     * The charset declared for the document element of an HTML page is the current page encoding.
+     *
+     * @param writer the writer to write the XML to; it is flushed but not closed
+     * @param indent <tt>true</tt> to indent the nodes and put them on separate lines, as {@link #asXml()}
+     *        does, <tt>false</tt> for a compact output
+     * @throws IOException if an error occurs while writing
+     */
+    public void writeXml(final Writer writer, final boolean indent) throws IOException {
         String charsetName = null;
         if (getPage() instanceof HtmlPage) {
             charsetName = ((HtmlPage) getPage()).getPageEncoding();
         }
-        final StringWriter stringWriter = new StringWriter();
-        final PrintWriter printWriter = new PrintWriter(stringWriter);
+        writeXml(writer, charsetName, indent);
+    }
+
+    /**
+     * Writes the XML representation of this node and all its children, as returned by {@link #asXml()},
+     * to the specified stream, encoded with the specified charset. The characters which the charset can't
+     * encode are written as character references (<tt>&amp;#x...;</tt>).
+     *
+     * @param outputStream the stream to write the XML to; it is flushed but not closed
+     * @param charset the charset used to encode the XML, declared for the document element of an HTML page
+     * @throws IOException if an error occurs while writing
+     */
+    public void writeXml(final OutputStream outputStream, final Charset charset) throws IOException {
+        writeXml(outputStream, charset, true);
+    }
+
+    /**
+     * Writes the XML representation of this node and all its children to the specified stream,
+     * encoded with the specified charset. The characters which the charset can't encode are written
+     * as character references (<tt>&amp;#x...;</tt>).
+     *
+     * @param outputStream the stream to write the XML to; it is flushed but not closed
+     * @param charset the charset used to encode the XML, declared for the document element of an HTML page
+     * @param indent <tt>true</tt> to indent the nodes and put them on separate lines, as {@link #asXml()}
+     *        does, <tt>false</tt> for a compact output
+     * @throws IOException if an error occurs while writing
+     */
+    public void writeXml(final OutputStream outputStream, final Charset charset, final boolean indent)
+        throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, charset));
+        if (!charset.name().startsWith("UTF-")) {
+            writer = new CharacterReferenceWriter(writer, charset.newEncoder());
+        }
+        writeXml(writer, charset.name(), indent);
+        writer.flush();
+    }
+
+    private void writeXml(final Writer writer, final String charsetName, final boolean indent) throws IOException {
+        final XmlPrintWriter printWriter = new XmlPrintWriter(writer, indent);
         if (charsetName != null && this instanceof HtmlHtml) {
             printWriter.println("<?xml version=\"1.0\" encoding=\"" + charsetName + "\"?>");
         }
         printXml("", printWriter);
-        printWriter.close();
-        return stringWriter.toString();
+        // flushes the writer
+        if (printWriter.checkError()) {
+            throw new IOException("Error while writing the XML of " + this);
+        }
     }
 
     /**
@@ -725,12 +819,122 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      */
     protected void printChildrenAsXml(final String indent, final PrintWriter printWriter) {
         DomNode child = getFirstChild();
+        if (child == null) {
+            return;
+        }
+        final String childIndent;
+        if (printWriter instanceof XmlPrintWriter && !((XmlPrintWriter) printWriter).indent_) {
+            childIndent = indent;
+        }
+        else {
+            childIndent = indent + "  ";
+        }
         while (child != null) {
-            child.printXml(indent + "  ", printWriter);
+            child.printXml(childIndent, printWriter);
             child = child.getNextSibling();
         }
     }
 
+    /**
+     * The writer used by {@link DomNode#writeXml(Writer, boolean)}: when the output is not indented,
+     * the line separators between the nodes are not written.
+     */
+    private static final class XmlPrintWriter extends PrintWriter {
+        private final boolean indent_;
+
+        private XmlPrintWriter(final Writer writer, final boolean indent) {
+            super(writer);
+            indent_ = indent;
+        }
+
+        @Override
+        public void println() {
+            if (indent_) {
+                super.println();
+            }
+        }
+    }
+
+    /**
+     * The writer used by {@link DomNode#writeXml(OutputStream, Charset, boolean)} for the charsets which
+     * can't encode all the characters: these characters are replaced by character references, instead of
+     * the replacement character of the charset.
+     */
+    private static final class CharacterReferenceWriter extends FilterWriter {
+        private final CharsetEncoder encoder_;
+        /** Whether each ASCII character can be encoded, which is checked only once. */
+        private final boolean[] asciiEncodable_ = new boolean[128];
+        /** The high surrogate written last, whose low surrogate hasn't been written yet. */
+        private char highSurrogate_;
+
+        private CharacterReferenceWriter(final Writer writer, final CharsetEncoder encoder) {
+            super(writer);
+            encoder_ = encoder;
+            for (char c = 0; c < asciiEncodable_.length; c++) {
+                asciiEncodable_[c] = encoder.canEncode(c);
+            }
+        }
+
+        @Override
+        public void write(final int c) throws IOException {
+            final char ch = (char) c;
+            if (highSurrogate_ != 0) {
+                final char high = highSurrogate_;
+                highSurrogate_ = 0;
+                if (Character.isLowSurrogate(ch)) {
+                    final String pair = new String(new char[] {high, ch});
+                    if (encoder_.canEncode(pair)) {
+                        out.write(pair);
+                    }
+                    else {
+                        writeReference(Character.toCodePoint(high, ch));
+                    }
+                    return;
+                }
+                writeReference(high);
+            }
+            if (ch < asciiEncodable_.length && asciiEncodable_[ch]) {
+                out.write(ch);
+            }
+            else if (Character.isHighSurrogate(ch)) {
+                highSurrogate_ = ch;
+            }
+            else if (ch >= asciiEncodable_.length && !Character.isLowSurrogate(ch) && encoder_.canEncode(ch)) {
+                out.write(ch);
+            }
+            else {
+                writeReference(ch);
+            }
+        }
+
+        @Override
+        public void write(final char[] buffer, final int offset, final int length) throws IOException {
+            for (int i = offset; i < offset + length; i++) {
+                write(buffer[i]);
+            }
+        }
+
+        @Override
+        public void write(final String string, final int offset, final int length) throws IOException {
+            for (int i = offset; i < offset + length; i++) {
+                write(string.charAt(i));
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (highSurrogate_ != 0) {
+                writeReference(highSurrogate_);
+                highSurrogate_ = 0;
+            }
+            super.flush();
+        }
+
+        private void writeReference(final int codePoint) throws IOException {
+            out.write("&#x" + Integer.toHexString(codePoint).toUpperCase() + ";");
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -749,6 +953,26 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      * {@inheritDoc}
      */
     public DomNode cloneNode(final boolean deep) {
+        final DomNode newnode = copy(page_);
+
+        // if deep, clone the kids too.
+        if (deep) {
+            for (DomNode child = firstChild_; child != null; child = child.nextSibling_) {
+                newnode.appendChild(child.cloneNode(true));
+            }
+        }
+        return newnode;
+    }
+
+    /**
+     * Returns a copy of this node alone, which belongs to the specified page and isn't attached to any tree.
+     * The state which must not be shared with the original node is copied too, or reset. Subclasses
+     * holding such state must override this method.
+     *
+     * @param page the page of the copy
+     * @return the copy
+     */
+    DomNode copy(final SgmlPage page) {
         final DomNode newnode;
         try {
             newnode = (DomNode) clone();
@@ -757,19 +981,62 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
             throw new IllegalStateException("Clone not supported for node [" + this + "]");
         }
 
+        newnode.page_ = page;
         newnode.parent_ = null;
         newnode.nextSibling_ = null;
         newnode.previousSibling_ = null;
         newnode.firstChild_ = null;
+        newnode.childArray_ = null;
         newnode.scriptObject_ = null;
+        if (sourceLocation_ != null) {
+            newnode.sourceLocation_ = sourceLocation_.copy();
+        }
+        if (rareData_ != null) {
+            newnode.rareData_ = rareData_.copy();
+        }
+        return newnode;
+    }
 
-        // if deep, clone the kids too.
-        if (deep) {
-            for (DomNode child = firstChild_; child != null; child = child.nextSibling_) {
-                newnode.appendChild(child.cloneNode(true));
+    /**
+     * Copies the descendants of this node into the specified node, which must have no child, in a single walk
+     * of the tree. Unlike {@link #appendChild(Node)}, this links the copies directly: no event is fired, no
+     * page index is updated and no element is executed or loaded.
+     *
+     * @param target the node receiving the copies
+     * @param page the page of the copies
+     * @param copies receives the copy of each copied element, keyed by the original element
+     */
+    void copyChildrenTo(final DomNode target, final SgmlPage page, final Map<DomNode, DomNode> copies) {
+        DomNode lastCopy = null;
+        for (DomNode child = firstChild_; child != null; child = child.nextSibling_) {
+            final DomNode childCopy = child.copy(page);
+            if (child instanceof DomElement) {
+                copies.put(child, childCopy);
             }
+            childCopy.parent_ = target;
+            if (lastCopy == null) {
+                target.firstChild_ = childCopy;
+            }
+            else {
+                lastCopy.nextSibling_ = childCopy;
+                childCopy.previousSibling_ = lastCopy;
+            }
+            lastCopy = childCopy;
+            child.copyChildrenTo(childCopy, page, copies);
         }
-        return newnode;
+        if (lastCopy != null) {
+            target.firstChild_.previousSibling_ = lastCopy;
+        }
+    }
+
+    /**
+     * Makes this copy, made by {@link #copyChildrenTo(DomNode, SgmlPage, Map)}, reference the copies of the
+     * nodes the original node references, once the whole tree has been copied. Does nothing by default.
+     *
+     * @param copies the copy of each copied element, keyed by the original element
+     */
+    void fixCopiedReferences(final Map<DomNode, DomNode> copies) {
+        // Empty by default.
     }
 
     /**
@@ -810,7 +1077,7 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
             }
             // move the node
             basicAppend(domNode);
-            if (domNode.getStartLineNumber() == -1) { // dynamically added node, not parsed
+            if (!domNode.parsed_) { // dynamically added node, not parsed
                 domNode.onAddedToPage();
                 domNode.onAllChildrenAddedToPage(true);
             }
@@ -819,7 +1086,10 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
             if (!(this instanceof DomDocumentFragment) && (getPage() instanceof HtmlPage)) {
                 ((HtmlPage) getPage()).notifyNodeAdded(domNode);
             }
-            fireNodeAdded(this, domNode);
+            // nobody listens to the construction of a static DOM, which can't change afterwards
+            if (!isBuildingStaticDom()) {
+                fireNodeAdded(this, domNode);
+            }
         }
         return domNode;
     }
@@ -848,7 +1118,8 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      *
      * @param node the node to append to this node's children
      */
-    private void basicAppend(final DomNode node) {
+    void basicAppend(final DomNode node) {
+        checkModifiable();
         node.setPage(getPage());
         if (firstChild_ == null) {
             firstChild_ = node;
@@ -862,6 +1133,8 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
             firstChild_.previousSibling_ = node; // new last node
         }
         node.parent_ = this;
+        childrenChanged();
+        node.updatePageElementIndex(true);
     }
 
     /**
@@ -923,6 +1196,7 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
         if (newNode == this) {
             return;
         }
+        checkModifiable();
 
         //clean up the new node, in case it is being moved
         final DomNode exParent = newNode.getParentNode();
@@ -939,8 +1213,10 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
         previousSibling_ = newNode;
         newNode.parent_ = parent_;
         newNode.setPage(page_);
+        parent_.childrenChanged();
+        newNode.updatePageElementIndex(true);
 
-        if (newNode.getStartLineNumber() == -1) { // dynamically added node, not parsed
+        if (!newNode.parsed_) { // dynamically added node, not parsed
             newNode.onAddedToPage();
             newNode.onAllChildrenAddedToPage(true);
         }
@@ -955,6 +1231,92 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
         }
     }
 
+    /**
+     * Records a structural modification of the child list of this node.
+     */
+    private void childrenChanged() {
+        childModificationCount_++;
+        childArray_ = null;
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br/>
+     *
+     * Returns the number of structural modifications (additions and removals) of the child list of
+     * this node so far. Callers caching information derived from the children can compare this value
+     * with the one they have seen to know whether their cache is still valid.
+     *
+     * @return the number of structural modifications of the child list of this node
+     */
+    public int getChildModificationCount() {
+        return childModificationCount_;
+    }
+
+    /**
+     * Returns the children of this node. The returned array is cached until the next modification
+     * of the child list, and must not be modified.
+     * @return the children of this node
+     */
+    DomNode[] getChildArray() {
+        final SoftReference<DomNode[]> reference = childArray_;
+        DomNode[] children = reference == null ? null : reference.get();
+        if (children == null) {
+            int count = 0;
+            for (DomNode child = firstChild_; child != null; child = child.nextSibling_) {
+                count++;
+            }
+            children = new DomNode[count];
+            int i = 0;
+            for (DomNode child = firstChild_; child != null; child = child.nextSibling_) {
+                children[i++] = child;
+            }
+            childArray_ = new SoftReference<DomNode[]>(children);
+        }
+        return children;
+    }
+
+    /**
+     * Returns <tt>true</tt> if this node is part of the document of an HTML page with a static DOM
+     * which is still being loaded. Nodes detached from such a page (clones, fragments, removed nodes)
+     * remain modifiable, and so aren't concerned.
+     * @return <tt>true</tt> if this node is part of a static DOM under construction
+     * @see HtmlPage#isStaticDom()
+     */
+    final boolean isBuildingStaticDom() {
+        final SgmlPage page = getPage();
+        return page instanceof HtmlPage && ((HtmlPage) page).isStaticDom() && !((HtmlPage) page).isReadOnly()
+            && page.isAncestorOf(this);
+    }
+
+    /**
+     * Checks that this node can be changed: the nodes of the document of a read-only page can't.
+     * @throws DOMException NO_MODIFICATION_ALLOWED_ERR if this node is part of a read-only document
+     * @see HtmlPage#isReadOnly()
+     */
+    final void checkModifiable() {
+        final SgmlPage page = getPage();
+        if (page instanceof HtmlPage && ((HtmlPage) page).isReadOnly() && page.isAncestorOf(this)) {
+            throw new DOMException(DOMException.NO_MODIFICATION_ALLOWED_ERR, "The document is read-only.");
+        }
+    }
+
+    /**
+     * Updates the element index of the HTML page containing this node (if any), because this node
+     * has just been attached to its parent, or is about to be detached from it.
+     * @param attached whether this node has been attached or is being detached
+     */
+    private void updatePageElementIndex(final boolean attached) {
+        final SgmlPage page = getPage();
+        if (page instanceof HtmlPage) {
+            if (attached) {
+                ((HtmlPage) page).nodeAttached(this);
+            }
+            else {
+                ((HtmlPage) page).nodeDetaching(this);
+            }
+        }
+    }
+
     /**
      * Recursively sets the new page on the node and its children
      * @param newPage the new owning page
@@ -1010,6 +1372,11 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      * Cuts off all relationships this node has with siblings and parents.
      */
     private void basicRemove() {
+        if (parent_ != null) {
+            checkModifiable();
+            parent_.childrenChanged();
+            updatePageElementIndex(false);
+        }
         if (parent_ != null && parent_.firstChild_ == this) {
             parent_.firstChild_ = nextSibling_;
         }
@@ -1221,7 +1588,10 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      * @return this node's ready state
      */
     public String getReadyState() {
-        return readyState_;
+        if (rareData_ == null) {
+            return READY_STATE_LOADING;
+        }
+        return rareData_.readyState_;
     }
 
     /**
@@ -1229,7 +1599,7 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      * @param state this node's ready state
      */
     public void setReadyState(final String state) {
-        readyState_ = state;
+        getRareData().readyState_ = state;
     }
 
     /**
@@ -1284,6 +1654,38 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
     public <X> X selectSingleNode(final String xpathExpr) {
         return this.<X>getFirstByXPath(xpathExpr);
     }
+
+    /**
+     * Returns the descendants of this node matched by the specified group of CSS selectors, in document order.
+     * The selectors are compiled once, and the candidates are looked up through the indexes of the page when
+     * possible, which is usually much faster than an equivalent XPath expression. A
+     * {@link org.w3c.css.sac.CSSException} is thrown if the selectors are invalid or not supported.
+     *
+     * @param selectors the comma separated list of CSS selectors
+     * @param <E> the element type
+     * @return the matching elements
+     * @see CompiledSelector
+     * @see #querySelector(String)
+     */
+    @SuppressWarnings("unchecked")
+    public <E extends DomElement> List<E> querySelectorAll(final String selectors) {
+        return (List<E>) CompiledSelector.compile(selectors).selectAll(this);
+    }
+
+    /**
+     * Returns the first descendant of this node, in document order, matched by the specified group
+     * of CSS selectors. A {@link org.w3c.css.sac.CSSException} is thrown if the selectors are invalid
+     * or not supported.
+     *
+     * @param selectors the comma separated list of CSS selectors
+     * @param <E> the element type
+     * @return the first matching element, or <tt>null</tt> if no element matches
+     * @see #querySelectorAll(String)
+     */
+    @SuppressWarnings("unchecked")
+    public <E extends DomElement> E querySelector(final String selectors) {
+        return (E) CompiledSelector.compile(selectors).selectFirst(this);
+    }
     
     /**
      * <p>Returns the canonical XPath expression which identifies this node, for instance
@@ -1345,12 +1747,13 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      */
     public void addDomChangeListener(final DomChangeListener listener) {
         WebAssert.notNull("listener", listener);
-        synchronized (domListeners_lock_) {
-            if (domListeners_ == null) {
-                domListeners_ = new ArrayList<DomChangeListener>();
+        final RareData rareData = getRareData();
+        synchronized (rareData) {
+            if (rareData.domListeners_ == null) {
+                rareData.domListeners_ = new ArrayList<DomChangeListener>();
             }
-            if (!domListeners_.contains(listener)) {
-                domListeners_.add(listener);
+            if (!rareData.domListeners_.contains(listener)) {
+                rareData.domListeners_.add(listener);
             }
         }
     }
@@ -1364,9 +1767,13 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      */
     public void removeDomChangeListener(final DomChangeListener listener) {
         WebAssert.notNull("listener", listener);
-        synchronized (domListeners_lock_) {
-            if (domListeners_ != null) {
-                domListeners_.remove(listener);
+        final RareData rareData = rareData_;
+        if (rareData == null) {
+            return;
+        }
+        synchronized (rareData) {
+            if (rareData.domListeners_ != null) {
+                rareData.domListeners_.remove(listener);
             }
         }
     }
@@ -1416,12 +1823,63 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
     }
 
     private List<DomChangeListener> safeGetDomListeners() {
-        synchronized (domListeners_lock_) {
-            if (domListeners_ != null) {
-                return new ArrayList<DomChangeListener>(domListeners_);
+        final RareData rareData = rareData_;
+        if (rareData == null) {
+            return null;
+        }
+        synchronized (rareData) {
+            if (rareData.domListeners_ != null) {
+                return new ArrayList<DomChangeListener>(rareData.domListeners_);
             }
             return null;
         }
     }
 
+    /**
+     * The location of a node in the source page, which the parser records only when
+     * {@link WebClient#isSourcePositionTrackingEnabled() source position tracking} is enabled.
+     */
+    private static final class SourceLocation implements Serializable {
+        private static final long serialVersionUID = -6284751038226713940L;
+
+        private int startLineNumber_ = -1;
+        private int startColumnNumber_ = -1;
+        private int endLineNumber_ = -1;
+        private int endColumnNumber_ = -1;
+
+        private SourceLocation copy() {
+            final SourceLocation copy = new SourceLocation();
+            copy.startLineNumber_ = startLineNumber_;
+            copy.startColumnNumber_ = startColumnNumber_;
+            copy.endLineNumber_ = endLineNumber_;
+            copy.endColumnNumber_ = endColumnNumber_;
+            return copy;
+        }
+    }
+
+    /**
+     * The state of a node which is only needed for a few nodes of a page: keeping it out of the node itself
+     * makes the nodes of large pages smaller.
+     */
+    private static final class RareData implements Serializable {
+        private static final long serialVersionUID = 2380826738165312407L;
+
+        /** The ready state is is an IE-only value that is available to a large number of elements. */
+        private String readyState_ = READY_STATE_LOADING;
+
+        /** The DOM change listeners, guarded by this object. */
+        private List<DomChangeListener> domListeners_;
+
+        private RareData copy() {
+            final RareData copy = new RareData();
+            copy.readyState_ = readyState_;
+            synchronized (this) {
+                if (domListeners_ != null) {
+                    copy.domListeners_ = new ArrayList<DomChangeListener>(domListeners_);
+                }
+            }
+            return copy;
+        }
+    }
+
 }
@@ -0,0 +1,482 @@
+/*
+ * Copyright (c) 2002-2009 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.html;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The elements of an {@link HtmlPage}, indexed by tag name and by class name.
+ *
+ * <p>Each tag name and each class name has a bucket holding the matching elements in document order.
+ * The index is built by {@link HtmlPage} in a single walk of the document the first time it is needed,
+ * and then kept up to date by the changes of the document: the elements of an added subtree are inserted
+ * in their buckets, the elements of a removed subtree are dropped from theirs, and a changed <tt>class</tt>
+ * attribute moves its element between the class buckets. The elements are indexed by id and by name in the
+ * maps of {@link HtmlPage} itself.</p>
+ *
+ * <p>The removed elements are dropped lazily: a bucket is only compacted when it is next read or written.</p>
+ *
+ * @version $Revision$
+ * @author Ahmed Ashour
+ */
+final class ElementIndex {
+
+    private static final String[] NO_CLASSES = new String[0];
+
+    private static final Comparator<DomNode> DOCUMENT_ORDER = new Comparator<DomNode>() {
+        public int compare(final DomNode node1, final DomNode node2) {
+            return compareDocumentOrder(node1, node2);
+        }
+    };
+
+    private final HtmlPage page_;
+
+    /** The indexed elements, with the class names they are indexed under. */
+    private final Map<DomElement, String[]> classes_ = new IdentityHashMap<DomElement, String[]>();
+
+    private final Map<String, Bucket> byTagName_ = new HashMap<String, Bucket>();
+    private final Map<String, Bucket> byClassName_ = new HashMap<String, Bucket>();
+
+    /** The number of indexed {@link HtmlNoScript} elements. */
+    private int noScriptCount_;
+
+    /** The number of indexed elements which aren't {@link HtmlElement}s. */
+    private int foreignCount_;
+
+    /**
+     * Builds the index of the elements of the specified page.
+     * @param page the page
+     */
+    ElementIndex(final HtmlPage page) {
+        page_ = page;
+        addDescendants(page, false);
+    }
+
+    /**
+     * Indexes the specified node, which has just been attached to the document, and its descendants.
+     * @param node the attached node
+     */
+    void nodeAdded(final DomNode node) {
+        if (node instanceof DomElement) {
+            add((DomElement) node, true);
+        }
+        addDescendants(node, true);
+    }
+
+    /**
+     * Drops the specified node, which is about to be detached from the document, and its descendants.
+     * @param node the node being detached
+     */
+    void nodeRemoved(final DomNode node) {
+        if (node instanceof DomElement) {
+            remove((DomElement) node);
+        }
+        for (DomNode child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            nodeRemoved(child);
+        }
+    }
+
+    /**
+     * Moves the specified element between the class buckets, after a change of its <tt>class</tt> attribute.
+     * @param element the element
+     */
+    void classChanged(final DomElement element) {
+        final String[] oldClasses = classes_.get(element);
+        if (oldClasses == null) {
+            return; // not part of the document
+        }
+        final String[] newClasses = getClassNames(element);
+        for (final String className : oldClasses) {
+            if (!contains(newClasses, className)) {
+                byClassName_.get(className).dirty_ = true;
+            }
+        }
+        for (final String className : newClasses) {
+            if (!contains(oldClasses, className)) {
+                // compacts the bucket before the element is registered with its new classes
+                getBucket(byClassName_, className, true).insert(element, true);
+            }
+        }
+        classes_.put(element, newClasses);
+    }
+
+    private void addDescendants(final DomNode parent, final boolean ordered) {
+        for (DomNode child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof DomElement) {
+                add((DomElement) child, ordered);
+            }
+            addDescendants(child, ordered);
+        }
+    }
+
+    /**
+     * Indexes an element.
+     * @param element the element
+     * @param ordered whether the element has to be inserted at its place in the buckets, or can simply be
+     *        appended because the elements are indexed in document order
+     */
+    private void add(final DomElement element, final boolean ordered) {
+        final String[] classNames = getClassNames(element);
+        getBucket(byTagName_, element.getLocalName().toLowerCase(), false).insert(element, ordered);
+        for (final String className : classNames) {
+            getBucket(byClassName_, className, true).insert(element, ordered);
+        }
+        classes_.put(element, classNames);
+        if (element instanceof HtmlNoScript) {
+            noScriptCount_++;
+        }
+        if (!(element instanceof HtmlElement)) {
+            foreignCount_++;
+        }
+    }
+
+    private void remove(final DomElement element) {
+        final String[] classNames = classes_.remove(element);
+        if (classNames == null) {
+            return;
+        }
+        byTagName_.get(element.getLocalName().toLowerCase()).dirty_ = true;
+        for (final String className : classNames) {
+            byClassName_.get(className).dirty_ = true;
+        }
+        if (element instanceof HtmlNoScript) {
+            noScriptCount_--;
+        }
+        if (!(element instanceof HtmlElement)) {
+            foreignCount_--;
+        }
+    }
+
+    private Bucket getBucket(final Map<String, Bucket> buckets, final String key, final boolean className) {
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = new Bucket(className ? key : null);
+            buckets.put(key, bucket);
+        }
+        return bucket;
+    }
+
+    /**
+     * Returns the elements which are descendants of the specified root and whose lower case local name
+     * is the specified name, in document order.
+     * @param root the page or the element to search in
+     * @param lowerCaseName the lower case local name, or <tt>*</tt> to get all the elements
+     * @param excludeNoScriptContent whether to exclude the elements contained in a &lt;noscript&gt; element
+     * @return the matching elements, or <tt>null</tt> if the root is not part of the index, or if the
+     *         &lt;noscript&gt; content has to be excluded and the root is itself part of such content
+     */
+    List<DomElement> getElementsByTagName(final DomNode root, final String lowerCaseName,
+            final boolean excludeNoScriptContent) {
+        return getElementsByTagName(root, lowerCaseName, excludeNoScriptContent, false);
+    }
+
+    /**
+     * Returns the {@link HtmlElement}s which are descendants of the specified root and whose lower case
+     * local name is the specified name, in document order. Like {@link DomNode#getAllHtmlChildElements()},
+     * this doesn't return the content of the elements which are not {@link HtmlElement}s.
+     * @param root the page or the element to search in
+     * @param lowerCaseName the lower case local name, or <tt>*</tt> to get all the elements
+     * @param excludeNoScriptContent whether to exclude the elements contained in a &lt;noscript&gt; element
+     * @return the matching elements, or <tt>null</tt> if the root is not part of the index, or if the
+     *         &lt;noscript&gt; content has to be excluded and the root is itself part of such content
+     */
+    List<DomElement> getHtmlElementsByTagName(final DomNode root, final String lowerCaseName,
+            final boolean excludeNoScriptContent) {
+        return getElementsByTagName(root, lowerCaseName, excludeNoScriptContent, true);
+    }
+
+    private List<DomElement> getElementsByTagName(final DomNode root, final String lowerCaseName,
+            final boolean excludeNoScriptContent, final boolean htmlElementsOnly) {
+        if (!isSearchable(root, excludeNoScriptContent)) {
+            return null;
+        }
+        final List<DomElement> result = new ArrayList<DomElement>();
+        if ("*".equals(lowerCaseName)) {
+            addDescendants(result, root, excludeNoScriptContent, htmlElementsOnly);
+            return result;
+        }
+        final Bucket bucket = byTagName_.get(lowerCaseName);
+        if (bucket != null) {
+            for (final DomElement element : bucket.getElements()) {
+                addIfVisible(result, element, root, excludeNoScriptContent, htmlElementsOnly);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the elements which are descendants of the specified root and which have all the specified
+     * classes, in document order.
+     * @param root the page or the element to search in
+     * @param classNames the class names, none of them being empty
+     * @param excludeNoScriptContent whether to exclude the elements contained in a &lt;noscript&gt; element
+     * @return the matching elements, or <tt>null</tt> if the root is not part of the index, or if the
+     *         &lt;noscript&gt; content has to be excluded and the root is itself part of such content
+     */
+    List<DomElement> getElementsByClassNames(final DomNode root, final String[] classNames,
+            final boolean excludeNoScriptContent) {
+        if (!isSearchable(root, excludeNoScriptContent)) {
+            return null;
+        }
+        final List<DomElement> result = new ArrayList<DomElement>();
+        if (classNames.length == 0) {
+            return result;
+        }
+        // start from the smallest bucket
+        Bucket smallest = null;
+        for (final String className : classNames) {
+            final Bucket bucket = byClassName_.get(className);
+            if (bucket == null) {
+                return result;
+            }
+            if (smallest == null || bucket.getElements().size() < smallest.getElements().size()) {
+                smallest = bucket;
+            }
+        }
+        for (final DomElement element : smallest.getElements()) {
+            final String[] elementClasses = classes_.get(element);
+            boolean hasAll = true;
+            for (final String className : classNames) {
+                hasAll &= contains(elementClasses, className);
+            }
+            if (hasAll) {
+                addIfVisible(result, element, root, excludeNoScriptContent, false);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether the specified root can be searched with this index: it has to be part of the document,
+     * and not be part of &lt;noscript&gt; content if this content has to be excluded.
+     */
+    private boolean isSearchable(final DomNode root, final boolean excludeNoScriptContent) {
+        if (root == page_) {
+            return true;
+        }
+        if (!(root instanceof DomElement) || !classes_.containsKey(root)) {
+            return false;
+        }
+        if (excludeNoScriptContent && noScriptCount_ > 0) {
+            for (DomNode node = root; node != null; node = node.getParentNode()) {
+                if (node instanceof HtmlNoScript) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void addDescendants(final List<DomElement> result, final DomNode parent,
+            final boolean excludeNoScriptContent, final boolean htmlElementsOnly) {
+        for (DomNode child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof DomElement) {
+                if (htmlElementsOnly && !(child instanceof HtmlElement)) {
+                    continue;
+                }
+                result.add((DomElement) child);
+                if (excludeNoScriptContent && child instanceof HtmlNoScript) {
+                    continue;
+                }
+            }
+            addDescendants(result, child, excludeNoScriptContent, htmlElementsOnly);
+        }
+    }
+
+    /**
+     * Adds the specified element to the result if it is a descendant of the root and isn't hidden from the
+     * search: the elements contained in &lt;noscript&gt; may be excluded, and the content of the elements
+     * which are not {@link HtmlElement}s is excluded when only HTML elements are searched.
+     */
+    private void addIfVisible(final List<DomElement> result, final DomElement element, final DomNode root,
+            final boolean excludeNoScriptContent, final boolean htmlElementsOnly) {
+        if (htmlElementsOnly && !(element instanceof HtmlElement)) {
+            return;
+        }
+        final boolean checkNoScript = excludeNoScriptContent && noScriptCount_ > 0;
+        final boolean checkForeign = htmlElementsOnly && foreignCount_ > 0;
+        if (root == page_ && !checkNoScript && !checkForeign) {
+            result.add(element);
+            return;
+        }
+        for (DomNode ancestor = element.getParentNode(); ancestor != null; ancestor = ancestor.getParentNode()) {
+            if (ancestor == root) {
+                result.add(element);
+                return;
+            }
+            if ((checkNoScript && ancestor instanceof HtmlNoScript)
+                    || (checkForeign && ancestor instanceof DomElement && !(ancestor instanceof HtmlElement))) {
+                return;
+            }
+        }
+    }
+
+    private static String[] getClassNames(final DomElement element) {
+        final String classAttribute = element.getAttribute("class");
+        final int length = classAttribute.length();
+        if (length == 0) {
+            return NO_CLASSES;
+        }
+        final List<String> classNames = new ArrayList<String>(2);
+        int start = 0;
+        while (start < length) {
+            while (start < length && Character.isWhitespace(classAttribute.charAt(start))) {
+                start++;
+            }
+            int end = start;
+            while (end < length && !Character.isWhitespace(classAttribute.charAt(end))) {
+                end++;
+            }
+            if (end > start) {
+                final String className = classAttribute.substring(start, end);
+                // the same class may be specified twice
+                if (!classNames.contains(className)) {
+                    classNames.add(className);
+                }
+            }
+            start = end;
+        }
+        return classNames.toArray(new String[classNames.size()]);
+    }
+
+    private static boolean contains(final String[] values, final String value) {
+        for (final String v : values) {
+            if (v.equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compares the position of two nodes of the same document.
+     * @return a negative number if the first node comes first in document order, a positive one if it
+     *         comes last, <tt>0</tt> if this is the same node
+     */
+    private static int compareDocumentOrder(final DomNode node1, final DomNode node2) {
+        if (node1 == node2) {
+            return 0;
+        }
+        final List<DomNode> ancestors1 = getAncestors(node1);
+        final List<DomNode> ancestors2 = getAncestors(node2);
+        final int common = Math.min(ancestors1.size(), ancestors2.size());
+        int i = 0;
+        while (i < common && ancestors1.get(i) == ancestors2.get(i)) {
+            i++;
+        }
+        if (i == ancestors1.size()) {
+            return -1; // node1 is an ancestor of node2
+        }
+        if (i == ancestors2.size()) {
+            return 1; // node2 is an ancestor of node1
+        }
+        // two siblings: look for the second one on both sides of the first one
+        final DomNode sibling1 = ancestors1.get(i);
+        final DomNode sibling2 = ancestors2.get(i);
+        DomNode next = sibling1.getNextSibling();
+        DomNode previous = sibling1.getPreviousSibling();
+        while (next != null || previous != null) {
+            if (next == sibling2) {
+                return -1;
+            }
+            if (previous == sibling2) {
+                return 1;
+            }
+            if (next != null) {
+                next = next.getNextSibling();
+            }
+            if (previous != null) {
+                previous = previous.getPreviousSibling();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the specified node and its ancestors, starting from the root.
+     */
+    private static List<DomNode> getAncestors(final DomNode node) {
+        final List<DomNode> ancestors = new ArrayList<DomNode>();
+        for (DomNode ancestor = node; ancestor != null; ancestor = ancestor.getParentNode()) {
+            ancestors.add(ancestor);
+        }
+        Collections.reverse(ancestors);
+        return ancestors;
+    }
+
+    /**
+     * The elements having a tag name or a class name, in document order.
+     */
+    private final class Bucket {
+        /** The class name of the elements, or <tt>null</tt> for a tag name bucket. */
+        private final String className_;
+        private final List<DomElement> elements_ = new ArrayList<DomElement>();
+        /** Whether some elements may have been removed from the document or from the class. */
+        private boolean dirty_;
+
+        private Bucket(final String className) {
+            className_ = className;
+        }
+
+        private List<DomElement> getElements() {
+            if (dirty_) {
+                compact();
+            }
+            return elements_;
+        }
+
+        /**
+         * Inserts an element which is not indexed yet.
+         * @param element the element
+         * @param ordered whether the element has to be inserted at its place in document order, or can
+         *        simply be appended
+         */
+        private void insert(final DomElement element, final boolean ordered) {
+            final List<DomElement> elements = getElements();
+            final int size = elements.size();
+            if (!ordered || size == 0 || compareDocumentOrder(elements.get(size - 1), element) < 0) {
+                elements.add(element);
+                return;
+            }
+            int index = Collections.binarySearch(elements, element, DOCUMENT_ORDER);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            elements.add(index, element);
+        }
+
+        /**
+         * Drops the elements which are no longer part of the document, or which no longer have the class.
+         */
+        private void compact() {
+            int kept = 0;
+            for (int i = 0; i < elements_.size(); i++) {
+                final DomElement element = elements_.get(i);
+                final String[] classNames = classes_.get(element);
+                if (classNames != null && (className_ == null || contains(classNames, className_))) {
+                    elements_.set(kept++, element);
+                }
+            }
+            elements_.subList(kept, elements_.size()).clear();
+            dirty_ = false;
+        }
+    }
+}
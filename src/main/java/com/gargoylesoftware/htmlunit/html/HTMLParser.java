@@ -25,6 +25,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Stack;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.xerces.parsers.AbstractSAXParser;
 import org.apache.xerces.util.DefaultErrorHandler;
@@ -32,7 +33,11 @@ import org.apache.xerces.util.XMLStringBuffer;
 import org.apache.xerces.xni.Augmentations;
 import org.apache.xerces.xni.QName;
 import org.apache.xerces.xni.XMLAttributes;
+import org.apache.xerces.xni.XMLDocumentHandler;
 import org.apache.xerces.xni.XNIException;
+import org.apache.xerces.xni.parser.XMLComponentManager;
+import org.apache.xerces.xni.parser.XMLConfigurationException;
+import org.apache.xerces.xni.parser.XMLDocumentFilter;
 import org.apache.xerces.xni.parser.XMLInputSource;
 import org.apache.xerces.xni.parser.XMLParseException;
 import org.apache.xerces.xni.parser.XMLParserConfiguration;
@@ -41,6 +46,7 @@ import org.cyberneko.html.HTMLEventInfo;
 import org.cyberneko.html.HTMLScanner;
 import org.cyberneko.html.HTMLTagBalancer;
 import org.cyberneko.html.HTMLTagBalancingListener;
+import org.cyberneko.html.filters.DefaultFilter;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.xml.sax.Attributes;
@@ -51,6 +57,7 @@ import org.xml.sax.ext.LexicalHandler;
 
 import com.gargoylesoftware.htmlunit.BrowserVersion;
 import com.gargoylesoftware.htmlunit.BrowserVersionFeatures;
+import com.gargoylesoftware.htmlunit.Cache;
 import com.gargoylesoftware.htmlunit.ObjectInstantiationException;
 import com.gargoylesoftware.htmlunit.Page;
 import com.gargoylesoftware.htmlunit.WebAssert;
@@ -81,6 +88,12 @@ public final class HTMLParser {
     private static final Map<String, IElementFactory> ELEMENT_FACTORIES = new HashMap<String, IElementFactory>();
     private static boolean IgnoreOutsideContent_;
 
+    /** The canonical instances of the usual tag and attribute names, shared by the nodes of all the pages. */
+    private static final Map<String, String> NAMES = new HashMap<String, String>();
+
+    /** The builder of the current thread which isn't used by any parsing, kept for the next one. */
+    private static final ThreadLocal<HtmlUnitDOMBuilder> IDLE_BUILDER = new ThreadLocal<HtmlUnitDOMBuilder>();
+
     static {
         ELEMENT_FACTORIES.put(HtmlInput.TAG_NAME, InputElementFactory.instance);
 
@@ -188,6 +201,19 @@ public final class HTMLParser {
         ELEMENT_FACTORIES.put(HtmlVariable.TAG_NAME, defaultElementFactory);
         ELEMENT_FACTORIES.put(HtmlWordBreak.TAG_NAME, defaultElementFactory);
         ELEMENT_FACTORIES.put(HtmlExample.TAG_NAME, defaultElementFactory);
+
+        for (final String tagName : ELEMENT_FACTORIES.keySet()) {
+            NAMES.put(tagName, tagName);
+        }
+        for (final String attributeName : new String[] {"id", "class", "name", "type", "value", "style", "title",
+            "href", "src", "alt", "width", "height", "align", "valign", "border", "cellpadding", "cellspacing",
+            "colspan", "rowspan", "checked", "selected", "disabled", "readonly", "multiple", "size", "maxlength",
+            "action", "method", "target", "enctype", "for", "rel", "lang", "dir", "language", "charset", "content",
+            "http-equiv", "media", "tabindex", "accesskey", "onclick", "ondblclick", "onmousedown", "onmouseup",
+            "onmouseover", "onmouseout", "onkeydown", "onkeyup", "onkeypress", "onchange", "onfocus", "onblur",
+            "onload", "onunload", "onsubmit", "onreset"}) {
+            NAMES.put(attributeName, attributeName);
+        }
     }
 
     /**
@@ -246,8 +272,7 @@ public final class HTMLParser {
         final HtmlPage page = (HtmlPage) parent.getPage();
         final URL url = page.getWebResponse().getRequestSettings().getUrl();
 
-        final HtmlUnitDOMBuilder domBuilder = new HtmlUnitDOMBuilder(parent, url, true);
-        domBuilder.setFeature("http://cyberneko.org/html/features/balance-tags/document-fragment", true);
+        final HtmlUnitDOMBuilder domBuilder = acquireBuilder(parent, url, true);
         // build fragment context stack
         DomNode node = parent;
         final List<QName> ancestors = new ArrayList<QName>();
@@ -275,6 +300,54 @@ public final class HTMLParser {
             page.registerParsingEnd();
             page.registerSnippetParsingEnd();
         }
+        // a builder interrupted by an exception isn't reused, as its state is unknown
+        releaseBuilder(domBuilder);
+    }
+
+    /**
+     * Returns a builder ready to parse content into the specified node: the idle builder of the current
+     * thread if it simulates the right browser, or a new one. Creating the NekoHTML pipeline is far more
+     * expensive than parsing the usual <tt>innerHTML</tt> snippets.
+     * @param node the location at which to insert the new content
+     * @param url the page's URL
+     * @param parsingFragment whether a fragment is parsed
+     * @return the builder, to be given back with {@link #releaseBuilder(HtmlUnitDOMBuilder)}
+     */
+    private static HtmlUnitDOMBuilder acquireBuilder(final DomNode node, final URL url,
+            final boolean parsingFragment) {
+        final BrowserVersion browserVersion = node.getPage().getWebClient().getBrowserVersion();
+        HtmlUnitDOMBuilder builder = IDLE_BUILDER.get();
+        if (builder != null && builder.browserVersion_ == browserVersion) {
+            // nested parsings (for instance innerHTML set by a script of the page) get their own builder
+            IDLE_BUILDER.set(null);
+        }
+        else {
+            builder = new HtmlUnitDOMBuilder(browserVersion);
+        }
+        builder.init(node, url, parsingFragment);
+        return builder;
+    }
+
+    /**
+     * Gives back a builder which isn't used anymore, to be reused by the next parsing of the current thread.
+     * @param builder the builder
+     */
+    private static void releaseBuilder(final HtmlUnitDOMBuilder builder) {
+        builder.clear();
+        IDLE_BUILDER.set(builder);
+    }
+
+    /**
+     * Returns the canonical instance of the specified tag or attribute name, if it is a usual one.
+     * @param name the name
+     * @return the canonical instance of the name, or the name itself
+     */
+    private static String intern(final String name) {
+        final String canonical = NAMES.get(name);
+        if (canonical == null) {
+            return name;
+        }
+        return canonical;
     }
 
     /**
@@ -300,11 +373,55 @@ public final class HTMLParser {
      * @throws IOException if there is an IO error
      */
     public static HtmlPage parseHtml(final WebResponse webResponse, final WebWindow webWindow) throws IOException {
-        final HtmlPage page = new HtmlPage(webResponse.getRequestSettings().getUrl(), webResponse, webWindow);
+        final URL url = webResponse.getRequestSettings().getUrl();
+        final HtmlPage page = new HtmlPage(url, webResponse, webWindow);
+        final String templateKey = getTemplateKey(webResponse, webWindow);
+        if (templateKey == null) {
+            parse(webResponse, webWindow, page);
+            return page;
+        }
+
+        final Cache cache = webWindow.getWebClient().getCache();
+        final HtmlPage template = cache.getCachedTemplate(templateKey);
+        if (template != null) {
+            webWindow.setEnclosedPage(page);
+            template.copyDocumentTo(page);
+            return page;
+        }
+
         parse(webResponse, webWindow, page);
+        // the frames have their own windows, which can't be shared by the pages built from the template
+        if (page.getFrames().isEmpty()) {
+            final HtmlPage newTemplate = new HtmlPage(url, webResponse, webWindow);
+            page.copyDocumentTo(newTemplate);
+            newTemplate.setEnclosingWindow(null);
+            cache.cacheTemplate(templateKey, newTemplate);
+        }
         return page;
     }
 
+    /**
+     * Returns the key identifying the specified response for the template cache (see
+     * {@link WebClient#setPageTemplatesEnabled(boolean)}), or <tt>null</tt> if the page to be parsed from it
+     * can't be built from a template. Besides the content itself, the key includes everything else which
+     * influences the result of the parsing.
+     */
+    private static String getTemplateKey(final WebResponse webResponse, final WebWindow webWindow) {
+        final WebClient webClient = webWindow.getWebClient();
+        if (!webClient.isPageTemplatesEnabled() || webClient.isJavaScriptEnabled()) {
+            return null;
+        }
+        final byte[] content = webResponse.getContentAsBytes();
+        if (content == null) {
+            return null;
+        }
+        return "template:" + DigestUtils.shaHex(content)
+            + ':' + webResponse.getContentCharsetOrNull()
+            + ':' + webResponse.getRequestSettings().getCharset()
+            + ':' + webClient.isSourcePositionTrackingEnabled()
+            + ':' + (webWindow instanceof FrameWindow);
+    }
+
     /**
      * Parses the XHTML content from the specified <tt>WebResponse</tt> into an object tree representation.
      *
@@ -325,7 +442,7 @@ public final class HTMLParser {
         webWindow.setEnclosedPage(page);
 
         final URL url = webResponse.getRequestSettings().getUrl();
-        final HtmlUnitDOMBuilder domBuilder = new HtmlUnitDOMBuilder(page, url, false);
+        final HtmlUnitDOMBuilder domBuilder = acquireBuilder(page, url, false);
         String charset = webResponse.getContentCharsetOrNull();
         if (charset != null) {
             try {
@@ -358,7 +475,10 @@ public final class HTMLParser {
             page.registerParsingEnd();
         }
 
-        addBodyToPageIfNecessary(page, true, domBuilder.body_ != null);
+        final boolean bodyParsed = domBuilder.body_ != null;
+        // a builder interrupted by an exception isn't reused, as its state is unknown
+        releaseBuilder(domBuilder);
+        addBodyToPageIfNecessary(page, true, bodyParsed);
     }
 
     /**
@@ -439,7 +559,9 @@ public final class HTMLParser {
      */
     static final class HtmlUnitDOMBuilder extends AbstractSAXParser
             implements ContentHandler, LexicalHandler, HTMLTagBalancingListener {
-        private final HtmlPage page_;
+        private final BrowserVersion browserVersion_;
+        private final QName attributeName_ = new QName();
+        private HtmlPage page_;
 
         private Locator locator_;
         private final Stack<DomNode> stack_ = new Stack<DomNode>();
@@ -452,7 +574,14 @@ public final class HTMLParser {
         private HtmlElement body_;
         private Augmentations augmentations_;
         private HtmlForm formWaitingForLostChildren_;
+        private boolean trackSourcePositions_;
+
+        /** The short strings shared by the nodes of a static DOM, or <tt>null</tt>. */
+        private Map<String, String> sharedStrings_;
+        private static final int MAX_SHARED_LENGTH = 32;
         private static final String FEATURE_AUGMENTATIONS = "http://cyberneko.org/html/features/augmentations";
+        private static final String FEATURE_DOCUMENT_FRAGMENT
+            = "http://cyberneko.org/html/features/balance-tags/document-fragment";
         private static final String FEATURE_PARSE_NOSCRIPT
             = "http://cyberneko.org/html/features/parse-noscript-content";
 
@@ -462,7 +591,7 @@ public final class HTMLParser {
          * or else it will end up eating all children from the main BODY tag.
          * This in turn results in a cycle in a tree.
          */
-        private final boolean parsingFragment;
+        private boolean parsingFragment;
 
         /**
          * Parses and then inserts the specified HTML content into the HTML content currently being parsed.
@@ -485,14 +614,42 @@ public final class HTMLParser {
         }
 
         /**
-         * Creates a new builder for parsing the specified response contents.
+         * Creates a new builder, whose configuration simulates the specified browser.
+         * @param browserVersion the browser version
+         */
+        private HtmlUnitDOMBuilder(final BrowserVersion browserVersion) {
+            super(createConfiguration(browserVersion));
+            browserVersion_ = browserVersion;
+            final RenewedTagBalancer tagBalancer = new RenewedTagBalancer();
+            tagBalancer.setTagBalancingListener(this);
+            try {
+                setFeature(FEATURE_AUGMENTATIONS, true);
+                setProperty("http://cyberneko.org/html/properties/names/elems", "default");
+                // the tag balancer of the configuration is replaced by one which can be reused
+                setFeature("http://cyberneko.org/html/features/balance-tags", false);
+                setProperty("http://cyberneko.org/html/properties/filters", new XMLDocumentFilter[] {tagBalancer});
+
+                setContentHandler(this);
+                setLexicalHandler(this); //comments and CDATA
+            }
+            catch (final SAXException e) {
+                throw new ObjectInstantiationException("unable to create HTML parser", e);
+            }
+        }
+
+        /**
+         * Prepares this builder for parsing content into the specified node.
          * @param node the location at which to insert the new content
          * @param url the page's URL
+         * @param parsingFragment whether a fragment is parsed
          */
-        private HtmlUnitDOMBuilder(final DomNode node, final URL url, boolean parsingFragment) {
-            super(createConfiguration(node.getPage().getWebClient()));
+        private void init(final DomNode node, final URL url, final boolean parsingFragment) {
             this.page_ = (HtmlPage) node.getPage();
             this.parsingFragment = parsingFragment;
+            trackSourcePositions_ = page_.getWebClient().isSourcePositionTrackingEnabled() && !page_.isStaticDom();
+            if (page_.isStaticDom()) {
+                sharedStrings_ = new HashMap<String, String>();
+            }
 
             currentNode_ = node;
             for (final Node ancestor : currentNode_.getAncestors(true)) {
@@ -510,28 +667,45 @@ public final class HTMLParser {
             }
 
             try {
-                setFeature(FEATURE_AUGMENTATIONS, true);
-                setProperty("http://cyberneko.org/html/properties/names/elems", "default");
                 setFeature("http://cyberneko.org/html/features/report-errors", reportErrors);
                 setFeature("http://cyberneko.org/html/features/balance-tags/ignore-outside-content",
                     IgnoreOutsideContent_);
                 setFeature(FEATURE_PARSE_NOSCRIPT, !page_.getWebClient().isJavaScriptEnabled());
-
-                setContentHandler(this);
-                setLexicalHandler(this); //comments and CDATA
+                setFeature(FEATURE_DOCUMENT_FRAGMENT, parsingFragment);
+                setFeature(HTMLScanner.IGNORE_SPECIFIED_CHARSET, false);
+                setProperty(HTMLTagBalancer.FRAGMENT_CONTEXT_STACK, null);
             }
             catch (final SAXException e) {
                 throw new ObjectInstantiationException("unable to create HTML parser", e);
             }
         }
 
+        /**
+         * Forgets the content which has been parsed, so that this builder doesn't keep the page alive
+         * while it waits for the next parsing.
+         */
+        private void clear() {
+            page_ = null;
+            locator_ = null;
+            stack_.clear();
+            currentNode_ = null;
+            characters_ = null;
+            headParsed_ = false;
+            parsingInnerHead_ = false;
+            head_ = null;
+            body_ = null;
+            augmentations_ = null;
+            formWaitingForLostChildren_ = null;
+            sharedStrings_ = null;
+            fConfiguration.setErrorHandler(null);
+        }
+
         /**
          * Create the configuration depending on the simulated browser
-         * @param webClient the current WebClient
+         * @param browserVersion the simulated browser
          * @return the configuration
          */
-        private static XMLParserConfiguration createConfiguration(final WebClient webClient) {
-            final BrowserVersion browserVersion = webClient.getBrowserVersion();
+        private static XMLParserConfiguration createConfiguration(final BrowserVersion browserVersion) {
             // for IE we need a special scanner that will be able to understand conditional comments
             if (browserVersion.isIE()) {
                 return new HTMLConfiguration() {
@@ -560,6 +734,30 @@ public final class HTMLParser {
         public void startDocument() throws SAXException {
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void startElement(final QName element, final XMLAttributes attributes, final Augmentations augs)
+            throws XNIException {
+            // the nodes share the canonical instances of the names instead of the strings built by the scanner
+            element.localpart = intern(element.localpart);
+            element.rawname = intern(element.rawname);
+            if (attributes != null) {
+                final int length = attributes.getLength();
+                for (int i = 0; i < length; i++) {
+                    attributes.getName(i, attributeName_);
+                    attributeName_.localpart = intern(attributeName_.localpart);
+                    attributeName_.rawname = intern(attributeName_.rawname);
+                    attributes.setName(i, attributeName_);
+                    if (sharedStrings_ != null) {
+                        attributes.setValue(i, share(attributes.getValue(i)));
+                    }
+                }
+            }
+            super.startElement(element, attributes, augs);
+        }
+
         /** {@inheritDoc ContentHandler#startElement(String,String,String,Attributes)} */
         public void startElement(
                 final String namespaceURI, final String localName,
@@ -604,7 +802,12 @@ public final class HTMLParser {
             // Add the new node.
             final IElementFactory factory = getElementFactory(namespaceURI, qName);
             final HtmlElement newElement = factory.createElementNS(page_, namespaceURI, qName, atts);
-            newElement.setStartLocation(locator_.getLineNumber(), locator_.getColumnNumber());
+            if (trackSourcePositions_ || newElement instanceof HtmlScript) {
+                newElement.setStartLocation(locator_.getLineNumber(), locator_.getColumnNumber());
+            }
+            else {
+                newElement.setParsed();
+            }
 
             // parse can't replace everything as it does not buffer elements while parsing
             addNodeToRightParent(currentNode_, newElement);
@@ -680,7 +883,9 @@ public final class HTMLParser {
             }
 
             final DomNode previousNode = stack_.pop(); //remove currentElement from stack
-            previousNode.setEndLocation(locator_.getLineNumber(), locator_.getColumnNumber());
+            if (trackSourcePositions_ || previousNode instanceof HtmlScript) {
+                previousNode.setEndLocation(locator_.getLineNumber(), locator_.getColumnNumber());
+            }
 
             // special handling for form lost children (malformed HTML code where </form> is synthesized)
             if (previousNode instanceof HtmlForm
@@ -766,13 +971,31 @@ public final class HTMLParser {
                 }
                 else {
                     // Use the normal behavior: append a text node for the accumulated text.
-                    final DomText text = new DomText(page_, characters_.toString());
+                    final DomText text = new DomText(page_, share(characters_.toString()));
                     characters_.setLength(0);
                     currentNode_.appendChild(text);
                 }
             }
         }
 
+        /**
+         * Returns the instance of the specified string shared by the nodes of the static DOM being built:
+         * the same short attribute values and texts (for instance whitespaces) are often repeated.
+         * @param string the string
+         * @return the shared instance of the string, or the string itself
+         */
+        private String share(final String string) {
+            if (sharedStrings_ == null || string.length() > MAX_SHARED_LENGTH) {
+                return string;
+            }
+            final String shared = sharedStrings_.get(string);
+            if (shared == null) {
+                sharedStrings_.put(string, string);
+                return string;
+            }
+            return shared;
+        }
+
         /**
          * Returns the pre-registered element factory corresponding to the specified tag, or an UnknownElementFactory.
          * @param namespaceURI the namespace URI
@@ -802,7 +1025,9 @@ public final class HTMLParser {
         public void endDocument() throws SAXException {
             handleCharacters();
             final DomNode currentPage = page_;
-            currentPage.setEndLocation(locator_.getLineNumber(), locator_.getColumnNumber());
+            if (trackSourcePositions_) {
+                currentPage.setEndLocation(locator_.getLineNumber(), locator_.getColumnNumber());
+            }
         }
 
         /** {@inheritDoc} */
@@ -984,3 +1209,55 @@ class HTMLScannerForIE extends org.cyberneko.html.HTMLScanner {
         }
     }
 }
+
+/**
+ * Filter balancing the tags with a new {@link HTMLTagBalancer} for each parsed document. The tag balancer
+ * of NekoHTML keeps part of its state from one document to the next one (for instance whether a form
+ * is opened), so it can't be reused by a parser which parses several documents.
+ */
+class RenewedTagBalancer extends DefaultFilter {
+    private HTMLTagBalancingListener tagBalancingListener_;
+    private HTMLTagBalancer tagBalancer_ = new ListeningTagBalancer(null);
+    private XMLDocumentHandler documentHandler_;
+
+    /**
+     * Sets the listener notified of the elements ignored by the tag balancers.
+     * @param tagBalancingListener the listener
+     */
+    void setTagBalancingListener(final HTMLTagBalancingListener tagBalancingListener) {
+        tagBalancingListener_ = tagBalancingListener;
+        tagBalancer_ = new ListeningTagBalancer(tagBalancingListener);
+        setDocumentHandler(documentHandler_);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset(final XMLComponentManager manager) throws XMLConfigurationException {
+        tagBalancer_ = new ListeningTagBalancer(tagBalancingListener_);
+        tagBalancer_.reset(manager);
+        setDocumentHandler(documentHandler_);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setDocumentHandler(final XMLDocumentHandler handler) {
+        documentHandler_ = handler;
+        // the events received by this filter are forwarded to the tag balancer, and then to the handler
+        tagBalancer_.setDocumentSource(this);
+        tagBalancer_.setDocumentHandler(handler);
+        super.setDocumentHandler(tagBalancer_);
+    }
+
+    /**
+     * Tag balancer notifying the specified listener, which can only be set from the package of NekoHTML.
+     */
+    private static final class ListeningTagBalancer extends HTMLTagBalancer {
+        ListeningTagBalancer(final HTMLTagBalancingListener tagBalancingListener) {
+            this.tagBalancingListener = tagBalancingListener;
+        }
+    }
+}
@@ -232,4 +232,17 @@ public class HtmlApplet extends StyledElement {
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    DomNode copy(final SgmlPage page) {
+        final HtmlApplet copy = (HtmlApplet) super.copy(page);
+        copy.downloaded_ = false;
+        copy.appletWebResponse_ = null;
+        copy.applet_ = null;
+        copy.appletClassLoader_ = null;
+        return copy;
+    }
 }
@@ -101,6 +101,14 @@ public class HtmlCheckBoxInput extends HtmlInput {
         return "unchecked";
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void asText(final Appendable out) throws IOException {
+        out.append(asText());
+    }
+
     /**
      * Override so that checkbox can change its state correctly when its
      * click() method is called.
@@ -162,4 +170,12 @@ public class HtmlCheckBoxInput extends HtmlInput {
         return defaultCheckedState_;
     }
 
+    /**
+     * Sets the default checked state, without modifying the current one.
+     * @param defaultChecked the default checked state
+     */
+    void setDefaultCheckedInternal(final boolean defaultChecked) {
+        defaultCheckedState_ = defaultChecked;
+    }
+
 }
@@ -18,7 +18,6 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -30,7 +29,6 @@ import net.sourceforge.htmlunit.corejs.javascript.ContextAction;
 import net.sourceforge.htmlunit.corejs.javascript.ContextFactory;
 import net.sourceforge.htmlunit.corejs.javascript.Function;
 
-import org.apache.commons.collections.map.ListOrderedMap;
 import org.apache.commons.lang.ClassUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -124,6 +122,7 @@ public abstract class HtmlElement extends DomElement {
     @Override
     public void setAttributeNS(final String namespaceURI, final String qualifiedName,
             final String attributeValue) {
+        checkModifiable();
 
         final String oldAttributeValue = getAttribute(qualifiedName);
         String value = attributeValue;
@@ -193,6 +192,19 @@ public abstract class HtmlElement extends DomElement {
     public final <E extends HtmlElement> List<E> getHtmlElementsByTagName(final String tagName) {
         final List<E> list = new ArrayList<E>();
         final String lowerCaseTagName = tagName.toLowerCase();
+        if (getPage() instanceof HtmlPage && lowerCaseTagName.indexOf(':') == -1) {
+            final List<DomElement> indexed
+                = ((HtmlPage) getPage()).getIndexedHtmlElementsByTagName(this, lowerCaseTagName);
+            if (indexed != null) {
+                for (final DomElement element : indexed) {
+                    // the index works with local names, the tag name may have a prefix
+                    if (lowerCaseTagName.equals(element.getTagName())) {
+                        list.add((E) element);
+                    }
+                }
+                return list;
+            }
+        }
         final Iterable<HtmlElement> iterable = getAllHtmlChildElements();
         for (final HtmlElement element : iterable) {
             if (lowerCaseTagName.equals(element.getTagName())) {
@@ -208,6 +220,7 @@ public abstract class HtmlElement extends DomElement {
      */
     @Override
     public final void removeAttribute(final String attributeName) {
+        checkModifiable();
         final String value = getAttribute(attributeName);
 
         if (getPage() instanceof HtmlPage) {
@@ -750,12 +763,14 @@ public abstract class HtmlElement extends DomElement {
 
     /**
      * Creates an attribute map as needed by HtmlElement. This is just used by the element factories.
+     * The attributes without namespace are stored as plain values, their {@link DomAttr} nodes being
+     * only created if needed.
+     * @param page the page which will contain the element
      * @param attributeCount the initial number of attributes to be added to the map
      * @return the attribute map
      */
-    @SuppressWarnings("unchecked")
-    static Map<String, DomAttr> createAttributeMap(final int attributeCount) {
-        return ListOrderedMap.decorate(new HashMap<String, DomAttr>(attributeCount)); // preserve insertion order
+    static Map<String, DomAttr> createAttributeMap(final SgmlPage page, final int attributeCount) {
+        return new NamedAttrNodeMapImpl(page, attributeCount); // preserves insertion order
     }
 
     /**
@@ -765,13 +780,16 @@ public abstract class HtmlElement extends DomElement {
      * @param namespaceURI the URI that identifies an XML namespace
      * @param qualifiedName the qualified name of the attribute
      * @param value the value of the attribute
-     * @return the new attribute which was added to the specified attribute map
      */
-    static DomAttr addAttributeToMap(final SgmlPage page, final Map<String, DomAttr> attributeMap,
+    static void addAttributeToMap(final SgmlPage page, final Map<String, DomAttr> attributeMap,
             final String namespaceURI, final String qualifiedName, final String value) {
-        final DomAttr newAttr = new DomAttr(page, namespaceURI, qualifiedName, value);
-        attributeMap.put(qualifiedName, newAttr);
-        return newAttr;
+        if (attributeMap instanceof NamedAttrNodeMapImpl
+                && DomNamespaceNode.resolveNamespaceURI(page, namespaceURI, qualifiedName) == null) {
+            ((NamedAttrNodeMapImpl) attributeMap).setValue(qualifiedName, value);
+        }
+        else {
+            attributeMap.put(qualifiedName, new DomAttr(page, namespaceURI, qualifiedName, value));
+        }
     }
 
     /**
@@ -1146,6 +1164,37 @@ public abstract class HtmlElement extends DomElement {
         owningForm_ = form;
     }
 
+    /**
+     * Returns the form set by {@link #setOwningForm(HtmlForm)}, if any.
+     * @return the form set by {@link #setOwningForm(HtmlForm)}, or <tt>null</tt>
+     */
+    HtmlForm getOwningForm() {
+        return owningForm_;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    DomNode copy(final SgmlPage page) {
+        final HtmlElement copy = (HtmlElement) super.copy(page);
+        copy.attributeListeners_ = null;
+        return copy;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void fixCopiedReferences(final Map<DomNode, DomNode> copies) {
+        if (owningForm_ != null) {
+            final HtmlForm form = (HtmlForm) copies.get(owningForm_);
+            if (form != null) {
+                owningForm_ = form;
+            }
+        }
+    }
+
     /**
      * Gets notified that it has lost the focus
      */
@@ -22,6 +22,7 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -66,7 +67,16 @@ public class HtmlForm extends ClickableElement {
     private static final Collection<String> SUBMITTABLE_ELEMENT_NAMES =
         Arrays.asList(new String[]{"input", "button", "select", "textarea", "isindex"});
 
-    private final List<HtmlElement> lostChildren_ = new ArrayList<HtmlElement>();
+    private List<HtmlElement> lostChildren_ = new ArrayList<HtmlElement>();
+
+    /**
+     * The descendants of this form which are form controls, in document order, built when first needed
+     * and discarded when the content of this form changes.
+     */
+    private transient List<HtmlElement> controls_;
+
+    /** The controls of this form by name, built when first needed and discarded when a name changes. */
+    private transient Map<String, List<HtmlElement>> controlsByName_;
 
     private boolean isPreventDefault_;
 
@@ -250,7 +260,7 @@ public class HtmlForm extends ClickableElement {
             return scriptResult.getNewPage();
         }
 
-        for (final HtmlElement next : getAllHtmlChildElements()) {
+        for (final HtmlElement next : getControls()) {
             if (next instanceof SubmittableElement) {
                 ((SubmittableElement) next).reset();
             }
@@ -270,7 +280,7 @@ public class HtmlForm extends ClickableElement {
     Collection<SubmittableElement> getSubmittableElements(final SubmittableElement submitElement) {
         final List<SubmittableElement> submittableElements = new ArrayList<SubmittableElement>();
 
-        for (final HtmlElement element : getAllHtmlChildElements()) {
+        for (final HtmlElement element : getControls()) {
             if (isSubmittable(element, submitElement)) {
                 submittableElements.add((SubmittableElement) element);
             }
@@ -285,6 +295,81 @@ public class HtmlForm extends ClickableElement {
         return submittableElements;
     }
 
+    /**
+     * Returns the descendants of this form which are form controls, in document order.
+     * @return the descendants of this form which are form controls, which must not be modified
+     */
+    private List<HtmlElement> getControls() {
+        List<HtmlElement> controls = controls_;
+        if (controls == null) {
+            controls = new ArrayList<HtmlElement>();
+            for (final HtmlElement element : getAllHtmlChildElements()) {
+                if (element instanceof SubmittableElement
+                        || SUBMITTABLE_ELEMENT_NAMES.contains(element.getTagName())) {
+                    controls.add(element);
+                }
+            }
+            controls_ = controls;
+        }
+        return controls;
+    }
+
+    /**
+     * Returns the descendants of this form which are form controls with the specified tag name and name,
+     * in document order, followed by the lost children matching them.
+     * @param tagName the tag name
+     * @param name the value of the <tt>name</tt> attribute
+     * @return the matching controls
+     */
+    @SuppressWarnings("unchecked")
+    private <E extends HtmlElement> List<E> getControlsByName(final String tagName, final String name) {
+        Map<String, List<HtmlElement>> controlsByName = controlsByName_;
+        if (controlsByName == null) {
+            controlsByName = new HashMap<String, List<HtmlElement>>();
+            for (final HtmlElement element : getControls()) {
+                final String elementName = element.getAttribute("name");
+                List<HtmlElement> elements = controlsByName.get(elementName);
+                if (elements == null) {
+                    elements = new ArrayList<HtmlElement>(1);
+                    controlsByName.put(elementName, elements);
+                }
+                elements.add(element);
+            }
+            controlsByName_ = controlsByName;
+        }
+
+        final List<E> list = new ArrayList<E>();
+        final List<HtmlElement> elements = controlsByName.get(name);
+        if (elements != null) {
+            for (final HtmlElement element : elements) {
+                if (element.getTagName().equals(tagName)) {
+                    list.add((E) element);
+                }
+            }
+        }
+        for (final HtmlElement element : lostChildren_) {
+            if (element.getTagName().equals(tagName) && name.equals(element.getAttribute("name"))) {
+                list.add((E) element);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Discards the controls of this form, because its content changed.
+     */
+    private void controlsChanged() {
+        controls_ = null;
+        controlsByName_ = null;
+    }
+
+    /**
+     * Discards the controls of this form by name, because the name of one of its controls changed.
+     */
+    void controlNameChanged() {
+        controlsByName_ = null;
+    }
+
     private boolean isValidForSubmission(final HtmlElement element, final SubmittableElement submitElement) {
         final String tagName = element.getTagName();
         if (!SUBMITTABLE_ELEMENT_NAMES.contains(tagName)) {
@@ -355,7 +440,12 @@ public class HtmlForm extends ClickableElement {
      * Returns all the &lt;input type="submit"> elements in this form.
      */
     public List<HtmlSubmitInput> getSubmitButtons() throws ElementNotFoundException {
-        final List<HtmlSubmitInput> list = getElementsByAttribute("input", "type", "submit");
+        final List<HtmlSubmitInput> list = new ArrayList<HtmlSubmitInput>();
+        for (final HtmlElement element : getControls()) {
+            if (element instanceof HtmlSubmitInput && element.getAttribute("type").equals("submit")) {
+                list.add((HtmlSubmitInput) element);
+            }
+        }
 
         // collect inputs from lost children
         for (final HtmlElement elt : getLostChildren()) {
@@ -380,15 +470,7 @@ public class HtmlForm extends ClickableElement {
      * @return all input elements which are members of this form and have the specified name
      */
     public List<HtmlInput> getInputsByName(final String name) {
-        final List<HtmlInput> list = getElementsByAttribute("input", "name", name);
-
-        // collect inputs from lost children
-        for (final HtmlElement elt : getLostChildren()) {
-            if (elt instanceof HtmlInput && name.equals(elt.getAttribute("name"))) {
-                list.add((HtmlInput) elt);
-            }
-        }
-        return list;
+        return getControlsByName("input", name);
     }
 
     /**
@@ -416,15 +498,7 @@ public class HtmlForm extends ClickableElement {
      * @return all the {@link HtmlSelect} elements in this form that have the specified name
      */
     public List<HtmlSelect> getSelectsByName(final String name) {
-        final List<HtmlSelect> list = getElementsByAttribute("select", "name", name);
-
-        // collect selects from lost children
-        for (final HtmlElement elt : getLostChildren()) {
-            if (elt instanceof HtmlSelect && name.equals(elt.getAttribute("name"))) {
-                list.add((HtmlSelect) elt);
-            }
-        }
-        return list;
+        return getControlsByName("select", name);
     }
 
     /**
@@ -450,15 +524,7 @@ public class HtmlForm extends ClickableElement {
      * @return all the {@link HtmlButton} elements in this form that have the specified name
      */
     public List<HtmlButton> getButtonsByName(final String name) {
-        final List<HtmlButton> list = getElementsByAttribute("button", "name", name);
-
-        // collect buttons from lost children
-        for (final HtmlElement elt : getLostChildren()) {
-            if (elt instanceof HtmlButton && name.equals(elt.getAttribute("name"))) {
-                list.add((HtmlButton) elt);
-            }
-        }
-        return list;
+        return getControlsByName("button", name);
     }
 
     /**
@@ -492,15 +558,7 @@ public class HtmlForm extends ClickableElement {
      * @return all the {@link HtmlTextArea} elements in this form that have the specified name
      */
     public List<HtmlTextArea> getTextAreasByName(final String name) {
-        final List<HtmlTextArea> list = getElementsByAttribute("textarea", "name", name);
-
-        // collect buttons from lost children
-        for (final HtmlElement elt : getLostChildren()) {
-            if (elt instanceof HtmlTextArea && name.equals(elt.getAttribute("name"))) {
-                list.add((HtmlTextArea) elt);
-            }
-        }
-        return list;
+        return getControlsByName("textarea", name);
     }
 
     /**
@@ -757,7 +815,12 @@ public class HtmlForm extends ClickableElement {
      * @return all the inputs in this form with the specified value
      */
     public List<HtmlInput> getInputsByValue(final String value) {
-        final List<HtmlInput> results = getElementsByAttribute("input", "value", value);
+        final List<HtmlInput> results = new ArrayList<HtmlInput>();
+        for (final HtmlElement element : getControls()) {
+            if (element.getTagName().equals("input") && element.getAttribute("value").equals(value)) {
+                results.add((HtmlInput) element);
+            }
+        }
 
         for (final HtmlElement element : getLostChildren()) {
             if (element instanceof HtmlInput && value.equals(element.getAttribute("value"))) {
@@ -778,6 +841,82 @@ public class HtmlForm extends ClickableElement {
         field.setOwningForm(this);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    DomNode copy(final SgmlPage page) {
+        final HtmlForm copy = (HtmlForm) super.copy(page);
+        copy.lostChildren_ = new ArrayList<HtmlElement>(lostChildren_);
+        copy.controlsChanged();
+        return copy;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void fixCopiedReferences(final Map<DomNode, DomNode> copies) {
+        super.fixCopiedReferences(copies);
+        for (int i = 0; i < lostChildren_.size(); i++) {
+            final HtmlElement lostChild = (HtmlElement) copies.get(lostChildren_.get(i));
+            if (lostChild != null) {
+                lostChildren_.set(i, lostChild);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void fireNodeAdded(final DomNode parentNode, final DomNode addedNode) {
+        controlsChanged();
+        super.fireNodeAdded(parentNode, addedNode);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void fireNodeDeleted(final DomNode parentNode, final DomNode deletedNode) {
+        controlsChanged();
+        super.fireNodeDeleted(parentNode, deletedNode);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void fireHtmlAttributeAdded(final HtmlAttributeChangeEvent event) {
+        nameChanged(event);
+        super.fireHtmlAttributeAdded(event);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void fireHtmlAttributeReplaced(final HtmlAttributeChangeEvent event) {
+        nameChanged(event);
+        super.fireHtmlAttributeReplaced(event);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void fireHtmlAttributeRemoved(final HtmlAttributeChangeEvent event) {
+        nameChanged(event);
+        super.fireHtmlAttributeRemoved(event);
+    }
+
+    private void nameChanged(final HtmlAttributeChangeEvent event) {
+        if ("name".equals(event.getName())) {
+            controlNameChanged();
+        }
+    }
+
     /**
      * Gets the form elements that may be submitted but that don't belong to the form's children
      * in the DOM due to incorrect HTML code.
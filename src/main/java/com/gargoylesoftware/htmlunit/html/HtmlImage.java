@@ -448,4 +448,17 @@ public class HtmlImage extends ClickableElement {
         final ImageReader reader = getImageReader();
         ImageIO.write(reader.read(0), reader.getFormatName(), file);
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    DomNode copy(final SgmlPage page) {
+        final HtmlImage copy = (HtmlImage) super.copy(page);
+        copy.imageWebResponse_ = null;
+        copy.imageReader_ = null;
+        copy.downloaded_ = false;
+        copy.onloadInvoked_ = false;
+        return copy;
+    }
 }
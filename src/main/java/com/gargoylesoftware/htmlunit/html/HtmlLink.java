@@ -41,7 +41,7 @@ public class HtmlLink extends ClickableElement {
 
     /** The HTML tag represented by this element. */
     public static final String TAG_NAME = "link";
-    private WebResponse cachedWebResponse_;
+    private volatile WebResponse cachedWebResponse_;
 
     /**
      * Creates an instance of HtmlLink
@@ -182,4 +182,14 @@ public class HtmlLink extends ClickableElement {
         request.setAdditionalHeader("Referer", page.getWebResponse().getRequestSettings().getUrl().toExternalForm());
         return request;
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    DomNode copy(final SgmlPage page) {
+        final HtmlLink copy = (HtmlLink) super.copy(page);
+        copy.cachedWebResponse_ = null;
+        return copy;
+    }
 }
@@ -117,8 +117,12 @@ public class HtmlPage extends SgmlPage {
 
     private HtmlUnitDOMBuilder builder_;
     private String originalCharset_;
-    private Map<String, List<HtmlElement>> idMap_ = new HashMap<String, List<HtmlElement>>();
-    private Map<String, List<HtmlElement>> nameMap_ = new HashMap<String, List<HtmlElement>>();
+    private final boolean staticDom_;
+    private boolean readOnly_;
+
+    /** The ID and name maps, or <tt>null</tt> if they are not built yet (only for a static DOM). */
+    private Map<String, List<HtmlElement>> idMap_;
+    private Map<String, List<HtmlElement>> nameMap_;
     private HtmlElement elementWithFocus_;
     private int parserCount_;
     private int snippetParserCount_;
@@ -129,6 +133,9 @@ public class HtmlPage extends SgmlPage {
     private final List<PostponedAction> afterLoadActions_ = new ArrayList<PostponedAction>();
     private boolean cleaning_;
     private HtmlBase base_;
+    private transient ElementIndex elementIndex_;
+    private transient DisplayStateCache displayStates_;
+    private transient boolean computingDisplayStates_;
 
     /**
      * Creates an instance of HtmlPage.
@@ -140,6 +147,30 @@ public class HtmlPage extends SgmlPage {
      */
     public HtmlPage(final URL originatingUrl, final WebResponse webResponse, final WebWindow webWindow) {
         super(webResponse, webWindow);
+        final WebClient webClient = getWebClient();
+        staticDom_ = webClient != null && webClient.isStaticDomEnabled() && !webClient.isJavaScriptEnabled();
+        if (!staticDom_) {
+            idMap_ = new HashMap<String, List<HtmlElement>>();
+            nameMap_ = new HashMap<String, List<HtmlElement>>();
+        }
+    }
+
+    /**
+     * Returns <tt>true</tt> if this page has a static DOM, i.e. if it was loaded while JavaScript was disabled
+     * and the {@link WebClient#setStaticDomEnabled(boolean) static DOMs} enabled.
+     * @return <tt>true</tt> if this page has a static DOM
+     */
+    boolean isStaticDom() {
+        return staticDom_;
+    }
+
+    /**
+     * Returns <tt>true</tt> if the document of this page can't be changed anymore: a
+     * {@link WebClient#setStaticDomEnabled(boolean) static DOM} is read-only once the page is loaded.
+     * @return <tt>true</tt> if the document of this page can't be changed anymore
+     */
+    public boolean isReadOnly() {
+        return readOnly_;
     }
 
     /**
@@ -188,7 +219,11 @@ public class HtmlPage extends SgmlPage {
         catch (final Exception e) {
             throw new RuntimeException(e);
         }
+        if (getWebClient().isLazyStylesheetsEnabled() && getEnclosingWindow().getScriptObject() instanceof Window) {
+            ((Window) getEnclosingWindow().getScriptObject()).jsxGet_document().jsxGet_styleSheets().prefetch();
+        }
         executeRefreshIfNeeded();
+        readOnly_ = staticDom_;
     }
 
     /**
@@ -1536,6 +1571,7 @@ public class HtmlPage extends SgmlPage {
     @SuppressWarnings("unchecked")
     public <E extends HtmlElement> E getHtmlElementById(final String id, final boolean caseSensitive)
         throws ElementNotFoundException {
+        mapElementsIfNecessary();
         String usedID = id;
         if (!caseSensitive) {
             for (final String key : idMap_.keySet()) {
@@ -1563,6 +1599,7 @@ public class HtmlPage extends SgmlPage {
      */
     @SuppressWarnings("unchecked")
     public <E extends HtmlElement> E getElementByName(final String name) throws ElementNotFoundException {
+        mapElementsIfNecessary();
         final List<HtmlElement> elements = nameMap_.get(name);
         if (elements != null) {
             return (E) elements.get(0);
@@ -1579,6 +1616,7 @@ public class HtmlPage extends SgmlPage {
      * @return the HTML elements with the specified name attribute
      */
     public List<HtmlElement> getElementsByName(final String name) {
+        mapElementsIfNecessary();
         final List<HtmlElement> list = nameMap_.get(name);
         if (list != null) {
             return Collections.unmodifiableList(list);
@@ -1595,6 +1633,7 @@ public class HtmlPage extends SgmlPage {
      * @return the HTML elements with the specified string for their name or ID
      */
     public List<HtmlElement> getElementsByIdAndOrName(final String idAndOrName) {
+        mapElementsIfNecessary();
         final List<HtmlElement> list1 = idMap_.get(idAndOrName);
         final List<HtmlElement> list2 = nameMap_.get(idAndOrName);
         final List<HtmlElement> list = new ArrayList<HtmlElement>();
@@ -1611,6 +1650,20 @@ public class HtmlPage extends SgmlPage {
         return Collections.unmodifiableList(list);
     }
 
+    /**
+     * Returns the HTML elements with the specified ID, in the order they were added to the document.
+     * @param id the ID value to search for
+     * @return the HTML elements with the specified ID, or an empty list if there is none
+     */
+    List<HtmlElement> getElementsById(final String id) {
+        mapElementsIfNecessary();
+        final List<HtmlElement> list = idMap_.get(id);
+        if (list != null) {
+            return Collections.unmodifiableList(list);
+        }
+        return Collections.emptyList();
+    }
+
     /**
      * Adds an element to the ID and name maps, if necessary.
      * @param element the element to be added to the ID and name maps
@@ -1625,12 +1678,30 @@ public class HtmlPage extends SgmlPage {
      * @param recurse indicates if children must be added too
      */
     void addMappedElement(final HtmlElement element, final boolean recurse) {
-        if (isDescendant(element)) {
+        // maps which are not built yet will contain the element anyway
+        if (idMap_ != null && isDescendant(element)) {
             addElement(idMap_, element, "id", recurse);
             addElement(nameMap_, element, "name", recurse);
         }
     }
 
+    /**
+     * Builds the ID and name maps if they haven't been maintained while the static DOM of this page was parsed,
+     * in a single walk of the document.
+     */
+    private void mapElementsIfNecessary() {
+        if (idMap_ == null) {
+            final Map<String, List<HtmlElement>> idMap = new HashMap<String, List<HtmlElement>>();
+            final Map<String, List<HtmlElement>> nameMap = new HashMap<String, List<HtmlElement>>();
+            for (final HtmlElement element : getAllHtmlChildElements()) {
+                addElement(idMap, element, "id", false);
+                addElement(nameMap, element, "name", false);
+            }
+            idMap_ = idMap;
+            nameMap_ = nameMap;
+        }
+    }
+
     /**
      * Checks whether the specified element is descendant of this HtmlPage or not.
      */
@@ -1679,7 +1750,7 @@ public class HtmlPage extends SgmlPage {
      * @param descendant indicates of the element was descendant of this HtmlPage, but now its parent might be null
      */
     void removeMappedElement(final HtmlElement element, final boolean recurse, final boolean descendant) {
-        if (descendant || isDescendant(element)) {
+        if (idMap_ != null && (descendant || isDescendant(element))) {
             removeElement(idMap_, element, "id", recurse);
             removeElement(nameMap_, element, "name", recurse);
         }
@@ -1708,6 +1779,7 @@ public class HtmlPage extends SgmlPage {
      * @param node the node that has just been added to the document
      */
     void notifyNodeAdded(final DomNode node) {
+        displayStates_ = null;
         if (node instanceof HtmlElement) {
             boolean insideNoScript = false;
             if (getWebClient().isJavaScriptEnabled()) {
@@ -1740,6 +1812,14 @@ public class HtmlPage extends SgmlPage {
         node.onAddedToPage();
     }
 
+    /**
+     * Sets the base element of this page, without looking for it in the document.
+     * @param base the first base element of the document, or <tt>null</tt>
+     */
+    void setBase(final HtmlBase base) {
+        base_ = base;
+    }
+
     private void calculateBase() {
         final List<HtmlBase> baseElements = getDocumentElement().getHtmlElementsByTagName("base");
         switch (baseElements.size()) {
@@ -1763,6 +1843,7 @@ public class HtmlPage extends SgmlPage {
      * @param node the node that has just been removed from the tree
      */
     void notifyNodeRemoved(final DomNode node) {
+        displayStates_ = null;
         if (node instanceof HtmlElement) {
             removeMappedElement((HtmlElement) node, true, true);
             if (node.getNodeName().equals("base")) {
@@ -1771,6 +1852,99 @@ public class HtmlPage extends SgmlPage {
         }
     }
 
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br/>
+     *
+     * Returns the elements which are descendants of the specified node and whose local name is the
+     * specified one, using the index of the elements of this page. The index is built the first time
+     * the whole document is searched, and then updated on each change of the structure of the page or
+     * of the class of an element; searching a subtree before the index is built returns <tt>null</tt>,
+     * as walking the subtree is cheaper than indexing the whole document.
+     *
+     * @param root the page or the element to search in
+     * @param lowerCaseName the lower case local name of the elements, or <tt>*</tt> for all the elements
+     * @param excludeNoScriptContent whether to exclude the elements contained in a &lt;noscript&gt; element
+     * @return the elements in document order, or <tt>null</tt> if the index can't be used
+     */
+    public List<DomElement> getIndexedElementsByTagName(final DomNode root, final String lowerCaseName,
+            final boolean excludeNoScriptContent) {
+        final ElementIndex index = getElementIndex(root);
+        if (index == null) {
+            return null;
+        }
+        return index.getElementsByTagName(root, lowerCaseName, excludeNoScriptContent);
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br/>
+     *
+     * Returns the elements which are descendants of the specified node and which have all the specified
+     * classes, using the index of the elements of this page.
+     * See {@link #getIndexedElementsByTagName(DomNode, String, boolean)} for the availability of the index.
+     *
+     * @param root the page or the element to search in
+     * @param classNames the class names, none of them being empty
+     * @param excludeNoScriptContent whether to exclude the elements contained in a &lt;noscript&gt; element
+     * @return the elements in document order, or <tt>null</tt> if the index can't be used
+     */
+    public List<DomElement> getIndexedElementsByClassNames(final DomNode root, final String[] classNames,
+            final boolean excludeNoScriptContent) {
+        final ElementIndex index = getElementIndex(root);
+        if (index == null) {
+            return null;
+        }
+        return index.getElementsByClassNames(root, classNames, excludeNoScriptContent);
+    }
+
+    /**
+     * Same as {@link #getIndexedElementsByTagName(DomNode, String, boolean)}, but returns only the
+     * {@link HtmlElement}s which {@link DomNode#getAllHtmlChildElements()} would return.
+     */
+    List<DomElement> getIndexedHtmlElementsByTagName(final DomNode root, final String lowerCaseName) {
+        final ElementIndex index = getElementIndex(root);
+        if (index == null) {
+            return null;
+        }
+        return index.getHtmlElementsByTagName(root, lowerCaseName, getWebClient().isJavaScriptEnabled());
+    }
+
+    private ElementIndex getElementIndex(final DomNode root) {
+        if (elementIndex_ == null && (root == this || root == getDocumentElement())) {
+            elementIndex_ = new ElementIndex(this);
+        }
+        return elementIndex_;
+    }
+
+    /**
+     * Indexes the specified node and its descendants if the node has been attached to this page.
+     * @param node the node which has just been attached to its parent
+     */
+    void nodeAttached(final DomNode node) {
+        if (elementIndex_ != null && isAncestorOf(node)) {
+            elementIndex_.nodeAdded(node);
+        }
+    }
+
+    /**
+     * Drops the specified node and its descendants from the index if the node is part of this page.
+     * @param node the node which is about to be detached from its parent
+     */
+    void nodeDetaching(final DomNode node) {
+        if (elementIndex_ != null && isAncestorOf(node)) {
+            elementIndex_.nodeRemoved(node);
+        }
+    }
+
+    /**
+     * Updates the index after a change of the <tt>class</tt> attribute of the specified element.
+     * @param element the element
+     */
+    void elementClassChanged(final DomElement element) {
+        if (elementIndex_ != null) {
+            elementIndex_.classChanged(element);
+        }
+    }
+
     /**
      * Loads the content of the contained frames. This is done after the page is completely loaded, to allow script
      * contained in the frames to reference elements from the page located after the closing &lt;/frame&gt; tag.
@@ -1940,8 +2114,10 @@ public class HtmlPage extends SgmlPage {
     protected HtmlPage clone() {
         final HtmlPage result = (HtmlPage) super.clone();
         result.elementWithFocus_ = null;
-        result.idMap_ = new HashMap<String, List<HtmlElement>>();
-        result.nameMap_ = new HashMap<String, List<HtmlElement>>();
+        result.readOnly_ = false;
+        result.idMap_ = staticDom_ ? null : new HashMap<String, List<HtmlElement>>();
+        result.nameMap_ = staticDom_ ? null : new HashMap<String, List<HtmlElement>>();
+        result.elementIndex_ = null;
         return result;
     }
 
@@ -1951,18 +2127,66 @@ public class HtmlPage extends SgmlPage {
      */
     @Override
     public HtmlPage cloneNode(final boolean deep) {
-        final HtmlPage result = (HtmlPage) super.cloneNode(deep);
+        final HtmlPage result = (HtmlPage) super.cloneNode(false);
         result.setScriptObject(getScriptObject());
         if (deep) {
-            // fix up idMap_ and result's idMap_s
-            for (final HtmlElement child : result.getAllHtmlChildElements()) {
-                removeMappedElement(child);
-                result.addMappedElement(child);
-            }
+            copyDocumentTo(result);
         }
         return result;
     }
 
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br/>
+     *
+     * Copies the document of this page into the specified page, which must have no child yet, in a single
+     * walk of the tree: the nodes and their attributes are copied, then the ID and name maps are translated
+     * to the copies, instead of being rebuilt element by element. The copies belong to the specified page
+     * only, and nothing is fired, executed or loaded while copying: the specified page is what parsing the
+     * same content would have produced, as long as JavaScript is disabled.
+     *
+     * @param page the page receiving the copy
+     */
+    public void copyDocumentTo(final HtmlPage page) {
+        final Map<DomNode, DomNode> copies = new IdentityHashMap<DomNode, DomNode>();
+        ((DomNode) this).copyChildrenTo(page, page, copies);
+        for (final DomNode copy : copies.values()) {
+            copy.fixCopiedReferences(copies);
+        }
+        if (idMap_ != null) {
+            page.idMap_ = copyMap(idMap_, copies);
+            page.nameMap_ = copyMap(nameMap_, copies);
+        }
+        else {
+            page.idMap_ = null;
+            page.nameMap_ = null;
+        }
+        page.elementIndex_ = null;
+        if (base_ != null) {
+            page.base_ = (HtmlBase) copies.get(base_);
+        }
+        if (getDoctype() != null) {
+            page.setDocumentType((DomDocumentType) ((DomNode) getDoctype()).copy(page));
+        }
+    }
+
+    private static Map<String, List<HtmlElement>> copyMap(final Map<String, List<HtmlElement>> map,
+            final Map<DomNode, DomNode> copies) {
+        final Map<String, List<HtmlElement>> copy = new HashMap<String, List<HtmlElement>>(map.size() * 4 / 3 + 1);
+        for (final Map.Entry<String, List<HtmlElement>> entry : map.entrySet()) {
+            final List<HtmlElement> elements = new ArrayList<HtmlElement>(entry.getValue().size());
+            for (final HtmlElement element : entry.getValue()) {
+                final HtmlElement elementCopy = (HtmlElement) copies.get(element);
+                if (elementCopy != null) {
+                    elements.add(elementCopy);
+                }
+            }
+            if (!elements.isEmpty()) {
+                copy.put(entry.getKey(), elements);
+            }
+        }
+        return copy;
+    }
+
     /**
      * Adds an HtmlAttributeChangeListener to the listener list.
      * The listener is registered for all attributes of all HtmlElements contained in this page.
@@ -2004,6 +2228,7 @@ public class HtmlPage extends SgmlPage {
      * @param event the event to fire
      */
     void fireHtmlAttributeAdded(final HtmlAttributeChangeEvent event) {
+        attributeChanged(event.getName());
         final List<HtmlAttributeChangeListener> listeners = safeGetAttributeListeners();
         if (listeners != null) {
             for (final HtmlAttributeChangeListener listener : listeners) {
@@ -2017,6 +2242,7 @@ public class HtmlPage extends SgmlPage {
      * @param event the event to fire
      */
     void fireHtmlAttributeReplaced(final HtmlAttributeChangeEvent event) {
+        attributeChanged(event.getName());
         final List<HtmlAttributeChangeListener> listeners = safeGetAttributeListeners();
         if (listeners != null) {
             for (final HtmlAttributeChangeListener listener : listeners) {
@@ -2030,6 +2256,7 @@ public class HtmlPage extends SgmlPage {
      * @param event the event to fire
      */
     void fireHtmlAttributeRemoved(final HtmlAttributeChangeEvent event) {
+        attributeChanged(event.getName());
         final List<HtmlAttributeChangeListener> listeners = safeGetAttributeListeners();
         if (listeners != null) {
             for (final HtmlAttributeChangeListener listener : listeners) {
@@ -2038,6 +2265,62 @@ public class HtmlPage extends SgmlPage {
         }
     }
 
+    private void attributeChanged(final String name) {
+        if (displayStates_ != null && ("style".equalsIgnoreCase(name) || "class".equalsIgnoreCase(name)
+                || (displayStates_.isComputedStyles() && isExaminedBySelectors(name)))) {
+            displayStates_ = null;
+        }
+    }
+
+    /**
+     * Returns <tt>true</tt> if the specified attribute was examined by the selectors of the stylesheets
+     * while the computed styles were matched.
+     * @param name the name of the attribute
+     * @return <tt>true</tt> if the specified attribute was examined by the selectors of the stylesheets
+     */
+    private boolean isExaminedBySelectors(final String name) {
+        final Object window = getEnclosingWindow().getScriptObject();
+        return window instanceof Window && ((Window) window).getComputedStyleCache().isAttributeExamined(name);
+    }
+
+    /**
+     * Returns <tt>true</tt> if the specified node of this page is displayed, see {@link DomNode#isDisplayed()}.
+     * The display states of the nodes are memoised until the document changes.
+     * @param node the node
+     * @return <tt>true</tt> if the node is displayed and visible
+     */
+    boolean isDisplayed(final DomNode node) {
+        final boolean collapseHides = !getWebClient().getBrowserVersion().isIE();
+        if (computingDisplayStates_) {
+            // the text of a node is needed to compute a style (like the content of a style element):
+            // only the inline styles can be used
+            return new DisplayStateCache(false, collapseHides).isDisplayed(node);
+        }
+        final WebClient webClient = getWebClient();
+        final boolean computedStyles = webClient.isCssEnabled() && webClient.isComputedVisibilityEnabled();
+        DisplayStateCache displayStates = displayStates_;
+        if (displayStates == null || displayStates.isComputedStyles() != computedStyles) {
+            displayStates = new DisplayStateCache(computedStyles, collapseHides);
+            displayStates_ = displayStates;
+        }
+        computingDisplayStates_ = true;
+        try {
+            return displayStates.isDisplayed(node);
+        }
+        finally {
+            computingDisplayStates_ = false;
+        }
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br/>
+     *
+     * Discards the memoised display states of the nodes, because a stylesheet has changed.
+     */
+    public void clearDisplayStates() {
+        displayStates_ = null;
+    }
+
     private List<HtmlAttributeChangeListener> safeGetAttributeListeners() {
         synchronized (lock_) {
             if (attributeListeners_ != null) {
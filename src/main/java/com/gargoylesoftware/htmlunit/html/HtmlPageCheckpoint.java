@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2002-2009 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.html;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.w3c.dom.DocumentType;
+import org.w3c.dom.Node;
+import org.xml.sax.helpers.AttributesImpl;
+
+import com.gargoylesoftware.htmlunit.SessionCheckpoint;
+import com.gargoylesoftware.htmlunit.WebResponse;
+import com.gargoylesoftware.htmlunit.WebWindow;
+
+/**
+ * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br/>
+ *
+ * Writes and reads the document of an {@link HtmlPage} for a {@link SessionCheckpoint}.
+ *
+ * <p>The nodes are written in document order, each one as a tag followed by its content; the children of an
+ * element are ended by {@link #END}. The state of the form fields which isn't held by their attributes (like
+ * their default values) follows the attributes, and the page of a frame follows the children of the frame.
+ * The elements are then referenced by their position in document order, to restore the elements associated
+ * to a form they are not a descendant of.</p>
+ *
+ * <p>The document is restored without executing any script, or loading any frame or image: the read nodes
+ * are linked together directly, as they would have been by the parser.</p>
+ *
+ * @version $Revision$
+ * @author Ahmed Ashour
+ */
+public final class HtmlPageCheckpoint {
+
+    private static final int END = 0;
+    private static final int ELEMENT = 1;
+    private static final int TEXT = 2;
+    private static final int COMMENT = 3;
+    private static final int CDATA = 4;
+    private static final int PROCESSING_INSTRUCTION = 5;
+
+    private HtmlPageCheckpoint() {
+        // Empty.
+    }
+
+    /**
+     * Writes the document of the specified page.
+     * @param out the checkpoint being written
+     * @param page the page
+     * @throws IOException if an IO error occurs, or if the document contains an unsupported node
+     */
+    public static void writeDocument(final SessionCheckpoint.Output out, final HtmlPage page) throws IOException {
+        final DocumentType doctype = page.getDoctype();
+        out.writeBoolean(doctype != null);
+        if (doctype != null) {
+            out.writeName(doctype.getName());
+            out.writeText(doctype.getPublicId());
+            out.writeText(doctype.getSystemId());
+        }
+
+        final Map<HtmlElement, Integer> positions = new IdentityHashMap<HtmlElement, Integer>();
+        writeChildren(out, page, positions);
+
+        final List<HtmlElement> owned = new ArrayList<HtmlElement>();
+        final List<HtmlForm> forms = new ArrayList<HtmlForm>();
+        for (final HtmlElement element : positions.keySet()) {
+            if (element.getOwningForm() != null) {
+                owned.add(element);
+            }
+            if (element instanceof HtmlForm && !((HtmlForm) element).getLostChildren().isEmpty()) {
+                forms.add((HtmlForm) element);
+            }
+        }
+        out.writeInt(owned.size());
+        for (final HtmlElement element : owned) {
+            out.writeInt(positions.get(element));
+            out.writeInt(positions.get(element.getOwningForm()));
+        }
+        out.writeInt(forms.size());
+        for (final HtmlForm form : forms) {
+            out.writeInt(positions.get(form));
+            out.writeInt(form.getLostChildren().size());
+            for (final HtmlElement lostChild : form.getLostChildren()) {
+                out.writeInt(positions.get(lostChild));
+            }
+        }
+    }
+
+    /**
+     * Creates a page for the specified response in the specified window, and reads its document.
+     * @param in the checkpoint being read
+     * @param response the response of the page
+     * @param window the window of the page
+     * @return the page
+     * @throws IOException if an IO error occurs
+     */
+    public static HtmlPage readDocument(final SessionCheckpoint.Input in, final WebResponse response,
+            final WebWindow window) throws IOException {
+        final HtmlPage page = new HtmlPage(response.getRequestSettings().getUrl(), response, window);
+        window.setEnclosedPage(page);
+
+        if (in.readBoolean()) {
+            page.setDocumentType(new DomDocumentType(page, in.readName(), in.readText(), in.readText()));
+        }
+
+        final List<HtmlElement> elements = new ArrayList<HtmlElement>();
+        readChildren(in, page, page, elements);
+
+        final int ownedCount = in.readCount();
+        for (int i = 0; i < ownedCount; i++) {
+            final HtmlElement element = readElementReference(in, elements);
+            element.setOwningForm(readFormReference(in, elements));
+        }
+        final int formCount = in.readCount();
+        for (int i = 0; i < formCount; i++) {
+            final HtmlForm form = readFormReference(in, elements);
+            final int lostChildCount = in.readCount();
+            for (int j = 0; j < lostChildCount; j++) {
+                form.addLostChild(readElementReference(in, elements));
+            }
+        }
+
+        for (final HtmlElement element : elements) {
+            if (element instanceof HtmlBase) {
+                page.setBase((HtmlBase) element);
+                break;
+            }
+        }
+        final HtmlElement documentElement = page.getDocumentElement();
+        if (documentElement != null) {
+            page.addMappedElement(documentElement, true);
+            documentElement.setReadyState(DomNode.READY_STATE_COMPLETE);
+        }
+        page.setReadyState(DomNode.READY_STATE_COMPLETE);
+        return page;
+    }
+
+    private static void writeChildren(final SessionCheckpoint.Output out, final DomNode parent,
+            final Map<HtmlElement, Integer> positions) throws IOException {
+        for (DomNode child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            switch (child.getNodeType()) {
+                case Node.ELEMENT_NODE:
+                    out.writeInt(ELEMENT);
+                    writeElement(out, (HtmlElement) child, positions);
+                    break;
+
+                case Node.TEXT_NODE:
+                    out.writeInt(TEXT);
+                    out.writeText(((DomText) child).getData());
+                    break;
+
+                case Node.COMMENT_NODE:
+                    out.writeInt(COMMENT);
+                    out.writeText(((DomComment) child).getData());
+                    break;
+
+                case Node.CDATA_SECTION_NODE:
+                    out.writeInt(CDATA);
+                    out.writeText(((DomCDataSection) child).getData());
+                    break;
+
+                case Node.PROCESSING_INSTRUCTION_NODE:
+                    final DomProcessingInstruction instruction = (DomProcessingInstruction) child;
+                    out.writeInt(PROCESSING_INSTRUCTION);
+                    out.writeName(instruction.getTarget());
+                    out.writeText(instruction.getData());
+                    break;
+
+                default:
+                    throw new IOException("Unsupported node in a checkpoint: " + child.getNodeName());
+            }
+        }
+        out.writeInt(END);
+    }
+
+    private static void writeElement(final SessionCheckpoint.Output out, final HtmlElement element,
+            final Map<HtmlElement, Integer> positions) throws IOException {
+        positions.put(element, positions.size());
+        out.writeName(element.getNamespaceURI());
+        out.writeName(element.getQualifiedName());
+        final NamedAttrNodeMapImpl attributes = (NamedAttrNodeMapImpl) element.getAttributesMap();
+        out.writeInt(attributes.size());
+        for (int i = 0; i < attributes.size(); i++) {
+            out.writeName(attributes.getNamespaceURI(i));
+            out.writeName(attributes.getQualifiedName(i));
+            out.writeText(attributes.getValue(i));
+        }
+
+        if (element instanceof HtmlInput) {
+            out.writeText(((HtmlInput) element).getDefaultValue());
+            if (element instanceof HtmlCheckBoxInput || element instanceof HtmlRadioButtonInput) {
+                out.writeBoolean(((HtmlInput) element).isDefaultChecked());
+            }
+        }
+        else if (element instanceof HtmlTextArea) {
+            out.writeText(((HtmlTextArea) element).getDefaultValue());
+        }
+        else if (element instanceof HtmlOption) {
+            out.writeBoolean(((HtmlOption) element).isSelected());
+        }
+
+        writeChildren(out, element, positions);
+        if (element instanceof BaseFrame) {
+            SessionCheckpoint.writePage(out, ((BaseFrame) element).getEnclosedPage());
+        }
+    }
+
+    private static HtmlElement readElementReference(final SessionCheckpoint.Input in,
+            final List<HtmlElement> elements) throws IOException {
+        return elements.get(in.checkIndex(in.readInt(), elements.size()));
+    }
+
+    private static HtmlForm readFormReference(final SessionCheckpoint.Input in, final List<HtmlElement> elements)
+        throws IOException {
+        final HtmlElement element = readElementReference(in, elements);
+        if (!(element instanceof HtmlForm)) {
+            throw new IOException("Invalid form reference in a checkpoint: " + element);
+        }
+        return (HtmlForm) element;
+    }
+
+    private static void readChildren(final SessionCheckpoint.Input in, final DomNode parent, final HtmlPage page,
+            final List<HtmlElement> elements) throws IOException {
+        for (int tag = in.readInt(); tag != END; tag = in.readInt()) {
+            final DomNode child;
+            switch (tag) {
+                case ELEMENT:
+                    child = readElement(in, parent, page, elements);
+                    break;
+
+                case TEXT:
+                    child = new DomText(page, in.readText());
+                    break;
+
+                case COMMENT:
+                    child = new DomComment(page, in.readText());
+                    break;
+
+                case CDATA:
+                    child = new DomCDataSection(page, in.readText());
+                    break;
+
+                case PROCESSING_INSTRUCTION:
+                    child = new DomProcessingInstruction(page, in.readName(), in.readText());
+                    break;
+
+                default:
+                    throw new IOException("Invalid node in a checkpoint: " + tag);
+            }
+            if (tag != ELEMENT) {
+                child.setParsed();
+                parent.basicAppend(child);
+            }
+        }
+    }
+
+    private static HtmlElement readElement(final SessionCheckpoint.Input in, final DomNode parent,
+            final HtmlPage page, final List<HtmlElement> elements) throws IOException {
+        final String namespaceURI = in.readName();
+        final String qualifiedName = in.readName();
+        final int attributeCount = in.readCount();
+        final AttributesImpl attributes = new AttributesImpl();
+        for (int i = 0; i < attributeCount; i++) {
+            final String attributeNamespaceURI = in.readName();
+            final String attributeName = in.readName();
+            attributes.addAttribute(attributeNamespaceURI, null, attributeName, null, in.readText());
+        }
+        final IElementFactory factory = HTMLParser.HtmlUnitDOMBuilder.getElementFactory(
+                namespaceURI == null ? "" : namespaceURI, qualifiedName);
+        final HtmlElement element = factory.createElementNS(page, namespaceURI, qualifiedName, attributes);
+        elements.add(element);
+
+        if (element instanceof HtmlInput) {
+            ((HtmlInput) element).setDefaultValue(in.readText(), false);
+            if (element instanceof HtmlCheckBoxInput) {
+                ((HtmlCheckBoxInput) element).setDefaultCheckedInternal(in.readBoolean());
+            }
+            else if (element instanceof HtmlRadioButtonInput) {
+                ((HtmlRadioButtonInput) element).setDefaultCheckedInternal(in.readBoolean());
+            }
+        }
+        else if (element instanceof HtmlTextArea) {
+            ((HtmlTextArea) element).setDefaultValueInternal(in.readText());
+        }
+        else if (element instanceof HtmlOption) {
+            ((HtmlOption) element).setSelectedInternal(in.readBoolean());
+        }
+
+        element.setParsed();
+        parent.basicAppend(element);
+        readChildren(in, element, page, elements);
+        if (element instanceof BaseFrame) {
+            SessionCheckpoint.readPage(in, ((BaseFrame) element).getEnclosedWindow());
+        }
+        return element;
+    }
+}
@@ -32,17 +32,9 @@ public class HtmlPasswordInput extends HtmlInput implements SelectableTextInput
 
     private static final long serialVersionUID = -1074283471317076942L;
 
-    private final SelectionDelegate selectionDelegate_ = new SelectionDelegate(this);
-
-    private final DoTypeProcessor doTypeProcessor_ = new DoTypeProcessor() {
-        private static final long serialVersionUID = -1938284467263013958L;
-        @Override
-        void typeDone(final String newValue, final int newCursorPosition) {
-            setAttribute("value", newValue);
-            setSelectionStart(newCursorPosition);
-            setSelectionEnd(newCursorPosition);
-        }
-    };
+    private SelectionDelegate selectionDelegate_ = new SelectionDelegate(this);
+
+    private DoTypeProcessor doTypeProcessor_ = createDoTypeProcessor();
 
     /**
      * Creates an instance.
@@ -56,6 +48,29 @@ public class HtmlPasswordInput extends HtmlInput implements SelectableTextInput
         super(namespaceURI, qualifiedName, page, attributes);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    DomNode copy(final SgmlPage page) {
+        final HtmlPasswordInput copy = (HtmlPasswordInput) super.copy(page);
+        copy.selectionDelegate_ = new SelectionDelegate(copy);
+        copy.doTypeProcessor_ = copy.createDoTypeProcessor();
+        return copy;
+    }
+
+    private DoTypeProcessor createDoTypeProcessor() {
+        return new DoTypeProcessor() {
+            private static final long serialVersionUID = -1938284467263013958L;
+            @Override
+            void typeDone(final String newValue, final int newCursorPosition) {
+                setAttribute("value", newValue);
+                setSelectionStart(newCursorPosition);
+                setSelectionEnd(newCursorPosition);
+            }
+        };
+    }
+
     /**
      * {@inheritDoc}
      */
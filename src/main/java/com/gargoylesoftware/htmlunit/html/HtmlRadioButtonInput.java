@@ -126,6 +126,14 @@ public class HtmlRadioButtonInput extends HtmlInput {
         return "unchecked";
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void asText(final Appendable out) throws IOException {
+        out.append(asText());
+    }
+
     /**
      * Override of default clickAction that makes this radio button the selected
      * one when it is clicked.
@@ -173,6 +181,14 @@ public class HtmlRadioButtonInput extends HtmlInput {
         return defaultCheckedState_;
     }
 
+    /**
+     * Sets the default checked state, without modifying the current one.
+     * @param defaultChecked the default checked state
+     */
+    void setDefaultCheckedInternal(final boolean defaultChecked) {
+        defaultCheckedState_ = defaultChecked;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -14,6 +14,7 @@
  */
 package com.gargoylesoftware.htmlunit.html;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
@@ -473,6 +474,14 @@ public class HtmlSelect extends ClickableElement implements DisabledElement, Sub
         return buffer.toString();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void asText(final Appendable out) throws IOException {
+        out.append(asText());
+    }
+
     /**
      * Returns the value of the attribute "name". Refer to the <a
      * href='http://www.w3.org/TR/html401/'>HTML 4.01</a> documentation for details on the use of this attribute.
@@ -14,25 +14,37 @@
  */
 package com.gargoylesoftware.htmlunit.html;
 
+import java.io.IOException;
 import java.util.Iterator;
 import java.util.List;
 
 /**
  * Utility to handle conversion from HTML code to string.
+ *
+ * <p>The text is produced in a single pass: the whitespace and the block separators between two
+ * pieces of text are buffered until the next piece of text (or the end) tells how they have to be
+ * rendered, and everything else is written directly to the output.</p>
+ *
  * TODO: simplify it (it is just copied from what was available in DomNode and subclasses).
  * @version $Revision: 4794 $
  * @author Marc Guillemot
  */
 class HtmlSerializer {
-    private final StringBuilder buffer_ = new StringBuilder();
-    /** Indicates a block. Will be rendered as line separator (multiple block marks are ignored) */
-    protected static final String AS_TEXT_BLOCK_SEPARATOR = "§bs§";
-    /** Indicates a new line. Will be rendered as line separator. */
-    protected static final String AS_TEXT_NEW_LINE = "§nl§";
-    /** Indicates a non blank that can't be trimmed or reduced. */
-    protected static final String AS_TEXT_BLANK = "§blank§";
-    /** Indicates a tab. */
-    protected static final String AS_TEXT_TAB = "§tab§";
+    /** Indicates a block in the pending whitespace. Will be rendered as line separator. */
+    private static final char BLOCK_SEPARATOR = '\uFFFF';
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    private Appendable out_;
+
+    /** The whitespace and block separators which haven't been written yet. */
+    private final StringBuilder pending_ = new StringBuilder();
+
+    /** Whether a new line has been requested, and not written yet as it is ignored at the end of a block. */
+    private boolean pendingNewLine_;
+
+    /** Whether nothing has been written yet. */
+    private boolean atStart_;
+
     private boolean appletEnabled_;
     private boolean ignoreMaskedElements_ = true;
 
@@ -42,76 +54,175 @@ class HtmlSerializer {
      * @return the text representation according to the setting of this serializer
      */
     public String asText(final DomNode node) {
+        final StringBuilder buffer = new StringBuilder();
+        try {
+            asText(node, buffer);
+        }
+        catch (final IOException e) {
+            // Should never happen.
+            throw new RuntimeException(e);
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Converts an HTML node to text, written to the specified output.
+     * @param node a node
+     * @param out where to write the text representation according to the setting of this serializer
+     * @throws IOException if an error occurs while writing
+     */
+    public void asText(final DomNode node, final Appendable out) throws IOException {
         appletEnabled_ = node.getPage().getWebClient().isAppletEnabled();
-        buffer_.setLength(0);
-        appendNode(node);
-        final String response = buffer_.toString();
-        buffer_.setLength(0);
-        return cleanUp(response);
+        out_ = out;
+        pending_.setLength(0);
+        pendingNewLine_ = false;
+        atStart_ = true;
+        try {
+            appendNode(node);
+            writePendingNewLine();
+            writePending(true);
+        }
+        finally {
+            out_ = null;
+            pending_.setLength(0);
+        }
     }
 
-    private String cleanUp(String text) {
-        // ignore <br/> at the end of a block
-        text = text.replaceAll(AS_TEXT_NEW_LINE + AS_TEXT_BLOCK_SEPARATOR, AS_TEXT_BLOCK_SEPARATOR);
-        text = reduceWhitespace(text);
-        text = text.replaceAll(AS_TEXT_BLANK, " ");
-        final String ls = System.getProperty("line.separator");
-        text = text.replaceAll(AS_TEXT_NEW_LINE, ls);
-        text = text.replaceAll("(?:" + AS_TEXT_BLOCK_SEPARATOR + ")+", ls); // many block sep => 1 new line
-        text = text.replaceAll(AS_TEXT_TAB, "\t");
-
-        return text;
+    /**
+     * Returns whether the specified character is whitespace which may be trimmed or reduced.
+     * The non-breaking space is not, as it is always rendered as a space.
+     */
+    private static boolean isWhitespace(final char ch) {
+        return ch <= ' ' || Character.isWhitespace(ch);
     }
 
-    protected String reduceWhitespace(String text) {
-        text = text.trim();
+    /**
+     * The whitespace characters which are trimmed around the block separators.
+     */
+    private static boolean isSpaceAroundBlock(final char ch) {
+        return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\u000B' || ch == '\f' || ch == '\r';
+    }
 
-        // remove white spaces before or after block separators
-        text = text.replaceAll("\\s*" + AS_TEXT_BLOCK_SEPARATOR + "\\s*", AS_TEXT_BLOCK_SEPARATOR);
+    /**
+     * Writes some text which can't be trimmed or reduced, after the pending whitespace.
+     */
+    private void write(final CharSequence text, final int start, final int end) throws IOException {
+        writePendingNewLine();
+        writePending(false);
+        out_.append(text, start, end);
+        atStart_ = false;
+    }
 
-        // remove leading block separators
-        while (text.startsWith(AS_TEXT_BLOCK_SEPARATOR)) {
-            text = text.substring(AS_TEXT_BLOCK_SEPARATOR.length());
-        }
+    private void write(final char ch) throws IOException {
+        writePendingNewLine();
+        writePending(false);
+        out_.append(ch);
+        atStart_ = false;
+    }
 
-        // remove trailing block separators
-        while (text.endsWith(AS_TEXT_BLOCK_SEPARATOR)) {
-            text = text.substring(0, text.length() - AS_TEXT_BLOCK_SEPARATOR.length());
+    private void writePendingNewLine() throws IOException {
+        if (pendingNewLine_) {
+            pendingNewLine_ = false;
+            write(LINE_SEPARATOR, 0, LINE_SEPARATOR.length());
         }
-        text = text.trim();
+    }
 
-        final StringBuilder buffer = new StringBuilder(text.length());
+    /**
+     * Writes the pending whitespace and block separators: the whitespace around the block separators
+     * and at the beginning and at the end of the text is removed, the other whitespace sequences are
+     * reduced to a single space, and the sequences of block separators become a single line separator.
+     * @param atEnd whether the end of the text has been reached
+     */
+    private void writePending(final boolean atEnd) throws IOException {
+        final int length = pending_.length();
+        if (length == 0) {
+            return;
+        }
 
-        boolean whitespace = false;
-        for (final char ch : text.toCharArray()) {
+        int start = 0;
+        int end = length;
+        if (atStart_) {
+            while (start < end && pending_.charAt(start) <= ' ') {
+                start++;
+            }
+        }
+        if (atEnd) {
+            while (end > start && pending_.charAt(end - 1) <= ' ') {
+                end--;
+            }
+        }
 
-            // Translate non-breaking space to regular space.
-            if (ch == (char) 160) {
-                buffer.append(' ');
-                whitespace = false;
+        // remove white spaces before or after block separators
+        final StringBuilder text = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            final char ch = pending_.charAt(i);
+            if (ch == BLOCK_SEPARATOR) {
+                int last = text.length();
+                while (last > 0 && isSpaceAroundBlock(text.charAt(last - 1))) {
+                    last--;
+                }
+                text.setLength(last);
+                text.append(ch);
+                while (i + 1 < end && isSpaceAroundBlock(pending_.charAt(i + 1))) {
+                    i++;
+                }
             }
             else {
-                if (whitespace) {
-                    if (!Character.isWhitespace(ch)) {
-                        buffer.append(ch);
-                        whitespace = false;
-                    }
+                text.append(ch);
+            }
+        }
+        pending_.setLength(0);
+
+        // remove leading and trailing block separators, then the remaining leading and trailing whitespace
+        start = 0;
+        end = text.length();
+        if (atStart_) {
+            while (start < end && text.charAt(start) == BLOCK_SEPARATOR) {
+                start++;
+            }
+            while (start < end && text.charAt(start) <= ' ') {
+                start++;
+            }
+        }
+        if (atEnd) {
+            while (end > start && text.charAt(end - 1) == BLOCK_SEPARATOR) {
+                end--;
+            }
+            while (end > start && text.charAt(end - 1) <= ' ') {
+                end--;
+            }
+        }
+
+        boolean whitespace = false;
+        boolean block = false;
+        for (int i = start; i < end; i++) {
+            final char ch = text.charAt(i);
+            if (ch == BLOCK_SEPARATOR) {
+                if (!block) {
+                    out_.append(LINE_SEPARATOR);
                 }
-                else {
-                    if (Character.isWhitespace(ch)) {
-                        whitespace = true;
-                        buffer.append(' ');
-                    }
-                    else {
-                        buffer.append(ch);
-                    }
+                block = true;
+                whitespace = false;
+            }
+            else if (Character.isWhitespace(ch)) {
+                if (!whitespace) {
+                    out_.append(' ');
                 }
+                whitespace = true;
+                block = false;
+            }
+            else {
+                out_.append(ch);
+                whitespace = false;
+                block = false;
             }
         }
-        return buffer.toString();
+        if (end > start) {
+            atStart_ = false;
+        }
     }
 
-    protected void appendNode(final DomNode node) {
+    protected void appendNode(final DomNode node) throws IOException {
         if (node instanceof DomText) {
             appendText((DomText) node);
         }
@@ -179,22 +290,55 @@ class HtmlSerializer {
     }
 
     private void doAppendBlockSeparator() {
-        buffer_.append(AS_TEXT_BLOCK_SEPARATOR);
+        // a new line at the end of a block is ignored
+        pendingNewLine_ = false;
+        pending_.append(BLOCK_SEPARATOR);
     }
 
-    private void doAppend(final String str) {
-        buffer_.append(str);
+    private void doAppend(final String str) throws IOException {
+        final int length = str.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            final char ch = str.charAt(i);
+            if (isWhitespace(ch)) {
+                if (i > start) {
+                    write(str, start, i);
+                }
+                writePendingNewLine();
+                pending_.append(ch);
+                start = i + 1;
+            }
+            else if (ch == (char) 160) {
+                // Translate non-breaking space to regular space.
+                if (i > start) {
+                    write(str, start, i);
+                }
+                write(' ');
+                start = i + 1;
+            }
+        }
+        if (length > start) {
+            write(str, start, length);
+        }
     }
 
-    private void doAppendNewLine() {
-        buffer_.append(AS_TEXT_NEW_LINE);
+    private void doAppendNewLine() throws IOException {
+        writePendingNewLine();
+        pendingNewLine_ = true;
     }
 
-    private void doAppendTab() {
-        buffer_.append(AS_TEXT_TAB);
+    /**
+     * Appends a non blank that can't be trimmed or reduced.
+     */
+    private void doAppendBlank() throws IOException {
+        write(' ');
+    }
+
+    private void doAppendTab() throws IOException {
+        write('\t');
     }
 
-    private void appendHtmlUnorderedList(final HtmlUnorderedList htmlUnorderedList) {
+    private void appendHtmlUnorderedList(final HtmlUnorderedList htmlUnorderedList) throws IOException {
         doAppendBlockSeparator();
         boolean first = true;
         for (final DomNode item : htmlUnorderedList.getChildren()) {
@@ -210,18 +354,18 @@ class HtmlSerializer {
         doAppendBlockSeparator();
     }
 
-    private void appendHtmlTitle(final HtmlTitle htmlTitle) {
+    private void appendHtmlTitle(final HtmlTitle htmlTitle) throws IOException {
         appendChildren(htmlTitle);
         doAppendBlockSeparator();
     }
 
-    private void appendChildren(final DomNode node) {
+    private void appendChildren(final DomNode node) throws IOException {
         for (final DomNode child : node.getChildren()) {
             appendNode(child);
         }
     }
 
-    private void appendHtmlTableRow(final HtmlTableRow htmlTableRow) {
+    private void appendHtmlTableRow(final HtmlTableRow htmlTableRow) throws IOException {
         boolean first = true;
         for (final HtmlTableCell cell : htmlTableRow.getCells()) {
             if (!first) {
@@ -234,17 +378,29 @@ class HtmlSerializer {
         }
     }
 
-    private void appendHtmlTextArea(final HtmlTextArea htmlTextArea) {
+    private void appendHtmlTextArea(final HtmlTextArea htmlTextArea) throws IOException {
         if (isVisible(htmlTextArea)) {
-            String text = htmlTextArea.getText();
-            text = text.replaceAll(" ", AS_TEXT_BLANK);
-            text = text.replaceAll("\r?\n", AS_TEXT_NEW_LINE);
-            text = text.replaceAll("\r", AS_TEXT_NEW_LINE);
-            doAppend(text);
+            final String text = htmlTextArea.getText();
+            final int length = text.length();
+            for (int i = 0; i < length; i++) {
+                final char ch = text.charAt(i);
+                if (ch == ' ') {
+                    doAppendBlank();
+                }
+                else if (ch == '\r' || ch == '\n') {
+                    if (ch == '\r' && i + 1 < length && text.charAt(i + 1) == '\n') {
+                        i++;
+                    }
+                    doAppendNewLine();
+                }
+                else {
+                    doAppend(String.valueOf(ch));
+                }
+            }
         }
     }
 
-    private void appendHtmlTable(final HtmlTable htmlTable) {
+    private void appendHtmlTable(final HtmlTable htmlTable) throws IOException {
         doAppendBlockSeparator();
         final String caption = htmlTable.getCaptionText();
         if (caption != null) {
@@ -262,7 +418,7 @@ class HtmlSerializer {
         doAppendBlockSeparator();
     }
 
-    private void appendHtmlSubmitInput(final HtmlSubmitInput htmlSubmitInput) {
+    private void appendHtmlSubmitInput(final HtmlSubmitInput htmlSubmitInput) throws IOException {
         String value = htmlSubmitInput.getValueAttribute();
         if (value == HtmlOption.ATTRIBUTE_NOT_DEFINED) {
             value = "Submit Query";
@@ -274,7 +430,7 @@ class HtmlSerializer {
     /**
      * @param htmlSelect
      */
-    private void appendHtmlSelect(final HtmlSelect htmlSelect) {
+    private void appendHtmlSelect(final HtmlSelect htmlSelect) throws IOException {
         final List<HtmlOption> options;
         if (htmlSelect.isMultipleSelectEnabled()) {
             options = htmlSelect.getOptions();
@@ -296,7 +452,7 @@ class HtmlSerializer {
      * Appends a &lt;ol&gt; taking care to numerate it.
      * @param htmlOrderedList the OL element
      */
-    private void appendHtmlOrderedList(final HtmlOrderedList htmlOrderedList) {
+    private void appendHtmlOrderedList(final HtmlOrderedList htmlOrderedList) throws IOException {
         doAppendBlockSeparator();
         boolean first = true;
         int i = 1;
@@ -315,7 +471,7 @@ class HtmlSerializer {
         doAppendBlockSeparator();
     }
 
-    private void appendText(final DomText domText) {
+    private void appendText(final DomText domText) throws IOException {
         if (isVisible(domText.getParentNode())) {
             append(domText.getData());
         }
@@ -338,7 +494,7 @@ class HtmlSerializer {
         ignoreMaskedElements_ = ignore;
     }
 
-    private void append(final String text) {
+    private void append(final String text) throws IOException {
         doAppend(text);
     }
 }
@@ -16,6 +16,7 @@ package com.gargoylesoftware.htmlunit.html;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -40,6 +41,9 @@ public class HtmlTable extends ClickableElement {
     /** The HTML tag represented by this element. */
     public static final String TAG_NAME = "table";
 
+    /** The positions of the cells, built when first needed and discarded when the table changes. */
+    private transient Grid grid_;
+
     /**
      * Creates an instance.
      *
@@ -54,27 +58,24 @@ public class HtmlTable extends ClickableElement {
     }
 
     /**
-     * Returns the first cell that matches the specified row and column, searching left to right, top to bottom.
+     * Returns the cell at the specified row and column, taking into account the cells spanning several rows
+     * or columns: a cell occupies the first position of its row not already occupied by a cell of a previous
+     * row, and all the positions covered by its spans.
      *
      * @param rowIndex the row index
      * @param columnIndex the column index
      * @return the HtmlTableCell at that location or null if there are no cells at that location
      */
     public final HtmlTableCell getCellAt(final int rowIndex, final int columnIndex) {
-        final RowIterator rowIterator = getRowIterator();
-        for (int rowNo = 0; rowIterator.hasNext(); rowNo++) {
-            final HtmlTableRow row = rowIterator.nextRow();
-            final HtmlTableRow.CellIterator cellIterator = row.getCellIterator();
-            for (int colNo = 0; cellIterator.hasNext(); colNo++) {
-                final HtmlTableCell cell = cellIterator.nextCell();
-                if (rowNo <= rowIndex && rowNo + cell.getRowSpan() > rowIndex) {
-                    if (colNo <= columnIndex && colNo + cell.getColumnSpan() > columnIndex) {
-                        return cell;
-                    }
-                }
-            }
+        final HtmlTableCell[][] cells = getGrid().cells_;
+        if (rowIndex < 0 || rowIndex >= cells.length) {
+            return null;
         }
-        return null;
+        final HtmlTableCell[] row = cells[rowIndex];
+        if (columnIndex < 0 || columnIndex >= row.length) {
+            return null;
+        }
+        return row[columnIndex];
     }
 
     /**
@@ -89,11 +90,7 @@ public class HtmlTable extends ClickableElement {
      * @see #getRowIterator
      */
     public List<HtmlTableRow> getRows() {
-        final List<HtmlTableRow> result = new ArrayList<HtmlTableRow>();
-        for (final RowIterator iterator = getRowIterator(); iterator.hasNext();) {
-            result.add(iterator.next());
-        }
-        return Collections.unmodifiableList(result);
+        return getGrid().rows_;
     }
 
     /**
@@ -103,28 +100,89 @@ public class HtmlTable extends ClickableElement {
      * @see #getRowIterator
      */
     public HtmlTableRow getRow(final int index) throws IndexOutOfBoundsException {
-        int count = 0;
-        for (final RowIterator iterator = getRowIterator(); iterator.hasNext(); count++) {
-            final HtmlTableRow next = iterator.nextRow();
-            if (count == index) {
-                return next;
-            }
-        }
-        throw new IndexOutOfBoundsException();
+        return getGrid().rows_.get(index);
     }
 
     /**
-     * Computes the number of rows in this table. Note that the count is computed dynamically
-     * by iterating over all rows.
+     * Returns the number of rows in this table.
      *
      * @return the number of rows in this table
      */
     public final int getRowCount() {
-        int count = 0;
-        for (final RowIterator iterator = getRowIterator(); iterator.hasNext(); iterator.next()) {
-            count++;
+        return getGrid().rows_.size();
+    }
+
+    /**
+     * Returns the number of columns in this table, i.e. the number of positions of its widest row, taking
+     * into account the cells spanning several rows or columns.
+     *
+     * @return the number of columns in this table
+     */
+    public final int getColumnCount() {
+        return getGrid().columnCount_;
+    }
+
+    /**
+     * Returns the cells of the specified column, one per row: a cell spanning several rows appears once for
+     * each of them, and positions without a cell are <tt>null</tt>.
+     *
+     * @param columnIndex the column index
+     * @return an immutable list containing the cells of the specified column
+     * @see #getCellAt(int, int)
+     */
+    public List<HtmlTableCell> getColumn(final int columnIndex) {
+        final HtmlTableCell[][] cells = getGrid().cells_;
+        final List<HtmlTableCell> column = new ArrayList<HtmlTableCell>(cells.length);
+        for (final HtmlTableCell[] row : cells) {
+            column.add(columnIndex >= 0 && columnIndex < row.length ? row[columnIndex] : null);
+        }
+        return Collections.unmodifiableList(column);
+    }
+
+    /**
+     * Returns the text of the cells of the specified column, one per row, as returned by
+     * {@link HtmlTableCell#asText()}: the positions without a cell have an empty text.
+     *
+     * @param columnIndex the column index
+     * @return the text of the cells of the specified column
+     * @see #getColumn(int)
+     */
+    public List<String> getColumnTexts(final int columnIndex) {
+        final List<String> texts = new ArrayList<String>();
+        for (final HtmlTableCell cell : getColumn(columnIndex)) {
+            texts.add(cell == null ? "" : cell.asText());
         }
-        return count;
+        return texts;
+    }
+
+    /**
+     * Returns the text of all the cells of this table, as returned by {@link HtmlTableCell#asText()}, as one
+     * list per row having one entry per column: a cell spanning several positions appears at each of them,
+     * and the positions without a cell have an empty text. The text of each cell is computed only once.
+     *
+     * @return the text of the cells of this table
+     */
+    public List<List<String>> getCellTexts() {
+        final Grid grid = getGrid();
+        final Map<HtmlTableCell, String> texts = new IdentityHashMap<HtmlTableCell, String>();
+        final List<List<String>> result = new ArrayList<List<String>>(grid.cells_.length);
+        for (final HtmlTableCell[] row : grid.cells_) {
+            final List<String> rowTexts = new ArrayList<String>(grid.columnCount_);
+            for (int i = 0; i < grid.columnCount_; i++) {
+                final HtmlTableCell cell = i < row.length ? row[i] : null;
+                String text = "";
+                if (cell != null) {
+                    text = texts.get(cell);
+                    if (text == null) {
+                        text = cell.asText();
+                        texts.put(cell, text);
+                    }
+                }
+                rowTexts.add(text);
+            }
+            result.add(rowTexts);
+        }
+        return result;
     }
 
     /**
@@ -135,9 +193,7 @@ public class HtmlTable extends ClickableElement {
      * @exception ElementNotFoundException If the row cannot be found.
      */
     public final HtmlTableRow getRowById(final String id) throws ElementNotFoundException {
-        final RowIterator iterator = new RowIterator();
-        while (iterator.hasNext()) {
-            final HtmlTableRow row = iterator.next();
+        for (final HtmlTableRow row : getGrid().rows_) {
             if (row.getAttribute("id").equals(id)) {
                 return row;
             }
@@ -311,6 +367,81 @@ public class HtmlTable extends ClickableElement {
         return getAttribute("bgcolor");
     }
 
+    /**
+     * Returns the positions of the cells of this table, building them if needed.
+     * @return the positions of the cells of this table
+     */
+    private Grid getGrid() {
+        Grid grid = grid_;
+        if (grid == null) {
+            grid = new Grid(this);
+            grid_ = grid;
+        }
+        return grid;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void fireNodeAdded(final DomNode parentNode, final DomNode addedNode) {
+        grid_ = null;
+        super.fireNodeAdded(parentNode, addedNode);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void fireNodeDeleted(final DomNode parentNode, final DomNode deletedNode) {
+        grid_ = null;
+        super.fireNodeDeleted(parentNode, deletedNode);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void fireHtmlAttributeAdded(final HtmlAttributeChangeEvent event) {
+        spanChanged(event);
+        super.fireHtmlAttributeAdded(event);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void fireHtmlAttributeReplaced(final HtmlAttributeChangeEvent event) {
+        spanChanged(event);
+        super.fireHtmlAttributeReplaced(event);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void fireHtmlAttributeRemoved(final HtmlAttributeChangeEvent event) {
+        spanChanged(event);
+        super.fireHtmlAttributeRemoved(event);
+    }
+
+    private void spanChanged(final HtmlAttributeChangeEvent event) {
+        final String name = event.getName();
+        if ("rowspan".equals(name) || "colspan".equals(name)) {
+            grid_ = null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    DomNode copy(final SgmlPage page) {
+        final HtmlTable copy = (HtmlTable) super.copy(page);
+        copy.grid_ = null;
+        return copy;
+    }
+
     /**
      * An iterator that moves over all rows in this table. The iterator will also
      * enter into nested row group elements (header, footer and body).
@@ -412,4 +543,82 @@ public class HtmlTable extends ClickableElement {
     protected boolean isEmptyXmlTagExpanded() {
         return true;
     }
+
+    /**
+     * The rows of a table, and the position of its cells, built in a single walk of the table as described by
+     * the <a href="http://www.w3.org/TR/html401/struct/tables.html#h-11.2.6.1">HTML 4.01</a> specification.
+     */
+    private static final class Grid {
+        /** The largest column span honored by the browsers. */
+        private static final int MAX_COLUMN_SPAN = 1000;
+        /** The largest row span honored by the browsers. */
+        private static final int MAX_ROW_SPAN = 65534;
+
+        private final List<HtmlTableRow> rows_;
+        private final HtmlTableCell[][] cells_;
+        private final int columnCount_;
+
+        private Grid(final HtmlTable table) {
+            final List<HtmlTableRow> rows = new ArrayList<HtmlTableRow>();
+            for (final HtmlTableRow row : table.getRowIterator()) {
+                rows.add(row);
+            }
+            rows_ = Collections.unmodifiableList(rows);
+            cells_ = new HtmlTableCell[rows.size()][];
+
+            int columnCount = 0;
+            for (int rowIndex = 0; rowIndex < cells_.length; rowIndex++) {
+                int columnIndex = 0;
+                for (final HtmlTableRow.CellIterator iterator = rows.get(rowIndex).getCellIterator();
+                        iterator.hasNext();) {
+                    final HtmlTableCell cell = iterator.nextCell();
+                    // skip the positions occupied by the cells of the previous rows
+                    while (get(rowIndex, columnIndex) != null) {
+                        columnIndex++;
+                    }
+                    int rowSpan = Math.min(cell.getRowSpan(), MAX_ROW_SPAN);
+                    if (rowSpan <= 0 || rowIndex + rowSpan > cells_.length) {
+                        // rowspan='0' spans the remaining rows
+                        rowSpan = cells_.length - rowIndex;
+                    }
+                    final int columnSpan = Math.min(Math.max(cell.getColumnSpan(), 1), MAX_COLUMN_SPAN);
+                    for (int i = rowIndex; i < rowIndex + rowSpan; i++) {
+                        for (int j = columnIndex; j < columnIndex + columnSpan; j++) {
+                            set(i, j, cell);
+                        }
+                    }
+                    columnIndex += columnSpan;
+                    columnCount = Math.max(columnCount, columnIndex);
+                }
+            }
+            for (int i = 0; i < cells_.length; i++) {
+                if (cells_[i] == null) {
+                    cells_[i] = new HtmlTableCell[0];
+                }
+            }
+            columnCount_ = columnCount;
+        }
+
+        private HtmlTableCell get(final int rowIndex, final int columnIndex) {
+            final HtmlTableCell[] row = cells_[rowIndex];
+            if (row == null || columnIndex >= row.length) {
+                return null;
+            }
+            return row[columnIndex];
+        }
+
+        private void set(final int rowIndex, final int columnIndex, final HtmlTableCell cell) {
+            HtmlTableCell[] row = cells_[rowIndex];
+            if (row == null || columnIndex >= row.length) {
+                final HtmlTableCell[] newRow = new HtmlTableCell[Math.max(columnIndex + 1, row == null ? 8
+                        : row.length * 2)];
+                if (row != null) {
+                    System.arraycopy(row, 0, newRow, 0, row.length);
+                }
+                row = newRow;
+                cells_[rowIndex] = row;
+            }
+            row[columnIndex] = cell;
+        }
+    }
 }
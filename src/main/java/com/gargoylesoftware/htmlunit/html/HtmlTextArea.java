@@ -46,21 +46,9 @@ public class HtmlTextArea extends ClickableElement implements DisabledElement, S
     private String defaultValue_;
     private String valueAtFocus_;
 
-    private final SelectionDelegate selectionDelegate_ = new SelectionDelegate(this);
-
-    private final DoTypeProcessor doTypeProcessor_ = new DoTypeProcessor() {
-        private static final long serialVersionUID = 2906652041039202266L;
-        @Override
-        void typeDone(final String newValue, final int newCursorPosition) {
-            setTextInternal(newValue);
-            setSelectionStart(newCursorPosition);
-            setSelectionEnd(newCursorPosition);
-        }
-        @Override
-        protected boolean acceptChar(final char c) {
-            return super.acceptChar(c) || c == '\n' || c == '\r';
-        }
-    };
+    private SelectionDelegate selectionDelegate_ = new SelectionDelegate(this);
+
+    private DoTypeProcessor doTypeProcessor_ = createDoTypeProcessor();
 
     /**
      * Creates an instance.
@@ -75,6 +63,33 @@ public class HtmlTextArea extends ClickableElement implements DisabledElement, S
         super(namespaceURI, qualifiedName, page, attributes);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    DomNode copy(final SgmlPage page) {
+        final HtmlTextArea copy = (HtmlTextArea) super.copy(page);
+        copy.selectionDelegate_ = new SelectionDelegate(copy);
+        copy.doTypeProcessor_ = copy.createDoTypeProcessor();
+        return copy;
+    }
+
+    private DoTypeProcessor createDoTypeProcessor() {
+        return new DoTypeProcessor() {
+            private static final long serialVersionUID = 2906652041039202266L;
+            @Override
+            void typeDone(final String newValue, final int newCursorPosition) {
+                setTextInternal(newValue);
+                setSelectionStart(newCursorPosition);
+                setSelectionEnd(newCursorPosition);
+            }
+            @Override
+            protected boolean acceptChar(final char c) {
+                return super.acceptChar(c) || c == '\n' || c == '\r';
+            }
+        };
+    }
+
     /**
      * Initializes the default value if necessary. We cannot do it in the constructor
      * because the child node variable will not have been initialized yet. Must be called
@@ -184,6 +199,14 @@ public class HtmlTextArea extends ClickableElement implements DisabledElement, S
         return defaultValue_;
     }
 
+    /**
+     * Sets the default value, without modifying the current one.
+     * @param defaultValue the default value
+     */
+    void setDefaultValueInternal(final String defaultValue) {
+        defaultValue_ = defaultValue;
+    }
+
     /**
      * {@inheritDoc} This implementation is empty; only checkboxes and radio buttons
      * really care what the default checked value is.
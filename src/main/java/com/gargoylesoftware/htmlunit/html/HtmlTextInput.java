@@ -36,17 +36,9 @@ public class HtmlTextInput extends HtmlInput implements SelectableTextInput {
 
     private String valueAtFocus_;
 
-    private final SelectionDelegate selectionDelegate_ = new SelectionDelegate(this);
-
-    private final DoTypeProcessor doTypeProcessor_ = new DoTypeProcessor() {
-        private static final long serialVersionUID = 965791565688183397L;
-        @Override
-        void typeDone(final String newValue, final int newCursorPosition) {
-            setAttribute("value", newValue);
-            setSelectionStart(newCursorPosition);
-            setSelectionEnd(newCursorPosition);
-        }
-    };
+    private SelectionDelegate selectionDelegate_ = new SelectionDelegate(this);
+
+    private DoTypeProcessor doTypeProcessor_ = createDoTypeProcessor();
 
     /**
      * Creates an instance.
@@ -61,6 +53,29 @@ public class HtmlTextInput extends HtmlInput implements SelectableTextInput {
         super(namespaceURI, qualifiedName, page, attributes);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    DomNode copy(final SgmlPage page) {
+        final HtmlTextInput copy = (HtmlTextInput) super.copy(page);
+        copy.selectionDelegate_ = new SelectionDelegate(copy);
+        copy.doTypeProcessor_ = copy.createDoTypeProcessor();
+        return copy;
+    }
+
+    private DoTypeProcessor createDoTypeProcessor() {
+        return new DoTypeProcessor() {
+            private static final long serialVersionUID = 965791565688183397L;
+            @Override
+            void typeDone(final String newValue, final int newCursorPosition) {
+                setAttribute("value", newValue);
+                setSelectionStart(newCursorPosition);
+                setSelectionEnd(newCursorPosition);
+            }
+        };
+    }
+
     /**
      * {@inheritDoc}
      */
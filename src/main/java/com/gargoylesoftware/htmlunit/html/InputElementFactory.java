@@ -14,7 +14,6 @@
  */
 package com.gargoylesoftware.htmlunit.html;
 
-import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.commons.logging.Log;
@@ -69,7 +68,7 @@ public final class InputElementFactory implements IElementFactory {
 
         Map<String, DomAttr> attributeMap = DefaultElementFactory.setAttributes(page, attributes);
         if (attributeMap == null) {
-            attributeMap = new HashMap<String, DomAttr>();
+            attributeMap = HtmlElement.createAttributeMap(page, 1);
         }
 
         String type = null;
@@ -22,27 +22,25 @@ import org.w3c.dom.Node;
 
 /**
  * An implementation of DomNodeList that is much less expensive for iteration.
+ * The list is live: the length and the indexed accesses use the child array cached by the parent node,
+ * so that they don't have to walk the siblings as long as the children don't change.
  *
  * @version $Revision: 4546 $
  * @author <a href="mailto:tom.anderson@univ.oxon.org">Tom Anderson</a>
  */
 class SiblingDomNodeList extends AbstractSequentialList<DomNode> implements DomNodeList<DomNode> {
 
-    private DomNode root_;
+    private DomNode parent_;
 
-    public SiblingDomNodeList(final DomNode root) {
-        root_ = root;
+    public SiblingDomNodeList(final DomNode parent) {
+        parent_ = parent;
     }
 
     /**
      * {@inheritDoc}
      */
     public int getLength() {
-        int length = 0;
-        for (DomNode node = root_; node != null; node = node.getNextSibling()) {
-            length++;
-        }
-        return length;
+        return parent_.getChildArray().length;
     }
 
     /**
@@ -65,14 +63,11 @@ class SiblingDomNodeList extends AbstractSequentialList<DomNode> implements DomN
      */
     @Override
     public DomNode get(final int index) {
-        int i = 0;
-        for (DomNode node = root_; node != null; node = node.getNextSibling()) {
-            if (i == index) {
-                return node;
-            }
-            i++;
+        final DomNode[] children = parent_.getChildArray();
+        if (index < 0 || index >= children.length) {
+            return null;
         }
-        return null;
+        return children[index];
     }
 
     /**
@@ -88,7 +83,7 @@ class SiblingDomNodeList extends AbstractSequentialList<DomNode> implements DomN
      */
     @Override
     public String toString() {
-        return "SiblingDomNodeList[" + root_ + "]";
+        return "SiblingDomNodeList[" + parent_.getFirstChild() + "]";
     }
 
     private class SiblingListIterator implements ListIterator<DomNode> {
@@ -97,11 +92,20 @@ class SiblingDomNodeList extends AbstractSequentialList<DomNode> implements DomN
         private int nextIndex_;
 
         public SiblingListIterator(final int index) {
-            next_ = root_;
-            nextIndex_ = 0;
-            for (int i = 0; i < index; i++) {
-                next();
+            if (index == 0) {
+                // plain iteration, no need for the child array
+                next_ = parent_.getFirstChild();
+                return;
+            }
+            final DomNode[] children = parent_.getChildArray();
+            if (index < 0 || index > children.length) {
+                throw new NoSuchElementException();
+            }
+            if (index < children.length) {
+                next_ = children[index];
             }
+            prev_ = children[index - 1];
+            nextIndex_ = index;
         }
 
         /**
@@ -93,7 +93,8 @@ public class HtmlUnitContextFactory extends ContextFactory implements Serializab
     /**
      * Sets the JavaScript debugger to use to receive JavaScript execution debugging information.
      * The HtmlUnit default implementation ({@link DebuggerImpl}, {@link DebugFrameImpl}) may be
-     * used, or a custom debugger may be used instead. By default, no debugger is used.
+     * used, or a custom debugger may be used instead. A {@link JavaScriptProfiler} may also be used
+     * to profile the executed scripts. By default, no debugger is used.
      *
      * @param debugger the JavaScript debugger to use (may be <tt>null</tt>)
      */
@@ -239,7 +240,8 @@ public class HtmlUnitContextFactory extends ContextFactory implements Serializab
     /**
      * Run-time calls this when instruction counting is enabled and the counter
      * reaches limit set by setInstructionObserverThreshold(). A script can be
-     * terminated by throwing an Error instance here.
+     * terminated by throwing an Error instance here. This is also used to take the samples
+     * of a {@link JavaScriptProfiler} used as debugger.
      *
      * @param cx the context calling us
      * @param instructionCount amount of script instruction executed since last call to observeInstructionCount
@@ -247,6 +249,9 @@ public class HtmlUnitContextFactory extends ContextFactory implements Serializab
     @Override
     protected void observeInstructionCount(final Context cx, final int instructionCount) {
         final TimeoutContext tcx = (TimeoutContext) cx;
+        if (debugger_ instanceof JavaScriptProfiler) {
+            ((JavaScriptProfiler) debugger_).observeInstructionCount(cx);
+        }
         tcx.terminateScriptIfNecessary();
     }
 
@@ -15,6 +15,9 @@
 package com.gargoylesoftware.htmlunit.javascript;
 
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -44,6 +47,32 @@ import com.gargoylesoftware.htmlunit.html.HtmlPage;
 public class IEConditionalCompilationScriptPreProcessor implements ScriptPreProcessor {
 
     private static final String CC_VARIABLE_PREFIX = "htmlunit_cc_variable_";
+
+    private static final Pattern END_COMMENT_PATTERN = Pattern.compile("/\\*@end");
+    private static final Pattern IF_PATTERN = Pattern.compile("@if\\s*\\(([^\\)]+)\\)");
+    private static final Pattern ELIF_PATTERN = Pattern.compile("@elif\\s*\\(([^\\)]+)\\)");
+    private static final Pattern ELSE_PATTERN = Pattern.compile("@else");
+    private static final Pattern END_PATTERN = Pattern.compile("@end");
+    private static final Pattern SET_PATTERN = Pattern.compile("@set\\s+(@\\w+)(\\s*=\\s*[\\d\\.]+)");
+    private static final Pattern CUSTOM_VARIABLE_PATTERN = Pattern.compile("@\\w+|'[^']*'|\"[^\"]*\"");
+    private static final Pattern VARIABLE_PATTERN = Pattern.compile("(@_\\w+)|'[^']*'|\"[^\"]*\"");
+
+    /**
+     * The maximum number of characters kept in {@link #CACHE}, counting both the source and the result of
+     * each script. Larger scripts than a quarter of it are not cached.
+     */
+    private static final int CACHE_MAX_CHARS = 1024 * 1024;
+
+    /**
+     * The preprocessed scripts, per source code and JScript version, the least recently used first. As a
+     * new preprocessor is used for each script, the result only depends on them. Scripts without
+     * conditional compilation are not cached, as they are returned untouched.
+     */
+    private static final Map<CacheKey, String> CACHE = new LinkedHashMap<CacheKey, String>(16, 0.75f, true);
+
+    /** The number of characters kept in {@link #CACHE}, guarded by it. */
+    private static int CacheChars_;
+
     private final Set<String> setVariables_ = new HashSet<String>();
 
     /**
@@ -61,29 +90,53 @@ public class IEConditionalCompilationScriptPreProcessor implements ScriptPreProc
             return sourceCode;
         }
 
-        final StringBuilder sb = new StringBuilder();
+        final BrowserVersion browserVersion = htmlPage.getWebClient().getBrowserVersion();
+        final CacheKey key = new CacheKey(sourceCode, browserVersion.getBrowserVersionNumeric() <= 6);
+        synchronized (CACHE) {
+            final String cached = CACHE.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        final StringBuilder sb = new StringBuilder(sourceCode.length());
         if (startPos > 0) {
-            sb.append(sourceCode.substring(0, startPos));
+            sb.append(sourceCode, 0, startPos);
         }
-        final BrowserVersion browserVersion = htmlPage.getWebClient().getBrowserVersion();
         final String body = sourceCode.substring(startPos + 8, endPos);
         sb.append(processConditionalCompilation(body, browserVersion));
-        if (endPos < sourceCode.length() - 3) {
-            String remaining = sourceCode.substring(endPos + 3);
-            int nextStart = remaining.indexOf("/*@");
-            int nextEnd = remaining.indexOf("@*/", nextStart + 3);
-            // handle other /*@ @*/ blocks
-            while (nextStart >= 0 && nextEnd > 0) {
-                sb.append(remaining.substring(0, nextStart));
-                final String nextBody = remaining.substring(nextStart + 3, nextEnd);
-                sb.append(processConditionalCompilation(nextBody, browserVersion));
-                remaining = remaining.substring(nextEnd + 3);
-                nextStart = remaining.indexOf("/*@");
-                nextEnd = remaining.indexOf("@*/", nextStart + 3);
+        // handle other /*@ @*/ blocks
+        int pos = endPos + 3;
+        int nextStart = sourceCode.indexOf("/*@", pos);
+        int nextEnd = nextStart == -1 ? -1 : sourceCode.indexOf("@*/", nextStart + 3);
+        while (nextStart >= 0 && nextEnd > 0) {
+            sb.append(sourceCode, pos, nextStart);
+            final String nextBody = sourceCode.substring(nextStart + 3, nextEnd);
+            sb.append(processConditionalCompilation(nextBody, browserVersion));
+            pos = nextEnd + 3;
+            nextStart = sourceCode.indexOf("/*@", pos);
+            nextEnd = nextStart == -1 ? -1 : sourceCode.indexOf("@*/", nextStart + 3);
+        }
+        sb.append(sourceCode, pos, sourceCode.length());
+
+        final String result = sb.toString();
+        final int chars = sourceCode.length() + result.length();
+        if (chars <= CACHE_MAX_CHARS / 4) {
+            synchronized (CACHE) {
+                final String previous = CACHE.put(key, result);
+                if (previous != null) {
+                    CacheChars_ -= sourceCode.length() + previous.length();
+                }
+                CacheChars_ += chars;
+                for (final Iterator<Map.Entry<CacheKey, String>> it = CACHE.entrySet().iterator();
+                        CacheChars_ > CACHE_MAX_CHARS && it.hasNext();) {
+                    final Map.Entry<CacheKey, String> eldest = it.next();
+                    CacheChars_ -= eldest.getKey().sourceCode_.length() + eldest.getValue().length();
+                    it.remove();
+                }
             }
-            sb.append(remaining);
         }
-        return sb.toString();
+        return result;
     }
 
     private String processConditionalCompilation(final String precompilationBody,
@@ -92,7 +145,7 @@ public class IEConditionalCompilationScriptPreProcessor implements ScriptPreProc
         if (body.startsWith("cc_on")) {
             body = body.substring(5);
         }
-        body = body.replaceAll("/\\*@end", "");
+        body = END_COMMENT_PATTERN.matcher(body).replaceAll("");
         body = processIfs(body);
         body = replaceCompilationVariables(body, browserVersion);
         body = processSet(body);
@@ -101,8 +154,7 @@ public class IEConditionalCompilationScriptPreProcessor implements ScriptPreProc
     }
 
     private String replaceCustomCompilationVariables(final String body) {
-        final Pattern p = Pattern.compile("@\\w+|'[^']*'|\"[^\"]*\"");
-        final Matcher m = p.matcher(body);
+        final Matcher m = CUSTOM_VARIABLE_PATTERN.matcher(body);
         final StringBuffer sb = new StringBuffer();
         while (m.find()) {
             final String match = m.group();
@@ -125,8 +177,7 @@ public class IEConditionalCompilationScriptPreProcessor implements ScriptPreProc
     }
 
     private String processSet(final String body) {
-        final Pattern p = Pattern.compile("@set\\s+(@\\w+)(\\s*=\\s*[\\d\\.]+)");
-        final Matcher m = p.matcher(body);
+        final Matcher m = SET_PATTERN.matcher(body);
         final StringBuffer sb = new StringBuffer();
         while (m.find()) {
             setVariables_.add(m.group(1));
@@ -137,16 +188,15 @@ public class IEConditionalCompilationScriptPreProcessor implements ScriptPreProc
     }
 
     private static String processIfs(String code) {
-        code = code.replaceAll("@if\\s*\\(([^\\)]+)\\)", "if ($1) {");
-        code = code.replaceAll("@elif\\s*\\(([^\\)]+)\\)", "} else if ($1) {");
-        code = code.replaceAll("@else", "} else {");
-        code = code.replaceAll("@end", "}");
+        code = IF_PATTERN.matcher(code).replaceAll("if ($1) {");
+        code = ELIF_PATTERN.matcher(code).replaceAll("} else if ($1) {");
+        code = ELSE_PATTERN.matcher(code).replaceAll("} else {");
+        code = END_PATTERN.matcher(code).replaceAll("}");
         return code;
     }
 
     String replaceCompilationVariables(final String source, final BrowserVersion browserVersion) {
-        final Pattern p = Pattern.compile("(@_\\w+)|'[^']*'|\"[^\"]*\"");
-        final Matcher m = p.matcher(source);
+        final Matcher m = VARIABLE_PATTERN.matcher(source);
         final StringBuffer sb = new StringBuffer();
         while (m.find()) {
             final String match = m.group();
@@ -190,4 +240,31 @@ public class IEConditionalCompilationScriptPreProcessor implements ScriptPreProc
         }
         return variable;
     }
+
+    /**
+     * The key of the {@link #CACHE}.
+     */
+    private static final class CacheKey {
+        private final String sourceCode_;
+        private final boolean ie6_;
+
+        CacheKey(final String sourceCode, final boolean ie6) {
+            sourceCode_ = sourceCode;
+            ie6_ = ie6;
+        }
+
+        @Override
+        public int hashCode() {
+            return sourceCode_.hashCode() * 2 + (ie6_ ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            final CacheKey other = (CacheKey) o;
+            return ie6_ == other.ie6_ && sourceCode_.equals(other.sourceCode_);
+        }
+    }
 }
@@ -0,0 +1,578 @@
+/*
+ * Copyright (c) 2002-2009 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.javascript;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import net.sourceforge.htmlunit.corejs.javascript.Context;
+import net.sourceforge.htmlunit.corejs.javascript.Scriptable;
+import net.sourceforge.htmlunit.corejs.javascript.debug.DebugFrame;
+import net.sourceforge.htmlunit.corejs.javascript.debug.DebuggableScript;
+
+/**
+ * <p>
+ * A {@link net.sourceforge.htmlunit.corejs.javascript.debug.Debugger} which profiles the executed JavaScript
+ * code: for each function (identified by its name, source name and first line) it records the number of calls,
+ * the self time (spent in the function itself) and the total time (including the called functions).
+ * </p>
+ *
+ * <p>
+ * The profiler is installed through {@link HtmlUnitContextFactory#setDebugger(
+ * net.sourceforge.htmlunit.corejs.javascript.debug.Debugger)}; as the context factory is shared by all the windows
+ * of a {@link com.gargoylesoftware.htmlunit.WebClient}, the results are aggregated across all its pages:
+ * <pre>
+ *   final JavaScriptProfiler profiler = new JavaScriptProfiler(JavaScriptProfiler.Mode.SAMPLING);
+ *   webClient.getJavaScriptEngine().getContextFactory().setDebugger(profiler);
+ *   ...
+ *   profiler.printFlatReport(writer);
+ * </pre>
+ * </p>
+ *
+ * <p>
+ * In {@link Mode#TRACING} mode, the clock is read on each function entry and exit, which gives exact figures but
+ * slows down scripts with many small function calls. In {@link Mode#SAMPLING} mode, the clock is only read when
+ * Rhino notifies the instruction count (see {@link HtmlUnitContextFactory#observeInstructionCount(Context, int)}),
+ * and the elapsed time is attributed to the functions being executed at that moment.
+ * </p>
+ *
+ * <p>
+ * Each thread records its calls into its own counters and call tree, without any locking: the reports merge
+ * the data of all the threads when they are requested. The figures of a thread which is still executing
+ * scripts may therefore be slightly behind. When a new thread starts executing scripts, the data of the
+ * threads which have ended is merged into shared totals, so that the memory used by the profiler doesn't
+ * grow with the number of threads.
+ * </p>
+ *
+ * @version $Revision$
+ * @author Ahmed Ashour
+ */
+public class JavaScriptProfiler extends DebuggerAdapter {
+
+    /** The profiling modes. */
+    public enum Mode {
+        /** Measures each function call. */
+        TRACING,
+        /** Attributes the elapsed time to the executing functions on each instruction count notification. */
+        SAMPLING
+    }
+
+    private final Mode mode_;
+    private volatile Session session_ = new Session();
+
+    /**
+     * Creates a new profiler.
+     * @param mode the profiling mode
+     */
+    public JavaScriptProfiler(final Mode mode) {
+        mode_ = mode;
+    }
+
+    /**
+     * Returns the profiling mode.
+     * @return the profiling mode
+     */
+    public Mode getMode() {
+        return mode_;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DebugFrame getFrame(final Context cx, final DebuggableScript functionOrScript) {
+        return session_.getCallStack().getFrame(functionOrScript);
+    }
+
+    /**
+     * Notifies the profiler that the specified context has executed some instructions. This is called by
+     * {@link HtmlUnitContextFactory} and is used to take a sample in {@link Mode#SAMPLING} mode.
+     * @param cx the context
+     */
+    void observeInstructionCount(final Context cx) {
+        if (mode_ == Mode.SAMPLING) {
+            final CallStack stack = session_.getCallStack();
+            if (stack.size_ > 0) {
+                stack.sample(System.nanoTime());
+            }
+        }
+    }
+
+    /**
+     * Returns the profiles of all the functions executed so far, sorted by decreasing self time.
+     * @return the profiles of all the functions executed so far
+     */
+    public List<FunctionProfile> getFunctionProfiles() {
+        final List<FunctionProfile> profiles = new ArrayList<FunctionProfile>(session_.profiles_.values());
+        Collections.sort(profiles, new Comparator<FunctionProfile>() {
+            public int compare(final FunctionProfile p1, final FunctionProfile p2) {
+                final long diff = p2.getSelfTime() - p1.getSelfTime();
+                if (diff != 0) {
+                    return diff > 0 ? 1 : -1;
+                }
+                return p1.getKey().compareTo(p2.getKey());
+            }
+        });
+        return profiles;
+    }
+
+    /**
+     * Discards all the collected data.
+     */
+    public void reset() {
+        session_ = new Session();
+    }
+
+    /**
+     * Prints a flat report, one line per function sorted by decreasing self time, with the self time and
+     * total time in milliseconds, and the number of calls.
+     * @param writer the writer to print to
+     * @throws IOException if an error occurs
+     */
+    public void printFlatReport(final Writer writer) throws IOException {
+        final PrintWriter out = new PrintWriter(writer);
+        out.println("self (ms)\ttotal (ms)\tcalls\tfunction");
+        for (final FunctionProfile profile : getFunctionProfiles()) {
+            out.println(toMillis(profile.getSelfTime()) + "\t" + toMillis(profile.getTotalTime()) + "\t"
+                + profile.getCallCount() + "\t" + profile.getKey());
+        }
+        out.flush();
+        if (out.checkError()) {
+            throw new IOException("Error while writing the profiling report");
+        }
+    }
+
+    /**
+     * Prints the self time (in microseconds) of each distinct call stack, in the "collapsed stacks" format
+     * used by flame graph tools: <tt>caller;callee;... time</tt>.
+     * @param writer the writer to print to
+     * @throws IOException if an error occurs
+     */
+    public void printCollapsedStacks(final Writer writer) throws IOException {
+        final Session session = session_;
+        final List<CallTreeNode> roots = new ArrayList<CallTreeNode>();
+        roots.add(session.endedThreadsRoot_);
+        for (final CallStack stack : session.stacks_) {
+            roots.add(stack.root_);
+        }
+        final Map<String, long[]> times = new LinkedHashMap<String, long[]>();
+        for (final CallTreeNode root : roots) {
+            for (final CallTreeNode child : root.children_.values()) {
+                collectCollapsedStacks(times, child, "");
+            }
+        }
+        final PrintWriter out = new PrintWriter(writer);
+        for (final Map.Entry<String, long[]> entry : times.entrySet()) {
+            final long micros = entry.getValue()[0] / 1000;
+            if (micros > 0) {
+                out.println(entry.getKey() + ' ' + micros);
+            }
+        }
+        out.flush();
+        if (out.checkError()) {
+            throw new IOException("Error while writing the profiling report");
+        }
+    }
+
+    private void collectCollapsedStacks(final Map<String, long[]> times, final CallTreeNode node,
+            final String prefix) {
+        final String path = prefix + node.profile_.getKey().replace(';', ',');
+        long[] time = times.get(path);
+        if (time == null) {
+            time = new long[1];
+            times.put(path, time);
+        }
+        time[0] += node.selfTime_;
+        for (final CallTreeNode child : node.children_.values()) {
+            collectCollapsedStacks(times, child, path + ';');
+        }
+    }
+
+    private static String toMillis(final long nanos) {
+        return String.valueOf(nanos / 1000 / 1000.0);
+    }
+
+    /**
+     * The data collected since the creation of the profiler or since the last {@link #reset()}.
+     */
+    private final class Session {
+        private final ConcurrentMap<String, FunctionProfile> profiles_ =
+            new ConcurrentHashMap<String, FunctionProfile>();
+        private final List<CallStack> stacks_ = new CopyOnWriteArrayList<CallStack>();
+        /** The call tree of the threads which have ended. */
+        private final CallTreeNode endedThreadsRoot_ = new CallTreeNode(null);
+        private final ThreadLocal<CallStack> callStack_ = new ThreadLocal<CallStack>() {
+            @Override
+            protected CallStack initialValue() {
+                final CallStack stack = new CallStack(Session.this);
+                mergeEndedThreads();
+                stacks_.add(stack);
+                return stack;
+            }
+        };
+
+        /**
+         * Merges the data of the threads which have ended into the shared totals, and forgets their stacks.
+         */
+        private synchronized void mergeEndedThreads() {
+            for (final CallStack stack : stacks_) {
+                final Thread thread = stack.thread_.get();
+                if (thread == null || !thread.isAlive()) {
+                    for (final Counters counters : stack.allCounters_) {
+                        counters.profile_.endedThreads_.add(counters);
+                        counters.profile_.counters_.remove(counters);
+                    }
+                    merge(endedThreadsRoot_, stack.root_);
+                    stacks_.remove(stack);
+                }
+            }
+        }
+
+        private void merge(final CallTreeNode target, final CallTreeNode source) {
+            for (final CallTreeNode child : source.children_.values()) {
+                final CallTreeNode targetChild = target.getChild(child.profile_);
+                targetChild.selfTime_ += child.selfTime_;
+                merge(targetChild, child);
+            }
+        }
+
+        private CallStack getCallStack() {
+            return callStack_.get();
+        }
+
+        private FunctionProfile getProfile(final DebuggableScript functionOrScript) {
+            final FunctionProfile newProfile = new FunctionProfile(functionOrScript);
+            final FunctionProfile profile = profiles_.putIfAbsent(newProfile.getKey(), newProfile);
+            if (profile == null) {
+                return newProfile;
+            }
+            return profile;
+        }
+    }
+
+    /**
+     * The profiling information of a function.
+     */
+    public static final class FunctionProfile {
+        private final String functionName_;
+        private final String sourceName_;
+        private final int lineNumber_;
+        private final String key_;
+        /** The counters of each thread which has executed the function. */
+        private final List<Counters> counters_ = new CopyOnWriteArrayList<Counters>();
+        /** The figures of the threads which have ended, merged by {@link Session#mergeEndedThreads()}. */
+        private final Counters endedThreads_ = new Counters(this);
+
+        private FunctionProfile(final DebuggableScript functionOrScript) {
+            if (functionOrScript.isFunction()) {
+                final String name = functionOrScript.getFunctionName();
+                functionName_ = (name == null || name.length() == 0) ? "[anonymous]" : name;
+            }
+            else {
+                functionName_ = "[script]";
+            }
+            sourceName_ = functionOrScript.getSourceName();
+            int line = Integer.MAX_VALUE;
+            for (final int l : functionOrScript.getLineNumbers()) {
+                line = Math.min(line, l);
+            }
+            lineNumber_ = (line == Integer.MAX_VALUE) ? -1 : line;
+            key_ = functionName_ + " (" + sourceName_ + ":" + lineNumber_ + ")";
+        }
+
+        /**
+         * Returns the function name, <tt>[anonymous]</tt> for anonymous functions or <tt>[script]</tt>
+         * for top level scripts.
+         * @return the function name
+         */
+        public String getFunctionName() {
+            return functionName_;
+        }
+
+        /**
+         * Returns the name of the source in which the function is defined.
+         * @return the source name
+         */
+        public String getSourceName() {
+            return sourceName_;
+        }
+
+        /**
+         * Returns the first line of the function in its source.
+         * @return the first line of the function, or <tt>-1</tt> if unknown
+         */
+        public int getLineNumber() {
+            return lineNumber_;
+        }
+
+        /**
+         * Returns the key identifying the function: its name, source name and line.
+         * @return the key identifying the function
+         */
+        public String getKey() {
+            return key_;
+        }
+
+        /**
+         * Returns the number of calls.
+         * @return the number of calls
+         */
+        public long getCallCount() {
+            long count = 0;
+            for (final Counters counters : counters_) {
+                count += counters.callCount_;
+            }
+            return count;
+        }
+
+        /**
+         * Returns the time spent in the function itself, excluding the called functions, in nanoseconds.
+         * @return the self time
+         */
+        public long getSelfTime() {
+            long time = 0;
+            for (final Counters counters : counters_) {
+                time += counters.selfTime_;
+            }
+            return time;
+        }
+
+        /**
+         * Returns the time spent in the function, including the called functions, in nanoseconds.
+         * @return the total time
+         */
+        public long getTotalTime() {
+            long time = 0;
+            for (final Counters counters : counters_) {
+                time += counters.totalTime_;
+            }
+            return time;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return key_;
+        }
+    }
+
+    /**
+     * The figures of a function for one thread; they are only written by this thread, or by
+     * {@link Session#mergeEndedThreads()} for the figures of the threads which have ended.
+     */
+    private static final class Counters {
+        private final FunctionProfile profile_;
+        private long callCount_;
+        private long selfTime_;
+        private long totalTime_;
+        /** How many times the function is on the stack, to count the total time of recursive functions once. */
+        private int depth_;
+        /** The last sample which has counted the total time of the function. */
+        private long sample_;
+
+        private Counters(final FunctionProfile profile) {
+            profile_ = profile;
+            profile.counters_.add(this);
+        }
+
+        private void add(final Counters counters) {
+            callCount_ += counters.callCount_;
+            selfTime_ += counters.selfTime_;
+            totalTime_ += counters.totalTime_;
+        }
+    }
+
+    /**
+     * A node of the call tree of a thread, used for the collapsed stacks report.
+     */
+    private static final class CallTreeNode {
+        private final FunctionProfile profile_;
+        private final ConcurrentMap<FunctionProfile, CallTreeNode> children_ =
+            new ConcurrentHashMap<FunctionProfile, CallTreeNode>();
+        private long selfTime_;
+
+        private CallTreeNode(final FunctionProfile profile) {
+            profile_ = profile;
+        }
+
+        private CallTreeNode getChild(final FunctionProfile profile) {
+            CallTreeNode child = children_.get(profile);
+            if (child == null) {
+                child = new CallTreeNode(profile);
+                children_.put(profile, child);
+            }
+            return child;
+        }
+    }
+
+    /**
+     * The stack of the functions being executed by a thread, with the data collected for this thread.
+     */
+    private final class CallStack {
+        private final Session owner_;
+        private final WeakReference<Thread> thread_ = new WeakReference<Thread>(Thread.currentThread());
+        /** The counters of all the functions executed by the thread. */
+        private final List<Counters> allCounters_ = new ArrayList<Counters>();
+        private final Map<DebuggableScript, ProfilerFrame> frames_ = new WeakHashMap<DebuggableScript, ProfilerFrame>();
+        private final CallTreeNode root_ = new CallTreeNode(null);
+        private Counters[] counters_ = new Counters[32];
+        private CallTreeNode[] nodes_ = new CallTreeNode[32];
+        private long[] startTimes_ = new long[32];
+        private long[] childrenTimes_ = new long[32];
+        private int size_;
+        private long lastSample_;
+        private long sampleCount_;
+
+        private CallStack(final Session session) {
+            owner_ = session;
+        }
+
+        private ProfilerFrame getFrame(final DebuggableScript functionOrScript) {
+            ProfilerFrame frame = frames_.get(functionOrScript);
+            if (frame == null) {
+                final Counters counters = new Counters(owner_.getProfile(functionOrScript));
+                allCounters_.add(counters);
+                frame = new ProfilerFrame(this, counters);
+                frames_.put(functionOrScript, frame);
+            }
+            return frame;
+        }
+
+        private void push(final Counters counters) {
+            if (size_ == counters_.length) {
+                final int length = size_ * 2;
+                counters_ = copyOf(counters_, new Counters[length]);
+                nodes_ = copyOf(nodes_, new CallTreeNode[length]);
+                final long[] startTimes = new long[length];
+                System.arraycopy(startTimes_, 0, startTimes, 0, size_);
+                startTimes_ = startTimes;
+                final long[] childrenTimes = new long[length];
+                System.arraycopy(childrenTimes_, 0, childrenTimes, 0, size_);
+                childrenTimes_ = childrenTimes;
+            }
+            counters_[size_] = counters;
+            counters.callCount_++;
+            counters.depth_++;
+            if (mode_ == Mode.TRACING) {
+                final CallTreeNode parent = (size_ == 0) ? root_ : nodes_[size_ - 1];
+                nodes_[size_] = parent.getChild(counters.profile_);
+                childrenTimes_[size_] = 0;
+                startTimes_[size_] = System.nanoTime();
+            }
+            else if (size_ == 0) {
+                lastSample_ = System.nanoTime();
+            }
+            size_++;
+        }
+
+        private void pop() {
+            if (size_ == 0) {
+                return;
+            }
+            final int index = size_ - 1;
+            final Counters counters = counters_[index];
+            if (mode_ == Mode.TRACING) {
+                final long total = System.nanoTime() - startTimes_[index];
+                final long self = total - childrenTimes_[index];
+                counters.selfTime_ += self;
+                if (counters.depth_ == 1) {
+                    counters.totalTime_ += total;
+                }
+                nodes_[index].selfTime_ += self;
+                nodes_[index] = null;
+                if (index > 0) {
+                    childrenTimes_[index - 1] += total;
+                }
+            }
+            else if (index == 0) {
+                sample(System.nanoTime());
+            }
+            counters.depth_--;
+            counters_[index] = null;
+            size_ = index;
+        }
+
+        /**
+         * Attributes the time elapsed since the last sample to the functions currently on the stack. The call
+         * tree is only walked here, so that the calls themselves stay cheap in {@link Mode#SAMPLING} mode.
+         */
+        private void sample(final long now) {
+            final long elapsed = now - lastSample_;
+            lastSample_ = now;
+            sampleCount_++;
+            CallTreeNode node = root_;
+            for (int i = 0; i < size_; i++) {
+                final Counters counters = counters_[i];
+                node = node.getChild(counters.profile_);
+                if (counters.sample_ != sampleCount_) {
+                    counters.sample_ = sampleCount_;
+                    counters.totalTime_ += elapsed;
+                }
+            }
+            counters_[size_ - 1].selfTime_ += elapsed;
+            node.selfTime_ += elapsed;
+        }
+
+        private <T> T[] copyOf(final T[] original, final T[] copy) {
+            System.arraycopy(original, 0, copy, 0, size_);
+            return copy;
+        }
+    }
+
+    /**
+     * The frame which records the entry and exit of a function or script. A frame is created once per function
+     * and thread, and shared by all the calls of the function in this thread.
+     */
+    private static final class ProfilerFrame extends DebugFrameAdapter {
+        private final CallStack stack_;
+        private final Counters counters_;
+
+        private ProfilerFrame(final CallStack stack, final Counters counters) {
+            stack_ = stack;
+            counters_ = counters;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onEnter(final Context cx, final Scriptable activation, final Scriptable thisObj,
+                final Object[] args) {
+            stack_.push(counters_);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onExit(final Context cx, final boolean byThrow, final Object resultOrException) {
+            stack_.pop();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2002-2009 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.javascript.background;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * <p>A bounded thread pool executing the network I/O of background tasks (for instance asynchronous
+ * <tt>XMLHttpRequest</tt>s), so that waiting for the network doesn't block the window's
+ * {@link JavaScriptJobManager}. The pool is shared by all the windows of a web client.</p>
+ *
+ * <p>Like real browsers, the pool limits the number of tasks running in parallel for the same host;
+ * the other tasks for this host wait in a FIFO queue until a slot is released.</p>
+ *
+ * @version $Revision$
+ * @author Ahmed Ashour
+ */
+public class BackgroundIoPool {
+
+    /** A counter used to generate the IDs assigned to threads. */
+    private static final AtomicInteger NEXT_THREAD_ID = new AtomicInteger(1);
+
+    /** Logging support. */
+    private static final Log LOG = LogFactory.getLog(BackgroundIoPool.class);
+
+    private final ThreadPoolExecutor executor_;
+    private final int maxTasksPerHost_;
+
+    /** The number of tasks running per host, and the tasks waiting for a slot; guarded by <tt>this</tt>. */
+    private final Map<String, Integer> runningPerHost_ = new HashMap<String, Integer>();
+    private final Map<String, LinkedList<Runnable>> waitingPerHost_ = new HashMap<String, LinkedList<Runnable>>();
+
+    /** The number of tasks submitted and not yet finished; guarded by <tt>this</tt>. */
+    private int pendingTasks_;
+
+    /**
+     * Creates a new pool.
+     * @param maxThreads the maximum number of tasks running in parallel
+     * @param maxTasksPerHost the maximum number of tasks running in parallel for the same host
+     */
+    public BackgroundIoPool(final int maxThreads, final int maxTasksPerHost) {
+        if (maxThreads < 1 || maxTasksPerHost < 1) {
+            throw new IllegalArgumentException("The pool needs at least one thread and one task per host");
+        }
+        maxTasksPerHost_ = maxTasksPerHost;
+        executor_ = new ThreadPoolExecutor(maxThreads, maxThreads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        executor_.setThreadFactory(new ThreadFactory() {
+            public Thread newThread(final Runnable r) {
+                // Daemon threads, so that they don't keep the JVM running unnecessarily.
+                final Thread t = new Thread(r, "Background I/O Thread " + NEXT_THREAD_ID.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Submits a task for execution as soon as a slot is available for the specified host.
+     * @param host the host the task connects to
+     * @param task the task
+     * @return a future which can be used to cancel the task
+     */
+    public Future< ? > submit(final String host, final Runnable task) {
+        final FutureTask<Object> future = new FutureTask<Object>(task, null);
+        final Runnable wrapper = new Runnable() {
+            public void run() {
+                try {
+                    future.run();
+                }
+                finally {
+                    taskFinished(host);
+                }
+            }
+        };
+        synchronized (this) {
+            pendingTasks_++;
+            final Integer running = runningPerHost_.get(host);
+            if (running == null || running < maxTasksPerHost_) {
+                runningPerHost_.put(host, running == null ? 1 : running + 1);
+                executor_.execute(wrapper);
+            }
+            else {
+                LinkedList<Runnable> waiting = waitingPerHost_.get(host);
+                if (waiting == null) {
+                    waiting = new LinkedList<Runnable>();
+                    waitingPerHost_.put(host, waiting);
+                }
+                waiting.add(wrapper);
+                LOG.debug("Maximum connections reached for " + host + ", " + waiting.size() + " task(s) waiting");
+            }
+        }
+        return future;
+    }
+
+    private synchronized void taskFinished(final String host) {
+        final LinkedList<Runnable> waiting = waitingPerHost_.get(host);
+        if (waiting != null && !waiting.isEmpty()) {
+            // the slot goes directly to the next task for the same host
+            executor_.execute(waiting.removeFirst());
+            if (waiting.isEmpty()) {
+                waitingPerHost_.remove(host);
+            }
+        }
+        else {
+            final int running = runningPerHost_.get(host) - 1;
+            if (running == 0) {
+                runningPerHost_.remove(host);
+            }
+            else {
+                runningPerHost_.put(host, running);
+            }
+        }
+        pendingTasks_--;
+        notifyAll();
+    }
+
+    /**
+     * Returns the number of tasks running or waiting to be run.
+     * @return the number of tasks running or waiting to be run
+     */
+    public synchronized int getTaskCount() {
+        return pendingTasks_;
+    }
+
+    /**
+     * Blocks until all the tasks have finished, or until the specified timeout elapses.
+     * @param timeoutMillis the maximum amount of time to wait (in milliseconds)
+     * @return the number of tasks still running or waiting to be run when this method returns
+     */
+    public synchronized int waitForTasks(final long timeoutMillis) {
+        final long endTime = System.currentTimeMillis() + timeoutMillis;
+        long remaining = timeoutMillis;
+        while (pendingTasks_ > 0 && remaining > 0) {
+            try {
+                wait(remaining);
+            }
+            catch (final InterruptedException e) {
+                break;
+            }
+            remaining = endTime - System.currentTimeMillis();
+        }
+        return pendingTasks_;
+    }
+
+    /**
+     * Shuts this pool down, interrupting the running tasks; waiting tasks are discarded.
+     */
+    public synchronized void shutdown() {
+        for (final LinkedList<Runnable> waiting : waitingPerHost_.values()) {
+            pendingTasks_ -= waiting.size();
+        }
+        waitingPerHost_.clear();
+        pendingTasks_ -= executor_.shutdownNow().size();
+        notifyAll();
+    }
+}
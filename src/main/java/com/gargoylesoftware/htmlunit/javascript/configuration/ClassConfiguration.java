@@ -51,6 +51,11 @@ public final class ClassConfiguration {
     private final Method jsConstructor_;
     private final String htmlClassname_;
     private final boolean jsObject_;
+    /**
+     * The public methods of {@link #linkedClass_} indexed by name (first one wins), built on first use
+     * to avoid scanning all the methods for every property and function.
+     */
+    private Map<String, Method> methodsByName_;
 
     /**
      * Constructor.
@@ -71,13 +76,7 @@ public final class ClassConfiguration {
         extendedClass_ = extendedClass;
         linkedClass_ = (Class< ? extends SimpleScriptable>) Class.forName(implementingClass);
         if (jsConstructor != null && jsConstructor.length() != 0) {
-            Method foundCtor = null;
-            for (final Method method : linkedClass_.getMethods()) {
-                if (method.getName().equals(jsConstructor)) {
-                    foundCtor = method;
-                    break;
-                }
-            }
+            final Method foundCtor = getMethodByName(jsConstructor);
             if (foundCtor == null) {
                 throw new IllegalStateException("Constructor method \"" + jsConstructor
                         + "\" in class \"" + implementingClass + " is not found.");
@@ -126,10 +125,16 @@ public final class ClassConfiguration {
         // the method takes.
         if (writeable) {
             final String setMethodName = SETTER_PREFIX + name;
-            for (final Method method : linkedClass_.getMethods()) {
-                if (method.getName().equals(setMethodName) && method.getParameterTypes().length == 1) {
-                    info.setWriteMethod(method);
-                    break;
+            final Method indexed = getMethodByName(setMethodName);
+            if (indexed != null && indexed.getParameterTypes().length == 1) {
+                info.setWriteMethod(indexed);
+            }
+            else if (indexed != null) {
+                for (final Method method : linkedClass_.getMethods()) {
+                    if (method.getName().equals(setMethodName) && method.getParameterTypes().length == 1) {
+                        info.setWriteMethod(method);
+                        break;
+                    }
                 }
             }
             if (info.getWriteMethod() == null) {
@@ -178,13 +183,7 @@ public final class ClassConfiguration {
      */
     public void addFunction(final String name) {
         final FunctionInfo info = new FunctionInfo();
-        final String setMethodName = FUNCTION_PREFIX + name;
-        for (final Method method : linkedClass_.getMethods()) {
-            if (method.getName().equals(setMethodName)) {
-                info.setFunctionMethod(method);
-                break;
-            }
-        }
+        info.setFunctionMethod(getMethodByName(FUNCTION_PREFIX + name));
         if (info.getFunctionMethod() == null) {
             throw new IllegalStateException("Method '" + FUNCTION_PREFIX + name + "' was not found for " + name
                 + " function in " + linkedClass_.getName());
@@ -192,6 +191,19 @@ public final class ClassConfiguration {
         functionMap_.put(name, info);
     }
 
+    private Method getMethodByName(final String name) {
+        if (methodsByName_ == null) {
+            final Method[] methods = linkedClass_.getMethods();
+            methodsByName_ = new HashMap<String, Method>(methods.length);
+            for (final Method method : methods) {
+                if (!methodsByName_.containsKey(method.getName())) {
+                    methodsByName_.put(method.getName(), method);
+                }
+            }
+        }
+        return methodsByName_.get(name);
+    }
+
     /**
      * Sets the browser information for this named property.
      * @param propertyName - Name of the property to set
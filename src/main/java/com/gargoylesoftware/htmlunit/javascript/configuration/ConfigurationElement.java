@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2002-2009 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.javascript.configuration;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * A lightweight, immutable element of the JavaScript configuration. The configuration is either built
+ * from the XML file or read from its precompiled binary form (see {@link JavaScriptConfigurationCompiler}),
+ * so that no W3C DOM needs to be kept in memory.
+ *
+ * @version $Revision$
+ * @author agent (agent@local)
+ */
+final class ConfigurationElement {
+
+    private final String tagName_;
+    private final String[] attributeNames_;
+    private final String[] attributeValues_;
+    private final List<ConfigurationElement> children_;
+
+    private ConfigurationElement(final String tagName, final String[] attributeNames,
+            final String[] attributeValues, final List<ConfigurationElement> children) {
+        tagName_ = tagName;
+        attributeNames_ = attributeNames;
+        attributeValues_ = attributeValues;
+        children_ = children;
+    }
+
+    /**
+     * Returns the tag name.
+     * @return the tag name
+     */
+    String getTagName() {
+        return tagName_;
+    }
+
+    /**
+     * Returns the value of the specified attribute, or an empty string if it is not defined
+     * (same as {@link Element#getAttribute(String)}).
+     * @param name the attribute name
+     * @return the attribute value, or an empty string
+     */
+    String getAttribute(final String name) {
+        for (int i = 0; i < attributeNames_.length; i++) {
+            if (attributeNames_[i].equals(name)) {
+                return attributeValues_[i];
+            }
+        }
+        return "";
+    }
+
+    /**
+     * Returns the child elements.
+     * @return the child elements
+     */
+    List<ConfigurationElement> getChildren() {
+        return children_;
+    }
+
+    /**
+     * Builds the element tree corresponding to the specified W3C element, ignoring everything but elements.
+     * @param element the W3C element
+     * @return the corresponding configuration element
+     */
+    static ConfigurationElement fromElement(final Element element) {
+        final NamedNodeMap attributes = element.getAttributes();
+        final List<String> names = new ArrayList<String>();
+        final List<String> values = new ArrayList<String>();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            final Attr attribute = (Attr) attributes.item(i);
+            if (attribute.getName().startsWith("xmlns")) {
+                continue;
+            }
+            names.add(attribute.getName());
+            values.add(attribute.getValue());
+        }
+
+        final List<ConfigurationElement> children = new ArrayList<ConfigurationElement>();
+        for (Node node = element.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element) {
+                children.add(fromElement((Element) node));
+            }
+        }
+        return new ConfigurationElement(element.getTagName(), names.toArray(new String[names.size()]),
+                values.toArray(new String[values.size()]), toList(children));
+    }
+
+    /**
+     * Writes this element tree in the compact binary form: a table of all distinct strings, followed
+     * by the elements, which only reference the strings by their index.
+     * @param out the output stream
+     * @throws IOException if an error occurs
+     */
+    void write(final DataOutputStream out) throws IOException {
+        final Map<String, Integer> indexes = new HashMap<String, Integer>();
+        final List<String> strings = new ArrayList<String>();
+        collectStrings(indexes, strings);
+        out.writeInt(strings.size());
+        for (final String string : strings) {
+            out.writeUTF(string);
+        }
+        write(out, indexes);
+    }
+
+    private void collectStrings(final Map<String, Integer> indexes, final List<String> strings) {
+        addString(tagName_, indexes, strings);
+        for (int i = 0; i < attributeNames_.length; i++) {
+            addString(attributeNames_[i], indexes, strings);
+            addString(attributeValues_[i], indexes, strings);
+        }
+        for (final ConfigurationElement child : children_) {
+            child.collectStrings(indexes, strings);
+        }
+    }
+
+    private static void addString(final String string, final Map<String, Integer> indexes,
+            final List<String> strings) {
+        if (!indexes.containsKey(string)) {
+            indexes.put(string, strings.size());
+            strings.add(string);
+        }
+    }
+
+    private void write(final DataOutputStream out, final Map<String, Integer> indexes) throws IOException {
+        out.writeShort(indexes.get(tagName_));
+        out.writeByte(attributeNames_.length);
+        for (int i = 0; i < attributeNames_.length; i++) {
+            out.writeShort(indexes.get(attributeNames_[i]));
+            out.writeShort(indexes.get(attributeValues_[i]));
+        }
+        out.writeShort(children_.size());
+        for (final ConfigurationElement child : children_) {
+            child.write(out, indexes);
+        }
+    }
+
+    /**
+     * Reads an element tree previously written by {@link #write(DataOutputStream)}.
+     * @param in the input stream
+     * @return the root element
+     * @throws IOException if an error occurs
+     */
+    static ConfigurationElement read(final DataInputStream in) throws IOException {
+        final String[] strings = new String[in.readInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = in.readUTF();
+        }
+        return read(in, strings);
+    }
+
+    private static ConfigurationElement read(final DataInputStream in, final String[] strings)
+        throws IOException {
+        final String tagName = strings[in.readUnsignedShort()];
+        final int attributesCount = in.readUnsignedByte();
+        final String[] names = new String[attributesCount];
+        final String[] values = new String[attributesCount];
+        for (int i = 0; i < attributesCount; i++) {
+            names[i] = strings[in.readUnsignedShort()];
+            values[i] = strings[in.readUnsignedShort()];
+        }
+        final int childrenCount = in.readUnsignedShort();
+        final List<ConfigurationElement> children = new ArrayList<ConfigurationElement>(childrenCount);
+        for (int i = 0; i < childrenCount; i++) {
+            children.add(read(in, strings));
+        }
+        return new ConfigurationElement(tagName, names, values, toList(children));
+    }
+
+    private static List<ConfigurationElement> toList(final List<ConfigurationElement> children) {
+        if (children.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(children);
+    }
+}
@@ -21,10 +21,13 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.lang.reflect.Method;
+import java.net.URL;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -32,8 +35,6 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXParseException;
 
@@ -112,7 +113,7 @@ public final class JavaScriptConfiguration {
 
     private static final Log LOG = LogFactory.getLog(JavaScriptConfiguration.class);
 
-    private static Document XmlDocument_;
+    private static ConfigurationElement Root_;
 
     /** Constant indicating that this function/property is used by the specified browser version. */
     public static final int ENABLED   = 1;
@@ -128,7 +129,10 @@ public final class JavaScriptConfiguration {
     private static Map<String, String> ClassnameMap_ = new HashMap<String, String>();
     private static Map<Class < ? extends HtmlElement>, Class < ? extends SimpleScriptable>> HtmlJavaScriptMap_;
 
-    private final Map<String, ClassConfiguration> configuration_;
+    /** The class elements applicable to {@link #browser_}. */
+    private final Map<String, ConfigurationElement> classElements_;
+    /** The class configurations, lazily built from {@link #classElements_}. */
+    private final ConcurrentMap<String, ClassConfiguration> configuration_;
     private final BrowserVersion browser_;
 
     /**
@@ -137,14 +141,15 @@ public final class JavaScriptConfiguration {
      */
     private JavaScriptConfiguration(final BrowserVersion browser) {
         browser_ = browser;
-        if (XmlDocument_ == null) {
+        if (Root_ == null) {
             loadConfiguration();
         }
 
-        if (XmlDocument_ == null) {
+        if (Root_ == null) {
             throw new IllegalStateException("Configuration was not initialized - see log for details");
         }
-        configuration_ = buildUsageMap();
+        classElements_ = buildUsageMap();
+        configuration_ = new ConcurrentHashMap<String, ClassConfiguration>(classElements_.size());
     }
 
     /**
@@ -153,7 +158,7 @@ public final class JavaScriptConfiguration {
      * @return boolean - true if the XmlDocument has been loaded;
      */
     protected static boolean isDocumentLoaded() {
-        return XmlDocument_ != null;
+        return Root_ != null;
     }
 
     /**
@@ -162,7 +167,7 @@ public final class JavaScriptConfiguration {
      *
      */
     protected static void resetClassForTesting() {
-        XmlDocument_ = null;
+        Root_ = null;
         ConfigurationMap_ = new HashMap<BrowserVersion, JavaScriptConfiguration>(11);
     }
 
@@ -171,14 +176,19 @@ public final class JavaScriptConfiguration {
      * @param document - The configuration document
      */
     protected static void setXmlDocument(final Document document) {
-        XmlDocument_ = document;
+        Root_ = ConfigurationElement.fromElement(document.getDocumentElement());
     }
 
     /**
      * Gets the configuration file and make it an input reader and then pass to the method to read the file.
+     * The precompiled form of the configuration is used if it is available and up to date.
      */
     protected static void loadConfiguration() {
         try {
+            Root_ = loadCompiledConfiguration();
+            if (Root_ != null) {
+                return;
+            }
             final Reader reader = getConfigurationFileAsReader();
             if (reader == null) {
                 LOG.error("Unable to load JavaScriptConfiguration.xml");
@@ -210,7 +220,8 @@ public final class JavaScriptConfiguration {
             final DocumentBuilder documentBuilder = factory.newDocumentBuilder();
             documentBuilder.setErrorHandler(new StrictErrorHandler());
 
-            XmlDocument_ = documentBuilder.parse(inputSource);
+            final Document document = documentBuilder.parse(inputSource);
+            Root_ = ConfigurationElement.fromElement(document.getDocumentElement());
         }
         catch (final SAXParseException parseException) {
             LOG.error("line=[" + parseException.getLineNumber()
@@ -252,9 +263,38 @@ public final class JavaScriptConfiguration {
         return configuration;
     }
 
+    /**
+     * Loads the configuration precompiled at build time by {@link JavaScriptConfigurationCompiler}.
+     * @return the root element, or <tt>null</tt> if the compiled configuration is not available or is outdated
+     * @throws IOException if an error occurs
+     */
+    private static ConfigurationElement loadCompiledConfiguration() throws IOException {
+        final InputStream compiled = getConfigurationFile(JavaScriptConfigurationCompiler.COMPILED_FILE_NAME);
+        if (compiled == null) {
+            return null;
+        }
+        final Class< ? > clazz = JavaScriptConfiguration.class;
+        final URL xml = clazz.getClassLoader().getResource(
+            clazz.getPackage().getName().replace('.', '/') + "/JavaScriptConfiguration.xml");
+        try {
+            final ConfigurationElement root = JavaScriptConfigurationCompiler.read(compiled, xml);
+            if (root == null) {
+                LOG.info("Compiled JavaScript configuration is outdated, using JavaScriptConfiguration.xml");
+            }
+            return root;
+        }
+        finally {
+            compiled.close();
+        }
+    }
+
     private static Reader getConfigurationFileAsReader() {
+        return new InputStreamReader(getConfigurationFile("JavaScriptConfiguration.xml"));
+    }
+
+    private static InputStream getConfigurationFile(final String fileName) {
         final Class< ? > clazz = JavaScriptConfiguration.class;
-        final String name = clazz.getPackage().getName().replace('.', '/') + '/' + "JavaScriptConfiguration.xml";
+        final String name = clazz.getPackage().getName().replace('.', '/') + '/' + fileName;
         InputStream inputStream = clazz.getClassLoader().getResourceAsStream(name);
         if (inputStream == null) {
             try {
@@ -276,7 +316,7 @@ public final class JavaScriptConfiguration {
                 // Fall through
             }
         }
-        return new InputStreamReader(inputStream);
+        return inputStream;
     }
 
     /**
@@ -284,31 +324,23 @@ public final class JavaScriptConfiguration {
      * @return the set of keys for the class configurations
      */
     public Set<String> keySet() {
-        return configuration_.keySet();
-    }
-
-    private Map<String, ClassConfiguration> buildUsageMap() {
-        final Map<String, ClassConfiguration> classMap = new HashMap<String, ClassConfiguration>(30);
-        Node node = XmlDocument_.getDocumentElement().getFirstChild();
-        while (node != null) {
-            if (node instanceof Element) {
-                final Element element = (Element) node;
-                if (element.getTagName().equals("class")) {
-                    final String className = element.getAttribute("name");
-                    if (!testToExcludeElement(element)) {
-                        try {
-                            final ClassConfiguration classConfiguration = parseClassElement(className, element);
-                            if (classConfiguration != null) {
-                                classMap.put(className, classConfiguration);
-                            }
-                        }
-                        catch (final ClassNotFoundException e) {
-                            throw new IllegalStateException("The class was not found for '" + className + "'");
-                        }
-                    }
-                }
+        return classElements_.keySet();
+    }
+
+    /**
+     * Selects the class elements applicable to the browser. The class configurations themselves are only built
+     * (which involves loading the host classes and looking up their methods) when first requested.
+     * @return the class elements, keyed by JavaScript class name
+     */
+    private Map<String, ConfigurationElement> buildUsageMap() {
+        final Map<String, ConfigurationElement> classMap = new HashMap<String, ConfigurationElement>(30);
+        for (final ConfigurationElement element : Root_.getChildren()) {
+            if (element.getTagName().equals("class") && !testToExcludeElement(element)
+                    && !"true".equalsIgnoreCase(element.getAttribute("notImplemented"))) {
+                final String className = element.getAttribute("name");
+                classMap.put(className, element);
+                ClassnameMap_.put(element.getAttribute("classname"), className);
             }
-            node = node.getNextSibling();
         }
         return Collections.unmodifiableMap(classMap);
     }
@@ -320,12 +352,8 @@ public final class JavaScriptConfiguration {
      * @return the class element to build the class configuration
      * @throws ClassNotFoundException if the specified class could not be found
      */
-    private ClassConfiguration parseClassElement(final String className, final Element element)
+    private ClassConfiguration parseClassElement(final String className, final ConfigurationElement element)
         throws ClassNotFoundException {
-        final String notImplemented = element.getAttribute("notImplemented");
-        if ("true".equalsIgnoreCase(notImplemented)) {
-            return null;
-        }
         final String linkedClassname = element.getAttribute("classname");
         final String jsConstructor = element.getAttribute("jsConstructor");
         final String superclassName = element.getAttribute("extends");
@@ -338,33 +366,27 @@ public final class JavaScriptConfiguration {
         final ClassConfiguration classConfiguration =
             new ClassConfiguration(className, linkedClassname, jsConstructor,
                     superclassName, htmlClassname, jsObjectFlag);
-        ClassnameMap_.put(linkedClassname, className);
-        Node node = element.getFirstChild();
-        while (node != null) {
-            if (node instanceof Element) {
-                final Element childElement = (Element) node;
-                final String tagName = childElement.getTagName();
-                if (tagName.equals("property")) {
-                    parsePropertyElement(classConfiguration, childElement);
-                }
-                else if (tagName.equals("function")) {
-                    parseFunctionElement(classConfiguration, childElement);
-                }
-                else if (tagName.equals("constant")) {
-                    parseConstantElement(classConfiguration, childElement);
-                }
-                else if (tagName.equals("browser")) {
-                    LOG.debug("browser tag not yet handled for class " + linkedClassname);
-                }
-                else if (tagName.equals("doclink")) {
-                    // ignore this link
-                }
-                else {
-                    throw new IllegalStateException("Do not understand element type '"
-                        + tagName + "' in '" + linkedClassname + "'");
-                }
+        for (final ConfigurationElement childElement : element.getChildren()) {
+            final String tagName = childElement.getTagName();
+            if (tagName.equals("property")) {
+                parsePropertyElement(classConfiguration, childElement);
+            }
+            else if (tagName.equals("function")) {
+                parseFunctionElement(classConfiguration, childElement);
+            }
+            else if (tagName.equals("constant")) {
+                parseConstantElement(classConfiguration, childElement);
+            }
+            else if (tagName.equals("browser")) {
+                LOG.debug("browser tag not yet handled for class " + linkedClassname);
+            }
+            else if (tagName.equals("doclink")) {
+                // ignore this link
+            }
+            else {
+                throw new IllegalStateException("Do not understand element type '"
+                    + tagName + "' in '" + linkedClassname + "'");
             }
-            node = node.getNextSibling();
         }
         return classConfiguration;
     }
@@ -375,7 +397,8 @@ public final class JavaScriptConfiguration {
      * @param classConfiguration the configuration that is being built
      * @param element the property element
      */
-    private void parsePropertyElement(final ClassConfiguration classConfiguration, final Element element) {
+    private void parsePropertyElement(final ClassConfiguration classConfiguration,
+            final ConfigurationElement element) {
         final String notImplemented = element.getAttribute("notImplemented");
         if ("true".equalsIgnoreCase(notImplemented)) {
             return;
@@ -403,7 +426,8 @@ public final class JavaScriptConfiguration {
      * @param classConfiguration the configuration that is being built
      * @param element the function element
      */
-    private void parseFunctionElement(final ClassConfiguration classConfiguration, final Element element) {
+    private void parseFunctionElement(final ClassConfiguration classConfiguration,
+            final ConfigurationElement element) {
         final String notImplemented = element.getAttribute("notImplemented");
         if ("true".equalsIgnoreCase(notImplemented)) {
             return;
@@ -421,7 +445,8 @@ public final class JavaScriptConfiguration {
      * @param classConfiguration the configuration that is being built
      * @param element the property element
      */
-    private void parseConstantElement(final ClassConfiguration classConfiguration, final Element element) {
+    private void parseConstantElement(final ClassConfiguration classConfiguration,
+            final ConfigurationElement element) {
         if (testToExcludeElement(element)) {
             return;
         }
@@ -435,24 +460,19 @@ public final class JavaScriptConfiguration {
      * @param element the element to scan the children of
      * @return true to exclude this element
      */
-    private boolean testToExcludeElement(final Element element) {
+    private boolean testToExcludeElement(final ConfigurationElement element) {
         if (browser_ == null) {
             return false;
         }
-        Node node = element.getFirstChild();
         boolean browserConstraint = false;
         boolean allowBrowser = false;
-        while (node != null) {
-            if (node instanceof Element) {
-                final Element childElement = (Element) node;
-                if (childElement.getTagName().equals("browser")) {
-                    browserConstraint = true;
-                    if (testToIncludeForBrowserConstraint(childElement, browser_)) {
-                        allowBrowser = true;
-                    }
+        for (final ConfigurationElement childElement : element.getChildren()) {
+            if (childElement.getTagName().equals("browser")) {
+                browserConstraint = true;
+                if (testToIncludeForBrowserConstraint(childElement, browser_)) {
+                    allowBrowser = true;
                 }
             }
-            node = node.getNextSibling();
         }
         if (browserConstraint && !allowBrowser) {
             return true;
@@ -469,7 +489,7 @@ public final class JavaScriptConfiguration {
      * @return true if they match
      */
     protected boolean classConfigEquals(final String classname, final ClassConfiguration config) {
-        final ClassConfiguration myConfig = configuration_.get(classname);
+        final ClassConfiguration myConfig = getClassConfiguration(classname);
         return config.equals(myConfig);
     }
 
@@ -486,10 +506,28 @@ public final class JavaScriptConfiguration {
      * @return the class configuration for the supplied JavaScript class name
      */
     public ClassConfiguration getClassConfiguration(final String classname) {
-        return configuration_.get(classname);
+        ClassConfiguration config = configuration_.get(classname);
+        if (config == null) {
+            final ConfigurationElement element = classElements_.get(classname);
+            if (element == null) {
+                return null;
+            }
+            try {
+                config = parseClassElement(classname, element);
+            }
+            catch (final ClassNotFoundException e) {
+                throw new IllegalStateException("The class was not found for '" + classname + "'");
+            }
+            final ClassConfiguration previous = configuration_.putIfAbsent(classname, config);
+            if (previous != null) {
+                config = previous;
+            }
+        }
+        return config;
     }
 
-    private boolean testToIncludeForBrowserConstraint(final Element element, final BrowserVersion browser) {
+    private boolean testToIncludeForBrowserConstraint(final ConfigurationElement element,
+            final BrowserVersion browser) {
         if ((!browser.isIE() || !"Internet Explorer".equals(element.getAttribute("name")))
             && (!browser.isFirefox() || !"Firefox".equals(element.getAttribute("name")))) {
             return false;
@@ -526,7 +564,7 @@ public final class JavaScriptConfiguration {
      * @return the class for the given class name
      */
     protected Class< ? > getClassObject(final String classname) {
-        final ClassConfiguration config = configuration_.get(classname);
+        final ClassConfiguration config = getClassConfiguration(classname);
         return config.getLinkedClass();
     }
 
@@ -552,7 +590,7 @@ public final class JavaScriptConfiguration {
         ClassConfiguration config;
         Method theMethod;
         while (classname.length() > 0) {
-            config = configuration_.get(classname);
+            config = getClassConfiguration(classname);
             if (config == null) {
                 return null;
             }
@@ -569,7 +607,7 @@ public final class JavaScriptConfiguration {
         String workname = classname;
         ClassConfiguration config;
         while (workname.length() > 0) {
-            config = configuration_.get(workname);
+            config = getClassConfiguration(workname);
             final ClassConfiguration.PropertyInfo info = config.getPropertyInfo(propertyName);
             if (info != null) {
                 return info;
@@ -601,7 +639,7 @@ public final class JavaScriptConfiguration {
         ClassConfiguration config;
         Method theMethod;
         while (classname.length() > 0) {
-            config = configuration_.get(classname);
+            config = getClassConfiguration(classname);
             theMethod = config.getPropertyWriteMethod(propertyName);
             if (theMethod != null) {
                 return theMethod;
@@ -634,7 +672,7 @@ public final class JavaScriptConfiguration {
         ClassConfiguration config;
         Method theMethod;
         while (classname.length() > 0) {
-            config = configuration_.get(classname);
+            config = getClassConfiguration(classname);
             theMethod = config.getFunctionMethod(functionName);
             if (theMethod != null) {
                 return theMethod;
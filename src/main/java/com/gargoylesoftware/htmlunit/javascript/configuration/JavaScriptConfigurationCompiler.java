@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2002-2009 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.javascript.configuration;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+
+import com.gargoylesoftware.htmlunit.javascript.StrictErrorHandler;
+
+/**
+ * Compiles <tt>JavaScriptConfiguration.xml</tt> into a compact binary form, which is much faster to load
+ * than parsing the XML file. This is called by the build (<tt>process-classes</tt> phase), and the result
+ * is used by {@link JavaScriptConfiguration} as long as the XML file still has the size and the modification
+ * time recorded at build time, which is checked without reading it.
+ *
+ * @version $Revision$
+ * @author agent (agent@local)
+ */
+public final class JavaScriptConfigurationCompiler {
+
+    /** The name of the compiled configuration file. */
+    static final String COMPILED_FILE_NAME = "JavaScriptConfiguration.bin";
+
+    private static final int MAGIC = 0x48554A43;
+    private static final int FORMAT_VERSION = 2;
+
+    private JavaScriptConfigurationCompiler() {
+        // Empty.
+    }
+
+    /**
+     * Compiles the configuration.
+     * @param args the XML configuration file, and the compiled file to write
+     * @throws Exception if an error occurs
+     */
+    public static void main(final String[] args) throws Exception {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Usage: JavaScriptConfigurationCompiler <xml file> <output file>");
+        }
+        final File xmlFile = new File(args[0]);
+        final File outputFile = new File(args[1]);
+
+        final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setValidating(false);
+        final DocumentBuilder documentBuilder = factory.newDocumentBuilder();
+        documentBuilder.setErrorHandler(new StrictErrorHandler());
+        final Document document = documentBuilder.parse(xmlFile);
+        final ConfigurationElement root = ConfigurationElement.fromElement(document.getDocumentElement());
+
+        outputFile.getParentFile().mkdirs();
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outputFile)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(xmlFile.length());
+            out.writeLong(xmlFile.lastModified());
+            root.write(out);
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads the compiled configuration.
+     * @param compiled the compiled configuration
+     * @param xml the location of the XML configuration the compiled one should correspond to, may be <tt>null</tt>
+     * @return the root element, or <tt>null</tt> if the compiled configuration doesn't correspond to the XML one
+     * @throws IOException if an error occurs
+     */
+    static ConfigurationElement read(final InputStream compiled, final URL xml) throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(compiled));
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+            return null;
+        }
+        final long length = in.readLong();
+        final long lastModified = in.readLong();
+        if (xml != null && !isStamped(xml, length, lastModified)) {
+            return null;
+        }
+        return ConfigurationElement.read(in);
+    }
+
+    /**
+     * Returns whether the XML configuration still has the size and the modification time recorded when it was
+     * compiled. The modification time is only checked for plain files: in a jar, the XML and the compiled files
+     * are packaged by the same build.
+     */
+    private static boolean isStamped(final URL xml, final long length, final long lastModified) throws IOException {
+        if ("file".equals(xml.getProtocol())) {
+            final File file;
+            try {
+                file = new File(xml.toURI());
+            }
+            catch (final URISyntaxException e) {
+                return false;
+            }
+            return file.length() == length && file.lastModified() == lastModified;
+        }
+        return xml.openConnection().getContentLength() == length;
+    }
+}
@@ -0,0 +1,378 @@
+/*
+ * Copyright (c) 2002-2009 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.javascript.host;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.gargoylesoftware.htmlunit.html.DomNode;
+import com.gargoylesoftware.htmlunit.html.HtmlElement;
+import com.gargoylesoftware.htmlunit.javascript.host.css.BoxModel;
+import com.gargoylesoftware.htmlunit.javascript.host.css.ComputedCSSStyleDeclaration;
+
+/**
+ * The computed styles of the elements of a window, each one invalidated only by the changes which can
+ * affect it.
+ *
+ * <p>While the rules of the stylesheets are matched against an element, the {@link Dependencies} of its
+ * computed style record the other nodes which were examined, and what was examined on them: an attribute,
+ * or only their position (like the tag of an ancestor). The cache keeps them in a reverse index, from the
+ * examined node and the feature to the dependent styles, so that a change evicts only the styles which
+ * examined the changed feature:</p>
+ *
+ * <ul>
+ *   <li>a change to an attribute of an element evicts the style of the element, and the styles which
+ *       examined this attribute of the element (descendants and following siblings)</li>
+ *   <li>the removal of a node evicts the styles of the removed subtree, and the styles which examined
+ *       the children of the former parent (adjacent siblings)</li>
+ *   <li>the addition of a node evicts the styles of the added subtree, and the styles which examined the
+ *       children of the new parent</li>
+ *   <li>a change to a stylesheet evicts all the styles</li>
+ * </ul>
+ *
+ * <p>The styles depending on the text content or on the whole document (like <tt>:contains()</tt>)
+ * are evicted by any change.</p>
+ *
+ * <p>Only the elements attached to the page are cached, so that the cache holds no more entries than the
+ * document has elements, and a removed element never finds the style it had in the document.</p>
+ *
+ * <p>The cache also keeps the {@link BoxModel} of the elements, used by the layout queries like
+ * <tt>offsetTop</tt>. As a box depends on the siblings and on the ancestors of its element, all the boxes
+ * are discarded by any change.</p>
+ *
+ * @version $Revision$
+ * @author Ahmed Ashour
+ */
+public final class ComputedStyleCache {
+
+    /** The feature of an examined node which is only its position in the document. */
+    private static final String POSITION = "";
+
+    /** The feature of an examined node which is its list of children. */
+    private static final String CHILDREN = "#children";
+
+    private final Map<HtmlElement, Dependencies> entries_ = new HashMap<HtmlElement, Dependencies>();
+    private final Map<DomNode, Map<String, Set<HtmlElement>>> dependents_
+        = new HashMap<DomNode, Map<String, Set<HtmlElement>>>();
+    private final Set<HtmlElement> volatile_ = new HashSet<HtmlElement>();
+    private final Map<HtmlElement, BoxModel> boxes_ = new HashMap<HtmlElement, BoxModel>();
+    private final Set<String> examinedAttributes_ = new HashSet<String>();
+    private long hitCount_;
+    private long missCount_;
+    private long evictionCount_;
+
+    /**
+     * Returns the cached computed style of the specified element.
+     * @param element the element
+     * @return the cached computed style, or <tt>null</tt> if it isn't cached
+     */
+    synchronized ComputedCSSStyleDeclaration get(final HtmlElement element) {
+        final Dependencies dependencies = entries_.get(element);
+        if (dependencies == null) {
+            missCount_++;
+            return null;
+        }
+        hitCount_++;
+        return dependencies.style_;
+    }
+
+    /**
+     * Caches the computed style of an element, unless the element isn't attached to the page: the changes
+     * to a detached subtree aren't notified, and nothing would evict its style.
+     * @param style the computed style
+     * @param dependencies the dependencies recorded while the style was computed
+     */
+    synchronized void put(final ComputedCSSStyleDeclaration style, final Dependencies dependencies) {
+        final HtmlElement element = dependencies.element_;
+        examinedAttributes_.addAll(dependencies.attributeNames_);
+        evict(element);
+        if (!isAttached(element)) {
+            return;
+        }
+        dependencies.style_ = style;
+        entries_.put(element, dependencies);
+        for (final Map.Entry<DomNode, Set<String>> examined : dependencies.features_.entrySet()) {
+            Map<String, Set<HtmlElement>> features = dependents_.get(examined.getKey());
+            if (features == null) {
+                features = new HashMap<String, Set<HtmlElement>>();
+                dependents_.put(examined.getKey(), features);
+            }
+            for (final String feature : examined.getValue()) {
+                Set<HtmlElement> elements = features.get(feature);
+                if (elements == null) {
+                    elements = new HashSet<HtmlElement>();
+                    features.put(feature, elements);
+                }
+                elements.add(element);
+            }
+        }
+        if (dependencies.volatile_) {
+            volatile_.add(element);
+        }
+    }
+
+    /**
+     * Evicts the styles affected by a change of an attribute of the specified element.
+     * @param element the element
+     * @param attributeName the name of the attribute
+     */
+    synchronized void attributeChanged(final HtmlElement element, final String attributeName) {
+        boxes_.clear();
+        evictVolatile();
+        evict(element);
+        final Map<String, Set<HtmlElement>> features = dependents_.get(element);
+        if (features != null) {
+            evictAll(features.get(attributeName.toLowerCase()));
+        }
+    }
+
+    /**
+     * Evicts the styles affected by the addition of the specified node.
+     * @param parent the new parent of the node
+     * @param node the added node
+     */
+    synchronized void nodeAdded(final DomNode parent, final DomNode node) {
+        boxes_.clear();
+        evictVolatile();
+        evictChildrenDependents(parent);
+        evictSubtree(node);
+    }
+
+    /**
+     * Evicts the styles affected by the removal of the specified node.
+     * @param parent the former parent of the node
+     * @param node the removed node
+     */
+    synchronized void nodeDeleted(final DomNode parent, final DomNode node) {
+        boxes_.clear();
+        evictVolatile();
+        evictChildrenDependents(parent);
+        evictSubtree(node);
+    }
+
+    /**
+     * Evicts all the styles, after a change to a stylesheet.
+     */
+    public synchronized void clear() {
+        evictionCount_ += entries_.size();
+        entries_.clear();
+        dependents_.clear();
+        volatile_.clear();
+        boxes_.clear();
+        examinedAttributes_.clear();
+    }
+
+    /**
+     * Returns <tt>true</tt> if the specified attribute was examined by the selectors of the stylesheets, on any
+     * element, while the styles were computed since the last change to a stylesheet. A change to another
+     * attribute can't change the computed styles, except the ones of the changed element.
+     * @param attributeName the name of the attribute
+     * @return <tt>true</tt> if the specified attribute was examined by the selectors of the stylesheets
+     */
+    public synchronized boolean isAttributeExamined(final String attributeName) {
+        return examinedAttributes_.contains(attributeName.toLowerCase());
+    }
+
+    /**
+     * Returns the box of the specified element, whose values are computed on demand.
+     * The same box is returned until the document or a stylesheet is changed, unless the element
+     * isn't attached to the page.
+     * @param element the element
+     * @return the box of the element
+     */
+    public synchronized BoxModel getBoxModel(final HtmlElement element) {
+        BoxModel box = boxes_.get(element);
+        if (box == null) {
+            box = new BoxModel();
+            if (isAttached(element)) {
+                boxes_.put(element, box);
+            }
+        }
+        return box;
+    }
+
+    /**
+     * Returns the number of cached styles.
+     * @return the number of cached styles
+     */
+    public synchronized int size() {
+        return entries_.size();
+    }
+
+    /**
+     * Returns the number of requested styles which were found in the cache.
+     * @return the number of requested styles which were found in the cache
+     */
+    public synchronized long getHitCount() {
+        return hitCount_;
+    }
+
+    /**
+     * Returns the number of requested styles which had to be computed.
+     * @return the number of requested styles which had to be computed
+     */
+    public synchronized long getMissCount() {
+        return missCount_;
+    }
+
+    /**
+     * Returns the number of styles which were evicted by a change.
+     * @return the number of styles which were evicted by a change
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount_;
+    }
+
+    /**
+     * Returns the ratio of the requested styles which were found in the cache.
+     * @return the ratio of the requested styles which were found in the cache, <tt>0</tt> if none was requested
+     */
+    public synchronized double getHitRate() {
+        final long requests = hitCount_ + missCount_;
+        return requests == 0 ? 0 : (double) hitCount_ / requests;
+    }
+
+    private void evictSubtree(final DomNode node) {
+        if (!entries_.isEmpty()) {
+            for (final HtmlElement element : node.getAllHtmlChildElements()) {
+                evict(element);
+            }
+            if (node instanceof HtmlElement) {
+                evict((HtmlElement) node);
+            }
+        }
+    }
+
+    private static boolean isAttached(final HtmlElement element) {
+        return element.getPage().isAncestorOf(element);
+    }
+
+    private void evictChildrenDependents(final DomNode parent) {
+        final Map<String, Set<HtmlElement>> features = dependents_.get(parent);
+        if (features != null) {
+            evictAll(features.get(CHILDREN));
+        }
+    }
+
+    private void evictVolatile() {
+        evictAll(volatile_);
+    }
+
+    private void evictAll(final Set<HtmlElement> elements) {
+        if (elements != null && !elements.isEmpty()) {
+            evictAll(new ArrayList<HtmlElement>(elements));
+        }
+    }
+
+    private void evictAll(final List<HtmlElement> elements) {
+        for (final HtmlElement element : elements) {
+            evict(element);
+        }
+    }
+
+    private void evict(final HtmlElement element) {
+        final Dependencies dependencies = entries_.remove(element);
+        if (dependencies == null) {
+            return;
+        }
+        evictionCount_++;
+        volatile_.remove(element);
+        for (final Map.Entry<DomNode, Set<String>> examined : dependencies.features_.entrySet()) {
+            final Map<String, Set<HtmlElement>> features = dependents_.get(examined.getKey());
+            for (final String feature : examined.getValue()) {
+                final Set<HtmlElement> elements = features.get(feature);
+                elements.remove(element);
+                if (elements.isEmpty()) {
+                    features.remove(feature);
+                }
+            }
+            if (features.isEmpty()) {
+                dependents_.remove(examined.getKey());
+            }
+        }
+    }
+
+    /**
+     * The nodes and features examined while the rules of the stylesheets were matched against an element,
+     * and the resulting style once it is cached.
+     */
+    static final class Dependencies {
+        private final HtmlElement element_;
+        private ComputedCSSStyleDeclaration style_;
+        private final Map<DomNode, Set<String>> features_ = new HashMap<DomNode, Set<String>>();
+        private final Set<String> attributeNames_ = new HashSet<String>();
+        private boolean volatile_;
+
+        /**
+         * Creates an instance.
+         * @param element the element whose style is computed
+         */
+        Dependencies(final HtmlElement element) {
+            element_ = element;
+        }
+
+        /**
+         * Records that the position of the specified node was examined, like its tag as an ancestor.
+         * @param node the examined node
+         */
+        void position(final DomNode node) {
+            add(node, POSITION);
+        }
+
+        /**
+         * Records that an attribute of the specified element was examined.
+         * @param element the examined element
+         * @param attributeName the name of the attribute
+         */
+        void attribute(final HtmlElement element, final String attributeName) {
+            final String name = attributeName.toLowerCase();
+            attributeNames_.add(name);
+            add(element, name);
+        }
+
+        /**
+         * Records that the children of the specified node were examined, like the previous sibling of its child.
+         * @param node the examined node
+         */
+        void children(final DomNode node) {
+            if (node != null) {
+                add(node, CHILDREN);
+            }
+        }
+
+        /**
+         * Records that the text content of an element, or the whole document, was examined.
+         */
+        void setVolatile() {
+            volatile_ = true;
+        }
+
+        private void add(final DomNode node, final String feature) {
+            // the changes to the element itself always evict its style
+            if (node != element_) {
+                Set<String> features = features_.get(node);
+                if (features == null) {
+                    features = new HashSet<String>();
+                    features_.put(node, features);
+                }
+                features.add(feature);
+            }
+        }
+    }
+}
@@ -428,7 +428,7 @@ public class Document extends EventNode {
         else {
             exp = "//*[lower-case(local-name()) = '" + tagName.toLowerCase() + "']";
         }
-        collection.init(getDomNodeOrDie(), exp);
+        collection.initByTagName(getDomNodeOrDie(), exp, tagName.toLowerCase());
         return collection;
     }
 
@@ -14,6 +14,8 @@
  */
 package com.gargoylesoftware.htmlunit.javascript.host;
 
+import com.gargoylesoftware.htmlunit.javascript.host.html.HTMLCollection;
+
 /**
  * A JavaScript object for DocumentFragment.
  *
@@ -38,4 +40,22 @@ public class DocumentFragment extends Node {
         }
         return "";
     }
+
+    /**
+     * Returns the first descendant element of this node matched by the specified group of selectors.
+     * @param selectors the comma separated list of CSS selectors
+     * @return the first matching element, or <tt>null</tt> if no element matches
+     */
+    public Object jsxFunction_querySelector(final String selectors) {
+        return querySelector(selectors);
+    }
+
+    /**
+     * Returns the descendant elements of this node matched by the specified group of selectors.
+     * @param selectors the comma separated list of CSS selectors
+     * @return the matching elements, in a static list
+     */
+    public HTMLCollection jsxFunction_querySelectorAll(final String selectors) {
+        return querySelectorAll(selectors);
+    }
 }
@@ -16,6 +16,8 @@ package com.gargoylesoftware.htmlunit.javascript.host;
 
 import org.apache.commons.lang.StringUtils;
 
+import com.gargoylesoftware.htmlunit.javascript.host.html.HTMLCollection;
+
 /**
  * A node which supports all of the <tt>onXXX</tt> event handlers and other event-related functions.
  *
@@ -335,4 +337,21 @@ public class EventNode extends Node {
         return ((Boolean) event.jsxGet_returnValue()).booleanValue();
     }
 
+    /**
+     * Returns the first descendant element of this node matched by the specified group of selectors.
+     * @param selectors the comma separated list of CSS selectors
+     * @return the first matching element, or <tt>null</tt> if no element matches
+     */
+    public Object jsxFunction_querySelector(final String selectors) {
+        return querySelector(selectors);
+    }
+
+    /**
+     * Returns the descendant elements of this node matched by the specified group of selectors.
+     * @param selectors the comma separated list of CSS selectors
+     * @return the matching elements, in a static list
+     */
+    public HTMLCollection jsxFunction_querySelectorAll(final String selectors) {
+        return querySelectorAll(selectors);
+    }
 }
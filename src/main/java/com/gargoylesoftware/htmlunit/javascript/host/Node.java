@@ -24,10 +24,13 @@ import net.sourceforge.htmlunit.corejs.javascript.Undefined;
 
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
+import org.w3c.css.sac.CSSException;
 
 import com.gargoylesoftware.htmlunit.ScriptResult;
 import com.gargoylesoftware.htmlunit.SgmlPage;
+import com.gargoylesoftware.htmlunit.html.CompiledSelector;
 import com.gargoylesoftware.htmlunit.html.DomDocumentFragment;
+import com.gargoylesoftware.htmlunit.html.DomElement;
 import com.gargoylesoftware.htmlunit.html.DomNode;
 import com.gargoylesoftware.htmlunit.html.HtmlPage;
 import com.gargoylesoftware.htmlunit.javascript.SimpleScriptable;
@@ -742,6 +745,44 @@ public class Node extends SimpleScriptable {
         getDomNodeOrDie().normalize();
     }
 
+    /**
+     * Returns the first descendant element of this node matched by the specified group of selectors.
+     * Only the documents, the elements and the document fragments expose it to JavaScript.
+     * @param selectors the comma separated list of CSS selectors
+     * @return the first matching element, or <tt>null</tt> if no element matches
+     * @see <a href="http://www.w3.org/TR/selectors-api/">Selectors API</a>
+     */
+    protected Object querySelector(final String selectors) {
+        final DomElement element = compileSelectors(selectors).selectFirst(getDomNodeOrDie());
+        if (element == null) {
+            return null;
+        }
+        return getScriptableFor(element);
+    }
+
+    /**
+     * Returns the descendant elements of this node matched by the specified group of selectors,
+     * in a static list. Only the documents, the elements and the document fragments expose it to JavaScript.
+     * @param selectors the comma separated list of CSS selectors
+     * @return the matching elements, in document order
+     * @see <a href="http://www.w3.org/TR/selectors-api/">Selectors API</a>
+     */
+    protected HTMLCollection querySelectorAll(final String selectors) {
+        final HTMLCollection collection = new HTMLCollection(this);
+        collection.initStatic(compileSelectors(selectors).selectAll(getDomNodeOrDie()));
+        return collection;
+    }
+
+    private static CompiledSelector compileSelectors(final String selectors) {
+        try {
+            return CompiledSelector.compile(selectors);
+        }
+        catch (final CSSException e) {
+            throw Context.reportRuntimeError("An invalid or illegal selector was specified: '" + selectors
+                + "' (" + e.getMessage() + ")");
+        }
+    }
+
     /**
      * Represents the xml content of the node and its descendants.
      * @return the xml content of the node and its descendants
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2002-2009 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.javascript.host;
+
+import java.io.StringReader;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.w3c.css.sac.ErrorHandler;
+import org.w3c.css.sac.InputSource;
+import org.w3c.dom.css.CSSRule;
+import org.w3c.dom.css.CSSStyleSheet;
+
+/**
+ * The parsed stylesheets shared by all the clients of the JVM, keyed by a digest of their text.
+ *
+ * <p>Each distinct stylesheet is parsed only once, even when several threads request it at the same time:
+ * the other threads wait for the result of the first one. The cached stylesheets are never modified: a
+ * {@link Stylesheet} wrapping one of them copies its list of rules before the first insertion or deletion,
+ * and each rule before its first modification, see {@link Stylesheet#getModifiableRule(CSSRule)}.</p>
+ *
+ * <p>The cache is bounded by the size of the parsed stylesheets, over-approximated from the length of their
+ * text (see {@link #BYTES_PER_CHAR}); the least recently used stylesheets are evicted first. As the stylesheets
+ * are parsed only once, the parsing errors are reported only to the {@link ErrorHandler} of the client which
+ * requested them first.</p>
+ *
+ * @version $Revision$
+ * @author Ahmed Ashour
+ */
+public final class StyleSheetCache {
+
+    /** The default maximum size of the cache, in bytes. */
+    public static final long DEFAULT_MAX_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * The maximum size of a parsed stylesheet per character of its text, in bytes. The common stylesheets
+     * take 20 to 30 bytes per character, but a list of short values or of empty rules takes up to 150.
+     */
+    static final long BYTES_PER_CHAR = 160;
+
+    /** The size of a parsed empty stylesheet, in bytes, rounded up. */
+    static final long BASE_SIZE = 2048;
+
+    private static final StyleSheetCache INSTANCE = new StyleSheetCache();
+
+    private final Map<String, Entry> entries_ = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private long maxSize_ = DEFAULT_MAX_SIZE;
+    private long size_;
+    private long hitCount_;
+    private long missCount_;
+
+    private StyleSheetCache() {
+        // Empty.
+    }
+
+    /**
+     * Returns the cache shared by all the clients.
+     * @return the cache shared by all the clients
+     */
+    public static StyleSheetCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the parsed version of the specified CSS, parsing it if it isn't cached yet.
+     * The returned stylesheet must not be modified.
+     * @param css the CSS text
+     * @param errorHandler the handler of the parsing errors, if the CSS has to be parsed
+     * @return the parsed stylesheet
+     */
+    CSSStyleSheet get(final String css, final ErrorHandler errorHandler) {
+        final Entry entry = new Entry(css, errorHandler);
+        final String key = DigestUtils.shaHex(css);
+        final Entry cached;
+        synchronized (this) {
+            cached = entries_.get(key);
+            if (cached != null) {
+                hitCount_++;
+            }
+            else {
+                missCount_++;
+                if (entry.size_ <= maxSize_) {
+                    entries_.put(key, entry);
+                    size_ += entry.size_;
+                    deleteOverflow();
+                }
+            }
+        }
+        if (cached != null) {
+            return cached.getStyleSheet(css, errorHandler);
+        }
+        entry.task_.run();
+        return entry.getStyleSheet(css, errorHandler);
+    }
+
+    private void deleteOverflow() {
+        final Iterator<Entry> iterator = entries_.values().iterator();
+        while (size_ > maxSize_ && iterator.hasNext()) {
+            size_ -= iterator.next().size_;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Returns the maximum size of the cache, in bytes. The default is {@link #DEFAULT_MAX_SIZE}.
+     * @return the maximum size of the cache, in bytes
+     */
+    public synchronized long getMaxSize() {
+        return maxSize_;
+    }
+
+    /**
+     * Sets the maximum size of the cache, in bytes, evicting the least recently used stylesheets if needed.
+     * @param maxSize the maximum size of the cache, in bytes
+     */
+    public synchronized void setMaxSize(final long maxSize) {
+        maxSize_ = maxSize;
+        deleteOverflow();
+    }
+
+    /**
+     * Returns the size of the cached stylesheets, in bytes, over-approximated.
+     * @return the size of the cached stylesheets, in bytes, over-approximated
+     */
+    public synchronized long getSize() {
+        return size_;
+    }
+
+    /**
+     * Returns the number of cached stylesheets.
+     * @return the number of cached stylesheets
+     */
+    public synchronized int getCount() {
+        return entries_.size();
+    }
+
+    /**
+     * Returns the number of requested stylesheets which were found in the cache.
+     * @return the number of requested stylesheets which were found in the cache
+     */
+    public synchronized long getHitCount() {
+        return hitCount_;
+    }
+
+    /**
+     * Returns the number of requested stylesheets which had to be parsed.
+     * @return the number of requested stylesheets which had to be parsed
+     */
+    public synchronized long getMissCount() {
+        return missCount_;
+    }
+
+    /**
+     * Removes all the cached stylesheets.
+     */
+    public synchronized void clear() {
+        entries_.clear();
+        size_ = 0;
+    }
+
+    /**
+     * A cached stylesheet, being parsed or already parsed, and its over-approximated size.
+     */
+    private static final class Entry {
+        private final FutureTask<CSSStyleSheet> task_;
+        private final long size_;
+
+        Entry(final String css, final ErrorHandler errorHandler) {
+            task_ = new FutureTask<CSSStyleSheet>(new Callable<CSSStyleSheet>() {
+                public CSSStyleSheet call() {
+                    return Stylesheet.parse(new InputSource(new StringReader(css)), errorHandler);
+                }
+            });
+            size_ = BASE_SIZE + BYTES_PER_CHAR * css.length();
+        }
+
+        /**
+         * Waits for the stylesheet to be parsed, by this thread or by another one.
+         * @param css the CSS text
+         * @param errorHandler the handler of the parsing errors, if the CSS has to be parsed again
+         * @return the parsed stylesheet
+         */
+        CSSStyleSheet getStyleSheet(final String css, final ErrorHandler errorHandler) {
+            try {
+                return task_.get();
+            }
+            catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            catch (final ExecutionException e) {
+                // the parsing doesn't throw any exception, see Stylesheet#parse()
+            }
+            return Stylesheet.parse(new InputSource(new StringReader(css)), errorHandler);
+        }
+    }
+}
@@ -14,12 +14,23 @@
  */
 package com.gargoylesoftware.htmlunit.javascript.host;
 
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import net.sourceforge.htmlunit.corejs.javascript.Context;
 import net.sourceforge.htmlunit.corejs.javascript.Scriptable;
 
+import com.gargoylesoftware.htmlunit.WebWindow;
+import com.gargoylesoftware.htmlunit.html.DomNode;
+import com.gargoylesoftware.htmlunit.html.HtmlLink;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import com.gargoylesoftware.htmlunit.html.HtmlStyle;
 import com.gargoylesoftware.htmlunit.javascript.SimpleScriptable;
+import com.gargoylesoftware.htmlunit.javascript.background.JavaScriptJob;
 import com.gargoylesoftware.htmlunit.javascript.host.html.HTMLCollection;
 import com.gargoylesoftware.htmlunit.javascript.host.html.HTMLDocument;
 import com.gargoylesoftware.htmlunit.javascript.host.html.HTMLElement;
@@ -36,6 +47,11 @@ import com.gargoylesoftware.htmlunit.javascript.host.html.HTMLStyleElement;
  * of this class will always be empty. This allows us to check for CSS enablement/disablement in a single
  * location, without having to sprinkle checks throughout the code.</p>
  *
+ * <p>If the stylesheets are loaded lazily (see
+ * {@link com.gargoylesoftware.htmlunit.WebClient#setLazyStylesheetsEnabled(boolean)}), the stylesheets whose
+ * media don't apply to the screen are not active, and the linked stylesheets are prefetched once the page
+ * is loaded.</p>
+ *
  * @version $Revision: 4859 $
  * @author Daniel Gredler
  * @author Ahmed Ashour
@@ -113,6 +129,92 @@ public class StyleSheetList extends SimpleScriptable {
         return sheet;
     }
 
+    /**
+     * Returns <tt>true</tt> if the style sheet at the specified index applies to the computed styles. The style
+     * sheet isn't loaded by this method.
+     *
+     * @param index the index of the style sheet
+     * @return <tt>true</tt> if the style sheet at the specified index applies to the computed styles
+     */
+    public boolean isActive(final int index) {
+        if (!getWindow().getWebWindow().getWebClient().isLazyStylesheetsEnabled()) {
+            return true;
+        }
+        final DomNode node = ((HTMLElement) nodes_.jsxFunction_item(new Integer(index))).getDomNodeOrDie();
+        if (node instanceof HtmlStyle) {
+            return Stylesheet.isActive(((HtmlStyle) node).getMediaAttribute());
+        }
+        return Stylesheet.isActive(((HtmlLink) node).getMediaAttribute());
+    }
+
+    /**
+     * Returns the number of style sheets of this list which were never loaded, neither from a <tt>style</tt>
+     * element nor from a <tt>link</tt> element (even if their content was already prefetched). The style sheets
+     * are loaded when a script asks for them, or when a computed style is needed and they are active.
+     *
+     * @return the number of style sheets of this list which were never loaded
+     * @see #isActive(int)
+     */
+    public int getUnloadedCount() {
+        int count = 0;
+        for (int i = 0; i < nodes_.jsxGet_length(); i++) {
+            final HTMLElement element = (HTMLElement) nodes_.jsxFunction_item(new Integer(i));
+            if (element instanceof HTMLStyleElement) {
+                if (!((HTMLStyleElement) element).isSheetLoaded()) {
+                    count++;
+                }
+            }
+            else if (!((HTMLLinkElement) element).isSheetLoaded()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Downloads in a background job the content of the active linked style sheets which are not loaded yet,
+     * and not in the cache. The content is only parsed once the style sheet is needed.
+     */
+    public void prefetch() {
+        final WebWindow window = getWindow().getWebWindow();
+        final HtmlPage page = (HtmlPage) window.getEnclosedPage();
+        final List<HtmlLink> links = new ArrayList<HtmlLink>();
+        for (int i = 0; i < nodes_.jsxGet_length(); i++) {
+            final Object element = nodes_.jsxFunction_item(new Integer(i));
+            if (element instanceof HTMLLinkElement && !((HTMLLinkElement) element).isSheetLoaded() && isActive(i)) {
+                final HtmlLink link = (HtmlLink) ((HTMLLinkElement) element).getDomNodeOrDie();
+                try {
+                    if (window.getWebClient().getCache().getCachedObject(link.getWebRequestSettings()) == null) {
+                        links.add(link);
+                    }
+                }
+                catch (final MalformedURLException e) {
+                    // will be reported if the style sheet is needed
+                }
+            }
+        }
+        if (links.isEmpty()) {
+            return;
+        }
+        final JavaScriptJob job = new JavaScriptJob() {
+            public void run() {
+                for (final HtmlLink link : links) {
+                    if (window.getEnclosedPage() != page) {
+                        return;
+                    }
+                    try {
+                        link.getWebResponse(true);
+                    }
+                    catch (final IOException e) {
+                        // will be reported if the style sheet is needed
+                        LOGGER.log(Level.FINE, "Error while prefetching a style sheet", e);
+                    }
+                }
+            }
+        };
+        window.getJobManager().addJob(job, page);
+    }
+
     /**
      * {@inheritDoc}
      */
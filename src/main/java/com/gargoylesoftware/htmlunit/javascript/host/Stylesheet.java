@@ -19,11 +19,14 @@ import java.io.StringReader;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 
 import net.sourceforge.htmlunit.corejs.javascript.Context;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.w3c.css.sac.AttributeCondition;
@@ -42,6 +45,7 @@ import org.w3c.css.sac.Selector;
 import org.w3c.css.sac.SelectorList;
 import org.w3c.css.sac.SiblingSelector;
 import org.w3c.dom.css.CSSImportRule;
+import org.w3c.dom.css.CSSMediaRule;
 import org.w3c.dom.css.CSSRule;
 import org.w3c.dom.css.CSSRuleList;
 import org.w3c.dom.css.CSSStyleSheet;
@@ -50,6 +54,7 @@ import com.gargoylesoftware.htmlunit.BrowserVersion;
 import com.gargoylesoftware.htmlunit.BrowserVersionFeatures;
 import com.gargoylesoftware.htmlunit.Cache;
 import com.gargoylesoftware.htmlunit.FailingHttpStatusCodeException;
+import com.gargoylesoftware.htmlunit.Page;
 import com.gargoylesoftware.htmlunit.WebClient;
 import com.gargoylesoftware.htmlunit.WebRequestSettings;
 import com.gargoylesoftware.htmlunit.WebResponse;
@@ -63,6 +68,7 @@ import com.gargoylesoftware.htmlunit.javascript.host.css.ComputedCSSStyleDeclara
 import com.gargoylesoftware.htmlunit.javascript.host.html.HTMLElement;
 import com.gargoylesoftware.htmlunit.util.UrlUtils;
 import com.steadystate.css.dom.CSSImportRuleImpl;
+import com.steadystate.css.dom.CSSRuleListImpl;
 import com.steadystate.css.dom.CSSStyleRuleImpl;
 import com.steadystate.css.dom.CSSStyleSheetImpl;
 import com.steadystate.css.parser.CSSOMParser;
@@ -84,7 +90,16 @@ public class Stylesheet extends SimpleScriptable {
     private static final Log LOG = LogFactory.getLog(Stylesheet.class);
 
     /** The parsed stylesheet which this host object wraps. */
-    private final CSSStyleSheet wrapped_;
+    private CSSStyleSheet wrapped_;
+
+    /** Whether the wrapped stylesheet may be shared with other host objects, and has to be copied before changes. */
+    private boolean shared_;
+
+    /** The shared stylesheet whose rules are still used by this stylesheet, once its list of rules was copied. */
+    private CSSStyleSheet sharedSheet_;
+
+    /** The rules of the shared stylesheet which were copied by a modification, and their copies. */
+    private Map<CSSRule, CSSRule> copiedRules_;
 
     /** The HTML element which owns this stylesheet. */
     private final HTMLElement ownerNode_;
@@ -123,7 +138,8 @@ public class Stylesheet extends SimpleScriptable {
     }
 
     /**
-     * Creates a new stylesheet representing the specified CSS stylesheet.
+     * Creates a new stylesheet representing the specified CSS stylesheet, which may be shared: it is copied
+     * before any modification.
      * @param element the owning node
      * @param wrapped the CSS stylesheet which this stylesheet host object represents
      * @param uri this stylesheet's URI (used to resolved contained @import rules)
@@ -132,18 +148,137 @@ public class Stylesheet extends SimpleScriptable {
         setParentScope(element.getWindow());
         setPrototype(getPrototype(Stylesheet.class));
         wrapped_ = wrapped;
+        shared_ = true;
         uri_ = uri;
         ownerNode_ = element;
     }
 
     /**
-     * Returns the wrapped stylesheet.
+     * Creates a new stylesheet representing the specified CSS text, parsed only once by the JVM
+     * (see {@link StyleSheetCache}).
+     * @param element the owning node
+     * @param css the CSS text
+     * @param uri this stylesheet's URI (used to resolved contained @import rules)
+     */
+    public Stylesheet(final HTMLElement element, final String css, final String uri) {
+        this(element, StyleSheetCache.getInstance().get(css,
+            element.getWindow().getWebWindow().getWebClient().getCssErrorHandler()), uri);
+    }
+
+    /**
+     * Returns the wrapped stylesheet. It may be shared with other stylesheets, and must not be modified:
+     * use {@link #getModifiableSheet()} instead.
      * @return the wrapped stylesheet
      */
     public CSSStyleSheet getWrappedSheet() {
         return wrapped_;
     }
 
+    /**
+     * Returns the wrapped stylesheet, whose list of rules can be modified. If it was shared with other
+     * stylesheets, only its list of rules is copied: the rules themselves are still shared, and have to be
+     * copied by {@link #getModifiableRule(CSSRule)} before being modified.
+     * @return the wrapped stylesheet, whose list of rules can be modified
+     */
+    public CSSStyleSheet getModifiableSheet() {
+        if (shared_) {
+            final CSSRuleListImpl rules = new CSSRuleListImpl();
+            final CSSRuleList sharedRules = wrapped_.getCssRules();
+            if (sharedRules != null) {
+                for (int i = 0; i < sharedRules.getLength(); i++) {
+                    rules.add(sharedRules.item(i));
+                }
+            }
+            final CSSStyleSheetImpl sheet = new CSSStyleSheetImpl();
+            sheet.setCssRules(rules);
+            sharedSheet_ = wrapped_;
+            wrapped_ = sheet;
+            shared_ = false;
+            copiedRules_ = new IdentityHashMap<CSSRule, CSSRule>();
+        }
+        return wrapped_;
+    }
+
+    /**
+     * Returns the rule of the wrapped stylesheet corresponding to the specified rule, which may be a shared
+     * rule copied by a modification (see {@link #getModifiableRule(CSSRule)}).
+     * @param rule a rule of this stylesheet
+     * @return the corresponding rule of the wrapped stylesheet
+     */
+    public CSSRule getCurrentRule(final CSSRule rule) {
+        if (copiedRules_ != null) {
+            final CSSRule copy = copiedRules_.get(rule);
+            if (copy != null) {
+                return copy;
+            }
+        }
+        return rule;
+    }
+
+    /**
+     * Returns the rule of the wrapped stylesheet corresponding to the specified rule, after having copied it
+     * if it was shared with other stylesheets. Only the top level rule containing it is copied.
+     * @param rule a rule of this stylesheet
+     * @return the corresponding rule, which can be modified
+     */
+    public CSSRule getModifiableRule(final CSSRule rule) {
+        final CSSStyleSheet sheet = getModifiableSheet();
+        final CSSRule current = getCurrentRule(rule);
+        CSSRule topLevel = current;
+        while (topLevel.getParentRule() != null) {
+            topLevel = topLevel.getParentRule();
+        }
+        if (sharedSheet_ == null || topLevel.getParentStyleSheet() != sharedSheet_) {
+            return current;
+        }
+        final CSSRule copy = copy(topLevel);
+        final List<CSSRule> rules = ((CSSRuleListImpl) sheet.getCssRules()).getRules();
+        for (int i = 0; i < rules.size(); i++) {
+            if (rules.get(i) == topLevel) {
+                rules.set(i, copy);
+                break;
+            }
+        }
+        copiedRules_.put(topLevel, copy);
+        if (topLevel instanceof CSSMediaRule) {
+            mapRules(((CSSMediaRule) topLevel).getCssRules(), ((CSSMediaRule) copy).getCssRules());
+        }
+        return getCurrentRule(rule);
+    }
+
+    private void mapRules(final CSSRuleList rules, final CSSRuleList copies) {
+        for (int i = 0; i < rules.getLength(); i++) {
+            final CSSRule rule = rules.item(i);
+            final CSSRule copy = copies.item(i);
+            copiedRules_.put(rule, copy);
+            if (rule instanceof CSSMediaRule) {
+                mapRules(((CSSMediaRule) rule).getCssRules(), ((CSSMediaRule) copy).getCssRules());
+            }
+        }
+    }
+
+    /**
+     * Copies the specified top level rule into the wrapped stylesheet, by parsing its text again.
+     * @param rule the rule to copy
+     * @return the copy
+     */
+    private CSSRule copy(final CSSRule rule) {
+        final CSSOMParser parser = new CSSOMParser(new SACParserCSS21());
+        parser.setErrorHandler(getWindow().getWebWindow().getWebClient().getCssErrorHandler());
+        parser.setParentStyleSheet((CSSStyleSheetImpl) wrapped_);
+        CSSRule copy;
+        try {
+            copy = parser.parseRule(new InputSource(new StringReader(rule.getCssText())));
+        }
+        catch (final IOException e) {
+            copy = null;
+        }
+        if (copy == null || copy.getType() != rule.getType()) {
+            throw Context.reportRuntimeError("Can not copy the rule: " + rule.getCssText());
+        }
+        return copy;
+    }
+
     /**
      * Modifies the specified style object by adding any style rules which apply to the specified
      * element.
@@ -151,8 +286,10 @@ public class Stylesheet extends SimpleScriptable {
      * @param style the style to modify
      * @param element the element to which style rules must apply in order for them to be added to
      *        the specified style
+     * @param dependencies the dependencies of the style, recorded while the rules are matched
      */
-    void modifyIfNecessary(final ComputedCSSStyleDeclaration style, final HTMLElement element) {
+    void modifyIfNecessary(final ComputedCSSStyleDeclaration style, final HTMLElement element,
+            final ComputedStyleCache.Dependencies dependencies) {
         final HtmlElement e = element.getDomNodeOrDie();
         final CSSRuleList rules = getWrappedSheet().getCssRules();
         if (rules == null) {
@@ -165,7 +302,7 @@ public class Stylesheet extends SimpleScriptable {
                 final SelectorList selectors = styleRule.getSelectors();
                 for (int j = 0; j < selectors.getLength(); j++) {
                     final Selector selector = selectors.item(j);
-                    final boolean selected = selects(selector, e);
+                    final boolean selected = selects(selector, e, dependencies);
                     if (selected) {
                         final org.w3c.dom.css.CSSStyleDeclaration dec = styleRule.getStyle();
                         for (int k = 0; k < dec.getLength(); k++) {
@@ -178,6 +315,10 @@ public class Stylesheet extends SimpleScriptable {
             }
             else if (rule.getType() == CSSRule.IMPORT_RULE) {
                 final CSSImportRuleImpl importRule = (CSSImportRuleImpl) rule;
+                if (getWindow().getWebWindow().getWebClient().isLazyStylesheetsEnabled()
+                    && !isActive(importRule.getMedia().getMediaText())) {
+                    continue;
+                }
                 Stylesheet sheet = imports_.get(importRule);
                 if (sheet == null) {
                     // TODO: surely wrong: in which case is it null and why?
@@ -188,7 +329,7 @@ public class Stylesheet extends SimpleScriptable {
                     sheet = loadStylesheet(getWindow(), ownerNode_, null, url);
                     imports_.put(importRule, sheet);
                 }
-                sheet.modifyIfNecessary(style, element);
+                sheet.modifyIfNecessary(style, element, dependencies);
             }
         }
     }
@@ -228,28 +369,32 @@ public class Stylesheet extends SimpleScriptable {
                 sheet = new Stylesheet(element, (CSSStyleSheet) fromCache, uri);
             }
             else {
-                final WebResponse response = client.loadWebResponse(request);
+                // the response may have been prefetched, see StyleSheetList#prefetch()
+                WebResponse response = null;
+                if (link != null) {
+                    response = link.getWebResponse(false);
+                }
+                if (response == null) {
+                    response = client.loadWebResponse(request);
+                }
                 uri = response.getRequestSettings().getUrl().toExternalForm();
                 client.printContentIfNecessary(response);
                 client.throwFailingHttpStatusCodeExceptionIfNecessary(response);
                 // CSS content must have downloaded OK; go ahead and build the corresponding stylesheet.
                 final String css = response.getContentAsString();
-                final InputSource source = new InputSource(new StringReader(css));
-                sheet = new Stylesheet(element, source, uri);
+                sheet = new Stylesheet(element, css, uri);
                 cache.cacheIfPossible(request, response, sheet.getWrappedSheet());
             }
         }
         catch (final FailingHttpStatusCodeException e) {
             // Got a 404 response or something like that; behave nicely.
             LOG.error(e.getMessage());
-            final InputSource source = new InputSource(new StringReader(""));
-            sheet = new Stylesheet(element, source, uri);
+            sheet = new Stylesheet(element, "", uri);
         }
         catch (final IOException e) {
             // Got a basic IO error; behave nicely.
             LOG.error(e.getMessage());
-            final InputSource source = new InputSource(new StringReader(""));
-            sheet = new Stylesheet(element, source, uri);
+            sheet = new Stylesheet(element, "", uri);
         }
         catch (final Exception e) {
             // Got something unexpected; we can throw an exception in this case.
@@ -258,6 +403,28 @@ public class Stylesheet extends SimpleScriptable {
         return sheet;
     }
 
+    /**
+     * Returns <tt>true</tt> if a stylesheet with the specified media applies to the screen.
+     * @param media the comma separated list of media types or queries, like the value of the <tt>media</tt>
+     *        attribute of a <tt>link</tt>
+     * @return <tt>true</tt> if the media list is empty, or one of its media is <tt>all</tt> or <tt>screen</tt>
+     */
+    static boolean isActive(final String media) {
+        if (StringUtils.isBlank(media)) {
+            return true;
+        }
+        for (final String medium : StringUtils.split(media.toLowerCase(), ',')) {
+            final String[] words = StringUtils.split(medium.trim().replace('(', ' ').replace(')', ' '));
+            final boolean only = words.length > 1 && "only".equals(words[0]);
+            final String type = words.length == 0 || medium.trim().startsWith("(") ? "all" : words[only ? 1 : 0];
+            // the queries on the features and the negations are not evaluated
+            if ("all".equals(type) || "screen".equals(type) || "not".equals(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Returns <tt>true</tt> if the specified selector selects the specified element.
      *
@@ -266,6 +433,19 @@ public class Stylesheet extends SimpleScriptable {
      * @return <tt>true</tt> if it does apply, <tt>false</tt> if it doesn't apply
      */
     boolean selects(final Selector selector, final HtmlElement element) {
+        return selects(selector, element, null);
+    }
+
+    /**
+     * Returns <tt>true</tt> if the specified selector selects the specified element, recording what was examined.
+     *
+     * @param selector the selector to test
+     * @param element the element to test
+     * @param dependencies the dependencies to record the examined nodes to (may be <tt>null</tt>)
+     * @return <tt>true</tt> if it does apply, <tt>false</tt> if it doesn't apply
+     */
+    boolean selects(final Selector selector, final HtmlElement element,
+            final ComputedStyleCache.Dependencies dependencies) {
         final String tagName = element.getTagName();
         switch (selector.getSelectorType()) {
             case Selector.SAC_ANY_NODE_SELECTOR:
@@ -276,14 +456,20 @@ public class Stylesheet extends SimpleScriptable {
                 }
                 final DescendantSelector cs = (DescendantSelector) selector;
                 final HtmlElement parent = (HtmlElement) element.getParentNode();
-                return selects(cs.getSimpleSelector(), element) && parent != null
-                    && selects(cs.getAncestorSelector(), parent);
+                if (dependencies != null && parent != null) {
+                    dependencies.position(parent);
+                }
+                return selects(cs.getSimpleSelector(), element, dependencies) && parent != null
+                    && selects(cs.getAncestorSelector(), parent, dependencies);
             case Selector.SAC_DESCENDANT_SELECTOR:
                 final DescendantSelector ds = (DescendantSelector) selector;
-                if (selects(ds.getSimpleSelector(), element)) {
+                if (selects(ds.getSimpleSelector(), element, dependencies)) {
                     DomNode ancestor = element.getParentNode();
                     while (ancestor instanceof HtmlElement) {
-                        if (selects(ds.getAncestorSelector(), (HtmlElement) ancestor)) {
+                        if (dependencies != null) {
+                            dependencies.position(ancestor);
+                        }
+                        if (selects(ds.getAncestorSelector(), (HtmlElement) ancestor, dependencies)) {
                             return true;
                         }
                         ancestor = ancestor.getParentNode();
@@ -293,7 +479,8 @@ public class Stylesheet extends SimpleScriptable {
             case Selector.SAC_CONDITIONAL_SELECTOR:
                 final ConditionalSelector conditional = (ConditionalSelector) selector;
                 final Condition condition = conditional.getCondition();
-                return selects(conditional.getSimpleSelector(), element) && selects(condition, element);
+                return selects(conditional.getSimpleSelector(), element, dependencies)
+                    && selects(condition, element, dependencies);
             case Selector.SAC_ELEMENT_NODE_SELECTOR:
                 final ElementSelector es = (ElementSelector) selector;
                 final String name = es.getLocalName();
@@ -303,12 +490,15 @@ public class Stylesheet extends SimpleScriptable {
             case Selector.SAC_DIRECT_ADJACENT_SELECTOR:
                 final SiblingSelector ss = (SiblingSelector) selector;
                 final DomNode prev = element.getPreviousSibling();
+                if (dependencies != null) {
+                    dependencies.children(element.getParentNode());
+                }
                 return prev instanceof HtmlElement
-                    && selects(ss.getSelector(), (HtmlElement) prev)
-                    && selects(ss.getSiblingSelector(), element);
+                    && selects(ss.getSelector(), (HtmlElement) prev, dependencies)
+                    && selects(ss.getSiblingSelector(), element, dependencies);
             case Selector.SAC_NEGATIVE_SELECTOR:
                 final NegativeSelector ns = (NegativeSelector) selector;
-                return !selects(ns.getSimpleSelector(), element);
+                return !selects(ns.getSimpleSelector(), element, dependencies);
             case Selector.SAC_PSEUDO_ELEMENT_SELECTOR:
             case Selector.SAC_COMMENT_NODE_SELECTOR:
             case Selector.SAC_CDATA_SECTION_NODE_SELECTOR:
@@ -329,6 +519,22 @@ public class Stylesheet extends SimpleScriptable {
      * @return <tt>true</tt> if it does apply, <tt>false</tt> if it doesn't apply
      */
     boolean selects(final Condition condition, final HtmlElement element) {
+        return selects(condition, element, null);
+    }
+
+    /**
+     * Returns <tt>true</tt> if the specified condition selects the specified element, recording what was examined.
+     *
+     * @param condition the condition to test
+     * @param element the element to test
+     * @param dependencies the dependencies to record the examined nodes to (may be <tt>null</tt>)
+     * @return <tt>true</tt> if it does apply, <tt>false</tt> if it doesn't apply
+     */
+    boolean selects(final Condition condition, final HtmlElement element,
+            final ComputedStyleCache.Dependencies dependencies) {
+        if (dependencies != null) {
+            record(condition, element, dependencies);
+        }
         switch (condition.getConditionType()) {
             case Condition.SAC_ID_CONDITION:
                 final AttributeCondition ac4 = (AttributeCondition) condition;
@@ -340,7 +546,8 @@ public class Stylesheet extends SimpleScriptable {
                 return a3.equals(v3) || a3.startsWith(v3 + " ") || a3.endsWith(" " + v3) || a3.contains(" " + v3 + " ");
             case Condition.SAC_AND_CONDITION:
                 final CombinatorCondition cc1 = (CombinatorCondition) condition;
-                return selects(cc1.getFirstCondition(), element) && selects(cc1.getSecondCondition(), element);
+                return selects(cc1.getFirstCondition(), element, dependencies)
+                    && selects(cc1.getSecondCondition(), element, dependencies);
             case Condition.SAC_ATTRIBUTE_CONDITION:
                 final AttributeCondition ac1 = (AttributeCondition) condition;
                 if (ac1.getSpecified()) {
@@ -359,10 +566,11 @@ public class Stylesheet extends SimpleScriptable {
                 return a2.equals(v2) || a2.startsWith(v2 + " ") || a2.endsWith(" " + v2) || a2.contains(" " + v2 + " ");
             case Condition.SAC_OR_CONDITION:
                 final CombinatorCondition cc2 = (CombinatorCondition) condition;
-                return selects(cc2.getFirstCondition(), element) || selects(cc2.getSecondCondition(), element);
+                return selects(cc2.getFirstCondition(), element, dependencies)
+                    || selects(cc2.getSecondCondition(), element, dependencies);
             case Condition.SAC_NEGATIVE_CONDITION:
                 final NegativeCondition nc = (NegativeCondition) condition;
-                return !selects(nc.getCondition(), element);
+                return !selects(nc.getCondition(), element, dependencies);
             case Condition.SAC_ONLY_CHILD_CONDITION:
                 return element.getParentNode().getChildNodes().getLength() == 1;
             case Condition.SAC_CONTENT_CONDITION:
@@ -378,7 +586,8 @@ public class Stylesheet extends SimpleScriptable {
                 return false;
             case Condition.SAC_ONLY_TYPE_CONDITION:
                 final String tagName = element.getTagName();
-                return ((HtmlPage) element.getPage()).getElementsByTagName(tagName).getLength() == 1;
+                final HtmlPage page = (HtmlPage) element.getPage();
+                return page.getIndexedElementsByTagName(page, tagName, false).size() == 1;
             case Condition.SAC_POSITIONAL_CONDITION:
             case Condition.SAC_PSEUDO_CLASS_CONDITION:
                 return false;
@@ -388,6 +597,44 @@ public class Stylesheet extends SimpleScriptable {
         }
     }
 
+    /**
+     * Records what the specified condition examines on the specified element.
+     *
+     * @param condition the condition to test
+     * @param element the element to test
+     * @param dependencies the dependencies to record the examined nodes to
+     */
+    private void record(final Condition condition, final HtmlElement element,
+            final ComputedStyleCache.Dependencies dependencies) {
+        switch (condition.getConditionType()) {
+            case Condition.SAC_ID_CONDITION:
+                dependencies.attribute(element, "id");
+                break;
+            case Condition.SAC_CLASS_CONDITION:
+                dependencies.attribute(element, "class");
+                break;
+            case Condition.SAC_ATTRIBUTE_CONDITION:
+            case Condition.SAC_BEGIN_HYPHEN_ATTRIBUTE_CONDITION:
+            case Condition.SAC_ONE_OF_ATTRIBUTE_CONDITION:
+                dependencies.attribute(element, ((AttributeCondition) condition).getLocalName());
+                break;
+            case Condition.SAC_ONLY_CHILD_CONDITION:
+                dependencies.children(element.getParentNode());
+                break;
+            case Condition.SAC_LANG_CONDITION:
+                for (DomNode node = element; node instanceof HtmlElement; node = node.getParentNode()) {
+                    dependencies.attribute((HtmlElement) node, "lang");
+                }
+                break;
+            case Condition.SAC_CONTENT_CONDITION:
+            case Condition.SAC_ONLY_TYPE_CONDITION:
+                dependencies.setVolatile();
+                break;
+            default:
+                // nothing but the element itself is examined
+        }
+    }
+
     /**
      * Parses the CSS at the specified input source. If anything at all goes wrong, this method
      * returns an empty stylesheet.
@@ -396,9 +643,20 @@ public class Stylesheet extends SimpleScriptable {
      * @return the stylesheet parsed from the specified input source
      */
     private CSSStyleSheet parseCSS(final InputSource source) {
+        return parse(source, getWindow().getWebWindow().getWebClient().getCssErrorHandler());
+    }
+
+    /**
+     * Parses the CSS at the specified input source. If anything at all goes wrong, this method
+     * returns an empty stylesheet.
+     *
+     * @param source the source from which to retrieve the CSS to be parsed
+     * @param errorHandler the handler of the parsing errors
+     * @return the stylesheet parsed from the specified input source
+     */
+    static CSSStyleSheet parse(final InputSource source, final ErrorHandler errorHandler) {
         CSSStyleSheet ss;
         try {
-            final ErrorHandler errorHandler = getWindow().getWebWindow().getWebClient().getCssErrorHandler();
             final CSSOMParser parser = new CSSOMParser(new SACParserCSS21());
             parser.setErrorHandler(errorHandler);
             ss = parser.parseStyleSheet(source, null, null);
@@ -558,7 +816,9 @@ public class Stylesheet extends SimpleScriptable {
      * @return the position of the inserted rule
      */
     public int jsxFunction_insertRule(final String rule, final int position) {
-        return wrapped_.insertRule(rule.trim(), position);
+        final int index = getModifiableSheet().insertRule(rule.trim(), position);
+        rulesChanged();
+        return index;
     }
 
     /**
@@ -570,10 +830,23 @@ public class Stylesheet extends SimpleScriptable {
      */
     public int jsxFunction_addRule(final String selector, final String rule) {
         final String completeRule = selector.trim() + " {" + rule + "}";
-        wrapped_.insertRule(completeRule, wrapped_.getCssRules().getLength());
+        final CSSStyleSheet sheet = getModifiableSheet();
+        sheet.insertRule(completeRule, sheet.getCssRules().getLength());
+        rulesChanged();
         return -1;
     }
 
+    /**
+     * Discards the computed styles and the display states of the nodes, after a change of the rules.
+     */
+    private void rulesChanged() {
+        getWindow().getComputedStyleCache().clear();
+        final Page page = getWindow().getWebWindow().getEnclosedPage();
+        if (page instanceof HtmlPage) {
+            ((HtmlPage) page).clearDisplayStates();
+        }
+    }
+
     /**
      * Returns this stylesheet's URI (used to resolved contained @import rules).
      * @return this stylesheet's URI (used to resolved contained @import rules)
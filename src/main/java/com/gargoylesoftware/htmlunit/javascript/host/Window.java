@@ -23,7 +23,6 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.WeakHashMap;
 
 import net.sourceforge.htmlunit.corejs.javascript.Context;
 import net.sourceforge.htmlunit.corejs.javascript.Function;
@@ -123,23 +122,21 @@ public class Window extends SimpleScriptable implements ScriptableWithFallbackGe
     private Object controllers_;
 
     /**
-     * Cache computed styles when possible, because their calculation is very expensive, involving lots
-     * of CSS parsing and lots of XPath expression evaluation (CSS selectors are translated to XPath and
-     * then evaluated). We use a weak hash map because we don't want this cache to be the only reason
-     * nodes are kept around in the JVM, if all other references to them are gone.
+     * Cache computed styles when possible, because their calculation is very expensive, involving the
+     * matching of all the rules of all the stylesheets. Each cached style is evicted only by the changes
+     * which can affect it.
      */
-    private transient WeakHashMap<Node, ComputedCSSStyleDeclaration> computedStyles_ =
-        new WeakHashMap<Node, ComputedCSSStyleDeclaration>();
+    private transient ComputedStyleCache computedStyles_ = new ComputedStyleCache();
 
     /**
-     * Restores the transient {@link #computedStyles_} map during deserialization.
+     * Restores the transient {@link #computedStyles_} cache during deserialization.
      * @param stream the stream to read the object from
      * @throws IOException if an IO error occurs
      * @throws ClassNotFoundException if a class is not found
      */
     private void readObject(final ObjectInputStream stream) throws IOException, ClassNotFoundException {
         stream.defaultReadObject();
-        computedStyles_ = new WeakHashMap<Node, ComputedCSSStyleDeclaration>();
+        computedStyles_ = new ComputedStyleCache();
     }
 
     /**
@@ -1288,11 +1285,8 @@ public class Window extends SimpleScriptable implements ScriptableWithFallbackGe
      * @return the computed style
      */
     public ComputedCSSStyleDeclaration jsxFunction_getComputedStyle(final HTMLElement element, final String pseudo) {
-        ComputedCSSStyleDeclaration style;
-
-        synchronized (computedStyles_) {
-            style = computedStyles_.get(element);
-        }
+        final HtmlElement domElement = element.getDomNodeOrDie();
+        ComputedCSSStyleDeclaration style = computedStyles_.get(domElement);
         if (style != null) {
             return style;
         }
@@ -1300,20 +1294,30 @@ public class Window extends SimpleScriptable implements ScriptableWithFallbackGe
         final CSSStyleDeclaration original = element.jsxGet_style();
         style = new ComputedCSSStyleDeclaration(original);
 
+        final ComputedStyleCache.Dependencies dependencies = new ComputedStyleCache.Dependencies(domElement);
         final StyleSheetList sheets = document_.jsxGet_styleSheets();
         for (int i = 0; i < sheets.jsxGet_length(); i++) {
+            if (!sheets.isActive(i)) {
+                continue;
+            }
             final Stylesheet sheet = (Stylesheet) sheets.jsxFunction_item(i);
             LOG.debug("modifyIfNecessary: " + sheet + ", " + style + ", " + element);
-            sheet.modifyIfNecessary(style, element);
+            sheet.modifyIfNecessary(style, element, dependencies);
         }
 
-        synchronized (computedStyles_) {
-            computedStyles_.put(element, style);
-        }
+        computedStyles_.put(style, dependencies);
 
         return style;
     }
 
+    /**
+     * Returns the cache of the computed styles of this window, which also reports its hit rate.
+     * @return the cache of the computed styles of this window
+     */
+    public ComputedStyleCache getComputedStyleCache() {
+        return computedStyles_;
+    }
+
     /**
      * Returns the current selection.
      * @return the current selection
@@ -1422,15 +1426,10 @@ public class Window extends SimpleScriptable implements ScriptableWithFallbackGe
      *   <li><em>Pseudo-Elements and Pseudo-Classes</em> (i.e. "p:first-child"): Affected by changes to parent.</li>
      * </ol>
      *
-     * <p>Together, these rules dictate that the smart (but still lazy) way of removing elements from the computed style
-     * cache is as follows -- whenever a node changes in any way, the cache needs to be cleared of styles for nodes
-     * which:</p>
-     *
-     * <ul>
-     *   <li>are actually the same node as the node that changed</li>
-     *   <li>are siblings of the node that changed</li>
-     *   <li>are descendants of the node that changed</li>
-     * </ul>
+     * <p>Together, these rules dictate that a change needs to evict the styles of the nodes which examined the
+     * changed feature while their style was computed: the changed node itself, the descendants which examined it
+     * as an ancestor and the siblings which examined it as a previous sibling. The {@link ComputedStyleCache}
+     * records these dependencies, and evicts them without looking at the other styles.</p>
      *
      * <p>Additionally, whenever a <tt>style</tt> node or a <tt>link</tt> node with <tt>rel=stylesheet</tt> is added or
      * removed, all elements should be removed from the computed style cache.</p>
@@ -1444,67 +1443,61 @@ public class Window extends SimpleScriptable implements ScriptableWithFallbackGe
          * {@inheritDoc}
          */
         public void nodeAdded(final DomChangeEvent event) {
-            nodeChanged(event.getChangedNode());
+            if (!stylesheetChanged(event.getChangedNode())) {
+                computedStyles_.nodeAdded(event.getParentNode(), event.getChangedNode());
+            }
         }
 
         /**
          * {@inheritDoc}
          */
         public void nodeDeleted(final DomChangeEvent event) {
-            nodeChanged(event.getChangedNode());
+            if (!stylesheetChanged(event.getChangedNode())) {
+                computedStyles_.nodeDeleted(event.getParentNode(), event.getChangedNode());
+            }
         }
 
         /**
          * {@inheritDoc}
          */
         public void attributeAdded(final HtmlAttributeChangeEvent event) {
-            nodeChanged(event.getHtmlElement());
+            attributeChanged(event);
         }
 
         /**
          * {@inheritDoc}
          */
         public void attributeRemoved(final HtmlAttributeChangeEvent event) {
-            nodeChanged(event.getHtmlElement());
+            attributeChanged(event);
         }
 
         /**
          * {@inheritDoc}
          */
         public void attributeReplaced(final HtmlAttributeChangeEvent event) {
-            nodeChanged(event.getHtmlElement());
+            attributeChanged(event);
         }
 
-        private void nodeChanged(final DomNode changed) {
+        private void attributeChanged(final HtmlAttributeChangeEvent event) {
+            if (!stylesheetChanged(event.getHtmlElement())) {
+                computedStyles_.attributeChanged(event.getHtmlElement(), event.getName());
+            }
+        }
+
+        private boolean stylesheetChanged(final DomNode changed) {
             // If a stylesheet was changed, all of our calculations could be off; clear the cache.
             if (changed instanceof HtmlStyle) {
-                synchronized (computedStyles_) {
-                    computedStyles_.clear();
-                }
-                return;
+                computedStyles_.clear();
+                return true;
             }
             if (changed instanceof HtmlLink) {
                 final String rel = ((HtmlLink) changed).getRelAttribute().toLowerCase();
                 if ("stylesheet".equals(rel)) {
-                    synchronized (computedStyles_) {
-                        computedStyles_.clear();
-                    }
-                    return;
-                }
-            }
-            // Apparently it wasn't a stylesheet that changed; be semi-smart about what we evict and when.
-            synchronized (computedStyles_) {
-                final Iterator<Map.Entry<Node, ComputedCSSStyleDeclaration>> i = computedStyles_.entrySet().iterator();
-                while (i.hasNext()) {
-                    final Map.Entry<Node, ComputedCSSStyleDeclaration> entry = i.next();
-                    final DomNode node = entry.getKey().getDomNodeOrDie();
-                    if (changed == node
-                        || changed.getParentNode() == node.getParentNode()
-                        || changed.isAncestorOf(node)) {
-                        i.remove();
-                    }
+                    computedStyles_.clear();
+                    return true;
                 }
             }
+            return false;
         }
     }
 
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2002-2009 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.javascript.host.css;
+
+import java.util.Arrays;
+
+/**
+ * The memoised box of an element, as approximated by the simple layout of {@link ComputedCSSStyleDeclaration}:
+ * its sizes, its displacement caused by the previous siblings, and its offsets.
+ *
+ * <p>Each value is computed the first time it is requested. The boxes are kept in the
+ * {@link com.gargoylesoftware.htmlunit.javascript.host.ComputedStyleCache} of the window, which discards
+ * them all as soon as the document or a stylesheet is changed: a box depends on the styles of the element,
+ * but also on its siblings and on its ancestors.</p>
+ *
+ * @version $Revision$
+ * @author Ahmed Ashour
+ */
+public final class BoxModel {
+
+    /** The value of the properties which are not computed yet. */
+    public static final int UNKNOWN = Integer.MIN_VALUE;
+
+    private final int[] widths_ = new int[4];
+    private final int[] heights_ = new int[4];
+    private int staticTop_ = UNKNOWN;
+    private int offsetTop_ = UNKNOWN;
+    private int offsetLeft_ = UNKNOWN;
+
+    /**
+     * Creates an instance, with all the values unknown.
+     */
+    public BoxModel() {
+        Arrays.fill(widths_, UNKNOWN);
+        Arrays.fill(heights_, UNKNOWN);
+    }
+
+    /**
+     * Returns the width, as computed by {@link ComputedCSSStyleDeclaration#getCalculatedWidth(boolean, boolean)}.
+     * @param includeBorder whether or not the border is included
+     * @param includePadding whether or not the padding is included
+     * @return the width in pixels, or {@link #UNKNOWN}
+     */
+    public int getWidth(final boolean includeBorder, final boolean includePadding) {
+        return widths_[index(includeBorder, includePadding)];
+    }
+
+    /**
+     * Sets the width, as computed by {@link ComputedCSSStyleDeclaration#getCalculatedWidth(boolean, boolean)}.
+     * @param includeBorder whether or not the border is included
+     * @param includePadding whether or not the padding is included
+     * @param width the width in pixels
+     */
+    public void setWidth(final boolean includeBorder, final boolean includePadding, final int width) {
+        widths_[index(includeBorder, includePadding)] = width;
+    }
+
+    /**
+     * Returns the height, as computed by {@link ComputedCSSStyleDeclaration#getCalculatedHeight(boolean, boolean)}.
+     * @param includeBorder whether or not the border is included
+     * @param includePadding whether or not the padding is included
+     * @return the height in pixels, or {@link #UNKNOWN}
+     */
+    public int getHeight(final boolean includeBorder, final boolean includePadding) {
+        return heights_[index(includeBorder, includePadding)];
+    }
+
+    /**
+     * Sets the height, as computed by {@link ComputedCSSStyleDeclaration#getCalculatedHeight(boolean, boolean)}.
+     * @param includeBorder whether or not the border is included
+     * @param includePadding whether or not the padding is included
+     * @param height the height in pixels
+     */
+    public void setHeight(final boolean includeBorder, final boolean includePadding, final int height) {
+        heights_[index(includeBorder, includePadding)] = height;
+    }
+
+    /**
+     * Returns the vertical displacement caused by the previous siblings, for the elements which
+     * are not absolutely positioned.
+     * @return the displacement in pixels, or {@link #UNKNOWN}
+     */
+    public int getStaticTop() {
+        return staticTop_;
+    }
+
+    /**
+     * Sets the vertical displacement caused by the previous siblings.
+     * @param staticTop the displacement in pixels
+     */
+    public void setStaticTop(final int staticTop) {
+        staticTop_ = staticTop;
+    }
+
+    /**
+     * Returns the <tt>offsetTop</tt> of the element.
+     * @return the <tt>offsetTop</tt> in pixels, or {@link #UNKNOWN}
+     */
+    public int getOffsetTop() {
+        return offsetTop_;
+    }
+
+    /**
+     * Sets the <tt>offsetTop</tt> of the element.
+     * @param offsetTop the <tt>offsetTop</tt> in pixels
+     */
+    public void setOffsetTop(final int offsetTop) {
+        offsetTop_ = offsetTop;
+    }
+
+    /**
+     * Returns the <tt>offsetLeft</tt> of the element.
+     * @return the <tt>offsetLeft</tt> in pixels, or {@link #UNKNOWN}
+     */
+    public int getOffsetLeft() {
+        return offsetLeft_;
+    }
+
+    /**
+     * Sets the <tt>offsetLeft</tt> of the element.
+     * @param offsetLeft the <tt>offsetLeft</tt> in pixels
+     */
+    public void setOffsetLeft(final int offsetLeft) {
+        offsetLeft_ = offsetLeft;
+    }
+
+    private static int index(final boolean includeBorder, final boolean includePadding) {
+        return (includeBorder ? 2 : 0) + (includePadding ? 1 : 0);
+    }
+}
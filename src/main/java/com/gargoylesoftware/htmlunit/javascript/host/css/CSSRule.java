@@ -58,7 +58,7 @@ public class CSSRule extends SimpleScriptable {
 
     private final Stylesheet stylesheet_;
 
-    private final org.w3c.dom.css.CSSRule rule_;
+    private org.w3c.dom.css.CSSRule rule_;
 
     /**
      * Creates a new instance. JavaScript objects must have a default constructor.
@@ -104,7 +104,7 @@ public class CSSRule extends SimpleScriptable {
      * @return the type of the rule.
      */
     public short jsxGet_type() {
-        return rule_.getType();
+        return getRule().getType();
     }
 
     /**
@@ -113,7 +113,7 @@ public class CSSRule extends SimpleScriptable {
      * @return the parsable textual representation of the rule.
      */
     public String jsxGet_cssText() {
-        return rule_.getCssText();
+        return getRule().getCssText();
     }
 
     /**
@@ -121,7 +121,7 @@ public class CSSRule extends SimpleScriptable {
      * @param cssText the parsable textual representation of the rule
      */
     public void jsxSet_cssText(final String cssText) {
-        rule_.setCssText(cssText);
+        getModifiableRule().setCssText(cssText);
     }
 
     /**
@@ -138,7 +138,7 @@ public class CSSRule extends SimpleScriptable {
      * @return the parent rule
      */
     public CSSRule jsxGet_parentRule() {
-        final org.w3c.dom.css.CSSRule parentRule = rule_.getParentRule();
+        final org.w3c.dom.css.CSSRule parentRule = getRule().getParentRule();
         if (parentRule != null) {
             return CSSRule.create(stylesheet_, parentRule);
         }
@@ -150,6 +150,19 @@ public class CSSRule extends SimpleScriptable {
      * @return the wrapped rule.
      */
     protected org.w3c.dom.css.CSSRule getRule() {
+        if (stylesheet_ != null) {
+            rule_ = stylesheet_.getCurrentRule(rule_);
+        }
+        return rule_;
+    }
+
+    /**
+     * Returns the wrapped rule, to be modified: the rule is copied first if it is shared
+     * (see {@link Stylesheet#getModifiableRule(org.w3c.dom.css.CSSRule)}).
+     * @return the wrapped rule, which can be modified
+     */
+    protected org.w3c.dom.css.CSSRule getModifiableRule() {
+        rule_ = stylesheet_.getModifiableRule(rule_);
         return rule_;
     }
 
@@ -33,7 +33,6 @@ public class CSSRuleList extends SimpleScriptable {
     private static final long serialVersionUID = 6068213884501456020L;
 
     private final Stylesheet stylesheet_;
-    private final org.w3c.dom.css.CSSRuleList rules_;
 
     /**
      * Creates a new instance. JavaScript objects must have a default constructor.
@@ -41,7 +40,6 @@ public class CSSRuleList extends SimpleScriptable {
     @Deprecated
     public CSSRuleList() {
         stylesheet_ = null;
-        rules_ = null;
     }
 
     /**
@@ -50,7 +48,6 @@ public class CSSRuleList extends SimpleScriptable {
      */
     public CSSRuleList(final Stylesheet stylesheet) {
         stylesheet_ = stylesheet;
-        rules_ = stylesheet.getWrappedSheet().getCssRules();
         setParentScope(stylesheet.getParentScope());
         setPrototype(getPrototype(getClass()));
     }
@@ -60,12 +57,24 @@ public class CSSRuleList extends SimpleScriptable {
      * @return the length of this list.
      */
     public int jsxGet_length() {
-        if (rules_ != null) {
-            return rules_.getLength();
+        final org.w3c.dom.css.CSSRuleList rules = getRules();
+        if (rules != null) {
+            return rules.getLength();
         }
         return 0;
     }
 
+    /**
+     * Returns the rules of the stylesheet, read each time as the stylesheet is copied by its first modification.
+     * @return the rules of the stylesheet
+     */
+    private org.w3c.dom.css.CSSRuleList getRules() {
+        if (stylesheet_ == null) {
+            return null;
+        }
+        return stylesheet_.getWrappedSheet().getCssRules();
+    }
+
     /**
      * Returns the item in the given index.
      * @param index the index
@@ -127,7 +136,7 @@ public class CSSRuleList extends SimpleScriptable {
      */
     @Override
     public Object get(final int index, final Scriptable start) {
-        return CSSRule.create(stylesheet_, rules_.item(index));
+        return CSSRule.create(stylesheet_, getRules().item(index));
     }
 
 }
@@ -89,9 +89,12 @@ public class CSSStyleDeclaration extends SimpleScriptable {
     /** The element to which this style belongs. */
     private HTMLElement jsElement_;
 
-    /** The wrapped CSSStyleDeclaration (if created from CSSStyleRule). */
+    /** The wrapped CSSStyleDeclaration (if parsed from the style attribute by getPropertyCSSValue). */
     private org.w3c.dom.css.CSSStyleDeclaration styleDeclaration_;
 
+    /** The rule whose declaration is wrapped (if created from CSSStyleRule). */
+    private CSSStyleRule parentRule_;
+
     /** The current style element index. */
     private long currentElementIndex_;
 
@@ -132,14 +135,37 @@ public class CSSStyleDeclaration extends SimpleScriptable {
     }
 
     /**
-     * Creates an instance which wraps the specified style declaration.
+     * Creates an instance which wraps the style declaration of the specified rule. The rule is copied only
+     * when the declaration is modified, if it is shared (see {@link CSSRule#getModifiableRule()}).
      * @param parentScope the parent scope to use
-     * @param styleDeclaration the style declaration to wrap
+     * @param parentRule the rule whose style declaration is wrapped
      */
-    CSSStyleDeclaration(final Scriptable parentScope, final org.w3c.dom.css.CSSStyleDeclaration styleDeclaration) {
+    CSSStyleDeclaration(final Scriptable parentScope, final CSSStyleRule parentRule) {
         setParentScope(parentScope);
         setPrototype(getPrototype(getClass()));
-        styleDeclaration_ = styleDeclaration;
+        parentRule_ = parentRule;
+    }
+
+    /**
+     * Returns the wrapped style declaration, which must not be modified.
+     * @return the wrapped style declaration, or <tt>null</tt> if this style is bound to an element
+     */
+    private org.w3c.dom.css.CSSStyleDeclaration getStyleDeclaration() {
+        if (parentRule_ != null) {
+            return parentRule_.getStyleDeclaration();
+        }
+        return styleDeclaration_;
+    }
+
+    /**
+     * Returns the wrapped style declaration, after having copied its rule if it was shared.
+     * @return the wrapped style declaration, or <tt>null</tt> if this style is bound to an element
+     */
+    private org.w3c.dom.css.CSSStyleDeclaration getModifiableStyleDeclaration() {
+        if (parentRule_ != null) {
+            return parentRule_.getModifiableStyleDeclaration();
+        }
+        return styleDeclaration_;
     }
 
     /**
@@ -186,11 +212,12 @@ public class CSSStyleDeclaration extends SimpleScriptable {
      * @return the named style attribute value, or an empty string if it is not found
      */
     protected String getStyleAttribute(String name, final boolean camelCase) {
-        if (styleDeclaration_ != null) {
+        final org.w3c.dom.css.CSSStyleDeclaration styleDeclaration = getStyleDeclaration();
+        if (styleDeclaration != null) {
             if (camelCase) {
                 name = uncamelize(name);
             }
-            return styleDeclaration_.getPropertyValue(name);
+            return styleDeclaration.getPropertyValue(name);
         }
         final StyleElement element = getStyleMap(camelCase).get(name);
         if (element != null && element.getValue() != null) {
@@ -289,8 +316,9 @@ public class CSSStyleDeclaration extends SimpleScriptable {
      */
     protected void setStyleAttribute(String name, final String newValue) {
         name = uncamelize(name);
-        if (styleDeclaration_ != null) {
-            styleDeclaration_.setProperty(name, newValue, null);
+        final org.w3c.dom.css.CSSStyleDeclaration styleDeclaration = getModifiableStyleDeclaration();
+        if (styleDeclaration != null) {
+            styleDeclaration.setProperty(name, newValue, null);
         }
         else {
             replaceStyleAttribute(name, newValue);
@@ -4252,7 +4280,7 @@ public class CSSStyleDeclaration extends SimpleScriptable {
         LOG.info("getPropertyCSSValue(" + name + "): getPropertyCSSValue support is experimental");
         // following is a hack, just to have basic support for getPropertyCSSValue
         // TODO: rework the whole CSS processing here! we should *always* parse the style!
-        if (styleDeclaration_ == null) {
+        if (getStyleDeclaration() == null) {
             final String uri = getDomNodeOrDie().getPage().getWebResponse().getRequestSettings()
             .getUrl().toExternalForm();
             final String styleAttribute = jsElement_.getDomNodeOrDie().getAttribute("style");
@@ -4268,7 +4296,8 @@ public class CSSStyleDeclaration extends SimpleScriptable {
                 throw new RuntimeException(e);
             }
         }
-        org.w3c.dom.css.CSSValue cssValue = styleDeclaration_.getPropertyCSSValue(name);
+        // the value may be modified below
+        org.w3c.dom.css.CSSValue cssValue = getModifiableStyleDeclaration().getPropertyCSSValue(name);
         if (cssValue == null) {
             final CSSValueImpl newValue = new CSSValueImpl();
             newValue.setFloatValue(CSSPrimitiveValue.CSS_PX, 0);
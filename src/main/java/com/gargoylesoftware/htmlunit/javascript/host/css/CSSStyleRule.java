@@ -80,7 +80,7 @@ public class CSSStyleRule extends CSSRule {
      * @param selectorText the textual representation of the selector for the rule set
      */
     public void jsxSet_selectorText(final String selectorText) {
-        ((org.w3c.dom.css.CSSStyleRule) getRule()).setSelectorText(selectorText);
+        ((org.w3c.dom.css.CSSStyleRule) getModifiableRule()).setSelectorText(selectorText);
     }
 
     /**
@@ -88,6 +88,22 @@ public class CSSStyleRule extends CSSRule {
      * @return the declaration-block of this rule set
      */
     public CSSStyleDeclaration jsxGet_style() {
-        return new CSSStyleDeclaration(getParentScope(), ((org.w3c.dom.css.CSSStyleRule) getRule()).getStyle());
+        return new CSSStyleDeclaration(getParentScope(), this);
+    }
+
+    /**
+     * Returns the wrapped declaration-block, which must not be modified.
+     * @return the wrapped declaration-block
+     */
+    org.w3c.dom.css.CSSStyleDeclaration getStyleDeclaration() {
+        return ((org.w3c.dom.css.CSSStyleRule) getRule()).getStyle();
+    }
+
+    /**
+     * Returns the wrapped declaration-block, after having copied the rule if it was shared.
+     * @return the wrapped declaration-block, which can be modified
+     */
+    org.w3c.dom.css.CSSStyleDeclaration getModifiableStyleDeclaration() {
+        return ((org.w3c.dom.css.CSSStyleRule) getModifiableRule()).getStyle();
     }
 }
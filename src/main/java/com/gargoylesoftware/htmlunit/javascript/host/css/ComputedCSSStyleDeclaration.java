@@ -28,6 +28,7 @@ import net.sourceforge.htmlunit.corejs.javascript.Context;
 import com.gargoylesoftware.htmlunit.html.DomNode;
 import com.gargoylesoftware.htmlunit.html.HtmlElement;
 import com.gargoylesoftware.htmlunit.html.HtmlHead;
+import com.gargoylesoftware.htmlunit.javascript.host.ComputedStyleCache;
 import com.gargoylesoftware.htmlunit.javascript.host.html.HTMLElement;
 
 /**
@@ -1173,6 +1174,16 @@ public class ComputedCSSStyleDeclaration extends CSSStyleDeclaration {
      * @return the element's width in pixels, possibly including its padding and border
      */
     public int getCalculatedWidth(final boolean includeBorder, final boolean includePadding) {
+        final BoxModel box = getBoxModel();
+        int width = box.getWidth(includeBorder, includePadding);
+        if (width == BoxModel.UNKNOWN) {
+            width = computeWidth(includeBorder, includePadding);
+            box.setWidth(includeBorder, includePadding, width);
+        }
+        return width;
+    }
+
+    private int computeWidth(final boolean includeBorder, final boolean includePadding) {
         int width;
         final String styleWidth = super.jsxGet_width();
         final DomNode parent = getElement().getDomNodeOrDie().getParentNode();
@@ -1207,6 +1218,16 @@ public class ComputedCSSStyleDeclaration extends CSSStyleDeclaration {
      * @return the element's height, possibly including its padding and border
      */
     public int getCalculatedHeight(final boolean includeBorder, final boolean includePadding) {
+        final BoxModel box = getBoxModel();
+        int height = box.getHeight(includeBorder, includePadding);
+        if (height == BoxModel.UNKNOWN) {
+            height = computeHeight(includeBorder, includePadding);
+            box.setHeight(includeBorder, includePadding, height);
+        }
+        return height;
+    }
+
+    private int computeHeight(final boolean includeBorder, final boolean includePadding) {
         int height = pixelValue(super.jsxGet_height());
         if (includeBorder) {
             final int borderTop = pixelValue(jsxGet_borderTopWidth());
@@ -1254,17 +1275,7 @@ public class ComputedCSSStyleDeclaration extends CSSStyleDeclaration {
             top -= pixelValue(b);
         }
         else {
-            // Estimate the vertical displacement caused by *previous* siblings.
-            // This is very rough, and doesn't even take position or display types into account (hence the
-            // need for the explicit check for HtmlHead elements, which are display:none in regular UAs).
-            top = 0;
-            DomNode prev = this.getElement().getDomNodeOrDie().getPreviousSibling();
-            while (prev != null) {
-                if (prev instanceof HtmlElement && !(prev instanceof HtmlHead)) {
-                    top += 20;
-                }
-                prev = prev.getPreviousSibling();
-            }
+            top = getStaticTop();
         }
 
         if (includeMargin) {
@@ -1335,6 +1346,47 @@ public class ComputedCSSStyleDeclaration extends CSSStyleDeclaration {
         return left;
     }
 
+    /**
+     * Returns the vertical displacement caused by the previous siblings of the element. The displacements
+     * of all the siblings are computed in a single traversal of their parent, so that querying the position
+     * of each child of a long list doesn't walk the list again for each child.
+     * @return the vertical displacement caused by the previous siblings, in pixels
+     */
+    private int getStaticTop() {
+        final HtmlElement element = getElement().getDomNodeOrDie();
+        final ComputedStyleCache cache = getWindow().getComputedStyleCache();
+        final BoxModel box = cache.getBoxModel(element);
+        int staticTop = box.getStaticTop();
+        if (staticTop == BoxModel.UNKNOWN) {
+            staticTop = 0;
+            final DomNode parent = element.getParentNode();
+            if (parent != null) {
+                // Estimate the vertical displacement caused by *previous* siblings.
+                // This is very rough, and doesn't even take position or display types into account (hence the
+                // need for the explicit check for HtmlHead elements, which are display:none in regular UAs).
+                // The boxes of detached elements aren't cached: the value is returned from this traversal.
+                int top = 0;
+                for (final DomNode child : parent.getChildren()) {
+                    if (child instanceof HtmlElement) {
+                        cache.getBoxModel((HtmlElement) child).setStaticTop(top);
+                        if (child == element) {
+                            staticTop = top;
+                        }
+                        if (!(child instanceof HtmlHead)) {
+                            top += 20;
+                        }
+                    }
+                }
+            }
+            box.setStaticTop(staticTop);
+        }
+        return staticTop;
+    }
+
+    private BoxModel getBoxModel() {
+        return getWindow().getComputedStyleCache().getBoxModel(getElement().getDomNodeOrDie());
+    }
+
     /**
      * Gets the top padding of the element.
      * @return the value in pixels
@@ -42,6 +42,7 @@ import com.gargoylesoftware.htmlunit.html.HtmlAttributeChangeEvent;
 import com.gargoylesoftware.htmlunit.html.HtmlAttributeChangeListener;
 import com.gargoylesoftware.htmlunit.html.HtmlElement;
 import com.gargoylesoftware.htmlunit.html.HtmlNoScript;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
 import com.gargoylesoftware.htmlunit.html.xpath.XPathUtils;
 import com.gargoylesoftware.htmlunit.javascript.SimpleScriptable;
 import com.gargoylesoftware.htmlunit.javascript.configuration.JavaScriptConfiguration;
@@ -70,6 +71,13 @@ public class HTMLCollection extends SimpleScriptable implements Function, NodeLi
 
     private String xpath_;
     private DomNode node_;
+
+    /**
+     * The lower case local name or the class names of the elements, when this collection can be
+     * retrieved from the element index of an {@link HtmlPage} rather than by evaluating {@link #xpath_}.
+     */
+    private String indexedTagName_;
+    private String[] indexedClassNames_;
     private boolean avoidObjectDetection_ = false;
 
     /**
@@ -83,6 +91,13 @@ public class HTMLCollection extends SimpleScriptable implements Function, NodeLi
      */
     private List<Object> cachedElements_;
 
+    /**
+     * Whether this collection contains the children of {@link #node_}; the cached elements are then valid
+     * as long as the child modification count of the node is {@link #cachedChildModificationCount_}.
+     */
+    private boolean fromChildren_;
+    private int cachedChildModificationCount_;
+
     /**
      * IE provides a way of enumerating through some element collections; this counter supports that functionality.
      */
@@ -163,6 +178,32 @@ public class HTMLCollection extends SimpleScriptable implements Function, NodeLi
         }
     }
 
+    /**
+     * Initializes the content of this collection with the descendants of the specified node having the
+     * specified local name. The elements will be retrieved from the element index of the page when
+     * it is available, and "calculated" using the specified XPath expression otherwise.
+     * @param node the node to serve as root
+     * @param xpath the XPath expression equivalent to the tag name search
+     * @param lowerCaseName the lower case local name, or <tt>*</tt> for all the elements
+     */
+    public void initByTagName(final DomNode node, final String xpath, final String lowerCaseName) {
+        init(node, xpath);
+        indexedTagName_ = lowerCaseName;
+    }
+
+    /**
+     * Initializes the content of this collection with the descendants of the specified node having all
+     * the specified classes. The elements will be retrieved from the element index of the page when
+     * it is available, and "calculated" using the specified XPath expression otherwise.
+     * @param node the node to serve as root
+     * @param xpath the XPath expression equivalent to the class names search
+     * @param classNames the class names, none of them being empty
+     */
+    public void initByClassNames(final DomNode node, final String xpath, final String[] classNames) {
+        init(node, xpath);
+        indexedClassNames_ = classNames;
+    }
+
     /**
      * Initializes the collection. The elements will be "calculated" as the children of the node.
      * @param node the node to grab children from
@@ -170,16 +211,21 @@ public class HTMLCollection extends SimpleScriptable implements Function, NodeLi
     public void initFromChildren(final DomNode node) {
         if (node != null) {
             node_ = node;
-            final DomHtmlAttributeChangeListenerImpl listener = new DomHtmlAttributeChangeListenerImpl();
-            node_.addDomChangeListener(listener);
-            if (node_ instanceof HtmlElement) {
-                ((HtmlElement) node_).addHtmlAttributeChangeListener(listener);
-                cachedElements_ = null;
-            }
+            fromChildren_ = true;
         }
         transformer_ = NOPTransformer.INSTANCE;
     }
 
+    /**
+     * Initializes the collection with the specified elements, which are not updated by the changes of the
+     * document: this collection is then a static node list.
+     * @param elements the elements
+     */
+    public void initStatic(final List< ? extends DomNode> elements) {
+        cachedElements_ = new ArrayList<Object>(elements);
+        transformer_ = NOPTransformer.INSTANCE;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -232,6 +278,13 @@ public class HTMLCollection extends SimpleScriptable implements Function, NodeLi
      * @return the list of {@link HtmlElement} contained in this collection
      */
     protected List<Object> getElements() {
+        if (fromChildren_) {
+            final int count = node_.getChildModificationCount();
+            if (count != cachedChildModificationCount_) {
+                cachedElements_ = null;
+                cachedChildModificationCount_ = count;
+            }
+        }
         if (cachedElements_ == null) {
             cachedElements_ = computeElements();
         }
@@ -243,18 +296,18 @@ public class HTMLCollection extends SimpleScriptable implements Function, NodeLi
      * @return the elements whose associated host objects are available through this collection
      */
     protected List<Object> computeElements() {
+        final List<DomElement> indexed = getIndexedElements();
+        if (indexed != null) {
+            return new ArrayList<Object>(indexed);
+        }
+
         final List<Object> response;
         if (node_ != null) {
             if (xpath_ != null) {
                 response = XPathUtils.getByXPath(node_, xpath_);
             }
             else {
-                response = new ArrayList<Object>();
-                Node node = node_.getFirstChild();
-                while (node != null) {
-                    response.add(node);
-                    node = node.getNextSibling();
-                }
+                response = new ArrayList<Object>(node_.getChildNodes());
             }
         }
         else {
@@ -289,6 +342,24 @@ public class HTMLCollection extends SimpleScriptable implements Function, NodeLi
         return response;
     }
 
+    /**
+     * Returns the elements of this collection from the element index of the page, if possible.
+     * @return the elements, or <tt>null</tt> if they have to be computed from the XPath expression
+     */
+    private List<DomElement> getIndexedElements() {
+        if (node_ == null || !(node_.getPage() instanceof HtmlPage)) {
+            return null;
+        }
+        final HtmlPage page = (HtmlPage) node_.getPage();
+        if (indexedTagName_ != null) {
+            return page.getIndexedElementsByTagName(node_, indexedTagName_, true);
+        }
+        if (indexedClassNames_ != null) {
+            return page.getIndexedElementsByClassNames(node_, indexedClassNames_, true);
+        }
+        return null;
+    }
+
     /**
      * Recursively checks whether "xml:space" attribute is set to "default".
      * @param node node to start checking from
@@ -77,6 +77,7 @@ import com.gargoylesoftware.htmlunit.javascript.host.Node;
 import com.gargoylesoftware.htmlunit.javascript.host.TextRange;
 import com.gargoylesoftware.htmlunit.javascript.host.TextRectangle;
 import com.gargoylesoftware.htmlunit.javascript.host.Window;
+import com.gargoylesoftware.htmlunit.javascript.host.css.BoxModel;
 import com.gargoylesoftware.htmlunit.javascript.host.css.CSSStyleDeclaration;
 import com.gargoylesoftware.htmlunit.javascript.host.css.ComputedCSSStyleDeclaration;
 
@@ -237,10 +238,15 @@ public class HTMLElement extends Element implements ScriptableWithFallbackGetter
          * Should be called only on construction.
          */
         final HtmlElement htmlElt = (HtmlElement) domNode;
-        for (final DomAttr attr : htmlElt.getAttributesMap().values()) {
-            final String eventName = attr.getName();
-            if (eventName.startsWith("on")) {
-                createEventHandler(eventName, attr.getValue());
+        final Map<String, DomAttr> attributes = htmlElt.getAttributesMap();
+        for (final String name : attributes.keySet()) {
+            // the attribute nodes are created lazily: only look at the candidates
+            if (name.startsWith("on")) {
+                final DomAttr attr = attributes.get(name);
+                final String eventName = attr.getName();
+                if (eventName.startsWith("on")) {
+                    createEventHandler(eventName, attr.getValue());
+                }
             }
         }
     }
@@ -619,7 +625,7 @@ public class HTMLElement extends Element implements ScriptableWithFallbackGetter
         else {
             xpath = ".//*[local-name() = '" + tagName + "']";
         }
-        collection.init(node, xpath);
+        collection.initByTagName(node, xpath, tagName);
 
         elementsByTagName_.put(tagName, collection);
 
@@ -633,7 +639,12 @@ public class HTMLElement extends Element implements ScriptableWithFallbackGetter
      */
     public HTMLCollection jsxFunction_getElementsByClassName(final String className) {
         final HTMLCollection collection = new HTMLCollection(this);
-        final String[] classNames = className.split("\\s");
+        final List<String> classNames = new ArrayList<String>();
+        for (final String name : className.split("\\s")) {
+            if (name.length() != 0) {
+                classNames.add(name);
+            }
+        }
         final StringBuilder exp = new StringBuilder();
         for (final String name : classNames) {
             if (exp.length() != 0) {
@@ -643,9 +654,13 @@ public class HTMLElement extends Element implements ScriptableWithFallbackGetter
             exp.append(name);
             exp.append(" ')");
         }
+        if (exp.length() == 0) {
+            exp.append("false()");
+        }
         exp.insert(0, ".//*[");
         exp.append("]");
-        collection.init(getDomNodeOrDie(), exp.toString());
+        collection.initByClassNames(getDomNodeOrDie(), exp.toString(),
+            classNames.toArray(new String[classNames.size()]));
         return collection;
     }
 
@@ -1623,6 +1638,16 @@ public class HTMLElement extends Element implements ScriptableWithFallbackGetter
             return 0;
         }
 
+        final BoxModel box = getWindow().getComputedStyleCache().getBoxModel(getDomNodeOrDie());
+        int left = box.getOffsetLeft();
+        if (left == BoxModel.UNKNOWN) {
+            left = computeOffsetLeft();
+            box.setOffsetLeft(left);
+        }
+        return left;
+    }
+
+    private int computeOffsetLeft() {
         int left = 0;
         final HTMLElement offsetParent = getOffsetParent();
 
@@ -1669,6 +1694,16 @@ public class HTMLElement extends Element implements ScriptableWithFallbackGetter
             return 0;
         }
 
+        final BoxModel box = getWindow().getComputedStyleCache().getBoxModel(getDomNodeOrDie());
+        int top = box.getOffsetTop();
+        if (top == BoxModel.UNKNOWN) {
+            top = computeOffsetTop();
+            box.setOffsetTop(top);
+        }
+        return top;
+    }
+
+    private int computeOffsetTop() {
         int top = 0;
         final HTMLElement offsetParent = getOffsetParent();
 
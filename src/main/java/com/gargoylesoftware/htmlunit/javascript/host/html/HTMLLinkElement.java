@@ -116,4 +116,12 @@ public class HTMLLinkElement extends HTMLElement {
         return sheet_;
     }
 
+    /**
+     * Returns <tt>true</tt> if the associated style sheet has already been loaded.
+     * @return <tt>true</tt> if the associated style sheet has already been loaded
+     */
+    public boolean isSheetLoaded() {
+        return sheet_ != null;
+    }
+
 }
@@ -14,12 +14,6 @@
  */
 package com.gargoylesoftware.htmlunit.javascript.host.html;
 
-import java.io.StringReader;
-
-import org.w3c.css.sac.InputSource;
-import org.w3c.dom.css.CSSStyleSheet;
-
-import com.gargoylesoftware.htmlunit.Cache;
 import com.gargoylesoftware.htmlunit.html.HtmlStyle;
 import com.gargoylesoftware.htmlunit.javascript.host.Stylesheet;
 
@@ -55,22 +49,14 @@ public class HTMLStyleElement extends HTMLElement {
 
         String css = "";
         final HtmlStyle style = (HtmlStyle) getDomNodeOrDie();
-        if (style.getFirstChild() != null) {
-            css = style.getFirstChild().asText();
+        // the raw text: its rendering by asText() depends on the styles, which would need this sheet
+        if (style.getFirstChild() != null && style.getFirstChild().getNodeValue() != null) {
+            css = style.getFirstChild().getNodeValue();
         }
 
-        final Cache cache = getWindow().getWebWindow().getWebClient().getCache();
-        final CSSStyleSheet cached = cache.getCachedStyleSheet(css);
         final String uri = getDomNodeOrDie().getPage().getWebResponse().getRequestSettings()
         .getUrl().toExternalForm();
-        if (cached != null) {
-            sheet_ = new Stylesheet(this, cached, uri);
-        }
-        else {
-            final InputSource source = new InputSource(new StringReader(css));
-            sheet_ = new Stylesheet(this, source, uri);
-            cache.cache(css, sheet_.getWrappedSheet());
-        }
+        sheet_ = new Stylesheet(this, css, uri);
 
         return sheet_;
     }
@@ -82,4 +68,12 @@ public class HTMLStyleElement extends HTMLElement {
     public Stylesheet jsxGet_styleSheet() {
         return jsxGet_sheet();
     }
+
+    /**
+     * Returns <tt>true</tt> if the associated sheet has already been parsed.
+     * @return <tt>true</tt> if the associated sheet has already been parsed
+     */
+    public boolean isSheetLoaded() {
+        return sheet_ != null;
+    }
 }
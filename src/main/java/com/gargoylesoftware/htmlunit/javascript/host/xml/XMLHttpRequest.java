@@ -20,6 +20,7 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Future;
 
 import com.gargoylesoftware.htmlunit.javascript.PostponedAction;
 import net.sourceforge.htmlunit.corejs.javascript.Context;
@@ -40,9 +41,11 @@ import com.gargoylesoftware.htmlunit.HttpMethod;
 import com.gargoylesoftware.htmlunit.WebClient;
 import com.gargoylesoftware.htmlunit.WebRequestSettings;
 import com.gargoylesoftware.htmlunit.WebResponse;
+import com.gargoylesoftware.htmlunit.WebWindow;
 import com.gargoylesoftware.htmlunit.html.HtmlPage;
 import com.gargoylesoftware.htmlunit.javascript.JavaScriptEngine;
 import com.gargoylesoftware.htmlunit.javascript.SimpleScriptable;
+import com.gargoylesoftware.htmlunit.javascript.background.BackgroundIoPool;
 import com.gargoylesoftware.htmlunit.javascript.background.JavaScriptJob;
 import com.gargoylesoftware.htmlunit.javascript.host.ActiveXObject;
 import com.gargoylesoftware.htmlunit.util.WebResponseWrapper;
@@ -83,7 +86,9 @@ public class XMLHttpRequest extends SimpleScriptable {
     private Function errorHandler_;
     private WebRequestSettings requestSettings_;
     private boolean async_;
-    private int threadID_;
+    private volatile int threadID_;
+    private transient Future< ? > backgroundRequest_;
+    private volatile boolean aborted_;
     private WebResponse webResponse_;
     private String overriddenMimeType_;
     private HtmlPage containingPage_;
@@ -299,6 +304,11 @@ public class XMLHttpRequest extends SimpleScriptable {
      * Cancels the current HTTP request.
      */
     public void jsxFunction_abort() {
+        aborted_ = true;
+        if (backgroundRequest_ != null) {
+            backgroundRequest_.cancel(true);
+            backgroundRequest_ = null;
+        }
         getWindow().getWebWindow().getJobManager().stopJob(threadID_);
     }
 
@@ -382,6 +392,9 @@ public class XMLHttpRequest extends SimpleScriptable {
         if (synchron) {
             doSend(Context.getCurrentContext());
         }
+        else if (client.getBackgroundIoPool() != null) {
+            sendInBackground(client, client.getBackgroundIoPool());
+        }
         else {
             // run this as a post-action
             final Object startingScope = getWindow();
@@ -421,35 +434,110 @@ public class XMLHttpRequest extends SimpleScriptable {
      */
     private void doSend(final Context context) {
         final WebClient wc = getWindow().getWebWindow().getWebClient();
+        setState(STATE_LOADED, context);
+        final WebResponse webResponse;
         try {
-            setState(STATE_LOADED, context);
-            final WebResponse webResponse = wc.loadWebResponse(requestSettings_);
-            LOG.debug("Web response loaded successfully.");
-            if (overriddenMimeType_ == null) {
-                webResponse_ = webResponse;
-            }
-            else {
-                webResponse_ = new WebResponseWrapper(webResponse) {
-                    private static final long serialVersionUID = -3359539772772336918L;
-                    @Override
-                    public String getContentType() {
-                        return overriddenMimeType_;
+            webResponse = wc.loadWebResponse(requestSettings_);
+        }
+        catch (final IOException e) {
+            processNetworkError(context);
+            return;
+        }
+        processResponse(webResponse, context);
+    }
+
+    /**
+     * Sends the request using the web client's background I/O pool: the network I/O happens in the pool,
+     * and the state change handlers are then executed by the window's job manager.
+     * @param client the web client
+     * @param backgroundIoPool the pool performing the network I/O
+     */
+    private void sendInBackground(final WebClient client, final BackgroundIoPool backgroundIoPool) {
+        final WebWindow window = getWindow().getWebWindow();
+        final Object startingScope = getWindow();
+        final ContextFactory contextFactory = client.getJavaScriptEngine().getContextFactory();
+        final Runnable loader = new Runnable() {
+            public void run() {
+                WebResponse loaded = null;
+                try {
+                    loaded = client.loadWebResponse(requestSettings_);
+                }
+                catch (final IOException e) {
+                    LOG.debug("IOException while sending request in the background", e);
+                }
+                catch (final RuntimeException e) {
+                    LOG.warn("Error while sending request in the background", e);
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    return; // aborted
+                }
+                final WebResponse webResponse = loaded;
+                final JavaScriptJob job = new JavaScriptJob() {
+                    public void run() {
+                        contextFactory.call(new ContextAction() {
+                            public Object run(final Context cx) {
+                                cx.putThreadLocal(JavaScriptEngine.KEY_STARTING_SCOPE, startingScope);
+                                setState(STATE_LOADED, cx);
+                                if (webResponse == null) {
+                                    processNetworkError(cx);
+                                }
+                                else {
+                                    processResponse(webResponse, cx);
+                                }
+                                return null;
+                            }
+                        });
                     }
                 };
+                final int threadID = window.getJobManager().addJob(job, containingPage_);
+                threadID_ = threadID;
+                // abort() may have read the previous ID before it was replaced
+                if (aborted_) {
+                    window.getJobManager().stopJob(threadID);
+                }
             }
-            if(wc.isThrowExceptionOnFailingAjax() && webResponse.getStatusCode()>=400)
-                throw new AssertionError("AJAX request to "+requestSettings_+"failed.\n" +
-                        "code="+webResponse.getStatusCode()+" "+webResponse.getStatusMessage()+"\n" +
-                        webResponse.getContentAsString());
-            setState(STATE_INTERACTIVE, context);
-            setState(STATE_COMPLETED, context);
+        };
+        aborted_ = false;
+        backgroundRequest_ = backgroundIoPool.submit(requestSettings_.getUrl().getHost(), loader);
+    }
+
+    /**
+     * Stores the response and fires the remaining state changes.
+     * @param webResponse the loaded response
+     * @param context the current context
+     */
+    private void processResponse(final WebResponse webResponse, final Context context) {
+        LOG.debug("Web response loaded successfully.");
+        if (overriddenMimeType_ == null) {
+            webResponse_ = webResponse;
         }
-        catch (final IOException e) {
-            LOG.debug("IOException: returning a network error response.");
-            webResponse_ = new NetworkErrorWebResponse(requestSettings_);
-            setState(STATE_COMPLETED, context);
-            processError(context);
+        else {
+            webResponse_ = new WebResponseWrapper(webResponse) {
+                private static final long serialVersionUID = -3359539772772336918L;
+                @Override
+                public String getContentType() {
+                    return overriddenMimeType_;
+                }
+            };
         }
+        final WebClient wc = getWindow().getWebWindow().getWebClient();
+        if(wc.isThrowExceptionOnFailingAjax() && webResponse.getStatusCode()>=400)
+            throw new AssertionError("AJAX request to "+requestSettings_+"failed.\n" +
+                    "code="+webResponse.getStatusCode()+" "+webResponse.getStatusMessage()+"\n" +
+                    webResponse.getContentAsString());
+        setState(STATE_INTERACTIVE, context);
+        setState(STATE_COMPLETED, context);
+    }
+
+    /**
+     * Completes the request with a network error response.
+     * @param context the current context
+     */
+    private void processNetworkError(final Context context) {
+        LOG.debug("IOException: returning a network error response.");
+        webResponse_ = new NetworkErrorWebResponse(requestSettings_);
+        setState(STATE_COMPLETED, context);
+        processError(context);
     }
 
     /**
@@ -17,7 +17,6 @@ package com.gargoylesoftware.htmlunit.xml;
 import java.io.IOException;
 import java.util.HashMap;
 
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.commons.logging.Log;
@@ -103,16 +102,7 @@ public class XmlPage extends SgmlPage {
         super(webResponse, enclosingWindow);
 
         try {
-            if (webResponse == null || webResponse.getContentAsString() == null
-                    || webResponse.getContentAsString().trim().length() == 0) {
-                node_ = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument().getDocumentElement();
-            }
-            else {
-                node_ = XmlUtil.buildDocument(webResponse).getDocumentElement();
-            }
-            if (node_ != null) {
-                XmlUtil.appendChild(this, this, node_);
-            }
+            XmlUtil.buildPage(this, webResponse);
         }
         catch (final SAXException e) {
             if (LOG.isWarnEnabled()) {
@@ -148,14 +138,27 @@ public class XmlPage extends SgmlPage {
     }
 
     /**
-     * Returns the DOM representation of the XML content.
+     * Returns the DOM representation of the XML content. The page doesn't keep this representation: unless the
+     * page has been created from a {@link Node}, the content is parsed again at each call.
      * @return <code>null</code> if the content couldn't be parsed
      */
     public Document getXmlDocument() {
         if (node_ != null) {
             return node_.getOwnerDocument();
         }
-        return null;
+        if (getWebResponse() == null || getDocumentElement() == null) {
+            return null;
+        }
+        try {
+            return XmlUtil.buildDocument(getWebResponse());
+        }
+        catch (final Exception e) {
+            if (LOG.isWarnEnabled()) {
+                LOG.warn("Failed parsing XML document " + getWebResponse().getRequestSettings().getUrl()
+                        + ": " + e.getMessage());
+            }
+            return null;
+        }
     }
 
     /**
@@ -15,13 +15,18 @@
 package com.gargoylesoftware.htmlunit.xml;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
 import java.util.HashMap;
 import java.util.Map;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -36,7 +41,10 @@ import org.xml.sax.ErrorHandler;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.ext.LexicalHandler;
 import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
 
 import com.gargoylesoftware.htmlunit.SgmlPage;
 import com.gargoylesoftware.htmlunit.WebResponse;
@@ -86,6 +94,12 @@ public final class XmlUtil {
         }
     };
 
+    private static final EntityResolver EMPTY_ENTITY_RESOLVER = new EntityResolver() {
+        public InputSource resolveEntity(final String publicId, final String systemId) {
+            return new InputSource(new StringReader(""));
+        }
+    };
+
     /**
      * Utility class, hide constructor.
      */
@@ -112,15 +126,98 @@ public final class XmlUtil {
         final InputSource source = new InputSource(new StringReader(webResponse.getContentAsString()));
         final DocumentBuilder builder = factory.newDocumentBuilder();
         builder.setErrorHandler(DISCARD_MESSAGES_HANDLER);
-        builder.setEntityResolver(new EntityResolver() {
-            public InputSource resolveEntity(final String publicId, final String systemId)
-                throws SAXException, IOException {
-                return new InputSource(new StringReader(""));
-            }
-        });
+        builder.setEntityResolver(EMPTY_ENTITY_RESOLVER);
         return builder.parse(source);
     }
 
+    /**
+     * Builds the nodes of the specified page from the content of the web response. The content is parsed
+     * with SAX and the {@link DomNode}s are created directly from the parser events, without building a W3C
+     * document first; the content is read as a stream, and never held as a whole in memory.
+     * The page is left empty if the content is empty or can't be parsed.
+     *
+     * @param page the page to build
+     * @param webResponse the response from the server
+     * @throws IOException if the content could not be read
+     * @throws SAXException if the parsing fails
+     * @throws ParserConfigurationException if a SAX parser cannot be created
+     */
+    static void buildPage(final XmlPage page, final WebResponse webResponse)
+        throws IOException, SAXException, ParserConfigurationException {
+
+        if (isEmpty(webResponse)) {
+            return;
+        }
+        final SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        final XMLReader reader = factory.newSAXParser().getXMLReader();
+        // report the namespace declarations as attributes, like in the W3C DOM
+        reader.setFeature("http://xml.org/sax/features/namespace-prefixes", true);
+        reader.setFeature("http://xml.org/sax/features/xmlns-uris", true);
+        final PageBuilder builder = new PageBuilder(page);
+        reader.setContentHandler(builder);
+        reader.setProperty("http://xml.org/sax/properties/lexical-handler", builder);
+        reader.setErrorHandler(DISCARD_MESSAGES_HANDLER);
+        reader.setEntityResolver(EMPTY_ENTITY_RESOLVER);
+
+        final Reader content = openContent(webResponse);
+        try {
+            reader.parse(new InputSource(content));
+        }
+        finally {
+            content.close();
+        }
+        builder.attach();
+    }
+
+    /**
+     * Returns whether the content of the web response is missing or contains only whitespace.
+     * @param webResponse the response from the server
+     * @return whether the content is empty
+     * @throws IOException if the content could not be read
+     */
+    private static boolean isEmpty(final WebResponse webResponse) throws IOException {
+        if (webResponse == null) {
+            return true;
+        }
+        final Reader content = openContent(webResponse);
+        if (content == null) {
+            return true;
+        }
+        try {
+            for (int c = content.read(); c != -1; c = content.read()) {
+                if (c > ' ') {
+                    return false;
+                }
+            }
+            return true;
+        }
+        finally {
+            content.close();
+        }
+    }
+
+    /**
+     * Opens a reader on the content of the web response, decoded with its charset.
+     * @param webResponse the response from the server
+     * @return the reader, or <code>null</code> if the response has no content
+     * @throws IOException if the content could not be read
+     */
+    private static Reader openContent(final WebResponse webResponse) throws IOException {
+        final InputStream stream = webResponse.getContentAsStream();
+        if (stream == null) {
+            return null;
+        }
+        final String encoding = webResponse.getContentCharset();
+        try {
+            return new InputStreamReader(stream, encoding);
+        }
+        catch (final UnsupportedEncodingException e) {
+            LOG.warn("Attempted to use unsupported encoding '" + encoding + "'; using default system encoding.");
+            return new InputStreamReader(stream);
+        }
+    }
+
     /**
      * Recursively appends a {@link Node} child to {@link DomNode} parent.
      *
@@ -269,4 +366,175 @@ public final class XmlUtil {
         }
         return null;
     }
+
+    /**
+     * Creates the {@link DomNode}s of an {@link XmlPage} from the SAX events, with the same mapping as
+     * {@link #appendChild(SgmlPage, DomNode, Node)}: only the document element and its descendants are kept,
+     * the processing instructions are ignored. The document element is attached to the page by
+     * {@link #attach()}, once the whole content has been parsed.
+     */
+    private static final class PageBuilder extends DefaultHandler implements LexicalHandler {
+        private final XmlPage page_;
+        private final StringBuilder text_ = new StringBuilder();
+        private DomDocumentType documentType_;
+        private DomElement documentElement_;
+        private DomNode current_;
+
+        PageBuilder(final XmlPage page) {
+            page_ = page;
+        }
+
+        /**
+         * Appends the document type and the document element to the page.
+         */
+        void attach() {
+            if (documentElement_ != null) {
+                if (documentType_ != null) {
+                    page_.setDocumentType(documentType_);
+                }
+                page_.appendChild(documentElement_);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void startElement(final String namespaceURI, final String localName, final String qName,
+                final Attributes atts) {
+            appendText();
+            final String ns = toNamespaceURI(namespaceURI);
+            final DomElement element;
+            if (HTMLParser.XHTML_NAMESPACE.equals(ns)) {
+                final AttributesImpl attributes = new AttributesImpl(atts);
+                for (int i = 0; i < attributes.getLength(); i++) {
+                    attributes.setURI(i, toNamespaceURI(attributes.getURI(i)));
+                }
+                element = HTMLParser.getFactory(localName).createElementNS(page_, ns, localName, attributes);
+            }
+            else {
+                final Map<String, DomAttr> attributes = new HashMap<String, DomAttr>();
+                for (int i = 0; i < atts.getLength(); i++) {
+                    final String name = atts.getQName(i);
+                    attributes.put(name,
+                        new DomAttr(page_, toNamespaceURI(atts.getURI(i)), name, atts.getValue(i)));
+                }
+                element = new DomElement(ns, qName, page_, attributes);
+            }
+            if (current_ == null) {
+                documentElement_ = element;
+            }
+            else {
+                current_.appendChild(element);
+            }
+            current_ = element;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void endElement(final String namespaceURI, final String localName, final String qName) {
+            appendText();
+            current_ = current_.getParentNode();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void characters(final char[] ch, final int start, final int length) {
+            if (current_ != null) {
+                text_.append(ch, start, length);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void ignorableWhitespace(final char[] ch, final int start, final int length) {
+            characters(ch, start, length);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void processingInstruction(final String target, final String data) {
+            if (current_ != null) {
+                LOG.warn("NodeType " + Node.PROCESSING_INSTRUCTION_NODE
+                        + " (" + target + ") is not yet supported.");
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public void startCDATA() {
+            appendText();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public void endCDATA() {
+            if (current_ != null) {
+                current_.appendChild(new DomCDataSection(page_, text_.toString()));
+                text_.setLength(0);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public void comment(final char[] ch, final int start, final int length) {
+            if (current_ != null) {
+                appendText();
+                current_.appendChild(new DomComment(page_, new String(ch, start, length)));
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public void startDTD(final String name, final String publicId, final String systemId) {
+            documentType_ = new DomDocumentType(page_, name, publicId, systemId);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public void endDTD() {
+            // nothing to do
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public void startEntity(final String name) {
+            // nothing to do
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public void endEntity(final String name) {
+            // nothing to do
+        }
+
+        private void appendText() {
+            if (text_.length() > 0) {
+                current_.appendChild(new DomText(page_, text_.toString()));
+                text_.setLength(0);
+            }
+        }
+
+        private static String toNamespaceURI(final String uri) {
+            if (uri == null || uri.length() == 0) {
+                return null;
+            }
+            return uri;
+        }
+    }
 }
@@ -20,9 +20,22 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.Writer;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.Servlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpMethodBase;
@@ -278,4 +291,166 @@ public class HttpWebConnectionTest extends WebServerTestCase {
         client.getPage("http://localhost:" + PORT + "/src/test/resources/event_coordinates.html?param=\u00F6");
     }
 
+    /**
+     * With the streaming parse, the external script of the head must be loaded and executed while the
+     * body is still being downloaded, and the resulting page must be the same.
+     * @throws Exception on failure
+     */
+    @Test
+    public void streamingParse() throws Exception {
+        final Map<String, Class< ? extends Servlet>> servlets = new HashMap<String, Class< ? extends Servlet>>();
+        servlets.put("/streaming", StreamingServlet.class);
+        servlets.put("/script.js", ScriptServlet.class);
+        startWebServer("./", null, servlets);
+
+        final String url = "http://localhost:" + PORT + "/streaming";
+        final List<String> collectedAlerts = new ArrayList<String>();
+        final WebClient client = new WebClient();
+        client.setAlertHandler(new CollectingAlertHandler(collectedAlerts));
+        client.setStreamingParseEnabled(true);
+        StreamingServlet.SCRIPT_LOADED_ = new CountDownLatch(1);
+        final HtmlPage page = client.getPage(url);
+        Assert.assertTrue(StreamingServlet.OVERLAPPED_);
+        assertEquals(new String[] {"script", "2"}, collectedAlerts);
+        assertEquals(StreamingServlet.HEAD + StreamingServlet.BODY, page.getWebResponse().getContentAsString());
+
+        // the same page, parsed once downloaded
+        collectedAlerts.clear();
+        client.setStreamingParseEnabled(false);
+        StreamingServlet.SCRIPT_LOADED_ = new CountDownLatch(1);
+        final HtmlPage downloadedPage = client.getPage(url);
+        Assert.assertFalse(StreamingServlet.OVERLAPPED_);
+        assertEquals(new String[] {"script", "2"}, collectedAlerts);
+        assertEquals(page.asXml(), downloadedPage.asXml());
+    }
+
+    /**
+     * Closing the client must abort the downloads of the pages which are still being streamed.
+     * @throws Exception on failure
+     */
+    @Test
+    public void streamingParse_abortedOnClose() throws Exception {
+        final Map<String, Class< ? extends Servlet>> servlets = new HashMap<String, Class< ? extends Servlet>>();
+        servlets.put("/endless", EndlessServlet.class);
+        startWebServer("./", null, servlets);
+
+        final String url = "http://localhost:" + PORT + "/endless";
+        final WebClient client = new WebClient();
+        client.setStreamingParseEnabled(true);
+        final CountDownLatch parsing = new CountDownLatch(1);
+        client.setAlertHandler(new AlertHandler() {
+            public void handleAlert(final Page page, final String message) {
+                parsing.countDown();
+            }
+        });
+        final Thread loader = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    client.getPage(url);
+                }
+                catch (final Exception e) {
+                    // the page can't be completely loaded
+                }
+            }
+        };
+        loader.start();
+        Assert.assertTrue(parsing.await(5, TimeUnit.SECONDS));
+        client.closeAllWindows();
+        loader.join(5000);
+        assertFalse(loader.isAlive());
+    }
+
+    /**
+     * Servlet for {@link #streamingParse_abortedOnClose()}, which writes a page without end, until
+     * the client goes away.
+     */
+    public static class EndlessServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 4160282367301847269L;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void doGet(final HttpServletRequest request, final HttpServletResponse response)
+            throws IOException {
+            response.setContentType("text/html;charset=UTF-8");
+            final PrintWriter writer = response.getWriter();
+            writer.write("<html><head><title>endless</title><script>alert('parsing')</script></head><body>\n");
+            final long end = System.currentTimeMillis() + 30000;
+            while (System.currentTimeMillis() < end) {
+                writer.write("<div>line</div>\n");
+                writer.flush();
+                if (writer.checkError()) {
+                    return;
+                }
+                try {
+                    Thread.sleep(10);
+                }
+                catch (final InterruptedException e) {
+                    return;
+                }
+            }
+            writer.close();
+        }
+    }
+
+    /**
+     * Servlet for {@link #streamingParse()}, which writes the body of the page only once the script
+     * of the head has been requested, or after a timeout.
+     */
+    public static class StreamingServlet extends HttpServlet {
+
+        private static final long serialVersionUID = -2381404012343018325L;
+
+        private static final String HEAD = "<html><head><title>streaming</title>"
+            + "<script src='script.js'></script></head>\n";
+        private static final String BODY = "<body><div id='d1'>first</div><div id='d2'>second</div>\n"
+            + "<script>alert(document.getElementsByTagName('div').length);</script></body></html>";
+
+        private static CountDownLatch SCRIPT_LOADED_;
+        private static volatile boolean OVERLAPPED_;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void doGet(final HttpServletRequest request, final HttpServletResponse response)
+            throws IOException {
+            response.setContentType("text/html;charset=UTF-8");
+            final Writer writer = response.getWriter();
+            writer.write(HEAD);
+            writer.flush();
+            try {
+                OVERLAPPED_ = SCRIPT_LOADED_.await(2, TimeUnit.SECONDS);
+            }
+            catch (final InterruptedException e) {
+                OVERLAPPED_ = false;
+            }
+            writer.write(BODY);
+            writer.close();
+        }
+    }
+
+    /**
+     * Servlet for {@link #streamingParse()}.
+     */
+    public static class ScriptServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 6021949744917389470L;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void doGet(final HttpServletRequest request, final HttpServletResponse response)
+            throws IOException {
+            StreamingServlet.SCRIPT_LOADED_.countDown();
+            response.setContentType("text/javascript");
+            final Writer writer = response.getWriter();
+            writer.write("alert('script');");
+            writer.close();
+        }
+    }
 }
@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2002-2009 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.commons.httpclient.Cookie;
+import org.junit.Test;
+
+import com.gargoylesoftware.htmlunit.html.DomNode;
+import com.gargoylesoftware.htmlunit.html.HtmlCheckBoxInput;
+import com.gargoylesoftware.htmlunit.html.HtmlElement;
+import com.gargoylesoftware.htmlunit.html.HtmlForm;
+import com.gargoylesoftware.htmlunit.html.HtmlInlineFrame;
+import com.gargoylesoftware.htmlunit.html.HtmlOption;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import com.gargoylesoftware.htmlunit.html.HtmlTextArea;
+import com.gargoylesoftware.htmlunit.html.HtmlTextInput;
+
+/**
+ * Tests for {@link SessionCheckpoint}.
+ *
+ * @version $Revision$
+ * @author Ahmed Ashour
+ */
+public class SessionCheckpointTest extends WebTestCase {
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void restore() throws Exception {
+        final String html = "<!DOCTYPE HTML PUBLIC \"-//W3C//DTD HTML 4.01//EN\">\n"
+            + "<html><head><title>Checkpoint</title></head><body>\n"
+            + "<table><tr><td>table1</td>\n"
+            + "<form id='form1' action='submit'><input type='hidden' name='h' value='0'>\n"
+            + "</tr></table>\n"
+            + "<table><tr><td>\n"
+            + "<input type='text' id='text1' name='text1' value='default'>\n"
+            + "<input type='checkbox' id='check1' name='check1'>\n"
+            + "<select id='select1' name='select1'><option id='o1'>a</option><option id='o2'>b</option></select>\n"
+            + "<textarea id='area1' name='area1'>area</textarea>\n"
+            + "</td></tr></table></form>\n"
+            + "<!-- comment -->\n"
+            + "<iframe id='frame1' src='" + URL_THIRD + "'></iframe>\n"
+            + "</body></html>";
+
+        final WebClient client = new WebClient(BrowserVersion.FIREFOX_3);
+        client.setJavaScriptEnabled(false);
+        client.setRedirectEnabled(false);
+        client.addRequestHeader("X-Test", "checkpoint");
+        final MockWebConnection connection = new MockWebConnection();
+        connection.setResponse(URL_FIRST, "<html><head><title>first</title></head><body></body></html>");
+        connection.setResponse(URL_SECOND, html);
+        connection.setResponse(URL_THIRD, "<html><body><div id='inner'>inner</div></body></html>");
+        client.setWebConnection(connection);
+        client.getCookieManager().addCookie(new Cookie(URL_FIRST.getHost(), "session", "1234"));
+        client.getCookieManager().addCookie(new Cookie(URL_FIRST.getHost(), "persistent", "yes", "/",
+            new Date(System.currentTimeMillis() + 3600000L), false));
+
+        client.getPage(URL_FIRST);
+        final HtmlPage page = (HtmlPage) client.getPage(URL_SECOND);
+        ((HtmlTextInput) page.getHtmlElementById("text1")).setValueAttribute("typed");
+        ((HtmlCheckBoxInput) page.getHtmlElementById("check1")).setChecked(true);
+        ((HtmlOption) page.getHtmlElementById("o2")).setSelected(true);
+        ((HtmlTextArea) page.getHtmlElementById("area1")).setText("changed");
+        final WebWindow popup = client.openWindow(URL_FIRST, "popup");
+        client.setJavaScriptTimeout(5000);
+        client.setThrowExceptionOnFailingAjax(false);
+        client.setActiveXNative(true);
+        client.setBackgroundIoThreads(2);
+        client.setLazyStylesheetsEnabled(true);
+        client.setStreamingParseEnabled(true);
+        client.setStaticDomEnabled(true);
+        client.setComputedVisibilityEnabled(true);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SessionCheckpoint.write(client, bytes);
+        final WebClient restored = SessionCheckpoint.read(new ByteArrayInputStream(bytes.toByteArray()));
+
+        assertSame(BrowserVersion.FIREFOX_3, restored.getBrowserVersion());
+        assertFalse(restored.isJavaScriptEnabled());
+        assertFalse(restored.isRedirectEnabled());
+        assertEquals(5000L, restored.getJavaScriptTimeout());
+        assertFalse(restored.isThrowExceptionOnFailingAjax());
+        assertTrue(restored.isActiveXNative());
+        assertEquals(2, restored.getBackgroundIoThreads());
+        assertTrue(restored.isLazyStylesheetsEnabled());
+        assertTrue(restored.isStreamingParseEnabled());
+        assertTrue(restored.isStaticDomEnabled());
+        assertTrue(restored.isComputedVisibilityEnabled());
+        assertEquals("checkpoint", restored.getRequestHeaders().get("X-Test"));
+        assertEquals(client.getCookieManager().getCookies(), restored.getCookieManager().getCookies());
+        assertEquals(2, restored.getTopLevelWindows().size());
+        assertEquals("popup", restored.getCurrentWindow().getName());
+        assertEquals(popup.getEnclosedPage().getWebResponse().getRequestSettings().getUrl(),
+            restored.getCurrentWindow().getEnclosedPage().getWebResponse().getRequestSettings().getUrl());
+
+        final WebWindow window = restored.getTopLevelWindows().get(0);
+        assertEquals(2, window.getHistory().getLength());
+        assertEquals(1, window.getHistory().getIndex());
+        assertEquals(URL_FIRST, window.getHistory().getUrl(0));
+
+        final HtmlPage restoredPage = (HtmlPage) window.getEnclosedPage();
+        assertNotSame(page, restoredPage);
+        assertEquals(page.asXml(), restoredPage.asXml());
+        assertEquals(page.getDoctype().getPublicId(), restoredPage.getDoctype().getPublicId());
+        assertEquals(DomNode.READY_STATE_COMPLETE, restoredPage.getReadyState());
+
+        final HtmlTextInput text = restoredPage.getHtmlElementById("text1");
+        assertEquals("typed", text.getValueAttribute());
+        assertEquals("default", text.getDefaultValue());
+        final HtmlCheckBoxInput check = restoredPage.getHtmlElementById("check1");
+        assertTrue(check.isChecked());
+        assertFalse(check.isDefaultChecked());
+        assertTrue(((HtmlOption) restoredPage.getHtmlElementById("o2")).isSelected());
+        final HtmlTextArea area = restoredPage.getHtmlElementById("area1");
+        assertEquals("changed", area.getText());
+        assertEquals("area", area.getDefaultValue());
+
+        // the form doesn't contain its fields, because of the tables
+        final HtmlForm form = restoredPage.getHtmlElementById("form1");
+        assertSame(form, text.getEnclosingForm());
+        assertFalse(form.getLostChildren().isEmpty());
+        assertEquals(((HtmlForm) page.getHtmlElementById("form1")).getLostChildren().size(),
+            form.getLostChildren().size());
+
+        final HtmlInlineFrame frame = restoredPage.getHtmlElementById("frame1");
+        final HtmlPage framePage = (HtmlPage) frame.getEnclosedPage();
+        assertEquals("inner", framePage.getHtmlElementById("inner").asText());
+        assertSame(framePage, restoredPage.getFrames().get(0).getEnclosedPage());
+
+        // the restored client works on its own
+        area.reset();
+        assertEquals("area", area.getText());
+        assertEquals("changed", ((HtmlTextArea) page.getHtmlElementById("area1")).getText());
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void nonHtmlPage() throws Exception {
+        final WebClient client = new WebClient();
+        final MockWebConnection connection = new MockWebConnection();
+        connection.setResponse(URL_FIRST, "some text", "text/plain");
+        client.setWebConnection(connection);
+        client.getPage(URL_FIRST);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SessionCheckpoint.write(client, bytes);
+        final WebClient restored = SessionCheckpoint.read(new ByteArrayInputStream(bytes.toByteArray()));
+
+        final TextPage page = (TextPage) restored.getCurrentWindow().getEnclosedPage();
+        assertEquals("some text", page.getContent());
+        assertEquals(new URL(URL_FIRST.toExternalForm()), page.getWebResponse().getRequestSettings().getUrl());
+    }
+
+    /**
+     * A client with JavaScript enabled and a browser version which isn't predefined: the browser version is
+     * restored field by field, and the restored pages get new working scopes.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void javaScriptEnabled() throws Exception {
+        final String html = "<html><head><title>Checkpoint</title><script>\n"
+            + "function test() { alert(document.getElementById('d').firstChild.data + ' ' + navigator.userAgent); }\n"
+            + "</script></head><body onload='alert(\"loaded\")'>\n"
+            + "<div id='d'>text</div>\n"
+            + "<button id='b' onclick='test()'>button</button>\n"
+            + "</body></html>";
+
+        final BrowserVersion ff3 = BrowserVersion.FIREFOX_3;
+        final List<BrowserVersionFeatures> features = new ArrayList<BrowserVersionFeatures>();
+        for (final BrowserVersionFeatures feature : BrowserVersionFeatures.values()) {
+            if (ff3.hasFeature(feature)) {
+                features.add(feature);
+            }
+        }
+        final BrowserVersion browserVersion = new BrowserVersion(ff3.getApplicationName(),
+            ff3.getApplicationVersion(), "Custom agent", ff3.getBrowserVersionNumeric(),
+            features.toArray(new BrowserVersionFeatures[features.size()]));
+        browserVersion.setPlatform("Linux");
+        browserVersion.getPlugins().addAll(ff3.getPlugins());
+
+        final WebClient client = new WebClient(browserVersion);
+        final List<String> collectedAlerts = new ArrayList<String>();
+        client.setAlertHandler(new CollectingAlertHandler(collectedAlerts));
+        final MockWebConnection connection = new MockWebConnection();
+        connection.setResponse(URL_FIRST, html);
+        client.setWebConnection(connection);
+        final HtmlPage page = (HtmlPage) client.getPage(URL_FIRST);
+        page.<HtmlElement>getHtmlElementById("b").click();
+        assertEquals(new String[] {"loaded", "text Custom agent"}, collectedAlerts);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SessionCheckpoint.write(client, bytes);
+        final WebClient restored = SessionCheckpoint.read(new ByteArrayInputStream(bytes.toByteArray()));
+
+        final BrowserVersion restoredVersion = restored.getBrowserVersion();
+        assertNotSame(browserVersion, restoredVersion);
+        assertEquals("Custom agent", restoredVersion.getUserAgent());
+        assertEquals("Linux", restoredVersion.getPlatform());
+        assertEquals(browserVersion.getNickname(), restoredVersion.getNickname());
+        assertEquals(Float.valueOf(browserVersion.getBrowserVersionNumeric()),
+            Float.valueOf(restoredVersion.getBrowserVersionNumeric()));
+        assertEquals(browserVersion.getPlugins(), restoredVersion.getPlugins());
+        for (final BrowserVersionFeatures feature : BrowserVersionFeatures.values()) {
+            assertEquals(Boolean.valueOf(browserVersion.hasFeature(feature)),
+                Boolean.valueOf(restoredVersion.hasFeature(feature)));
+        }
+        assertTrue(restored.isJavaScriptEnabled());
+
+        // no script is executed when restoring, but the restored page is scriptable
+        collectedAlerts.clear();
+        restored.setAlertHandler(new CollectingAlertHandler(collectedAlerts));
+        final HtmlPage restoredPage = (HtmlPage) restored.getCurrentWindow().getEnclosedPage();
+        assertEquals(page.asXml(), restoredPage.asXml());
+        assertTrue(collectedAlerts.isEmpty());
+        restoredPage.executeJavaScript("document.getElementById('d').firstChild.data = 'changed'");
+        restoredPage.executeJavaScript(
+            "alert(document.getElementById('d').firstChild.data + ' ' + navigator.userAgent)");
+        assertEquals(new String[] {"changed Custom agent"}, collectedAlerts);
+        assertEquals("text", page.getHtmlElementById("d").asText());
+    }
+
+    /**
+     * A corrupted length must result in an exception, and not in the allocation of the announced length.
+     * @throws Exception if the test fails
+     */
+    @Test(expected = java.io.IOException.class)
+    public void corruptedLength() throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeInt(bytes, 0x48554350); // magic
+        writeInt(bytes, 2); // version
+        writeInt(bytes, 1); // custom browser version
+        writeInt(bytes, Integer.MAX_VALUE); // length of the application name
+        bytes.write(new byte[100]);
+        SessionCheckpoint.read(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    /**
+     * A reference to a browser version which doesn't exist.
+     * @throws Exception if the test fails
+     */
+    @Test(expected = java.io.IOException.class)
+    public void invalidReference() throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeInt(bytes, 0x48554350); // magic
+        writeInt(bytes, 2); // version
+        writeInt(bytes, 0); // predefined browser version
+        writeInt(bytes, 10);
+        SessionCheckpoint.read(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    private static void writeInt(final ByteArrayOutputStream bytes, final int value) {
+        int remaining = value;
+        while ((remaining & ~0x7F) != 0) {
+            bytes.write((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        bytes.write(remaining);
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test(expected = java.io.IOException.class)
+    public void notACheckpoint() throws Exception {
+        SessionCheckpoint.read(new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5, 6, 7, 8}));
+    }
+}
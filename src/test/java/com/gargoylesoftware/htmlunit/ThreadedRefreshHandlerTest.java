@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2002-2009 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit;
+
+import org.junit.Test;
+
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+
+/**
+ * Tests for {@link ThreadedRefreshHandler}.
+ *
+ * @version $Revision$
+ * @author Ahmed Ashour
+ */
+public final class ThreadedRefreshHandlerTest extends WebTestCase {
+
+    private static final String REFRESH_CONTENT = "<html><head><title>first</title>\n"
+        + "<meta http-equiv='Refresh' content='1; URL=" + URL_SECOND + "'>\n"
+        + "</head><body></body></html>";
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void refreshIsScheduled() throws Exception {
+        final WebClient client = createClient();
+        final ThreadedRefreshHandler handler = new ThreadedRefreshHandler();
+        client.setRefreshHandler(handler);
+
+        final HtmlPage page = (HtmlPage) client.getPage(URL_FIRST);
+        assertEquals("first", page.getTitleText());
+        assertEquals(1, handler.getPendingRefreshCount());
+
+        waitForRefresh(handler, 3000);
+        assertEquals("second", ((HtmlPage) client.getCurrentWindow().getEnclosedPage()).getTitleText());
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void maxwait() throws Exception {
+        final WebClient client = createClient();
+        final ThreadedRefreshHandler handler = new ThreadedRefreshHandler(1);
+        client.setRefreshHandler(handler);
+        final MockWebConnection connection = (MockWebConnection) client.getWebConnection();
+        connection.setResponse(URL_FIRST, REFRESH_CONTENT.replace("content='1;", "content='1000;"));
+
+        client.getPage(URL_FIRST);
+        waitForRefresh(handler, 3000);
+        assertEquals("second", ((HtmlPage) client.getCurrentWindow().getEnclosedPage()).getTitleText());
+    }
+
+    /**
+     * A pending refresh is cancelled when the window navigates to another page.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void cancelledOnNavigation() throws Exception {
+        final WebClient client = createClient();
+        final ThreadedRefreshHandler handler = new ThreadedRefreshHandler();
+        client.setRefreshHandler(handler);
+
+        client.getPage(URL_FIRST);
+        assertEquals(1, handler.getPendingRefreshCount());
+        client.getPage(URL_THIRD);
+        assertEquals(0, handler.getPendingRefreshCount());
+
+        Thread.sleep(1500);
+        assertEquals("third", ((HtmlPage) client.getCurrentWindow().getEnclosedPage()).getTitleText());
+    }
+
+    /**
+     * A pending refresh is cancelled when the window is closed.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void cancelledOnClose() throws Exception {
+        final WebClient client = createClient();
+        final ThreadedRefreshHandler handler = new ThreadedRefreshHandler();
+        client.setRefreshHandler(handler);
+
+        client.getPage(URL_FIRST);
+        assertEquals(1, handler.getPendingRefreshCount());
+        client.closeAllWindows();
+        assertEquals(0, handler.getPendingRefreshCount());
+    }
+
+    private WebClient createClient() {
+        final WebClient client = new WebClient();
+        final MockWebConnection connection = new MockWebConnection();
+        connection.setResponse(URL_FIRST, REFRESH_CONTENT);
+        connection.setResponse(URL_SECOND, "<html><head><title>second</title></head></html>");
+        connection.setResponse(URL_THIRD, "<html><head><title>third</title></head></html>");
+        client.setWebConnection(connection);
+        return client;
+    }
+
+    private void waitForRefresh(final ThreadedRefreshHandler handler, final long timeout) throws Exception {
+        final long end = System.currentTimeMillis() + timeout;
+        while (handler.getPendingRefreshCount() > 0 && System.currentTimeMillis() < end) {
+            Thread.sleep(50);
+        }
+        // the refresh has started, give it some time to load the page
+        Thread.sleep(200);
+    }
+}
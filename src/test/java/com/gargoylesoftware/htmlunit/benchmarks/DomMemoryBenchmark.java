@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2002-2009 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.benchmarks;
+
+import java.net.URL;
+
+import com.gargoylesoftware.htmlunit.MockWebConnection;
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.html.HtmlElement;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+
+/**
+ * Measures the heap retained per element by a large page, and the time needed to parse it, with and
+ * without the tracking of the source positions of the elements, e.g.:
+ * <pre>java -Xmx1g -cp ... com.gargoylesoftware.htmlunit.benchmarks.DomMemoryBenchmark [rows]</pre>
+ * The page is a table of <tt>rows</tt> rows (20,000 by default) of 9 elements each, most of them
+ * having a few attributes, like the pages of typical web applications.
+ *
+ * @version $Revision$
+ * @author Ahmed Ashour
+ */
+public final class DomMemoryBenchmark {
+
+    private DomMemoryBenchmark() {
+        // Empty.
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args the number of rows of the page (optional)
+     * @throws Exception if an error occurs
+     */
+    public static void main(final String[] args) throws Exception {
+        final int rows = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        final String html = createPage(rows);
+
+        System.out.println("Source positions tracked:");
+        measure(html, true);
+        System.out.println("Source positions not tracked:");
+        measure(html, false);
+    }
+
+    private static void measure(final String html, final boolean trackSourcePositions) throws Exception {
+        final WebClient client = new WebClient();
+        client.setJavaScriptEnabled(false);
+        client.setCssEnabled(false);
+        client.setSourcePositionTrackingEnabled(trackSourcePositions);
+        final MockWebConnection connection = new MockWebConnection();
+        connection.setDefaultResponse(html);
+        client.setWebConnection(connection);
+        final URL url = new URL("http://localhost/");
+
+        // warm up
+        client.getPage(url);
+        client.closeAllWindows();
+
+        final long before = usedMemory();
+        final long start = System.nanoTime();
+        final HtmlPage page = (HtmlPage) client.getPage(url);
+        final long parseTime = System.nanoTime() - start;
+        final long after = usedMemory();
+
+        int elements = 0;
+        for (final HtmlElement element : page.getAllHtmlChildElements()) {
+            elements++;
+        }
+        System.out.println("  Elements:             " + elements);
+        System.out.println("  Parse time:           " + parseTime / 1000000 + " ms");
+        System.out.println("  Retained heap:        " + (after - before) / 1024 + " KB");
+        System.out.println("  Bytes per element:    " + (after - before) / elements);
+
+        // keep the page reachable until the memory has been measured
+        page.getTitleText();
+        client.closeAllWindows();
+    }
+
+    private static String createPage(final int rows) {
+        final StringBuilder builder = new StringBuilder("<html><head><title>memory</title></head><body>\n");
+        builder.append("<form action='/submit' method='post'><table class='grid' id='grid'>\n");
+        for (int i = 0; i < rows; i++) {
+            builder.append("<tr class='row' id='r").append(i).append("'>")
+                .append("<td class='cell name'><a href='/item?id=").append(i).append("' title='item'>item ")
+                .append(i).append("</a></td>")
+                .append("<td class='cell'><input type='checkbox' name='c").append(i).append("' value='").append(i)
+                .append("'></td>")
+                .append("<td class='cell' style='text-align: right'><span>").append(i * 3).append("</span></td>")
+                .append("<td><img src='/icon.png' alt='' width='16' height='16'></td>")
+                .append("</tr>\n");
+        }
+        builder.append("</table></form></body></html>");
+        return builder.toString();
+    }
+
+    private static long usedMemory() throws InterruptedException {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
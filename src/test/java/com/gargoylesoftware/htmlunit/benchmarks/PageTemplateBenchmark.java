@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2002-2009 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.benchmarks;
+
+import java.net.URL;
+
+import com.gargoylesoftware.htmlunit.MockWebConnection;
+import com.gargoylesoftware.htmlunit.WebClient;
+
+/**
+ * Measures the time needed to load the same large static page repeatedly, with and without
+ * the reuse of the parsed page as a template, e.g.:
+ * <pre>java -cp ... com.gargoylesoftware.htmlunit.benchmarks.PageTemplateBenchmark [rows] [loads]</pre>
+ *
+ * @version $Revision$
+ * @author Ahmed Ashour
+ */
+public final class PageTemplateBenchmark {
+
+    private PageTemplateBenchmark() {
+        // Empty.
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args the number of rows of the page and the number of loads (optional)
+     * @throws Exception if an error occurs
+     */
+    public static void main(final String[] args) throws Exception {
+        final int rows = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        final int loads = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        final String html = createPage(rows);
+
+        System.out.println("Parsed:    " + measure(html, loads, false) + " ms per page");
+        System.out.println("Templates: " + measure(html, loads, true) + " ms per page");
+    }
+
+    private static double measure(final String html, final int loads, final boolean templates) throws Exception {
+        final WebClient client = new WebClient();
+        client.setJavaScriptEnabled(false);
+        client.setCssEnabled(false);
+        client.setPageTemplatesEnabled(templates);
+        final MockWebConnection connection = new MockWebConnection();
+        connection.setDefaultResponse(html);
+        client.setWebConnection(connection);
+        final URL url = new URL("http://localhost/");
+
+        // warm up
+        for (int i = 0; i < loads / 4 + 1; i++) {
+            client.getPage(url);
+        }
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < loads; i++) {
+            client.getPage(url);
+        }
+        final long time = System.nanoTime() - start;
+        client.closeAllWindows();
+        return time / 1000000.0 / loads;
+    }
+
+    private static String createPage(final int rows) {
+        final StringBuilder builder = new StringBuilder("<html><head><title>template</title></head><body>\n");
+        builder.append("<form action='/submit' method='post'><table class='grid' id='grid'>\n");
+        for (int i = 0; i < rows; i++) {
+            builder.append("<tr class='row' id='r").append(i).append("'>")
+                .append("<td class='cell name'><a href='/item?id=").append(i).append("'>item ").append(i)
+                .append("</a></td>")
+                .append("<td class='cell'><input type='text' name='q").append(i).append("' value='1'></td>")
+                .append("<td class='cell' style='text-align: right'><span>").append(i * 3).append("</span></td>")
+                .append("</tr>\n");
+        }
+        builder.append("</table></form></body></html>");
+        return builder.toString();
+    }
+}
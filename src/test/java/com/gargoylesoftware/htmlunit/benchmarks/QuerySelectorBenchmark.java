@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2002-2009 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.benchmarks;
+
+import java.net.URL;
+
+import com.gargoylesoftware.htmlunit.MockWebConnection;
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+
+/**
+ * Measures the time needed to find elements of a large page with {@link HtmlPage#querySelectorAll(String)}
+ * and with the equivalent XPath queries, e.g.:
+ * <pre>java -cp ... com.gargoylesoftware.htmlunit.benchmarks.QuerySelectorBenchmark [rows] [n]</pre>
+ *
+ * @version $Revision$
+ * @author Ahmed Ashour
+ */
+public final class QuerySelectorBenchmark {
+
+    /** The selectors, and the equivalent XPath queries. */
+    private static final String[][] QUERIES = {
+        {"#r100", "//*[@id='r100']"},
+        {"tr.row", "//tr[contains(concat(' ', @class, ' '), ' row ')]"},
+        {"td.name > a", "//td[contains(concat(' ', @class, ' '), ' name ')]/a"},
+        {"table#grid input[name]", "//table[@id='grid']//input[@name]"},
+        {"td + td span", "//td[preceding-sibling::*[1][self::td]]//span"}
+    };
+
+    private QuerySelectorBenchmark() {
+        // Empty.
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args the number of rows of the page and the number n of iterations (optional)
+     * @throws Exception if an error occurs
+     */
+    public static void main(final String[] args) throws Exception {
+        final int rows = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        final int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+        final WebClient client = new WebClient();
+        client.setJavaScriptEnabled(false);
+        client.setCssEnabled(false);
+        final MockWebConnection connection = new MockWebConnection();
+        connection.setDefaultResponse(createPage(rows));
+        client.setWebConnection(connection);
+        final HtmlPage page = client.getPage(new URL("http://localhost/"));
+
+        for (final String[] query : QUERIES) {
+            final int found = page.querySelectorAll(query[0]).size();
+            if (found != page.getByXPath(query[1]).size()) {
+                throw new IllegalStateException("Different results for " + query[0] + " and " + query[1]);
+            }
+            // warm up
+            for (int i = 0; i < iterations / 4 + 1; i++) {
+                page.querySelectorAll(query[0]);
+                page.getByXPath(query[1]);
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                page.querySelectorAll(query[0]);
+            }
+            final long selector = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                page.getByXPath(query[1]);
+            }
+            final long xpath = System.nanoTime() - start;
+
+            System.out.println(query[0] + " (" + found + " elements): selector "
+                + selector / 1000 / iterations + " us, XPath " + xpath / 1000 / iterations + " us");
+        }
+    }
+
+    private static String createPage(final int rows) {
+        final StringBuilder builder = new StringBuilder("<html><head><title>selectors</title></head><body>\n");
+        builder.append("<form action='/submit' method='post'><table class='grid' id='grid'>\n");
+        for (int i = 0; i < rows; i++) {
+            builder.append("<tr class='row' id='r").append(i).append("'>")
+                .append("<td class='cell name'><a href='/item?id=").append(i).append("'>item ").append(i)
+                .append("</a></td>")
+                .append("<td class='cell'><input type='text' name='q").append(i).append("' value='1'></td>")
+                .append("<td class='cell' style='text-align: right'><span>").append(i * 3).append("</span></td>")
+                .append("</tr>\n");
+        }
+        builder.append("</table></form></body></html>");
+        return builder.toString();
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2002-2009 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.URL;
+
+import com.gargoylesoftware.htmlunit.MockWebConnection;
+import com.gargoylesoftware.htmlunit.SessionCheckpoint;
+import com.gargoylesoftware.htmlunit.WebClient;
+
+/**
+ * Measures the time needed to save and restore a client having a large page loaded, and the size of the saved
+ * state, with a {@link SessionCheckpoint} and with the Java serialization, e.g.:
+ * <pre>java -Xss256m -cp ... com.gargoylesoftware.htmlunit.benchmarks.SessionCheckpointBenchmark [rows] [n]</pre>
+ * The large stack is needed by the Java serialization, which recurses along the siblings of the nodes.
+ *
+ * @version $Revision$
+ * @author Ahmed Ashour
+ */
+public final class SessionCheckpointBenchmark {
+
+    private SessionCheckpointBenchmark() {
+        // Empty.
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args the number of rows of the page and the number n of iterations (optional)
+     * @throws Exception if an error occurs
+     */
+    public static void main(final String[] args) throws Exception {
+        final int rows = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        final int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+        final WebClient client = new WebClient();
+        client.setJavaScriptEnabled(false);
+        client.setCssEnabled(false);
+        final MockWebConnection connection = new MockWebConnection();
+        connection.setDefaultResponse(createPage(rows));
+        client.setWebConnection(connection);
+        client.getPage(new URL("http://localhost/"));
+
+        byte[] checkpoint = null;
+        byte[] serialized = null;
+        // warm up
+        for (int i = 0; i < iterations / 4 + 1; i++) {
+            checkpoint = writeCheckpoint(client);
+            SessionCheckpoint.read(new ByteArrayInputStream(checkpoint));
+            serialized = serialize(client);
+            deserialize(serialized);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            writeCheckpoint(client);
+        }
+        final long checkpointWrite = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            SessionCheckpoint.read(new ByteArrayInputStream(checkpoint));
+        }
+        final long checkpointRead = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            serialize(client);
+        }
+        final long serializationWrite = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            deserialize(serialized);
+        }
+        final long serializationRead = System.nanoTime() - start;
+
+        System.out.println("Checkpoint:    " + checkpoint.length / 1024 + " KB, write "
+            + checkpointWrite / 1000000 / iterations + " ms, read " + checkpointRead / 1000000 / iterations + " ms");
+        System.out.println("Serialization: " + serialized.length / 1024 + " KB, write "
+            + serializationWrite / 1000000 / iterations + " ms, read "
+            + serializationRead / 1000000 / iterations + " ms");
+    }
+
+    private static byte[] writeCheckpoint(final WebClient client) throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SessionCheckpoint.write(client, bytes);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] serialize(final WebClient client) throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(client);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(final byte[] bytes) throws Exception {
+        final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return in.readObject();
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    private static String createPage(final int rows) {
+        final StringBuilder builder = new StringBuilder("<html><head><title>checkpoint</title></head><body>\n");
+        builder.append("<form action='/submit' method='post'><table class='grid' id='grid'>\n");
+        for (int i = 0; i < rows; i++) {
+            builder.append("<tr class='row' id='r").append(i).append("'>")
+                .append("<td class='cell name'><a href='/item?id=").append(i).append("'>item ").append(i)
+                .append("</a></td>")
+                .append("<td class='cell'><input type='text' name='q").append(i).append("' value='1'></td>")
+                .append("<td class='cell' style='text-align: right'><span>").append(i * 3).append("</span></td>")
+                .append("</tr>\n");
+        }
+        builder.append("</table></form></body></html>");
+        return builder.toString();
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2002-2009 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+
+import com.gargoylesoftware.htmlunit.BrowserVersion;
+import com.gargoylesoftware.htmlunit.MockWebConnection;
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.javascript.configuration.JavaScriptConfiguration;
+
+/**
+ * Measures the cold start of HtmlUnit: the time needed by a fresh JVM to load the JavaScript configuration
+ * and to get the first page. As it measures a cold start, it should be run only once per JVM, e.g.:
+ * <pre>java -cp ... com.gargoylesoftware.htmlunit.benchmarks.StartupBenchmark</pre>
+ *
+ * @version $Revision$
+ * @author agent (agent@local)
+ */
+public final class StartupBenchmark {
+
+    private StartupBenchmark() {
+        // Empty.
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args ignored
+     * @throws Exception if an error occurs
+     */
+    public static void main(final String[] args) throws Exception {
+        final long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+        final long mainStart = System.currentTimeMillis();
+
+        final BrowserVersion browserVersion = BrowserVersion.getDefault();
+        long start = System.nanoTime();
+        JavaScriptConfiguration.getInstance(browserVersion);
+        final long configurationTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        final WebClient client = new WebClient(browserVersion);
+        final MockWebConnection connection = new MockWebConnection();
+        connection.setDefaultResponse("<html><head><title>foo</title>"
+            + "<script>document.title = 'bar';</script></head><body></body></html>");
+        client.setWebConnection(connection);
+        client.getPage(new URL("http://localhost/"));
+        final long firstPageTime = System.nanoTime() - start;
+
+        System.out.println("JVM start to main:            " + (mainStart - jvmStart) + " ms");
+        System.out.println("JavaScript configuration:     " + configurationTime / 1000000 + " ms");
+        System.out.println("WebClient and first getPage:  " + firstPageTime / 1000000 + " ms");
+        System.out.println("JVM start to first page:      " + (System.currentTimeMillis() - jvmStart) + " ms");
+    }
+}
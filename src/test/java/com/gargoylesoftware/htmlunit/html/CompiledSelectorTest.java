@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2002-2009 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.html;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.w3c.css.sac.CSSException;
+
+import com.gargoylesoftware.htmlunit.WebTestCase;
+
+/**
+ * Tests for {@link CompiledSelector}.
+ *
+ * @version $Revision$
+ * @author Ahmed Ashour
+ */
+public class CompiledSelectorTest extends WebTestCase {
+
+    private static final String HTML = "<html lang='en-US'><head><title>selectors</title></head><body>\n"
+        + "<div id='d1' class='box first'>\n"
+        + "  <p id='p1' class='text'>a <span id='s1' class='x'>b</span></p>\n"
+        + "  <p id='p2' lang='fr'><span id='s2'>c</span><span id='s3' class='x y'>d</span></p>\n"
+        + "  <ul id='u1'><li id='l1'>1</li><li id='l2' title='two words'>2</li><li id='l3' title='en-GB'></li></ul>\n"
+        + "</div>\n"
+        + "<div id='d2' class='box'>\n"
+        + "  <form id='f1'><input id='i1' type='checkbox' checked><input id='i2' type='text' disabled></form>\n"
+        + "  <a id='a1' href='#'>link</a><a id='a2' name='anchor'>anchor</a>\n"
+        + "</div>\n"
+        + "</body></html>";
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void querySelectorAll() throws Exception {
+        final HtmlPage page = loadPage(HTML);
+        assertIds(page, "div", "d1", "d2");
+        assertIds(page, "#s3", "s3");
+        assertIds(page, ".box", "d1", "d2");
+        assertIds(page, ".box.first", "d1");
+        assertIds(page, "div.box > p", "p1", "p2");
+        assertIds(page, "div p span", "s1", "s2", "s3");
+        assertIds(page, "p > span.x", "s1", "s3");
+        assertIds(page, "span + span", "s3");
+        assertIds(page, "li + li", "l2", "l3");
+        assertIds(page, "*[title]", "l2", "l3");
+        assertIds(page, "li[title~=words]", "l2");
+        assertIds(page, "li[title|=en]", "l3");
+        assertIds(page, "li[title=\"two words\"]", "l2");
+        assertIds(page, "li:first-child", "l1");
+        assertIds(page, "li:last-child", "l3");
+        assertIds(page, "li:empty", "l3");
+        assertIds(page, "span:lang(fr)", "s2", "s3");
+        assertIds(page, "input:checked, input:disabled", "i1", "i2");
+        assertIds(page, "a:link", "a1");
+        assertIds(page, "a:hover");
+        assertIds(page, "#p2 span, #s1", "s1", "s2", "s3");
+        assertIds(page, "SPAN#S1");
+        assertIds(page, "DIV > P#p1", "p1");
+        assertIds(page, "#nothing");
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void querySelectorAllFromElement() throws Exception {
+        final HtmlPage page = loadPage(HTML);
+        final HtmlElement div = page.getHtmlElementById("d1");
+        assertIds(div, "span", "s1", "s2", "s3");
+        // the whole selector is matched against the document, not only inside the element
+        assertIds(div, "body span.x", "s1", "s3");
+        assertIds(div, "#d1");
+        assertIds(div, "#i1");
+        assertIds(div, "#s2", "s2");
+        assertIds(page.getHtmlElementById("d2"), "input", "i1", "i2");
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void querySelector() throws Exception {
+        final HtmlPage page = loadPage(HTML);
+        assertEquals("p1", page.<HtmlElement>querySelector("p").getId());
+        assertEquals("s3", page.<HtmlElement>querySelector("p span + span, li").getId());
+        assertNull(page.querySelector("table"));
+        assertSame(page.getHtmlElementById("l2"), page.getHtmlElementById("u1").querySelector("li[title]"));
+    }
+
+    /**
+     * The indexes of the page must not be used once the document has changed.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void afterModification() throws Exception {
+        final HtmlPage page = loadPage(HTML);
+        assertIds(page, ".x", "s1", "s3");
+        final HtmlElement span = page.getHtmlElementById("s2");
+        span.setAttribute("class", "x");
+        assertIds(page, ".x", "s1", "s2", "s3");
+        page.getHtmlElementById("s1").remove();
+        assertIds(page, ".x", "s2", "s3");
+        assertIds(page, "#s1");
+        span.setAttribute("id", "renamed");
+        assertIds(page, "#renamed", "renamed");
+    }
+
+    /**
+     * The detached subtrees and the document fragments aren't in the indexes of the page: they are walked.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void detachedRoot() throws Exception {
+        final HtmlPage page = loadPage(HTML);
+        final HtmlElement div = page.getHtmlElementById("d1");
+        div.remove();
+        assertIds(div, "#s1", "s1");
+        assertIds(div, ".x", "s1", "s3");
+        assertIds(div, "span", "s1", "s2", "s3");
+
+        final DomDocumentFragment fragment = page.createDomDocumentFragment();
+        fragment.appendChild(div);
+        assertIds(fragment, "#s3", "s3");
+        assertIds(fragment, "p#p2 > .y", "s3");
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void invalid() throws Exception {
+        final HtmlPage page = loadPage(HTML);
+        for (final String selectors : new String[] {"", "1bad", "div,", "p ~ span", "p:unknown", "div::before"}) {
+            try {
+                page.querySelectorAll(selectors);
+                fail("CSSException expected for '" + selectors + "'");
+            }
+            catch (final CSSException e) {
+                // expected
+            }
+        }
+        assertSame(CompiledSelector.compile("div > p"), CompiledSelector.compile("div > p"));
+    }
+
+    private void assertIds(final DomNode root, final String selectors, final String... ids) {
+        final List<String> actual = new ArrayList<String>();
+        for (final DomElement element : root.querySelectorAll(selectors)) {
+            actual.add(element.getAttribute("id"));
+        }
+        assertEquals(selectors, ids, actual);
+    }
+}
@@ -14,6 +14,9 @@
  */
 package com.gargoylesoftware.htmlunit.html;
 
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
 import java.util.Iterator;
 import java.util.ListIterator;
 
@@ -71,6 +74,39 @@ public class DomNodeListTest extends WebTestCase {
         validateDomNodeList(bodyChildren);
     }
 
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void getChildNodesAfterModification() throws Exception {
+        final String firstContent
+            = "<html><head><title>First</title></head>\n"
+            + "<body><div id='a'></div><div id='b'></div><div id='c'></div></body></html>";
+
+        final HtmlPage page = loadPage(firstContent);
+        final HtmlElement body = page.getBody();
+        final DomNodeList<DomNode> bodyChildren = body.getChildNodes();
+        assertEquals(3, bodyChildren.getLength());
+        assertSame(page.getHtmlElementById("c"), bodyChildren.item(2));
+        assertSame(page.getHtmlElementById("c"), bodyChildren.listIterator(2).next());
+        assertSame(page.getHtmlElementById("b"), bodyChildren.listIterator(2).previous());
+
+        final int count = body.getChildModificationCount();
+        page.getHtmlElementById("a").remove();
+        final HtmlElement d = page.createElement("div");
+        d.setAttribute("id", "d");
+        body.appendChild(d);
+        page.getHtmlElementById("b").insertBefore(page.getHtmlElementById("c"));
+        assertEquals(count + 4, body.getChildModificationCount());
+
+        assertEquals(3, bodyChildren.getLength());
+        assertSame(page.getHtmlElementById("c"), bodyChildren.item(0));
+        assertSame(page.getHtmlElementById("b"), bodyChildren.item(1));
+        assertSame(d, bodyChildren.item(2));
+        assertNull(bodyChildren.item(3));
+        validateDomNodeList(bodyChildren);
+    }
+
     private <E extends DomNode> void validateDomNodeList(final DomNodeList<E> nodes) {
         assertEquals(nodes.getLength(), nodes.size());
         final Iterator<E> nodesIterator = nodes.iterator();
@@ -17,6 +17,9 @@ package com.gargoylesoftware.htmlunit.html;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -697,4 +700,163 @@ public class DomNodeTest extends WebTestCase {
         page.removeDomChangeListener(listener);
     }
 
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void asTextToAppendable() throws Exception {
+        final String html = "<html><head><title> my  title </title></head><body>\n"
+            + "<div> a <br> b&nbsp; <p>c<br></p></div>\n"
+            + "<table><tr><td>1</td><td> 2 </td></tr></table>\n"
+            + "<textarea> x\ny </textarea>\n"
+            + "<input type='checkbox' id='c' checked>\n"
+            + "<select id='s'><option>o1</option><option selected>o2</option></select>\n"
+            + "</body></html>";
+        final HtmlPage page = loadPage(html);
+
+        assertEquals(page.asText(), asText(page));
+        assertEquals(page.getBody().asText(), asText(page.getBody()));
+        assertEquals("checked", asText(page.getHtmlElementById("c")));
+        assertEquals("o2", asText(page.getHtmlElementById("s")));
+    }
+
+    private static String asText(final DomNode node) throws Exception {
+        final StringWriter writer = new StringWriter();
+        node.asText(writer);
+        return writer.toString();
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void writeXml() throws Exception {
+        final String html = "<html><head><title>foo</title></head><body>\n"
+            + "<div id='d'>a &amp; <b>\u00e9</b><!-- c --></div>\n"
+            + "</body></html>";
+        final HtmlPage page = loadPage(html);
+
+        final StringWriter writer = new StringWriter();
+        page.writeXml(writer);
+        assertEquals(page.asXml(), writer.toString());
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        page.getHtmlElementById("d").writeXml(out, Charset.forName("UTF-8"));
+        assertEquals(page.getHtmlElementById("d").asXml(), out.toString("UTF-8"));
+
+        final StringWriter compact = new StringWriter();
+        page.getHtmlElementById("d").writeXml(compact, false);
+        assertEquals("<div id=\"d\">a &amp; <b>\u00e9</b><!-- c --></div>", compact.toString());
+
+        out.reset();
+        page.writeXml(out, Charset.forName("ISO-8859-1"), false);
+        assertTrue(out.toString("ISO-8859-1").startsWith(
+            "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><html><head><title>foo</title>"));
+    }
+
+    /**
+     * The characters which the charset can't encode are written as character references.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void writeXml_unencodableCharacters() throws Exception {
+        final String html = "<html><head><title>foo</title></head><body>\n"
+            + "<div id='d'>&#xe9; &#x416; </div>\n"
+            + "</body></html>";
+        final HtmlPage page = loadPage(html);
+        final HtmlElement div = page.getHtmlElementById("d");
+        div.appendChild(new DomText(page, "\ud834\udd1e"));
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        div.writeXml(out, Charset.forName("ISO-8859-1"), false);
+        assertEquals("<div id=\"d\">\u00e9 &#x416; &#x1D11E;</div>", out.toString("ISO-8859-1"));
+
+        out.reset();
+        div.writeXml(out, Charset.forName("US-ASCII"), false);
+        assertEquals("<div id=\"d\">&#xE9; &#x416; &#x1D11E;</div>", out.toString("US-ASCII"));
+
+        out.reset();
+        div.writeXml(out, Charset.forName("UTF-8"), false);
+        assertEquals("<div id=\"d\">\u00e9 \u0416 \ud834\udd1e</div>", out.toString("UTF-8"));
+    }
+
+    /**
+     * By default, only the inline styles are used.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void isDisplayed() throws Exception {
+        final String html = "<html><head><title>foo</title>\n"
+            + "<style>.hidden { display: none }</style></head><body>\n"
+            + "<div id='d1' style='display: none'><span id='s1'>a</span></div>\n"
+            + "<div id='d2' style='visibility: hidden'><span id='s2'>b</span>"
+            + "<span id='s3' style='visibility: visible'>c</span></div>\n"
+            + "<div id='d3' class='hidden'><span id='s4'>d</span></div>\n"
+            + "</body></html>";
+        final HtmlPage page = loadPage(html);
+        assertDisplayed(page, "s1", false);
+        assertDisplayed(page, "s2", false);
+        assertDisplayed(page, "s3", true);
+        assertDisplayed(page, "s4", true);
+
+        page.getHtmlElementById("d1").removeAttribute("style");
+        assertDisplayed(page, "s1", true);
+        page.getHtmlElementById("d2").setAttribute("style", "display: none");
+        assertDisplayed(page, "s3", false);
+    }
+
+    /**
+     * With {@link com.gargoylesoftware.htmlunit.WebClient#setComputedVisibilityEnabled(boolean)},
+     * the stylesheets are used too.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void isDisplayed_computedStyles() throws Exception {
+        final String html = "<html><head><title>foo</title>\n"
+            + "<style>.hidden { display: none } .invisible { visibility: hidden } [title=x] { display: none }</style>\n"
+            + "</head><body>\n"
+            + "<div id='d1' style='display: none'><span id='s1'>a</span></div>\n"
+            + "<div id='d2' style='visibility: hidden'><span id='s2'>b</span>"
+            + "<span id='s3' style='visibility: visible'>c</span></div>\n"
+            + "<div id='d3' class='hidden'><span id='s4'>d</span></div>\n"
+            + "<div id='d4'><span id='s5'>e</span></div>\n"
+            + "</body></html>";
+        final WebClient client = new WebClient();
+        client.setComputedVisibilityEnabled(true);
+        final MockWebConnection conn = new MockWebConnection();
+        conn.setResponse(URL_FIRST, html);
+        client.setWebConnection(conn);
+        final HtmlPage page = client.getPage(URL_FIRST);
+        assertDisplayed(page, "s1", false);
+        assertDisplayed(page, "s2", false);
+        assertDisplayed(page, "s3", true);
+        assertDisplayed(page, "s4", false);
+        assertDisplayed(page, "s5", true);
+
+        final HtmlElement d4 = page.getHtmlElementById("d4");
+        d4.setAttribute("class", "invisible");
+        assertDisplayed(page, "s5", false);
+        d4.setAttribute("style", "visibility: visible");
+        assertDisplayed(page, "s5", true);
+        d4.setAttribute("lang", "en");
+        assertDisplayed(page, "s5", true);
+        d4.setAttribute("title", "x");
+        assertDisplayed(page, "s5", false);
+        d4.setAttribute("title", "y");
+        assertDisplayed(page, "s5", true);
+        page.getHtmlElementById("d1").removeAttribute("style");
+        assertDisplayed(page, "s1", true);
+        page.getHtmlElementById("d3").appendChild(page.getHtmlElementById("s5"));
+        assertDisplayed(page, "s5", false);
+
+        // without CSS, only the inline styles are used
+        client.setCssEnabled(false);
+        assertDisplayed(page, "s4", true);
+        assertDisplayed(page, "s2", false);
+    }
+
+    private void assertDisplayed(final HtmlPage page, final String id, final boolean displayed) {
+        Assert.assertEquals(id, displayed, page.getHtmlElementById(id).isDisplayed());
+        Assert.assertEquals(id, displayed, page.getHtmlElementById(id).getFirstChild().isDisplayed());
+    }
 }
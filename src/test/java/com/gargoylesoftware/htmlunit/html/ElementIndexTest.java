@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2002-2009 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.html;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.gargoylesoftware.htmlunit.WebTestCase;
+
+/**
+ * Tests for {@link ElementIndex}.
+ *
+ * @version $Revision$
+ * @author Ahmed Ashour
+ */
+public class ElementIndexTest extends WebTestCase {
+
+    private static final String HTML = "<html><head><title>foo</title></head><body>\n"
+        + "<div id='d1' class='a b'>\n"
+        + "  <span id='s1' class='b'>one</span>\n"
+        + "  <div id='d2' class=' a  c '><span id='s2' class='a b c'>two</span></div>\n"
+        + "</div>\n"
+        + "<span id='s3' class='c'>three</span>\n"
+        + "<noscript></noscript>\n"
+        + "</body></html>";
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void tagName() throws Exception {
+        final HtmlPage page = loadPageWithNoScriptContent();
+        assertEquals("[s1, s2, s3, s4]", ids(page.getIndexedElementsByTagName(page, "span", false)));
+        assertEquals("[s1, s2, s3]", ids(page.getIndexedElementsByTagName(page, "span", true)));
+        assertEquals("[s1, d2, s2]", ids(page.getIndexedElementsByTagName(page.getHtmlElementById("d1"), "*", false)));
+        assertEquals("[]", ids(page.getIndexedElementsByTagName(page, "table", false)));
+        assertEquals("[s1, s2]", ids(page.getHtmlElementById("d1").getHtmlElementsByTagName("SPAN")));
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void classNames() throws Exception {
+        final HtmlPage page = loadPageWithNoScriptContent();
+        final String[] a = {"a"};
+        assertEquals("[d1, d2, s2, s4]", ids(page.getIndexedElementsByClassNames(page, a, false)));
+        assertEquals("[d1, d2, s2]", ids(page.getIndexedElementsByClassNames(page, a, true)));
+        assertEquals("[d2, s2]", ids(page.getIndexedElementsByClassNames(page, new String[] {"c", "a"}, false)));
+        assertEquals("[s2]",
+            ids(page.getIndexedElementsByClassNames(page.getHtmlElementById("d2"), new String[] {"b"}, false)));
+        assertEquals("[]", ids(page.getIndexedElementsByClassNames(page, new String[0], false)));
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void updates() throws Exception {
+        final HtmlPage page = loadPageWithNoScriptContent();
+        final HtmlElement d2 = page.getHtmlElementById("d2");
+        assertEquals("[s1, s2, s3]", ids(page.getIndexedElementsByTagName(page, "span", true)));
+
+        final HtmlElement span = page.createElement("span");
+        span.setAttribute("id", "s5");
+        d2.appendChild(span);
+        assertEquals("[s1, s2, s5, s3]", ids(page.getIndexedElementsByTagName(page, "span", true)));
+
+        page.getHtmlElementById("s2").remove();
+        assertEquals("[s1, s5, s3]", ids(page.getIndexedElementsByTagName(page, "span", true)));
+
+        page.getHtmlElementById("s3").insertBefore(d2);
+        assertEquals("[s1, s5, s3]", ids(page.getIndexedElementsByTagName(page, "span", true)));
+        assertEquals("[s1]", ids(page.getIndexedElementsByTagName(page.getHtmlElementById("d1"), "span", true)));
+
+        page.getHtmlElementById("s1").setAttribute("class", "c");
+        assertEquals("[s1, d2, s3]", ids(page.getIndexedElementsByClassNames(page, new String[] {"c"}, true)));
+        d2.removeAttribute("class");
+        assertEquals("[s1, s3]", ids(page.getIndexedElementsByClassNames(page, new String[] {"c"}, true)));
+
+        // the index is kept up to date, and can now be used to search a subtree
+        assertEquals("[s5]", ids(page.getIndexedElementsByTagName(d2, "span", true)));
+    }
+
+    /**
+     * Subtrees built while detached are indexed at their place in the document when attached.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void detachedSubtree() throws Exception {
+        final HtmlPage page = loadPageWithNoScriptContent();
+        assertEquals("[d1, d2, s2]", ids(page.getIndexedElementsByClassNames(page, new String[] {"a"}, true)));
+
+        final HtmlElement div = page.createElement("div");
+        div.setAttribute("id", "d3");
+        final HtmlElement span = page.createElement("span");
+        span.setAttribute("id", "s5");
+        div.appendChild(span);
+        span.setAttribute("class", "a");
+        assertNull(page.getIndexedElementsByTagName(span, "*", true));
+
+        page.getHtmlElementById("s1").insertBefore(div);
+        assertEquals("[s5, s1, s2, s3]", ids(page.getIndexedElementsByTagName(page, "span", true)));
+        assertEquals("[d1, s5, d2, s2]", ids(page.getIndexedElementsByClassNames(page, new String[] {"a"}, true)));
+
+        // the same class twice, removed then restored
+        span.setAttribute("class", "b b");
+        assertEquals("[d1, d2, s2]", ids(page.getIndexedElementsByClassNames(page, new String[] {"a"}, true)));
+        span.setAttribute("class", "a b");
+        assertEquals("[d1, s5, d2, s2]", ids(page.getIndexedElementsByClassNames(page, new String[] {"a"}, true)));
+        assertEquals("[d1, s5, s1, s2]", ids(page.getIndexedElementsByClassNames(page, new String[] {"b"}, true)));
+
+        // moved to the end of the document
+        page.getHtmlElementById("s3").getParentNode().appendChild(div);
+        assertEquals("[s1, s2, s3, s5]", ids(page.getIndexedElementsByTagName(page, "span", true)));
+        div.remove();
+        assertEquals("[s1, s2, s3]", ids(page.getIndexedElementsByTagName(page, "span", true)));
+        assertNull(page.getIndexedElementsByTagName(div, "span", true));
+    }
+
+    /**
+     * The elements which are not part of the document can't be searched with the index.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void detachedRoot() throws Exception {
+        final HtmlPage page = loadPage(HTML);
+        final HtmlElement d1 = page.getHtmlElementById("d1");
+        assertNotNull(page.getIndexedElementsByTagName(page.getDocumentElement(), "span", true));
+        assertEquals("[s1, s2]", ids(page.getIndexedElementsByTagName(d1, "span", true)));
+        d1.remove();
+        assertNull(page.getIndexedElementsByTagName(d1, "span", true));
+        assertEquals("[s1, s2]", ids(d1.getHtmlElementsByTagName("span")));
+        assertEquals("[s3]", ids(page.getIndexedElementsByTagName(page, "span", true)));
+    }
+
+    /**
+     * &lt;noscript&gt; content can't be searched when it has to be excluded.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void noScriptRoot() throws Exception {
+        final HtmlPage page = loadPageWithNoScriptContent();
+        final DomElement noscript = page.getIndexedElementsByTagName(page, "noscript", false).get(0);
+        assertNull(page.getIndexedElementsByTagName(noscript, "span", true));
+        assertEquals("[s4]", ids(page.getIndexedElementsByTagName(noscript, "span", false)));
+    }
+
+    /**
+     * With JavaScript enabled, the content of &lt;noscript&gt; is parsed as text: add it with the DOM API.
+     */
+    private static HtmlPage loadPageWithNoScriptContent() throws Exception {
+        final HtmlPage page = loadPage(HTML);
+        final HtmlElement span = page.createElement("span");
+        span.setAttribute("id", "s4");
+        span.setAttribute("class", "a");
+        page.getDocumentElement().getHtmlElementsByTagName("noscript").get(0).appendChild(span);
+        return page;
+    }
+
+    private static String ids(final List< ? extends DomElement> elements) {
+        final List<String> ids = new ArrayList<String>();
+        for (final DomElement element : elements) {
+            ids.add(element.getAttribute("id"));
+        }
+        return ids.toString();
+    }
+}
@@ -15,6 +15,7 @@
 package com.gargoylesoftware.htmlunit.html;
 
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 
 import java.io.IOException;
 import java.io.OutputStreamWriter;
@@ -721,4 +722,74 @@ public class HTMLParserTest extends WebServerTestCase {
         assertNotNull(page);
     }
 
+    /**
+     * @throws Exception failure
+     */
+    @Test
+    public void sourcePositionTrackingDisabled() throws Exception {
+        final String html = "<html><head>\n"
+            + "<script>\n"
+            + "  function test() {\n"
+            + "    var div = document.createElement('div');\n"
+            + "    div.innerHTML = '<span id=\"s2\">added</span>';\n"
+            + "    document.body.appendChild(div);\n"
+            + "    alert(document.getElementById('s1').tagName);\n"
+            + "  }\n"
+            + "</script>\n"
+            + "</head>\n"
+            + "<body onload='test()'>\n"
+            + "  <span id='s1'>parsed</span>\n"
+            + "</body></html>";
+
+        final WebClient client = getWebClient();
+        client.setSourcePositionTrackingEnabled(false);
+        final List<String> collectedAlerts = new ArrayList<String>();
+        final HtmlPage page = loadPage(client, html, collectedAlerts);
+        assertEquals(new String[] {"SPAN"}, collectedAlerts);
+
+        assertEquals(-1, page.getHtmlElementById("s1").getStartLineNumber());
+        assertEquals(-1, page.getHtmlElementById("s2").getStartLineNumber());
+        assertEquals(DomNode.READY_STATE_LOADING, page.getHtmlElementById("s1").getReadyState());
+        // the positions of the scripts are still needed to report the errors
+        assertEquals(2, page.getDocumentElement().getHtmlElementsByTagName("script").get(0).getStartLineNumber());
+    }
+
+    /**
+     * The parsers are reused by the following parsings of the same thread, including the parsing of
+     * <tt>innerHTML</tt> while the page is parsed, and the nodes share the instances of the usual names.
+     * @throws Exception failure
+     */
+    @Test
+    public void reusedParser() throws Exception {
+        final String html = "<html><head><title>first</title></head><body>\n"
+            + "<div id='d1' class='c'></div><div id='d2'></div>\n"
+            + "<script>document.getElementById('d2').innerHTML = '<form id=\"f1\">';\n"
+            + "document.getElementById('d1').innerHTML = '<form id=\"f2\"><span id=\"s1\">inner</span></form>';"
+            + "</script>\n"
+            + "<p id='p1' data-x='1'>after</p>\n"
+            + "</body></html>";
+
+        final WebClient client = getWebClient();
+        final List<String> collectedAlerts = new ArrayList<String>();
+        final HtmlPage page1 = loadPage(client, html, collectedAlerts);
+        final HtmlPage page2 = loadPage(client, html.replace("first", "second"), collectedAlerts);
+        assertEquals("second", page2.getTitleText());
+        for (final HtmlPage page : new HtmlPage[] {page1, page2}) {
+            assertEquals("inner", page.getHtmlElementById("s1").asText());
+            // the form left opened by the previous fragment doesn't prevent the next one
+            assertEquals("f2", page.getHtmlElementById("s1").getParentNode().getAttributes()
+                .getNamedItem("id").getNodeValue());
+            assertEquals("body", page.getHtmlElementById("p1").getParentNode().getNodeName());
+        }
+
+        final HtmlElement div1 = page1.getHtmlElementById("d1");
+        final HtmlElement div2 = page2.getHtmlElementById("d1");
+        assertSame(HtmlDivision.TAG_NAME, div1.getLocalName());
+        assertSame(div1.getLocalName(), div2.getLocalName());
+        assertSame(div1.getAttributes().getNamedItem("class").getNodeName(),
+            div2.getAttributes().getNamedItem("class").getNodeName());
+        assertSame(page1.getHtmlElementById("s1").getLocalName(), page2.getHtmlElementById("s1").getLocalName());
+        assertEquals("1", page2.getHtmlElementById("p1").getAttribute("data-x"));
+    }
+
 }
@@ -1211,4 +1211,38 @@ public class HtmlElementTest extends WebTestCase {
         assertEquals(expectedAlerts, collectedAlerts);
     }
 
+    /**
+     * The attributes are stored as values: their nodes are only created when needed,
+     * and the order of the names is preserved.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void attributesCreatedLazily() throws Exception {
+        final String html = "<html><head></head><body>\n"
+            + "<div id='d' title='t' class='c' data='x'></div>\n"
+            + "</body></html>";
+        final HtmlPage page = loadPage(html);
+        final HtmlElement div = page.getHtmlElementById("d");
+        assertEquals("t", div.getAttribute("title"));
+        assertEquals(HtmlElement.ATTRIBUTE_NOT_DEFINED, div.getAttribute("lang"));
+        assertEquals("[id, title, class, data]", new ArrayList<String>(div.getAttributesMap().keySet()).toString());
+
+        final DomAttr title = div.getAttributesMap().get("TITLE");
+        assertSame(div, title.getOwnerElement());
+        assertSame(title, div.getAttributes().getNamedItem("title"));
+        assertSame(title, div.getAttributes().item(1));
+
+        div.setAttribute("title", "u");
+        assertEquals("u", div.getAttribute("title"));
+        assertEquals("t", title.getValue());
+
+        div.removeAttribute("class");
+        assertEquals("[id, title, data]", new ArrayList<String>(div.getAttributesMap().keySet()).toString());
+
+        final HtmlElement clone = (HtmlElement) div.cloneNode(false);
+        clone.setAttribute("data", "y");
+        assertEquals("x", div.getAttribute("data"));
+        assertEquals("y", clone.getAttribute("data"));
+        assertEquals("u", clone.getAttribute("title"));
+    }
 }
@@ -1375,4 +1375,55 @@ public class HtmlFormTest extends WebTestCase {
         testUrlAfterSubmit(new URL(URL_GARGOYLE, "test.html?there"), "post", "?hi", URL_GARGOYLE + "test.html?hi");
     }
 
+    /**
+     * The controls of a form are looked up again after they have been added, removed or renamed,
+     * and are still submitted in document order, followed by the lost children.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void controlsAfterModification() throws Exception {
+        final String html
+            = "<html><head><title>foo</title></head><body>\n"
+            + "<table><tr><td>\n"
+            + "<form id='form1' method='post'>\n"
+            + "    <input type='text' name='a' id='a' value='1'/>\n"
+            + "    <div id='div1'><input type='text' name='b' id='b' value='2'/></div>\n"
+            + "    <select name='c'><option value='3' selected>3</option></select>\n"
+            + "</td></tr>\n"
+            + "<tr><td><input type='text' name='lost' value='4'></td></tr></table>\n"
+            + "    <input type='submit' name='button' id='button' value='go'/>\n"
+            + "</form></body></html>";
+        final HtmlPage page = loadPage(html);
+        final MockWebConnection webConnection = getMockConnection(page);
+        final HtmlForm form = page.getHtmlElementById("form1");
+
+        assertSame(page.getHtmlElementById("b"), form.getInputByName("b"));
+        assertEquals(1, form.getSelectsByName("c").size());
+        assertEquals("4", form.getInputByName("lost").getValueAttribute());
+
+        page.getHtmlElementById("b").setAttribute("name", "renamed");
+        assertTrue(form.getInputsByName("b").isEmpty());
+        assertSame(page.getHtmlElementById("b"), form.getInputByName("renamed"));
+
+        ((DomAttr) page.getHtmlElementById("a").getAttributes().getNamedItem("name")).setValue("a2");
+        assertTrue(form.getInputsByName("a").isEmpty());
+        assertSame(page.getHtmlElementById("a"), form.getInputByName("a2"));
+
+        final HtmlElement added = page.createElement("input");
+        added.setAttribute("name", "d");
+        added.setAttribute("value", "5");
+        page.getHtmlElementById("div1").insertBefore(added);
+        assertSame(added, form.getInputByName("d"));
+        assertEquals(2, form.getInputsByValue("5").size() + form.getInputsByValue("2").size());
+
+        page.getHtmlElementById("a").remove();
+        assertTrue(form.getInputsByName("a2").isEmpty());
+
+        ((HtmlSubmitInput) page.getHtmlElementById("button")).click();
+        final List<NameValuePair> expectedParameters = Arrays.asList(new NameValuePair[]{
+            new NameValuePair("d", "5"), new NameValuePair("renamed", "2"), new NameValuePair("c", "3"),
+            new NameValuePair("lost", "4"), new NameValuePair("button", "go")
+        });
+        assertEquals(expectedParameters, webConnection.getLastParameters());
+    }
 }
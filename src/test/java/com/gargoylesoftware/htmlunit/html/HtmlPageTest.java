@@ -47,6 +47,7 @@ import org.apache.commons.httpclient.Cookie;
 import org.apache.commons.httpclient.NameValuePair;
 import org.junit.Assert;
 import org.junit.Test;
+import org.w3c.dom.DOMException;
 import org.w3c.dom.NodeList;
 
 import com.gargoylesoftware.htmlunit.BrowserVersion;
@@ -1851,6 +1852,209 @@ public class HtmlPageTest extends WebServerTestCase {
         clonedPage.getByXPath("//p");
     }
 
+    /**
+     * Pages loaded from the same content are built from the first parsed one, and are independent of it.
+     * @exception Exception If the test fails
+     */
+    @Test
+    public void pageTemplates() throws Exception {
+        final String html = "<html>\n"
+            + "<head><title>foo</title><base href='http://localhost/base/'></head>\n"
+            + "<body>\n"
+            + "<p id='p1' name='n'>hello world</p>\n"
+            + "<table><form id='f' action='submit'><tr><td><input name='lost' value='1'></td></tr></form></table>\n"
+            + "<form id='f2'><textarea id='t' name='n'>text</textarea></form>\n"
+            + "</body></html>";
+        final WebClient client = new WebClient();
+        client.setJavaScriptEnabled(false);
+        client.setPageTemplatesEnabled(true);
+        final MockWebConnection connection = new MockWebConnection();
+        connection.setDefaultResponse(html);
+        client.setWebConnection(connection);
+
+        final HtmlPage page1 = client.getPage(URL_FIRST);
+        final String xml = page1.asXml();
+        assertEquals(1, client.getCache().getSize());
+        final HtmlPage page2 = client.getPage(URL_SECOND);
+        assertEquals(1, client.getCache().getSize());
+        assertEquals(xml, page2.asXml());
+        assertEquals(URL_SECOND, page2.getWebResponse().getRequestSettings().getUrl());
+
+        final HtmlElement p = page2.getHtmlElementById("p1");
+        assertNotSame(page1.getHtmlElementById("p1"), p);
+        assertSame(page2, p.getPage());
+        assertSame(page2, p.getFirstChild().getPage());
+        assertEquals(2, page2.getElementsByName("n").size());
+        assertSame(p, page2.getElementsByName("n").get(0));
+        assertEquals("http://localhost/base/submit",
+            page2.getFullyQualifiedUrl(page2.getHtmlElementById("f").getAttribute("action")).toString());
+
+        final HtmlForm form = page2.getHtmlElementById("f");
+        final HtmlInput lost = form.getInputByName("lost");
+        assertSame(page2, lost.getPage());
+        assertSame(form, lost.getEnclosingForm());
+        final HtmlTextArea textArea = page2.getHtmlElementById("t");
+        assertSame(page2.getHtmlElementById("f2"), textArea.getEnclosingForm());
+        textArea.type("more ");
+        final HtmlTextArea textArea1 = page1.getHtmlElementById("t");
+        assertEquals("text", textArea1.getText());
+        textArea1.type("more ");
+        assertEquals(textArea1.getText(), textArea.getText());
+
+        p.setAttribute("id", "p2");
+        p.appendChild(page2.createElement("span"));
+        assertNotNull(page1.getHtmlElementById("p1"));
+        final HtmlPage page3 = client.getPage(URL_FIRST);
+        assertEquals(xml, page3.asXml());
+        assertNotNull(page3.getHtmlElementById("p1"));
+    }
+
+    /**
+     * Changing the state of the form controls of a page built from a template changes neither the template
+     * nor the other pages built from it.
+     * @exception Exception If the test fails
+     */
+    @Test
+    public void pageTemplates_formState() throws Exception {
+        final String html = "<html><head><title>foo</title></head><body>\n"
+            + "<form id='f'>\n"
+            + "<select id='s' name='s'><option id='o1' value='1'>one</option>"
+            + "<option id='o2' value='2' selected>two</option></select>\n"
+            + "<select id='m' name='m' multiple><option value='a' selected>a</option><option value='b'>b</option>"
+            + "</select>\n"
+            + "<input type='checkbox' id='c' name='c' checked>\n"
+            + "<input type='radio' id='r1' name='r' value='1' checked><input type='radio' id='r2' name='r' value='2'>\n"
+            + "<input type='text' id='t' name='t' value='text'>\n"
+            + "<textarea id='ta' name='ta'>area</textarea>\n"
+            + "<input type='file' id='file' name='file'>\n"
+            + "</form>\n"
+            + "<table id='table'><tr><td>1</td></tr></table>\n"
+            + "</body></html>";
+        final WebClient client = new WebClient();
+        client.setJavaScriptEnabled(false);
+        client.setPageTemplatesEnabled(true);
+        final MockWebConnection connection = new MockWebConnection();
+        connection.setDefaultResponse(html);
+        client.setWebConnection(connection);
+
+        final HtmlPage page1 = client.getPage(URL_FIRST);
+        final String state = formState(page1);
+        final HtmlPage page2 = client.getPage(URL_SECOND);
+        assertEquals(state, formState(page2));
+
+        final HtmlSelect select = page2.getHtmlElementById("s");
+        select.setSelectedAttribute("1", true);
+        final HtmlSelect multiple = page2.getHtmlElementById("m");
+        multiple.setSelectedAttribute("a", false);
+        multiple.setSelectedAttribute("b", true);
+        select.appendChild(page2.createElement("option"));
+        ((HtmlCheckBoxInput) page2.getHtmlElementById("c")).setChecked(false);
+        ((HtmlRadioButtonInput) page2.getHtmlElementById("r2")).setChecked(true);
+        ((HtmlTextInput) page2.getHtmlElementById("t")).type("more ");
+        ((HtmlTextArea) page2.getHtmlElementById("ta")).setText("changed");
+        ((HtmlFileInput) page2.getHtmlElementById("file")).setData(new byte[] {1});
+        ((HtmlTable) page2.getHtmlElementById("table")).getRow(0).appendChild(page2.createElement("td"));
+        final String changedState = formState(page2);
+        assertFalse(state.equals(changedState));
+
+        assertEquals(state, formState(page1));
+        final HtmlPage page3 = client.getPage(URL_FIRST);
+        assertEquals(state, formState(page3));
+
+        ((HtmlForm) page2.getHtmlElementById("f")).reset();
+        assertEquals(state, formState(page1));
+        assertEquals(state, formState(page3));
+    }
+
+    private static String formState(final HtmlPage page) {
+        final HtmlSelect select = page.getHtmlElementById("s");
+        final HtmlSelect multiple = page.getHtmlElementById("m");
+        final HtmlFileInput file = page.getHtmlElementById("file");
+        return select.getOptionSize() + " " + select.getSelectedOptions()
+            + " " + multiple.getSelectedOptions()
+            + " " + ((HtmlCheckBoxInput) page.getHtmlElementById("c")).isChecked()
+            + " " + ((HtmlRadioButtonInput) page.getHtmlElementById("r1")).isChecked()
+            + " " + ((HtmlRadioButtonInput) page.getHtmlElementById("r2")).isChecked()
+            + " " + ((HtmlTextInput) page.getHtmlElementById("t")).getValueAttribute()
+            + " " + ((HtmlTextArea) page.getHtmlElementById("ta")).getText()
+            + " " + (file.getData() == null ? 0 : file.getData().length)
+            + " " + ((HtmlTable) page.getHtmlElementById("table")).getRow(0).getCells().size()
+            + " " + ((HtmlForm) page.getHtmlElementById("f")).getInputsByName("r").size();
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void staticDom() throws Exception {
+        final String html = "<html><head><title>foo</title></head>\n"
+            + "<body>\n"
+            + "<p id='p1' class='c' name='n'>hello world</p>\n"
+            + "<table><form id='f' action='submit'><tr><td><input name='n' value='1'></td></tr></form></table>\n"
+            + "<div id='d' class='c'><span>a</span> <span>b</span></div>\n"
+            + "<table id='t'><tr><td>1</td></tr></table>\n"
+            + "</body></html>";
+        final WebClient client = new WebClient();
+        client.setJavaScriptEnabled(false);
+        final MockWebConnection connection = new MockWebConnection();
+        connection.setDefaultResponse(html);
+        client.setWebConnection(connection);
+        final HtmlPage dynamicPage = client.getPage(URL_FIRST);
+        assertFalse(dynamicPage.isReadOnly());
+
+        client.setStaticDomEnabled(true);
+        final HtmlPage page = client.getPage(URL_SECOND);
+        assertTrue(page.isReadOnly());
+        assertEquals(dynamicPage.asXml(), page.asXml());
+        assertEquals(dynamicPage.asText(), page.asText());
+        final HtmlElement p = page.getHtmlElementById("p1");
+        assertEquals(2, page.getElementsByName("n").size());
+        assertSame(p, page.getElementsByName("n").get(0));
+        assertSame(page.getHtmlElementById("f"), page.getElementsByName("n").get(1).getEnclosingForm());
+        assertEquals(2, page.getByXPath("//span").size());
+        assertSame(p.getAttribute("class"), page.getHtmlElementById("d").getAttribute("class"));
+
+        try {
+            p.setAttribute("id", "p2");
+            fail("DOMException expected");
+        }
+        catch (final DOMException e) {
+            assertEquals(DOMException.NO_MODIFICATION_ALLOWED_ERR, e.code);
+        }
+        try {
+            p.appendChild(page.createElement("span"));
+            fail("DOMException expected");
+        }
+        catch (final DOMException e) {
+            assertEquals(DOMException.NO_MODIFICATION_ALLOWED_ERR, e.code);
+        }
+        try {
+            ((DomText) p.getFirstChild()).setData("bye");
+            fail("DOMException expected");
+        }
+        catch (final DOMException e) {
+            assertEquals(DOMException.NO_MODIFICATION_ALLOWED_ERR, e.code);
+        }
+        assertSame(p, page.getHtmlElementById("p1"));
+        assertEquals("hello world", p.asText());
+
+        // the nodes which are not part of the document can still be changed
+        final HtmlElement clone = (HtmlElement) p.cloneNode(true);
+        clone.setAttribute("id", "p2");
+        clone.appendChild(page.createElement("span"));
+        assertEquals(2, clone.getChildNodes().getLength());
+
+        // and they notify their changes
+        final HtmlTable table = (HtmlTable) page.getHtmlElementById("t").cloneNode(true);
+        final HtmlTableRow row = table.getRow(0);
+        row.getParentNode().appendChild(row.cloneNode(true));
+        assertEquals(2, table.getRows().size());
+        assertNotNull(table.getCellAt(1, 0));
+
+        client.setJavaScriptEnabled(true);
+        assertFalse(((HtmlPage) client.getPage(URL_FIRST)).isReadOnly());
+    }
+
     /**
      * @exception Exception If the test fails
      */
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2002-2009 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.html;
+
+import static org.junit.Assert.assertNotNull;
+
+import java.io.InputStream;
+import java.net.URL;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.WebTestCase;
+
+/**
+ * Tests for {@link HtmlSerializer}, through {@link DomNode#asText()}.
+ * The expected texts are the ones produced by the serializer which built the whole text before cleaning it up.
+ *
+ * @version $Revision$
+ * @author agent (agent@local)
+ */
+public class HtmlSerializerTest extends WebTestCase {
+
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void whitespace() throws Exception {
+        final String html = "<html><head><title>  Some   title </title></head><body>\n"
+            + "  leading    spaces\tand\n"
+            + "tabs&nbsp;&nbsp;nbsp <b>bold</b><i> italic </i>text\n"
+            + "  <span>a</span><span>b</span> <span> c </span>\n"
+            + "</body></html>";
+        assertAsText("Some title\nleading spaces and tabs  nbsp bold italic text ab c", html);
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void tables() throws Exception {
+        final String html = "<html><body>\n"
+            + "before<table><caption>cap</caption>\n"
+            + "<thead><tr><th>h1</th><th> h2 </th></tr></thead>\n"
+            + "<tbody><tr><td>a</td><td>b <br> c</td></tr>\n"
+            + "<tr><td></td><td><table><tr><td>n1</td><td>n2</td></tr></table></td></tr></tbody>\n"
+            + "</table>after\n"
+            + "</body></html>";
+        assertAsText("before\ncap\nh1\t h2\na\tb \n c\n\t\nn1\tn2\nafter", html);
+    }
+
+    /**
+     * The content of &lt;pre&gt; is collapsed like any other text, unlike the content of &lt;textarea&gt;.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void pre() throws Exception {
+        final String html = "<html><body>\n"
+            + "<p>x   y</p><pre>\n"
+            + "  line 1\n"
+            + "    line 2\ttab\n"
+            + "</pre><pre>  <b>bold</b>   z  </pre>\n"
+            + "<textarea>  t   a  \n"
+            + " b </textarea>\n"
+            + "</body></html>";
+        assertAsText("x y\nline 1 line 2 tab bold z   t   a  \n b ", html);
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void hiddenElements() throws Exception {
+        final String html = "<html><body>\n"
+            + "<div>shown</div><div style='display:none'>hidden div</div>\n"
+            + "<span style='visibility: hidden'>invisible</span>\n"
+            + "<p>a<span style='display: none'> b </span>c</p>\n"
+            + "<script>var x = 'script';</script><noscript>no script</noscript>\n"
+            + "<input type='hidden' value='hv'><input type='text' value='tv'>\n"
+            + "<select><option>o1</option><option selected>o2</option></select>\n"
+            + "<input type='checkbox' checked> <input type='radio'>\n"
+            + "</body></html>";
+        assertAsText("shown\nac\nno scripttv o2on on", html);
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void blockBoundaries() throws Exception {
+        final String html = "<html><body>\n"
+            + "one<br>two<br><br>three\n"
+            + "<p>p1</p><p>p2</p>\n"
+            + "<p></p><p> </p>\n"
+            + "<div>d1<div>d2</div>d3</div>\n"
+            + "text<h1>title</h1>more\n"
+            + "<ul><li>u1</li><li>u2</li></ul><ol><li>o1</li><li>o2</li></ol>\n"
+            + "<br>\n"
+            + "<p>end<br></p>\n"
+            + "</body></html>";
+        assertAsText("one\ntwo\n\nthree\np1\np2\nd1\nd2\nd3\ntexttitlemore\nu1\nu2\n1. o1\n2. o2\nend", html);
+    }
+
+    /**
+     * Compares the text of some pages of the test resources with the expected text stored next to this test.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void fixtures() throws Exception {
+        assertFixtureAsText("DWR/2.0.5/simpletext/index.html", "HtmlSerializerTest_dwr.txt");
+        assertFixtureAsText("dojo/1.0.2/dojo/tests/back.html", "HtmlSerializerTest_dojo.txt");
+        assertFixtureAsText("ExtJS/2.2/examples/tabs/tabs.html", "HtmlSerializerTest_extjs.txt");
+        assertFixtureAsText("MochiKit/1.4.1/doc/html/MochiKit/LoggingPane.html", "HtmlSerializerTest_mochikit.txt");
+    }
+
+    private void assertAsText(final String expected, final String html) throws Exception {
+        final HtmlPage page = loadPage(html);
+        assertEquals(expected, page.asText().replace(LINE_SEPARATOR, "\n"));
+    }
+
+    private void assertFixtureAsText(final String pagePath, final String expectedFile) throws Exception {
+        final URL url = getClass().getClassLoader().getResource(pagePath);
+        assertNotNull(pagePath, url);
+        final InputStream stream = getClass().getResourceAsStream(expectedFile);
+        assertNotNull(expectedFile, stream);
+        final String expected;
+        try {
+            expected = IOUtils.toString(stream, "UTF-8");
+        }
+        finally {
+            stream.close();
+        }
+
+        final WebClient client = new WebClient();
+        client.setJavaScriptEnabled(false);
+        client.setCssEnabled(false);
+        final HtmlPage page = client.getPage(url);
+        assertEquals(expected, page.asText().replace(LINE_SEPARATOR, "\n"));
+    }
+}
@@ -15,9 +15,11 @@
 package com.gargoylesoftware.htmlunit.html;
 
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Assert;
@@ -404,4 +406,102 @@ public class HtmlTableTest extends WebTestCase {
         final HtmlPage page = loadPage(html);
         assertTrue(page.asXml().contains("</table>"));
     }
+
+    /**
+     * Cells following a cell spanning several rows are shifted in the next rows.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void getCellAt_rowSpanShiftsCells() throws Exception {
+        final String html = "<html><body>\n"
+            + "<table id='table1'>\n"
+            + "<thead><tr><th>h1</th><th>h2</th><th>h3</th></tr></thead>\n"
+            + "<tr><td rowspan='2'>a</td><td>b</td><td>c</td></tr>\n"
+            + "<tr><td colspan='2'>d</td></tr>\n"
+            + "<tr><td>e</td></tr>\n"
+            + "</table>\n"
+            + "</body></html>";
+        final HtmlPage page = loadPage(html);
+        final HtmlTable table = page.getHtmlElementById("table1");
+
+        assertEquals(4, table.getRowCount());
+        assertEquals(3, table.getColumnCount());
+        assertEquals("a", table.getCellAt(2, 0).asText());
+        assertEquals("d", table.getCellAt(2, 1).asText());
+        assertSame(table.getCellAt(2, 1), table.getCellAt(2, 2));
+        assertNull(table.getCellAt(3, 1));
+        assertNull(table.getCellAt(-1, 0));
+        assertNull(table.getCellAt(0, 3));
+
+        assertEquals(4, table.getColumn(1).size());
+        assertNull(table.getColumn(1).get(3));
+        assertEquals(Arrays.asList("h1", "a", "a", "e"), table.getColumnTexts(0));
+
+        final List<List<String>> expected = new ArrayList<List<String>>();
+        expected.add(Arrays.asList("h1", "h2", "h3"));
+        expected.add(Arrays.asList("a", "b", "c"));
+        expected.add(Arrays.asList("a", "d", "d"));
+        expected.add(Arrays.asList("e", "", ""));
+        assertEquals(expected, table.getCellTexts());
+    }
+
+    /**
+     * The spans are clamped like in the browsers.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void getCellAt_hugeSpans() throws Exception {
+        final String html = "<html><body>\n"
+            + "<table id='table1'>\n"
+            + "<tr><td colspan='2000000000'>a</td><td>b</td></tr>\n"
+            + "<tr><td rowspan='2000000000'>c</td></tr>\n"
+            + "</table>\n"
+            + "</body></html>";
+        final HtmlPage page = loadPage(html);
+        final HtmlTable table = page.getHtmlElementById("table1");
+
+        assertEquals(1001, table.getColumnCount());
+        assertEquals("a", table.getCellAt(0, 999).asText());
+        assertEquals("b", table.getCellAt(0, 1000).asText());
+        assertEquals("c", table.getCellAt(1, 0).asText());
+        assertEquals(2, table.getRowCount());
+    }
+
+    /**
+     * The positions of the cells are computed again after the table has changed.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void getCellAt_afterModification() throws Exception {
+        final String html = "<html><body>\n"
+            + "<table id='table1'>\n"
+            + "<tr><td id='a'>a</td><td>b</td></tr>\n"
+            + "<tr id='row2'><td>c</td><td>d</td></tr>\n"
+            + "</table>\n"
+            + "</body></html>";
+        final HtmlPage page = loadPage(html);
+        final HtmlTable table = page.getHtmlElementById("table1");
+        assertEquals("c", table.getCellAt(1, 0).asText());
+
+        page.getHtmlElementById("a").setAttribute("rowspan", "2");
+        assertEquals("a", table.getCellAt(1, 0).asText());
+        assertEquals("c", table.getCellAt(1, 1).asText());
+        assertEquals(3, table.getColumnCount());
+
+        page.getHtmlElementById("a").removeAttribute("rowspan");
+        assertEquals("c", table.getCellAt(1, 0).asText());
+
+        final HtmlTableRow row = (HtmlTableRow) page.createElement("tr");
+        final HtmlTableCell cell = (HtmlTableCell) page.createElement("td");
+        cell.appendChild(page.createTextNode("e"));
+        row.appendChild(cell);
+        page.getHtmlElementById("row2").getParentNode().appendChild(row);
+        assertEquals(3, table.getRowCount());
+        assertSame(row, table.getRow(2));
+        assertSame(cell, table.getCellAt(2, 0));
+
+        page.getHtmlElementById("row2").remove();
+        assertEquals(2, table.getRowCount());
+        assertSame(cell, table.getCellAt(1, 0));
+    }
 }
@@ -14,12 +14,16 @@
  */
 package com.gargoylesoftware.htmlunit.javascript;
 
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import com.gargoylesoftware.htmlunit.BrowserRunner;
 import com.gargoylesoftware.htmlunit.WebTestCase;
 import com.gargoylesoftware.htmlunit.BrowserRunner.Alerts;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
 
 /**
  * Test for {@link IEConditionalCompilationScriptPreProcessor}.
@@ -139,6 +143,37 @@ public class IEConditionalCompilationTest extends WebTestCase {
         testScript(script);
     }
 
+    /**
+     * Scripts without conditional compilation are returned untouched, the other ones are preprocessed once.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void cache() throws Exception {
+        final HtmlPage page = loadPageWithAlerts("<html><head><title>foo</title></head><body></body></html>");
+        final String plainScript = "var a = 1; /*@ not conditional compilation @*/";
+        assertSame(plainScript, new IEConditionalCompilationScriptPreProcessor()
+            .preProcess(page, plainScript, "test", null));
+
+        final String script = "/*@cc_on @set @foo = 12; alert(@foo + @_jscript_version); @*/";
+        final String processed = new IEConditionalCompilationScriptPreProcessor()
+            .preProcess(page, script, "test", null);
+        assertSame(processed, new IEConditionalCompilationScriptPreProcessor()
+            .preProcess(page, new String(script), "test", null));
+
+        // large scripts are not kept
+        final StringBuilder builder = new StringBuilder(script);
+        while (builder.length() < 200000) {
+            builder.append("\nvar b = 2;");
+        }
+        final String largeScript = builder.toString();
+        final String largeProcessed = new IEConditionalCompilationScriptPreProcessor()
+            .preProcess(page, largeScript, "test", null);
+        final String largeProcessedAgain = new IEConditionalCompilationScriptPreProcessor()
+            .preProcess(page, largeScript, "test", null);
+        assertEquals(largeProcessed, largeProcessedAgain);
+        assertNotSame(largeProcessed, largeProcessedAgain);
+    }
+
     private void testScript(final String script)
         throws Exception {
         final String html
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2002-2009 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.javascript;
+
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.gargoylesoftware.htmlunit.BrowserVersion;
+import com.gargoylesoftware.htmlunit.MockWebConnection;
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.WebTestCase;
+import com.gargoylesoftware.htmlunit.javascript.JavaScriptProfiler.FunctionProfile;
+
+/**
+ * Tests for {@link JavaScriptProfiler}.
+ *
+ * @version $Revision$
+ * @author Ahmed Ashour
+ */
+public class JavaScriptProfilerTest extends WebTestCase {
+
+    private static final String CONTENT = "<html><head><title>profiler test</title><script>\n"
+        + "function fib(n) {\n"
+        + "  return n < 2 ? n : fib(n - 1) + fib(n - 2);\n"
+        + "}\n"
+        + "function compute() {\n"
+        + "  return fib(15);\n"
+        + "}\n"
+        + "compute();\n"
+        + "compute();\n"
+        + "</script></head><body></body></html>";
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void tracing() throws Exception {
+        final JavaScriptProfiler profiler = profile(JavaScriptProfiler.Mode.TRACING, 1);
+        final Map<String, FunctionProfile> profiles = getProfilesPerName(profiler);
+
+        final FunctionProfile compute = profiles.get("compute");
+        assertEquals(2L, compute.getCallCount());
+        assertTrue(compute.getSourceName(), compute.getSourceName().startsWith("script in " + URL_FIRST));
+        assertEquals(5, compute.getLineNumber());
+        assertEquals(2L * 1973, profiles.get("fib").getCallCount());
+        assertEquals(1L, profiles.get("[script]").getCallCount());
+
+        // the total time of a recursive function is counted once
+        assertTrue(profiles.get("fib").getTotalTime() <= compute.getTotalTime());
+        assertTrue(compute.getSelfTime() <= compute.getTotalTime());
+
+        final StringWriter collapsed = new StringWriter();
+        profiler.printCollapsedStacks(collapsed);
+        assertTrue(collapsed.toString(), collapsed.toString().contains(";compute (script in " + URL_FIRST));
+    }
+
+    /**
+     * Tests that the results are aggregated across pages.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void sampling() throws Exception {
+        final JavaScriptProfiler profiler = profile(JavaScriptProfiler.Mode.SAMPLING, 3);
+        final Map<String, FunctionProfile> profiles = getProfilesPerName(profiler);
+        assertEquals(3L * 2, profiles.get("compute").getCallCount());
+        assertEquals(3L * 2 * 1973, profiles.get("fib").getCallCount());
+        assertTrue(profiles.get("fib").getSelfTime() > 0);
+
+        final StringWriter flat = new StringWriter();
+        profiler.printFlatReport(flat);
+        assertTrue(flat.toString(), flat.toString().contains("\t" + (3 * 2 * 1973) + "\tfib ("));
+
+        profiler.reset();
+        assertTrue(profiler.getFunctionProfiles().isEmpty());
+    }
+
+    /**
+     * Tests that the data of the threads which have ended is kept.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void endedThreads() throws Exception {
+        final JavaScriptProfiler profiler = profile(JavaScriptProfiler.Mode.TRACING, 1);
+        final WebClient client = new WebClient(BrowserVersion.FIREFOX_3);
+        client.getJavaScriptEngine().getContextFactory().setDebugger(profiler);
+        final MockWebConnection connection = new MockWebConnection();
+        connection.setDefaultResponse(CONTENT);
+        client.setWebConnection(connection);
+        for (int i = 0; i < 3; i++) {
+            final Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        client.getPage(URL_FIRST);
+                    }
+                    catch (final Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+            thread.start();
+            thread.join();
+        }
+        client.getPage(URL_FIRST);
+
+        final Map<String, FunctionProfile> profiles = getProfilesPerName(profiler);
+        assertEquals(5L * 2, profiles.get("compute").getCallCount());
+        assertEquals(5L * 2 * 1973, profiles.get("fib").getCallCount());
+
+        final StringWriter collapsed = new StringWriter();
+        profiler.printCollapsedStacks(collapsed);
+        assertTrue(collapsed.toString(), collapsed.toString().contains(";compute (script in " + URL_FIRST));
+    }
+
+    private JavaScriptProfiler profile(final JavaScriptProfiler.Mode mode, final int pages) throws Exception {
+        final JavaScriptProfiler profiler = new JavaScriptProfiler(mode);
+        final WebClient client = new WebClient(BrowserVersion.FIREFOX_3);
+        client.getJavaScriptEngine().getContextFactory().setDebugger(profiler);
+        final MockWebConnection connection = new MockWebConnection();
+        connection.setDefaultResponse(CONTENT);
+        client.setWebConnection(connection);
+        for (int i = 0; i < pages; i++) {
+            client.getPage(URL_FIRST);
+        }
+        return profiler;
+    }
+
+    private Map<String, FunctionProfile> getProfilesPerName(final JavaScriptProfiler profiler) {
+        final Map<String, FunctionProfile> profiles = new HashMap<String, FunctionProfile>();
+        for (final FunctionProfile profile : profiler.getFunctionProfiles()) {
+            profiles.put(profile.getFunctionName(), profile);
+        }
+        return profiles;
+    }
+}
@@ -118,6 +118,7 @@ public class SimpleScriptableTest extends WebTestCase {
         names.remove("BoxObject");
         names.remove("ClipboardData");
         names.remove("ComputedCSSStyleDeclaration");
+        names.remove("ComputedStyleCache");
         names.remove("CSSImportRule");
         names.remove("CSSRule");
         names.remove("CSSRuleList");
@@ -163,6 +164,7 @@ public class SimpleScriptableTest extends WebTestCase {
         names.remove("Selection");
         names.remove("SimpleArray");
         names.remove("Stylesheet");
+        names.remove("StyleSheetCache");
         names.remove("StyleSheetList");
         names.remove("TextRange");
         names.remove("TextRectangle");
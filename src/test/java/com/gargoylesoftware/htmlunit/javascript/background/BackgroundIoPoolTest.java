@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2002-2009 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.javascript.background;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gargoylesoftware.htmlunit.WebTestCase;
+
+/**
+ * Tests for {@link BackgroundIoPool}.
+ *
+ * @version $Revision$
+ * @author Ahmed Ashour
+ */
+public class BackgroundIoPoolTest extends WebTestCase {
+
+    private BackgroundIoPool pool_;
+    private CountDownLatch release_;
+    private AtomicInteger running_;
+    private AtomicInteger maxRunning_;
+
+    /**
+     * Initializes variables required by the unit tests.
+     */
+    @Before
+    public void before() {
+        pool_ = new BackgroundIoPool(4, 2);
+        release_ = new CountDownLatch(1);
+        running_ = new AtomicInteger();
+        maxRunning_ = new AtomicInteger();
+    }
+
+    /**
+     * Shuts the pool down.
+     */
+    @After
+    public void after() {
+        pool_.shutdown();
+    }
+
+    /**
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void maxTasksPerHost() throws Exception {
+        final CountDownLatch started = new CountDownLatch(2);
+        for (int i = 0; i < 5; i++) {
+            pool_.submit("host1", new BlockingTask(started));
+        }
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(2, running_.get());
+        assertEquals(5, pool_.getTaskCount());
+
+        release_.countDown();
+        assertEquals(0, pool_.waitForTasks(1000));
+        assertEquals(2, maxRunning_.get());
+    }
+
+    /**
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void otherHostsAreNotBlocked() throws Exception {
+        final CountDownLatch started = new CountDownLatch(4);
+        for (int i = 0; i < 3; i++) {
+            pool_.submit("host1", new BlockingTask(started));
+            pool_.submit("host2", new BlockingTask(started));
+        }
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        release_.countDown();
+        assertEquals(0, pool_.waitForTasks(1000));
+        assertEquals(4, maxRunning_.get());
+    }
+
+    /**
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void cancelWaitingTask() throws Exception {
+        final CountDownLatch started = new CountDownLatch(2);
+        pool_.submit("host1", new BlockingTask(started));
+        pool_.submit("host1", new BlockingTask(started));
+        final AtomicInteger executions = new AtomicInteger();
+        final Future< ? > waiting = pool_.submit("host1", new Runnable() {
+            public void run() {
+                executions.incrementAndGet();
+            }
+        });
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        waiting.cancel(true);
+        release_.countDown();
+        assertEquals(0, pool_.waitForTasks(1000));
+        assertEquals(0, executions.get());
+    }
+
+    private class BlockingTask implements Runnable {
+        private final CountDownLatch started_;
+
+        BlockingTask(final CountDownLatch started) {
+            started_ = started;
+        }
+
+        public void run() {
+            final int running = running_.incrementAndGet();
+            synchronized (maxRunning_) {
+                maxRunning_.set(Math.max(maxRunning_.get(), running));
+            }
+            started_.countDown();
+            try {
+                release_.await();
+            }
+            catch (final InterruptedException e) {
+                // Ignore.
+            }
+            finally {
+                running_.decrementAndGet();
+            }
+        }
+    }
+}
@@ -17,6 +17,10 @@ package com.gargoylesoftware.htmlunit.javascript.configuration;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.Reader;
@@ -490,7 +494,9 @@ public class JavaScriptConfigurationTest extends WebTestCase {
             "HTMLSpanElement|jsxSet_cite",
             "HTMLSpanElement|jsxGet_dateTime",
             "HTMLSpanElement|jsxSet_dateTime",
-            "CharacterDataImpl|jsxGet_tabindex"};
+            "CharacterDataImpl|jsxGet_tabindex",
+            "EventNode|jsxFunction_querySelector",
+            "EventNode|jsxFunction_querySelectorAll"};
         final String key = classname + "|" + methodName;
         for (final String value : ignoreList) {
             if (value.equals(key)) {
@@ -643,6 +649,48 @@ public class JavaScriptConfigurationTest extends WebTestCase {
         }
     }
 
+    /**
+     * Tests that the compact binary form of the configuration holds the same information as the XML form.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void compiledConfiguration() throws Exception {
+        final DocumentBuilder documentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        final org.w3c.dom.Document doc = documentBuilder.parse(createInputSourceForFile(
+            "src/main/resources/com/gargoylesoftware/htmlunit/javascript/configuration/JavaScriptConfiguration.xml"));
+        final ConfigurationElement fromXml = ConfigurationElement.fromElement(doc.getDocumentElement());
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        fromXml.write(out);
+        out.close();
+        final ConfigurationElement compiled =
+            ConfigurationElement.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertSameElement(fromXml, compiled);
+
+        final BrowserVersion browser = BrowserVersion.FIREFOX_3;
+        final JavaScriptConfiguration defaultConfiguration = JavaScriptConfiguration.getInstance(browser);
+        JavaScriptConfiguration.resetClassForTesting();
+        JavaScriptConfiguration.setXmlDocument(doc);
+        final JavaScriptConfiguration xmlConfiguration = JavaScriptConfiguration.getInstance(browser);
+        assertEquals(xmlConfiguration.keySet(), defaultConfiguration.keySet());
+        for (final String classname : xmlConfiguration.keySet()) {
+            assertTrue(classname, xmlConfiguration.classConfigEquals(classname,
+                defaultConfiguration.getClassConfiguration(classname)));
+        }
+    }
+
+    private void assertSameElement(final ConfigurationElement expected, final ConfigurationElement actual) {
+        assertEquals(expected.getTagName(), actual.getTagName());
+        for (final String name : new String[] {"name", "classname", "extends", "readable", "writable"}) {
+            assertEquals(expected.getAttribute(name), actual.getAttribute(name));
+        }
+        assertEquals(expected.getChildren().size(), actual.getChildren().size());
+        for (int i = 0; i < expected.getChildren().size(); i++) {
+            assertSameElement(expected.getChildren().get(i), actual.getChildren().get(i));
+        }
+    }
+
     private static int getType(final String tagName) {
         if (tagName.equals("constant")) {
             return 0;
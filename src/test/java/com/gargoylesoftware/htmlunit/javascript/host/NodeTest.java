@@ -25,6 +25,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import com.gargoylesoftware.htmlunit.BrowserRunner;
+import com.gargoylesoftware.htmlunit.BrowserVersion;
 import com.gargoylesoftware.htmlunit.CollectingAlertHandler;
 import com.gargoylesoftware.htmlunit.MockWebConnection;
 import com.gargoylesoftware.htmlunit.WebClient;
@@ -983,4 +984,45 @@ public class NodeTest extends WebTestCase {
 
         loadPageWithAlerts(html);
     }
+
+    /**
+     * The Selectors API is available from Firefox 3.5 and Internet Explorer 8.
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Browsers(Browser.NONE)
+    public void querySelector() throws Exception {
+        final String html = "<html><head><title>selectors</title><script>\n"
+            + "function test() {\n"
+            + "  var all = document.querySelectorAll('#d1 span, p.text');\n"
+            + "  alert(all.length + ' ' + all[0].id + ' ' + all.item(1).id);\n"
+            + "  document.getElementById('d1').appendChild(document.createElement('span'));\n"
+            + "  alert(all.length);\n"
+            + "  alert(document.getElementById('d1').querySelector('.x').id);\n"
+            + "  alert(document.querySelector('table'));\n"
+            + "  try {\n"
+            + "    document.querySelector('1bad');\n"
+            + "  } catch (e) { alert('exception'); }\n"
+            + "  var fragment = document.createDocumentFragment();\n"
+            + "  var div = document.createElement('div');\n"
+            + "  div.innerHTML = '<span id=\"y\" class=\"a\"></span>';\n"
+            + "  alert(div.querySelectorAll('#y').length + ' ' + div.querySelectorAll('.a').length);\n"
+            + "  fragment.appendChild(div);\n"
+            + "  alert(fragment.querySelector('#y').id);\n"
+            + "}\n"
+            + "</script></head><body onload='test()'>\n"
+            + "<div id='d1'><p id='p1' class='text'><span id='s1' class='x'>b</span></p></div>\n"
+            + "</body></html>";
+
+        final BrowserVersion firefox35 = new BrowserVersion(BrowserVersion.NETSCAPE, "5.0 (Windows; en-US)",
+            "Mozilla/5.0 (Windows; U; Windows NT 5.1; en-US; rv:1.9.1) Gecko/20090624 Firefox/3.5", 3.5f);
+        final List<String> collectedAlerts = new ArrayList<String>();
+        loadPage(firefox35, html, collectedAlerts);
+        assertEquals(new String[] {"2 p1 s1", "2", "s1", "null", "exception", "1 1", "y"}, collectedAlerts);
+
+        collectedAlerts.clear();
+        loadPage(BrowserVersion.FIREFOX_3, "<html><body onload='alert(document.querySelector)'></body></html>",
+            collectedAlerts);
+        assertEquals(new String[] {"undefined"}, collectedAlerts);
+    }
 }
@@ -25,6 +25,7 @@ import com.gargoylesoftware.htmlunit.CollectingAlertHandler;
 import com.gargoylesoftware.htmlunit.MockWebConnection;
 import com.gargoylesoftware.htmlunit.WebClient;
 import com.gargoylesoftware.htmlunit.WebTestCase;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
 
 /**
  * Unit tests for {@link StyleSheetList}.
@@ -171,4 +172,62 @@ public class StyleSheetListTest extends WebTestCase {
         assertEquals(expected, actual);
     }
 
+    /**
+     * Verifies that the style sheets for other media are never loaded when they are loaded lazily,
+     * and that the other linked style sheets are prefetched.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void lazyLoading() throws Exception {
+        final String html =
+              "<html>\n"
+            + "  <head>\n"
+            + "    <link rel='stylesheet' type='text/css' href='" + URL_SECOND + "'/>\n"
+            + "    <link rel='stylesheet' type='text/css' href='" + URL_THIRD + "' media='print'/>\n"
+            + "    <style>@import url('imported.css') print, handheld; div { font-size: 7px }</style>\n"
+            + "  </head>\n"
+            + "  <body><div id='d'>abc</div></body>\n"
+            + "</html>";
+
+        final WebClient client = new WebClient(BrowserVersion.FIREFOX_3);
+        client.setLazyStylesheetsEnabled(true);
+        final List<String> actual = new ArrayList<String>();
+        client.setAlertHandler(new CollectingAlertHandler(actual));
+
+        final MockWebConnection conn = new MockWebConnection();
+        conn.setResponse(URL_FIRST, html);
+        conn.setResponse(URL_SECOND, "div { color: red }", "text/css");
+        conn.setDefaultResponse("div { color: green; font-size: 9px }", "text/css");
+        client.setWebConnection(conn);
+
+        final HtmlPage page = (HtmlPage) client.getPage(URL_FIRST);
+        client.waitForBackgroundJavaScript(2000);
+        assertEquals(2, conn.getRequestCount());
+        final StyleSheetList sheets = ((Window) page.getEnclosingWindow().getScriptObject()).jsxGet_document()
+            .jsxGet_styleSheets();
+        assertEquals(3, sheets.getUnloadedCount());
+
+        page.executeJavaScript("var s = window.getComputedStyle(document.getElementById('d'), null);\n"
+            + "alert(s.color + ',' + s.fontSize);");
+        assertEquals(new String[] {"red,7px"}, actual);
+        assertEquals(2, conn.getRequestCount());
+        assertEquals(1, sheets.getUnloadedCount());
+        assertFalse(sheets.isActive(1));
+    }
+
+    /**
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void isActive() throws Exception {
+        assertTrue(Stylesheet.isActive(""));
+        assertTrue(Stylesheet.isActive("screen"));
+        assertTrue(Stylesheet.isActive("print, Screen"));
+        assertTrue(Stylesheet.isActive("only screen and (max-width: 800px)"));
+        assertTrue(Stylesheet.isActive("(min-width: 500px)"));
+        assertTrue(Stylesheet.isActive("all"));
+        assertFalse(Stylesheet.isActive("print"));
+        assertFalse(Stylesheet.isActive("print, handheld"));
+        assertFalse(Stylesheet.isActive("only print"));
+    }
 }
@@ -14,6 +14,9 @@
  */
 package com.gargoylesoftware.htmlunit.javascript.host;
 
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
 import java.io.StringReader;
 import java.net.URL;
 import java.util.ArrayList;
@@ -23,9 +26,14 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.w3c.css.sac.InputSource;
 import org.w3c.css.sac.Selector;
+import org.w3c.dom.css.CSSMediaRule;
+import org.w3c.dom.css.CSSRule;
+import org.w3c.dom.css.CSSRuleList;
+import org.w3c.dom.css.CSSStyleRule;
 import org.w3c.dom.css.CSSStyleSheet;
 
 import com.gargoylesoftware.htmlunit.BrowserRunner;
+import com.gargoylesoftware.htmlunit.BrowserVersion;
 import com.gargoylesoftware.htmlunit.CollectingAlertHandler;
 import com.gargoylesoftware.htmlunit.MockWebConnection;
 import com.gargoylesoftware.htmlunit.WebClient;
@@ -368,4 +376,81 @@ public class StyleSheetTest extends WebTestCase {
         loadPageWithAlerts(html);
     }
 
+    /**
+     * The parsed stylesheets are shared by the clients, and copied by their first modification.
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Browsers(Browser.NONE)
+    public void sharedBetweenClients() throws Exception {
+        final String html = "<html><head><title>First</title>\n"
+            + "<style id='myStyle'>div.shared { color: red } @media print { div { color: blue } }</style>\n"
+            + "</head><body><div id='myDiv' class='shared'></div></body></html>";
+
+        final HtmlPage page1 = loadPage(BrowserVersion.FIREFOX_3, html, null);
+        final HtmlPage page2 = loadPage(BrowserVersion.FIREFOX_3, html, null);
+        final Stylesheet sheet1 = getSheet(page1);
+        final Stylesheet sheet2 = getSheet(page2);
+        assertNotSame(sheet1, sheet2);
+        final CSSStyleSheet shared = sheet1.getWrappedSheet();
+        assertSame(shared, sheet2.getWrappedSheet());
+
+        page1.executeJavaScript("var sheet = document.getElementById('myStyle').sheet;\n"
+            + "sheet.insertRule('div { width: 10px }', 0);\n"
+            + "sheet.cssRules[1].style.color = 'green';");
+        assertNotSame(shared, sheet1.getWrappedSheet());
+        assertEquals(3, sheet1.getWrappedSheet().getCssRules().getLength());
+        assertEquals(2, shared.getCssRules().getLength());
+        assertEquals("div.shared { color: red }", shared.getCssRules().item(0).getCssText());
+        assertEquals("div.shared { color: green }", sheet1.getWrappedSheet().getCssRules().item(1).getCssText());
+
+        assertEquals("green", page1.executeJavaScript(
+            "window.getComputedStyle(document.getElementById('myDiv'), null).color").getJavaScriptResult());
+        assertEquals("red", page2.executeJavaScript(
+            "window.getComputedStyle(document.getElementById('myDiv'), null).color").getJavaScriptResult());
+        assertSame(shared, sheet2.getWrappedSheet());
+    }
+
+    /**
+     * A modification of a shared stylesheet copies only the modified rule, and reading a rule copies nothing.
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Browsers(Browser.NONE)
+    public void sharedRuleCopiedOnWrite() throws Exception {
+        final String html = "<html><head><title>First</title>\n"
+            + "<style id='myStyle'>div.shared { color: red } span { color: blue }\n"
+            + "@media print { div { color: blue } p { color: black } }</style>\n"
+            + "</head><body><div id='myDiv' class='shared'></div></body></html>";
+
+        final HtmlPage page = loadPage(BrowserVersion.FIREFOX_3, html, null);
+        final Stylesheet sheet = getSheet(page);
+        final CSSStyleSheet shared = sheet.getWrappedSheet();
+
+        assertEquals("red", page.executeJavaScript("var sheet = document.getElementById('myStyle').sheet;\n"
+            + "sheet.cssRules[0].style.color").getJavaScriptResult());
+        assertSame(shared, sheet.getWrappedSheet());
+
+        page.executeJavaScript("sheet.cssRules[1].style.color = 'green';");
+        final CSSRuleList sharedRules = shared.getCssRules();
+        final CSSRule nested = ((CSSMediaRule) sharedRules.item(2)).getCssRules().item(1);
+        ((CSSStyleRule) sheet.getModifiableRule(nested)).getStyle().setProperty("color", "white", null);
+        final CSSRuleList rules = sheet.getWrappedSheet().getCssRules();
+        assertNotSame(shared, sheet.getWrappedSheet());
+        assertSame(sharedRules.item(0), rules.item(0));
+        assertNotSame(sharedRules.item(1), rules.item(1));
+        assertNotSame(sharedRules.item(2), rules.item(2));
+        assertEquals("span { color: green }", rules.item(1).getCssText());
+        assertEquals("span { color: blue }", sharedRules.item(1).getCssText());
+        assertEquals("p { color: white }", ((CSSMediaRule) rules.item(2)).getCssRules().item(1).getCssText());
+        assertEquals("p { color: black }", ((CSSMediaRule) sharedRules.item(2)).getCssRules().item(1).getCssText());
+
+        assertEquals("green", page.executeJavaScript("sheet.cssRules[1].style.color").getJavaScriptResult());
+        assertSame(((CSSMediaRule) rules.item(2)).getCssRules().item(1), sheet.getCurrentRule(nested));
+    }
+
+    private static Stylesheet getSheet(final HtmlPage page) {
+        final HtmlStyle style = page.getHtmlElementById("myStyle");
+        return ((HTMLStyleElement) style.getScriptObject()).jsxGet_sheet();
+    }
 }
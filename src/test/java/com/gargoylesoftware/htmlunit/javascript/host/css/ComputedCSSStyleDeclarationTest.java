@@ -27,8 +27,12 @@ import com.gargoylesoftware.htmlunit.WebTestCase;
 import com.gargoylesoftware.htmlunit.BrowserRunner.Alerts;
 import com.gargoylesoftware.htmlunit.BrowserRunner.Browser;
 import com.gargoylesoftware.htmlunit.BrowserRunner.Browsers;
+import com.gargoylesoftware.htmlunit.html.HtmlElement;
 import com.gargoylesoftware.htmlunit.html.HtmlPage;
 import com.gargoylesoftware.htmlunit.html.HtmlTextArea;
+import com.gargoylesoftware.htmlunit.javascript.host.ComputedStyleCache;
+import com.gargoylesoftware.htmlunit.javascript.host.Window;
+import com.gargoylesoftware.htmlunit.javascript.host.html.HTMLElement;
 
 /**
  * Tests for {@link ComputedCSSStyleDeclaration}.
@@ -464,4 +468,119 @@ public class ComputedCSSStyleDeclarationTest extends WebTestCase {
             + "</body></html>";
         loadPageWithAlerts(html);
     }
+
+    /**
+     * Verifies that the styles depending on the position of a node are recomputed when it is moved,
+     * and that the styles depending on a previous sibling are recomputed when it changes.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    @Browsers(Browser.FF)
+    @Alerts({ "underline", "none", "underline", "none", "underline" })
+    public void changeInPositionOrSiblingReferencedByRule() throws Exception {
+        final String html = "<html><head>\n"
+            + "<script>\n"
+            + "function readDecoration(id) {\n"
+            + "  var e = document.getElementById(id);\n"
+            + "  alert(window.getComputedStyle(e, null).textDecoration)\n"
+            + "}\n"
+            + "function test() {\n"
+            + "  readDecoration('fooB')\n"
+            + "  document.getElementById('other').appendChild(document.getElementById('fooB'));\n"
+            + "  readDecoration('fooB')\n"
+            + "  readDecoration('fooD')\n"
+            + "  document.getElementById('fooC').className = '';\n"
+            + "  readDecoration('fooD')\n"
+            + "  document.body.insertBefore(document.getElementById('fooA'), document.getElementById('fooD'));\n"
+            + "  readDecoration('fooD')\n"
+            + "}\n"
+            + "</script>\n"
+            + "<style>\n"
+            + ".A .B { text-decoration: underline }\n"
+            + ".A + .D { text-decoration: underline }\n"
+            + "</style>\n"
+            + "</head><body onload='test()'>\n"
+            + "<div class='A' id='fooA'><div class='B' id='fooB'>B</div></div>\n"
+            + "<div id='other'></div>\n"
+            + "<div class='A' id='fooC'>C</div><div class='D' id='fooD'>D</div>\n"
+            + "</body></html>";
+        loadPageWithAlerts(html);
+    }
+
+    /**
+     * Verifies that a change evicts only the cached styles which depend on it.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void cacheEvictsOnlyDependentStyles() throws Exception {
+        final String html = "<html><head>\n"
+            + "<style>\n"
+            + ".A .B { text-decoration: underline }\n"
+            + "</style>\n"
+            + "</head><body>\n"
+            + "<div class='A' id='fooA'><div class='B' id='fooB'>B</div></div>\n"
+            + "<div class='A' id='fooC'><div class='B' id='fooD'>D</div></div>\n"
+            + "</body></html>";
+        final HtmlPage page = loadPage(html);
+        final Window window = (Window) page.getEnclosingWindow().getScriptObject();
+        final ComputedStyleCache cache = window.getComputedStyleCache();
+
+        final String[] ids = {"fooA", "fooB", "fooC", "fooD"};
+        for (final String id : ids) {
+            window.jsxFunction_getComputedStyle((HTMLElement) page.getHtmlElementById(id).getScriptObject(), null);
+        }
+        assertEquals(4, cache.size());
+        assertEquals(4L, cache.getMissCount());
+
+        page.getHtmlElementById("fooA").setAttribute("class", "");
+        assertEquals(2, cache.size());
+        page.getHtmlElementById("fooC").setAttribute("title", "unrelated");
+        assertEquals(1, cache.size());
+
+        for (final String id : ids) {
+            window.jsxFunction_getComputedStyle((HTMLElement) page.getHtmlElementById(id).getScriptObject(), null);
+        }
+        assertEquals(1L, cache.getHitCount());
+        assertEquals("none", window.jsxFunction_getComputedStyle(
+            (HTMLElement) page.getHtmlElementById("fooB").getScriptObject(), null).jsxGet_textDecoration());
+        assertEquals("underline", window.jsxFunction_getComputedStyle(
+            (HTMLElement) page.getHtmlElementById("fooD").getScriptObject(), null).jsxGet_textDecoration());
+    }
+
+    /**
+     * Verifies that the removal of a node evicts the cached styles of its whole subtree, and that the styles
+     * of detached elements aren't cached.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void cacheEvictsRemovedSubtree() throws Exception {
+        final String html = "<html><head>\n"
+            + "<style>\n"
+            + ".A .B { text-decoration: underline }\n"
+            + "</style>\n"
+            + "</head><body>\n"
+            + "<div class='A' id='fooA'><div id='fooX'><div class='B' id='fooB'>B</div></div></div>\n"
+            + "</body></html>";
+        final HtmlPage page = loadPage(html);
+        final Window window = (Window) page.getEnclosingWindow().getScriptObject();
+        final ComputedStyleCache cache = window.getComputedStyleCache();
+
+        final HtmlElement fooX = page.getHtmlElementById("fooX");
+        final HtmlElement fooB = page.getHtmlElementById("fooB");
+        assertEquals("underline", window.jsxFunction_getComputedStyle(
+            (HTMLElement) fooB.getScriptObject(), null).jsxGet_textDecoration());
+        window.jsxFunction_getComputedStyle((HTMLElement) fooX.getScriptObject(), null);
+        assertEquals(2, cache.size());
+
+        fooX.remove();
+        assertEquals(0, cache.size());
+        assertEquals("none", window.jsxFunction_getComputedStyle(
+            (HTMLElement) fooB.getScriptObject(), null).jsxGet_textDecoration());
+        assertEquals(0, cache.size());
+
+        page.getHtmlElementById("fooA").appendChild(fooX);
+        assertEquals("underline", window.jsxFunction_getComputedStyle(
+            (HTMLElement) fooB.getScriptObject(), null).jsxGet_textDecoration());
+        assertEquals(1, cache.size());
+    }
 }
@@ -1547,6 +1547,41 @@ public class HTMLElementTest extends WebTestCase {
         loadPageWithAlerts(html);
     }
 
+    /**
+     * The boxes of the detached elements aren't cached, but their positions are still computed.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    @Alerts({ "0", "20", "0", "20", "40" })
+    public void offsetTop_detached() throws Exception {
+        final String html =
+              "<html>\n"
+            + "  <head>\n"
+            + "    <script>\n"
+            + "      function test() {\n"
+            + "        var outer = document.createElement('div');\n"
+            + "        var parent = document.createElement('div');\n"
+            + "        var c1 = document.createElement('div');\n"
+            + "        var c2 = document.createElement('div');\n"
+            + "        var c3 = document.createElement('div');\n"
+            + "        parent.appendChild(c1);\n"
+            + "        parent.appendChild(c2);\n"
+            + "        alert(c1.offsetTop);\n"
+            + "        alert(c2.offsetTop);\n"
+            + "        outer.appendChild(c3);\n"
+            + "        outer.appendChild(document.createElement('div'));\n"
+            + "        outer.appendChild(parent);\n"
+            + "        alert(c1.offsetTop - parent.offsetTop);\n"
+            + "        alert(c2.offsetTop - parent.offsetTop);\n"
+            + "        alert(parent.offsetTop);\n"
+            + "      }\n"
+            + "    </script>\n"
+            + "  </head>\n"
+            + "  <body onload='test()'></body>\n"
+            + "</html>";
+        loadPageWithAlerts(html);
+    }
+
     /**
      * @throws Exception if an error occurs
      */
@@ -1627,6 +1662,44 @@ public class HTMLElementTest extends WebTestCase {
         loadPageWithAlerts(html);
     }
 
+    /**
+     * The boxes of the elements are memoised until the document is changed.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    @Alerts({ "0,20,40", "20,40,60", "20,40", "100", "50" })
+    public void offsetsAfterModification() throws Exception {
+        final String html = "<html><head><script>\n"
+            + "  function tops() {\n"
+            + "    var list = document.getElementById('list');\n"
+            + "    var result = [];\n"
+            + "    for (var i = 0; i < list.childNodes.length; i++) {\n"
+            + "      if (list.childNodes[i].nodeType == 1 && list.childNodes[i].id) {\n"
+            + "        result.push(list.childNodes[i].offsetTop);\n"
+            + "      }\n"
+            + "    }\n"
+            + "    return result.join(',');\n"
+            + "  }\n"
+            + "  function test() {\n"
+            + "    var list = document.getElementById('list');\n"
+            + "    alert(tops());\n"
+            + "    list.insertBefore(document.createElement('div'), list.firstChild);\n"
+            + "    alert(tops());\n"
+            + "    list.removeChild(document.getElementById('d3'));\n"
+            + "    alert(tops());\n"
+            + "    var d1 = document.getElementById('d1');\n"
+            + "    alert(d1.offsetWidth);\n"
+            + "    list.style.width = '50px';\n"
+            + "    alert(d1.offsetWidth);\n"
+            + "  }\n"
+            + "</script></head>\n"
+            + "<body style='padding: 0px; margin: 0px;' onload='test()'>"
+            + "<div id='list' style='width: 100px; position: relative'>"
+            + "<div id='d1'>a</div><div id='d2'>b</div><div id='d3'>c</div></div>\n"
+            + "</body></html>";
+        loadPageWithAlerts(html);
+    }
+
     /**
      * Test scrolls (real values don't matter currently).
      *
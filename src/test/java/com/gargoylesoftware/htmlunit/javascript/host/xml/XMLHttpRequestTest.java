@@ -201,6 +201,48 @@ public class XMLHttpRequestTest extends WebServerTestCase {
         assertEquals(alerts, collectedAlerts);
     }
 
+    /**
+     * Tests asynchronous use of XMLHttpRequest when the network I/O is performed by the background I/O pool.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void asyncUseWithBackgroundIo() throws Exception {
+        final String html =
+              "<html><head><script>\n"
+            + "  var request;\n"
+            + "  function testAsync() {\n"
+            + "    if (window.XMLHttpRequest)\n"
+            + "      request = new XMLHttpRequest();\n"
+            + "    else if (window.ActiveXObject)\n"
+            + "      request = new ActiveXObject('Microsoft.XMLHTTP');\n"
+            + "    request.onreadystatechange = onReadyStateChange;\n"
+            + "    request.open('GET', '" + URL_SECOND + "', true);\n"
+            + "    request.send('');\n"
+            + "    alert('sent');\n"
+            + "  }\n"
+            + "  function onReadyStateChange() {\n"
+            + "    alert(request.readyState);\n"
+            + "    if (request.readyState == 4)\n"
+            + "      alert(request.responseText);\n"
+            + "  }\n"
+            + "</script></head>\n"
+            + "<body onload='testAsync()'></body></html>";
+
+        final WebClient client = getWebClient();
+        client.setBackgroundIoThreads(2);
+        final List<String> collectedAlerts = Collections.synchronizedList(new ArrayList<String>());
+        client.setAlertHandler(new CollectingAlertHandler(collectedAlerts));
+        final MockWebConnection conn = new MockWebConnection();
+        conn.setResponse(URL_FIRST, html);
+        conn.setResponse(URL_SECOND, "<foo/>", "text/xml");
+        client.setWebConnection(conn);
+        client.getPage(URL_FIRST);
+
+        assertEquals(0, client.waitForBackgroundJavaScript(1000));
+        final String[] alerts = {LOADING, LOADING, "sent", LOADED, INTERACTIVE, COMPLETED, "<foo/>"};
+        assertEquals(alerts, collectedAlerts);
+    }
+
     /**
      * Tests asynchronous use of XMLHttpRequest, where the XHR request fails due to IOException (Connection refused).
      * @throws Exception if the test fails
@@ -256,6 +298,61 @@ public class XMLHttpRequestTest extends WebServerTestCase {
         assertEquals(getExpectedAlerts(), collectedAlerts);
     }
 
+    /**
+     * Tests asynchronous use of XMLHttpRequest through the background I/O pool, where loading the response
+     * fails with a runtime exception: the request must be completed as a network error.
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Alerts(IE = { "0", "1", "1", "2", "4", MSG_NO_CONTENT },
+            FF = { "0", "1", "1", "2", "4", MSG_NO_CONTENT, MSG_PROCESSING_ERROR })
+    public void asyncUseWithBackgroundIoFailure() throws Exception {
+        final String html =
+              "<html><head><script>\n"
+            + "var request;\n"
+            + "function testAsync() {\n"
+            + "  if (window.XMLHttpRequest)\n"
+            + "    request = new XMLHttpRequest();\n"
+            + "  else if (window.ActiveXObject)\n"
+            + "    request = new ActiveXObject('Microsoft.XMLHTTP');\n"
+            + "  request.onreadystatechange = onReadyStateChange;\n"
+            + "  request.onerror = onError;\n"
+            + "  alert(request.readyState);\n"
+            + "  request.open('GET', '" + URL_SECOND + "', true);\n"
+            + "  request.send('');\n"
+            + "}\n"
+            + "function onError() {\n"
+            + "  alert('" + MSG_PROCESSING_ERROR + "');\n"
+            + "}\n"
+            + "function onReadyStateChange() {\n"
+            + "  alert(request.readyState);\n"
+            + "  if (request.readyState == 4 && request.responseText.length == 0)\n"
+            + "    alert('" + MSG_NO_CONTENT + "');\n"
+            + "}\n"
+            + "</script></head>\n"
+            + "<body onload='testAsync()'></body></html>";
+
+        final WebClient client = getWebClient();
+        client.setBackgroundIoThreads(2);
+        final List<String> collectedAlerts = Collections.synchronizedList(new ArrayList<String>());
+        client.setAlertHandler(new CollectingAlertHandler(collectedAlerts));
+        final MockWebConnection conn = new MockWebConnection() {
+            @Override
+            public WebResponse getResponse(final WebRequestSettings settings) throws IOException {
+                if (settings.getUrl().equals(URL_SECOND)) {
+                    throw new IllegalStateException("broken connection");
+                }
+                return super.getResponse(settings);
+            }
+        };
+        conn.setResponse(URL_FIRST, html);
+        client.setWebConnection(conn);
+        client.getPage(URL_FIRST);
+
+        assertEquals(0, client.waitForBackgroundJavaScript(1000));
+        assertEquals(getExpectedAlerts(), collectedAlerts);
+    }
+
     /**
      * Regression test for http://sourceforge.net/tracker/index.php?func=detail&aid=1209692&group_id=47038&atid=448266.
      * @throws Exception if the test fails
@@ -34,6 +34,11 @@ import com.gargoylesoftware.htmlunit.MockWebConnection;
 import com.gargoylesoftware.htmlunit.Page;
 import com.gargoylesoftware.htmlunit.WebClient;
 import com.gargoylesoftware.htmlunit.WebServerTestCase;
+import com.gargoylesoftware.htmlunit.html.DomCDataSection;
+import com.gargoylesoftware.htmlunit.html.DomComment;
+import com.gargoylesoftware.htmlunit.html.DomElement;
+import com.gargoylesoftware.htmlunit.html.DomNode;
+import com.gargoylesoftware.htmlunit.html.DomText;
 
 /**
  * Tests for {@link XmlPage}.
@@ -84,6 +89,64 @@ public class XmlPageTest extends WebServerTestCase {
         assertEquals("foo", xmlPage.getXmlDocument().getFirstChild().getNodeName());
     }
 
+    /**
+     * The nodes of the page are built from the parser events: namespaces, CDATA sections, comments
+     * and the document type must be kept, while what is outside the document element is ignored.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void nodes() throws Exception {
+        final String content
+            = "<?xml version='1.0'?>\n"
+            + "<!DOCTYPE root SYSTEM 'root.dtd'>\n"
+            + "<!-- outside -->\n"
+            + "<root xmlns:x='urn:x' a='1'>"
+            + "text &amp; more<![CDATA[<raw>]]><!-- inside --><?pi data?><x:child x:b='2'/>"
+            + "</root>";
+
+        final XmlPage xmlPage = testXmlDocument(content, "text/xml");
+        final DomElement root = xmlPage.getDocumentElement();
+        Assert.assertSame(root, xmlPage.getFirstChild());
+        assertEquals("root", xmlPage.getDoctype().getName());
+        assertEquals("root.dtd", xmlPage.getDoctype().getSystemId());
+        assertEquals("1", root.getAttribute("a"));
+        assertEquals("urn:x", root.getAttribute("xmlns:x"));
+
+        DomNode node = root.getFirstChild();
+        assertTrue(node instanceof DomText);
+        assertEquals("text & more", node.getNodeValue());
+        node = node.getNextSibling();
+        assertTrue(node instanceof DomCDataSection);
+        assertEquals("<raw>", node.getNodeValue());
+        node = node.getNextSibling();
+        assertTrue(node instanceof DomComment);
+        assertEquals(" inside ", node.getNodeValue());
+        node = node.getNextSibling();
+        assertEquals("x:child", node.getNodeName());
+        assertEquals("child", node.getLocalName());
+        assertEquals("urn:x", node.getNamespaceURI());
+        assertEquals("2", ((DomElement) node).getAttributeNS("urn:x", "b"));
+        assertNull(node.getNextSibling());
+
+        assertEquals("root", xmlPage.getXmlDocument().getDocumentElement().getNodeName());
+    }
+
+    /**
+     * An empty content gives an empty page.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void emptyDocument() throws Exception {
+        final WebClient client = getWebClient();
+        final MockWebConnection webConnection = new MockWebConnection();
+        webConnection.setDefaultResponse(" \n ", 200, "OK", "text/xml");
+        client.setWebConnection(webConnection);
+
+        final XmlPage xmlPage = client.getPage(URL_FIRST);
+        assertNull(xmlPage.getFirstChild());
+        assertNull(xmlPage.getXmlDocument());
+    }
+
     /**
      * Utility method to test XML page of different MIME types.
      * @param content the XML content